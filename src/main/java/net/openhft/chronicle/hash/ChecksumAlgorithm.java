@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash;
+
+/**
+ * Algorithms of computing entry checksums, if {@link ChronicleHashBuilder#checksumEntries(boolean)
+ * checksumEntries(true)} is configured.
+ *
+ * @see ChronicleHashBuilder#checksumAlgorithm(ChecksumAlgorithm)
+ */
+public enum ChecksumAlgorithm {
+    /**
+     * Entry bytes are hashed with xxHash, the default algorithm.
+     */
+    XX_HASH,
+
+    /**
+     * Entry bytes are hashed with CRC-32C. On Java 9+ the JDK's {@code java.util.zip.CRC32C} is
+     * used, that is a JVM intrinsic on most platforms, so this algorithm is cheaper than {@link
+     * #XX_HASH} for large entries. On Java 8 a software implementation is used, that produces the
+     * same checksums, but is slower than {@code XX_HASH}.
+     * <p>
+     * <p>This algorithm also allows to update checksums incrementally, when only a part of the
+     * value is changed in place via {@link net.openhft.chronicle.map.MapEntry#writeValueBytes}.
+     */
+    CRC32C
+}
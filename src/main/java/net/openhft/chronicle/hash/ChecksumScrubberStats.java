@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash;
+
+/**
+ * Counters of the background checksum scrubbing of a {@link ChronicleHash}. All counters are
+ * accumulated since the {@code ChronicleHash} instance was created (or opened), they are not
+ * persisted.
+ *
+ * @see ChronicleHashBuilder#checksumScrubbing(long, ChronicleHashCorruption.Listener)
+ * @see ChronicleHash#checksumScrubberStats()
+ */
+@Beta
+public interface ChecksumScrubberStats {
+
+    /**
+     * Returns the number of entries, which checksums were verified.
+     */
+    long verifiedEntries();
+
+    /**
+     * Returns the number of corruptions, reported to the scrubbing {@link
+     * ChronicleHashCorruption.Listener}.
+     */
+    long corruptions();
+
+    /**
+     * Returns the number of completed passes over all segments of the {@code ChronicleHash}.
+     */
+    long completedScans();
+}
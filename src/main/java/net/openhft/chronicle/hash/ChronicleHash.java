@@ -18,13 +18,16 @@ package net.openhft.chronicle.hash;
 
 import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
 import net.openhft.chronicle.map.ChronicleMap;
 import net.openhft.chronicle.map.MapMethods;
 import net.openhft.chronicle.map.MapQueryContext;
 import net.openhft.chronicle.set.ChronicleSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -81,6 +84,31 @@ public interface ChronicleHash<K, E extends HashEntry<K>, SC extends HashSegment
      */
     long longSize();
 
+    /**
+     * Returns the approximate number of entries in this store, without locking segments. The
+     * estimate is the sum of a few striped counters, updated on each insertion and removal, so it
+     * is much cheaper than {@link #longSize()} for stores with many segments, and suitable for
+     * periodic monitoring. It is exact, if there are no concurrent modifications, but could be
+     * slightly off while entries are concurrently inserted or removed.
+     * <p>
+     * <p>The counters are maintained in the data store, so they account modifications, made from
+     * all processes, accessing the same persisted store. For stores, created by older versions of
+     * the library, the counters are initialized by {@linkplain
+     * ChronicleHashBuilder#recoverPersistedTo(File, boolean) recovery}, until then this method falls
+     * back to {@link #longSize()}.
+     * <p>
+     * <p>Older versions of the library don't update the counters, but also don't invalidate
+     * them. If a persisted store is modified by a process, running an older version of the library,
+     * concurrently with or in between accesses of processes, running this version, this method
+     * keeps returning estimates, which don't account those modifications, and could be arbitrarily
+     * wrong. Mixing library versions over the same store is not supported in this regard; if it has
+     * happened, {@linkplain ChronicleHashBuilder#recoverPersistedTo(File, boolean) recovery}
+     * recomputes the counters.
+     *
+     * @return the approximate number of entries in this store
+     */
+    long estimatedSize();
+
     /**
      * Returns the amount of off-heap memory (in bytes), allocated by this {@code ChronicleHash} or
      * shared with with other ChronicleHashes, persisting to the same {@link #file()}.
@@ -91,6 +119,78 @@ public interface ChronicleHash<K, E extends HashEntry<K>, SC extends HashSegment
      */
     long offHeapMemoryUsed();
 
+    /**
+     * Returns the number of query and iteration context chains of this {@code ChronicleHash}, which
+     * are not yet collected: a chain per thread, which accessed this {@code ChronicleHash} and is
+     * still alive, or, if {@linkplain ChronicleHashBuilder#contextPool(int) context pool} is
+     * configured, per thread, which accesses this {@code ChronicleHash} concurrently, plus idle
+     * chains in the pool. Contexts of threads, which are dead, are not counted, even if they are
+     * not yet collected by the garbage collector.
+     * <p>
+     * <p>After {@link #close()} this method returns 0.
+     *
+     * @return the number of live context chains of this {@code ChronicleHash}
+     */
+    int liveContexts();
+
+    /**
+     * Returns the counters of the background checksum scrubbing of this {@code ChronicleHash}, or
+     * {@code null}, if {@linkplain ChronicleHashBuilder#checksumScrubbing(long,
+     * ChronicleHashCorruption.Listener) checksum scrubbing} is not configured for this on-heap
+     * instance.
+     */
+    @Nullable
+    ChecksumScrubberStats checksumScrubberStats();
+
+    /**
+     * Returns the segment lock contention and hold time statistics of this {@code ChronicleHash},
+     * or {@code null}, if {@linkplain ChronicleHashBuilder#segmentLockStats(int, boolean) segment
+     * lock stats} are not configured for this on-heap instance.
+     */
+    @Nullable
+    SegmentLockStats segmentLockStats();
+
+    /**
+     * Writes a copy of this {@code ChronicleHash} to the given file, equivalent to {@link
+     * #snapshotTo(File, boolean, long) snapshotTo(file, false, 0)}.
+     *
+     * @param file the file to write the copy to
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurred while writing the copy
+     * @throws UnsupportedOperationException if this {@code ChronicleHash} is not persisted
+     */
+    long snapshotTo(File file) throws IOException;
+
+    /**
+     * Writes a copy of this persisted {@code ChronicleHash} to the given file, that could be opened
+     * via {@link ChronicleHashBuilder#createPersistedTo(File)} or {@link
+     * ChronicleHashBuilder#recoverPersistedTo(File, boolean)}, while this {@code ChronicleHash} is
+     * concurrently accessed. Segments are copied one by one, each segment is copied under it's
+     * {@linkplain SegmentLock#updateLock() update lock}, i. e. reads are not blocked during the
+     * snapshot, and updates are blocked only in the segment being copied. The copy is consistent
+     * within each segment, but not across segments.
+     * <p>
+     * <p>If {@code incremental} is {@code true} and the given file is a previous snapshot of this
+     * {@code ChronicleHash}, only segments, modified since that snapshot, are written to the file.
+     * Otherwise the whole {@code ChronicleHash} is written.
+     * <p>
+     * <p>Tiers, allocated in this {@code ChronicleHash} concurrently with the snapshot, might be
+     * lost in the copy until it is {@linkplain ChronicleHashBuilder#recoverPersistedTo(File,
+     * boolean) recovered}.
+     *
+     * @param file the file to write the copy to
+     * @param incremental whether to write only segments, modified since the previous snapshot
+     * to the same file
+     * @param maxBytesPerSecond the limit of the snapshot write rate, 0 means no limit
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurred while writing the copy, or {@link
+     * java.io.InterruptedIOException} if the current thread is interrupted while throttled
+     * @throws UnsupportedOperationException if this {@code ChronicleHash} is not persisted
+     * @throws IllegalArgumentException if the given file is the file of this {@code
+     * ChronicleHash}, or {@code maxBytesPerSecond} is negative
+     */
+    long snapshotTo(File file, boolean incremental, long maxBytesPerSecond) throws IOException;
+
     /**
      * @return the class of {@code <K>}
      */
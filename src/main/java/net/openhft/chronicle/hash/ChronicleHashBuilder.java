@@ -16,8 +16,10 @@
 
 package net.openhft.chronicle.hash;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
 import net.openhft.chronicle.bytes.Byteable;
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.locks.LockWaitStrategy;
 import net.openhft.chronicle.hash.serialization.*;
 import net.openhft.chronicle.map.ChronicleMap;
 import net.openhft.chronicle.map.ChronicleMapBuilder;
@@ -32,6 +34,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base interface for {@link ChronicleMapBuilder} and {@link ChronicleSetBuilder}, i. e. defines
@@ -468,6 +471,62 @@ public interface ChronicleHashBuilder<K, H extends ChronicleHash<K, ?, ?, ?>,
      */
     B keySizeMarshaller(@NotNull SizeMarshaller keySizeMarshaller);
 
+    /**
+     * Configures the function, used to compute 64-bit hash codes of the keys' bytes in hash
+     * containers, created by this builder. The hash code determines the segment in which the key is
+     * stored, and the slot in the segment tier's hash lookup. The hash function is stored in the
+     * header of persisted hash containers, so all processes accessing the container, iteration,
+     * replication and recovery use the same function.
+     * <p>
+     * <p>Default key hash function is {@link LongHashFunction#xx_r39()}. If keys are 4 or 8 bytes
+     * long and already well distributed, cheaper {@link KeyHashFunctions#mix64()} could be used.
+     * Custom functions must also implement {@link net.openhft.chronicle.wire.Marshallable}, see
+     * {@link KeyHashFunctions} documentation for the contract.
+     *
+     * @param keyHashFunction the function to compute keys' hash codes
+     * @return this builder back
+     * @throws IllegalArgumentException if the given function is not the default xxHash function
+     *                                  and is not {@code Marshallable}
+     * @see KeyHashFunctions
+     */
+    B keyHashFunction(@NotNull LongHashFunction keyHashFunction);
+
+    /**
+     * Configures whether hash containers, created by this builder, should store the full 64-bit
+     * hash code of the key in each entry, between the key size and the key bytes. This costs 8
+     * bytes per entry, but allows to skip key bytes comparison on hash lookup collisions during
+     * queries, and to avoid re-hashing keys during iteration and entry relocation. During {@linkplain
+     * #recoverPersistedTo(File, boolean) recovery} stored hash codes are verified against keys.
+     * <p>
+     * <p>This configuration changes the entry layout, so it is stored in the header of persisted
+     * hash containers and cannot be changed for an existing container. By default key hash codes
+     * are not stored.
+     *
+     * @param storeKeyHashes if key hash codes should be stored in entries
+     * @return this builder back
+     */
+    B storeKeyHashes(boolean storeKeyHashes);
+
+    /**
+     * Configures whether segment locks of hash containers, created by this builder, are
+     * phase-fair. By default, threads, waiting for the write lock of a segment, prevent new
+     * acquisitions of the read and update locks, so writers are not starved by readers, but
+     * readers could wait indefinitely, while writers continuously acquire and release the write
+     * lock. If segment locks are phase-fair, readers and writers take turns: threads, which
+     * started waiting for the read or update lock before the write lock was released, acquire the
+     * lock before the next waiting writer. This bounds read latency outliers under write-heavy
+     * load, at the cost of some write throughput.
+     * <p>
+     * <p>This configuration changes the layout of the segment lock structure, so it is stored in
+     * the header of persisted hash containers and cannot be changed for an existing container.
+     * All processes, accessing the container, should use a Chronicle Map version, that supports
+     * phase-fair locks. By default segment locks are not phase-fair.
+     *
+     * @param fairSegmentLocks if segment locks should be phase-fair
+     * @return this builder back
+     */
+    B fairSegmentLocks(boolean fairSegmentLocks);
+
     /**
      * Specifies whether on the current combination of platform, OS and Jvm aligned 8-byte reads
      * and writes are atomic or not. The default value of this configuration is {@link
@@ -496,6 +555,155 @@ public interface ChronicleHashBuilder<K, H extends ChronicleHash<K, ?, ?, ?>,
      */
     B checksumEntries(boolean checksumEntries);
 
+    /**
+     * Configures the algorithm of computing entry checksums, if {@linkplain
+     * #checksumEntries(boolean) checksums are computed and stored} in hash containers, created by
+     * this builder. The algorithm is stored in the header of persisted hash containers, so this
+     * configuration cannot be changed for an existing container.
+     * <p>
+     * <p>Default checksum algorithm is {@link ChecksumAlgorithm#XX_HASH}. {@link
+     * ChecksumAlgorithm#CRC32C} is cheaper for large entries on Java 9+, and allows to update
+     * checksums incrementally, see {@link ChecksumAlgorithm#CRC32C}.
+     *
+     * @param checksumAlgorithm the algorithm of computing entry checksums
+     * @return this builder back
+     * @see #checksumEntries(boolean)
+     */
+    B checksumAlgorithm(@NotNull ChecksumAlgorithm checksumAlgorithm);
+
+    /**
+     * Configures hash containers, created by this builder, to verify {@linkplain
+     * #checksumEntries(boolean) entry checksums} continuously in a background low-priority
+     * thread, while the container is in use. The thread walks segments round-robin, locking each
+     * segment for reading for short periods of time, and verifies checksums of at most {@code
+     * entriesPerSecond} entries per second. Corruptions are reported to the given {@code
+     * corruptionListener}, and counted in {@link ChronicleHash#checksumScrubberStats()}.
+     * <p>
+     * <p>Checksum scrubbing detects corruptions of persisted hash containers (e. g. bit rot),
+     * without {@linkplain #recoverPersistedTo(File, boolean, ChronicleHashCorruption.Listener)
+     * recovery}, that requires the container not to be accessed concurrently. Scrubbing doesn't
+     * fix corrupted entries.
+     * <p>
+     * <p>By default, checksum scrubbing is not performed. This is a JVM-level configuration, it is
+     * not stored in the persisted hash container. If checksum scrubbing is configured, but entry
+     * checksums are not stored in the created or opened hash container, {@link
+     * IllegalStateException} is thrown on creation of the container.
+     *
+     * @param entriesPerSecond   the maximum number of entries, which checksums are verified per
+     *                           second, must be positive
+     * @param corruptionListener the listener of found corruptions. It is called from the
+     *                           background scrubbing thread
+     * @return this builder back
+     * @throws IllegalArgumentException if {@code entriesPerSecond} is not positive
+     * @see #checksumEntries(boolean)
+     * @see ChecksumEntry#checkSum()
+     */
+    B checksumScrubbing(
+            long entriesPerSecond, @NotNull ChronicleHashCorruption.Listener corruptionListener);
+
+    /**
+     * Configures the strategy of waiting for segment locks of the hash containers, created by this
+     * builder, when they are held by other threads or processes.
+     * <p>
+     * <p>By default, waiting threads {@linkplain LockWaitStrategy#busySpin() busy spin}, that
+     * provides the lowest latency, when there are fewer threads, accessing the container, than
+     * processors. If more threads contend on segment locks, e. g. the container is accessed from
+     * many processes on the same host, consider {@link LockWaitStrategy#spinYieldPark()}.
+     * <p>
+     * <p>This is a JVM-level configuration, it is not stored in the persisted hash container, and
+     * could be different for different processes, accessing the same container.
+     *
+     * @param lockWaitStrategy the strategy of waiting for segment locks
+     * @return this builder back
+     */
+    B lockWaitStrategy(@NotNull LockWaitStrategy lockWaitStrategy);
+
+    /**
+     * Configures collection of segment lock statistics of the hash containers, created by this
+     * builder: per segment counts of lock acquisitions and contended acquisitions, and histograms
+     * of wait and hold times per lock level, measured for every {@code samplingInterval}-th
+     * acquisition on average. The statistics are available via {@link
+     * ChronicleHash#segmentLockStats()}. Collection of statistics adds atomic updates of shared
+     * counters to each segment lock acquisition, so it is not configured by default.
+     * <p>
+     * <p>If {@code sharedCounters} is {@code true}, per segment counters are stored in the
+     * alignment between segment headers of the hash container, so that all processes, accessing
+     * the same persisted container with shared counters configured, update and see the same
+     * counters. Shared counters are in the same cache line as the segment lock, so they are
+     * updated only for sampled acquisitions, by {@code samplingInterval}, and are estimates, if
+     * {@code samplingInterval} is greater than 1. This requires at least 64-byte segment headers, i. e. at most 16384 segments, if
+     * there are more segments, {@link IllegalStateException} is thrown on creation of the
+     * container. Wait and hold time histograms are always local to the on-heap instance.
+     * <p>
+     * <p>This is a JVM-level configuration, it is not stored in the persisted hash container, and
+     * could be different for different processes, accessing the same container.
+     *
+     * @param samplingInterval measure wait and hold times of one in {@code samplingInterval}
+     *                         acquisitions on average, must be positive
+     * @param sharedCounters   if per segment counters should be stored in the hash container
+     * @return this builder back
+     * @throws IllegalArgumentException if {@code samplingInterval} is not positive
+     */
+    B segmentLockStats(int samplingInterval, boolean sharedCounters);
+
+    /**
+     * Configures taking over segment locks, held by dead processes (or dead threads of the current
+     * process), in the hash containers, created by this builder. The process and thread ids of the
+     * holder of the update or write lock of a segment are recorded in the segment header. A thread,
+     * which waits for a segment lock longer than {@code checkAfter}, checks if the holder is still
+     * alive. If it is not, the waiting thread takes over the lock, recovers the segment (like
+     * {@link #recoverPersistedTo(File, boolean, ChronicleHashCorruption.Listener)} does, but only
+     * for this segment, while other processes continue to access the container), reports the
+     * takeover and found corruptions to the given listener, and releases the lock. So a crash of
+     * one of the processes, accessing the persisted container, doesn't make the others fail with
+     * {@link net.openhft.chronicle.hash.locks.InterProcessDeadLockException}.
+     * <p>
+     * <p>Liveness of other processes is checked only on Linux, on other OSes only locks of dead
+     * threads of the current process are taken over. Read locks are not recorded and are never
+     * taken over. Holder recording needs at least 64-byte segment headers, i. e. at most 16384
+     * segments, if there are more segments, {@link IllegalStateException} is thrown on creation of
+     * the container. All processes, accessing the same container, should configure this, otherwise
+     * holders of the locks, acquired by the processes which don't, are not recorded.
+     * <p>
+     * <p>This is a JVM-level configuration, it is not stored in the persisted hash container, and
+     * could be different for different processes, accessing the same container.
+     *
+     * @param checkAfter         the time of waiting for a segment lock, after which the waiting
+     *                           thread checks if the holder of the lock is alive, must be positive
+     * @param unit               the unit of {@code checkAfter}
+     * @param corruptionListener the listener, lock takeovers and corruptions, found during
+     *                           recovery of segments, are reported to
+     * @return this builder back
+     * @throws IllegalArgumentException if {@code checkAfter} is not positive
+     */
+    B recoverLocksOfDeadProcesses(
+            long checkAfter, TimeUnit unit,
+            @NotNull ChronicleHashCorruption.Listener corruptionListener);
+
+    /**
+     * Configures the hash containers, created by this builder, to lease query and iteration
+     * contexts from a bounded pool for the time of each operation, instead of keeping contexts of
+     * each thread, which ever accessed the container, until the thread exits. Contexts are heavy
+     * objects, so this reduces the memory footprint of applications, which access the container
+     * from many threads, but only a few of them at the same time, e. g. with a thread per
+     * request. Leasing a context from the pool adds a few atomic operations to each operation, so
+     * contexts are not pooled by default.
+     * <p>
+     * <p>Contexts of the pool are not bound to threads, but a context could still be accessed only
+     * from the thread, that opened it (via {@link ChronicleHash#queryContext(Object)} or a similar
+     * method), until it is closed. Consider also {@link #lockWaitStrategy(LockWaitStrategy)},
+     * which parks, rather than spins, when there are many more threads than processors.
+     * <p>
+     * <p>This is a JVM-level configuration, it is not stored in the persisted hash container, and
+     * could be different for different processes, accessing the same container.
+     *
+     * @param maxIdleContexts the maximum number of contexts, kept in the pool between operations,
+     *                        must be positive
+     * @return this builder back
+     * @throws IllegalArgumentException if {@code maxIdleContexts} is not positive
+     */
+    B contextPool(int maxIdleContexts);
+
     /**
      * Creates a new hash container from this builder, storing it's data in off-heap memory, not
      * mapped to any file. On {@link ChronicleHash#close()} called on the returned container, or
@@ -16,7 +16,9 @@
 
 package net.openhft.chronicle.hash;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
 import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import net.openhft.chronicle.hash.serialization.impl.SerializationBuilder;
 
 import java.util.concurrent.TimeUnit;
@@ -49,8 +51,25 @@ public interface ChronicleHashBuilderPrivateAPI<K, RO> {
 
     boolean checksumEntries();
 
+    ChecksumAlgorithm checksumAlgorithm();
+
+    LongHashFunction keyHashFunction();
+
+    boolean storeKeyHashes();
+
+    boolean fairSegmentLocks();
+
     void replication(byte identifier);
 
+    /**
+     * Configures whether replicated Chronicle Hashes, constructed by this builder, should maintain
+     * hierarchical summaries of changes, not yet replicated to each remote node, to make polling
+     * for changes cost proportional to the number of changes. Persisted in the header.
+     *
+     * @param replicationChangeSummaries if summaries of changes should be maintained
+     */
+    void replicationChangeSummaries(boolean replicationChangeSummaries);
+
     /**
      * Configures if replicated Chronicle Hashes, constructed by this builder, should
      * completely erase entries, removed some time ago. See {@link #removedEntryCleanupTimeout(
@@ -88,6 +107,33 @@ public interface ChronicleHashBuilderPrivateAPI<K, RO> {
      */
     void removedEntryCleanupTimeout(long removedEntryCleanupTimeout, TimeUnit unit);
 
+    /**
+     * Configures the maximum rate, at which the background cleanup of old removed entries visits
+     * entries of replicated Chronicle Hashes, constructed by this builder. The cleanup visits
+     * segments in the order of the decreasing share of removed entries, skips segments without
+     * removed entries, and backs off from segments, locked by other threads or processes.
+     * <p>
+     * <p>By default the rate is not limited.
+     *
+     * @param entriesPerSecond the maximum number of entries, visited by the cleanup per second, or
+     *                         0 if the rate should not be limited
+     * @throws IllegalArgumentException if the specified rate is negative
+     * @see #cleanupRemovedEntries(boolean)
+     */
+    void removedEntryCleanupRate(long entriesPerSecond);
+
+    /**
+     * Configures the source of entry update timestamps of replicated Chronicle Hashes, constructed
+     * by this builder. The same provider could be shared by several hashes.
+     * <p>
+     * <p>By default, each replicated Chronicle Hash uses its own {@link
+     * net.openhft.chronicle.hash.replication.HybridLogicalClock}.
+     *
+     * @param timestampProvider the source of entry update timestamps
+     * @see TimestampProvider#advanceTo(long)
+     */
+    void timestampProvider(TimestampProvider timestampProvider);
+
     void remoteOperations(RO remoteOperations);
 
     /**
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash;
+
+import net.openhft.chronicle.algo.bytes.ReadAccess;
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.hash.serialization.impl.EnumMarshallable;
+import net.openhft.chronicle.wire.Marshallable;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * Key hash functions, which could be configured via {@link
+ * ChronicleHashBuilder#keyHashFunction(LongHashFunction)} in addition to the default xxHash
+ * function ({@link LongHashFunction#xx_r39()}).
+ * <p>
+ * <p>A custom key hash function must be a subclass of {@link LongHashFunction}, that also
+ * implements {@link Marshallable}, because it is stored in the Chronicle Hash's header and
+ * deserialized when the persisted Chronicle Hash is opened or recovered. Hash codes, computed by
+ * {@link LongHashFunction#hashLong(long)}, {@link LongHashFunction#hashInt(int)}, etc. must be equal
+ * to hash codes of the same values' little-endian bytes representation, computed by {@link
+ * LongHashFunction#hashMemory(long, long)}, because both forms are used by Chronicle Hash
+ * internally.
+ */
+public final class KeyHashFunctions {
+
+    private KeyHashFunctions() {
+    }
+
+    /**
+     * Returns a cheap hash function for keys that are 4 or 8 bytes long in serialized form, e. g.
+     * {@code Long} or {@code Integer} keys, or value interfaces with a single {@code long} field.
+     * For such keys the hash code is computed by a single round of the SplitMix64 finalizer, that is
+     * a bijective mixing function of the key bits. Keys of any other size are hashed with xxHash.
+     * <p>
+     * <p>The mixer doesn't have collisions, but it makes keys only as well distributed as they
+     * already are, so it is recommended for keys which are unique and not adversarial, e. g.
+     * random identifiers or sequence numbers.
+     *
+     * @return the hash function mixing 4- and 8-byte keys
+     */
+    public static LongHashFunction mix64() {
+        return Mix64.INSTANCE;
+    }
+
+    static long mix(long x) {
+        long z = x + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static final class Mix64 extends LongHashFunction implements EnumMarshallable<Mix64> {
+        private static final long serialVersionUID = 0L;
+        static final Mix64 INSTANCE = new Mix64();
+
+        private Mix64() {
+        }
+
+        @Override
+        public long hashLong(long input) {
+            return mix(input);
+        }
+
+        @Override
+        public long hashInt(int input) {
+            return mix(input & 0xFFFFFFFFL);
+        }
+
+        @Override
+        public long hashShort(short input) {
+            return LongHashFunction.xx_r39().hashShort(input);
+        }
+
+        @Override
+        public long hashChar(char input) {
+            return LongHashFunction.xx_r39().hashChar(input);
+        }
+
+        @Override
+        public long hashByte(byte input) {
+            return LongHashFunction.xx_r39().hashByte(input);
+        }
+
+        @Override
+        public long hashVoid() {
+            return LongHashFunction.xx_r39().hashVoid();
+        }
+
+        @Override
+        public <T> long hash(T input, ReadAccess<T> access, long off, long len) {
+            if (len == 8L) {
+                long v = access.readLong(input, off);
+                return mix(access.byteOrder(input) == LITTLE_ENDIAN ? v : Long.reverseBytes(v));
+            } else if (len == 4L) {
+                int v = access.readInt(input, off);
+                return hashInt(access.byteOrder(input) == LITTLE_ENDIAN ?
+                        v : Integer.reverseBytes(v));
+            } else {
+                return LongHashFunction.xx_r39().hash(input, access, off, len);
+            }
+        }
+
+        @Override
+        public Mix64 readResolve() {
+            return INSTANCE;
+        }
+
+        @Override
+        public String toString() {
+            return "KeyHashFunctions.mix64()";
+        }
+    }
+}
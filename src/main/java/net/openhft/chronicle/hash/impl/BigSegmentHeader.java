@@ -16,13 +16,11 @@
 
 package net.openhft.chronicle.hash.impl;
 
-import net.openhft.chronicle.algo.bytes.Access;
-import net.openhft.chronicle.algo.bytes.NativeAccess;
-import net.openhft.chronicle.algo.locks.VanillaReadWriteUpdateWithWaitsLockingStrategy;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.OS;
-import net.openhft.chronicle.core.threads.ThreadHints;
 import net.openhft.chronicle.hash.locks.InterProcessDeadLockException;
+import net.openhft.chronicle.hash.locks.LockWaitStrategy;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.TimeUnit;
 
@@ -30,21 +28,28 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 public final class BigSegmentHeader implements SegmentHeader {
-    public static final BigSegmentHeader INSTANCE = new BigSegmentHeader();
+    /**
+     * The segment header with the default lock word, that busy spins, waiting for segment locks
+     */
+    public static final BigSegmentHeader INSTANCE =
+            new BigSegmentHeader(
+                    VanillaSegmentLockWord.INSTANCE, LockWaitStrategy.busySpin(), null);
     static final long LOCK_OFFSET = 0L;
     static final long ENTRIES_OFFSET = LOCK_OFFSET + 8L; // 32-bit
     static final long LOWEST_POSSIBLY_FREE_CHUNK_OFFSET = ENTRIES_OFFSET + 4L;
     static final long NEXT_TIER_INDEX_OFFSET = LOWEST_POSSIBLY_FREE_CHUNK_OFFSET + 4L;
     static final long DELETED_OFFSET = NEXT_TIER_INDEX_OFFSET + 8L;
-    private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+    static final long MODIFICATION_GENERATION_OFFSET = DELETED_OFFSET + 4L; // 32-bit
     /**
-     * Make the LOCK constant and {@link #A} of final class types (instead of interfaces) as this
-     * hopefully help JVM with inlining
+     * The process id (in the higher 32 bits) and the thread id (in the lower 31 bits) of the
+     * current holder of the update or write lock of the segment, or 0. Bit 31 is set while the
+     * holder waits to upgrade the lock to the write lock, see {@link
+     * DeadLockHolderRecovery#UPGRADE_WAIT_REGISTERED}. Recorded only if {@link
+     * DeadLockHolderRecovery} is configured. Bytes 32..47 of the segment header are used by {@link
+     * InstrumentedSegmentHeader}.
      */
-    private static final VanillaReadWriteUpdateWithWaitsLockingStrategy LOCK =
-            (VanillaReadWriteUpdateWithWaitsLockingStrategy)
-                    VanillaReadWriteUpdateWithWaitsLockingStrategy.instance();
-    private static final NativeAccess A = (NativeAccess) Access.nativeAccess();
+    static final long LOCK_HOLDER_OFFSET = 48L;
+    private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
     private static final int TRY_LOCK_NANOS_THRESHOLD = 2_000_000;
 
     public static int LOCK_TIMEOUT_SECONDS;
@@ -62,12 +67,49 @@ public final class BigSegmentHeader implements SegmentHeader {
         LOCK_TIMEOUT_SECONDS = timeout;
     }
 
-    private BigSegmentHeader() {
+    private final SegmentLockWord lock;
+    private final LockWaitStrategy waitStrategy;
+    @Nullable
+    private final DeadLockHolderRecovery holderRecovery;
+    private final LockAttempt readLockAttempt = this::innerTryReadLock;
+    private final LockAttempt updateLockAttempt = this::innerTryUpdateLock;
+    private final LockAttempt writeLockAttempt = this::innerTryWriteLock;
+
+    private BigSegmentHeader(SegmentLockWord lock, LockWaitStrategy waitStrategy,
+                             @Nullable DeadLockHolderRecovery holderRecovery) {
+        this.lock = lock;
+        this.waitStrategy = waitStrategy;
+        this.holderRecovery = holderRecovery;
     }
 
-    private static InterProcessDeadLockException deadLock() {
+    /**
+     * Returns the segment header, that waits for segment locks with the given strategy.
+     *
+     * @param fairLocks      if segment locks are phase-fair, see {@link PhaseFairSegmentLockWord}
+     * @param waitStrategy   the strategy of waiting for segment locks
+     * @param holderRecovery if not {@code null}, update and write lock holders are recorded, and
+     *                       locks of dead holders are taken over
+     */
+    public static BigSegmentHeader of(boolean fairLocks, LockWaitStrategy waitStrategy,
+                                      @Nullable DeadLockHolderRecovery holderRecovery) {
+        if (!fairLocks && waitStrategy == LockWaitStrategy.busySpin() && holderRecovery == null)
+            return INSTANCE;
+        SegmentLockWord lock = fairLocks ?
+                PhaseFairSegmentLockWord.INSTANCE : VanillaSegmentLockWord.INSTANCE;
+        return new BigSegmentHeader(lock, waitStrategy, holderRecovery);
+    }
+
+    private InterProcessDeadLockException deadLock(long address) {
+        String holder = "";
+        if (holderRecovery != null) {
+            long holderId = OS.memory().readVolatileLong(address + LOCK_HOLDER_OFFSET);
+            if (holderId != 0L) {
+                holder = "The update or write lock is held by " +
+                        DeadLockHolderRecovery.holderToString(holderId) + ".\n";
+            }
+        }
         return new InterProcessDeadLockException(
-                "Failed to acquire the lock in " + LOCK_TIMEOUT_SECONDS + " seconds.\n" +
+                "Failed to acquire the lock in " + LOCK_TIMEOUT_SECONDS + " seconds.\n" + holder +
                         "Possible reasons:\n" +
                         " - The lock was not released by the previous holder. If you use contexts API,\n" +
                         " for example map.queryContext(key), in a try-with-resources block.\n" +
@@ -97,14 +139,14 @@ public final class BigSegmentHeader implements SegmentHeader {
         return NANOSECONDS.toMillis(nanos + 900_000);
     }
 
-    private static boolean innerTryReadLock(
+    private boolean innerTryReadLock(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
-        return LOCK.tryReadLock(A, null, address + LOCK_OFFSET) ||
+        return lock.tryReadLock(address + LOCK_OFFSET) ||
                 tryReadLock0(address, time, unit, interruptible);
     }
 
-    private static boolean tryReadLock0(
+    private boolean tryReadLock0(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
         long timeInNanos = unit.toNanos(time);
@@ -115,14 +157,17 @@ public final class BigSegmentHeader implements SegmentHeader {
         }
     }
 
-    private static boolean tryReadLockNanos(long address, long timeInNanos, boolean interruptible)
+    private boolean tryReadLockNanos(long address, long timeInNanos, boolean interruptible)
             throws InterruptedException {
         long end = System.nanoTime() + timeInNanos;
+        int failedAttempts = 1;
+        // see PhaseFairSegmentLockWord
+        long phase = lock.phase(address + LOCK_OFFSET);
         do {
-            if (LOCK.tryReadLock(A, null, address + LOCK_OFFSET))
+            if (lock.tryReadLock(address + LOCK_OFFSET, phase))
                 return true;
             checkInterrupted(interruptible);
-            ThreadHints.onSpinWait();
+            failedAttempts = idle(failedAttempts);
         } while (System.nanoTime() <= end);
         return false;
     }
@@ -130,14 +175,17 @@ public final class BigSegmentHeader implements SegmentHeader {
     /**
      * Use a timer which is more insensitive to jumps in time like GCs and context switches.
      */
-    private static boolean tryReadLockMillis(long address, long timeInMillis, boolean interruptible)
+    private boolean tryReadLockMillis(long address, long timeInMillis, boolean interruptible)
             throws InterruptedException {
         long lastTime = System.currentTimeMillis();
+        int failedAttempts = 1;
+        // see PhaseFairSegmentLockWord
+        long phase = lock.phase(address + LOCK_OFFSET);
         do {
-            if (LOCK.tryReadLock(A, null, address + LOCK_OFFSET))
+            if (lock.tryReadLock(address + LOCK_OFFSET, phase))
                 return true;
             checkInterrupted(interruptible);
-            ThreadHints.onSpinWait();
+            failedAttempts = idle(failedAttempts);
             long now = System.currentTimeMillis();
             if (now != lastTime) {
                 lastTime = now;
@@ -147,14 +195,14 @@ public final class BigSegmentHeader implements SegmentHeader {
         return false;
     }
 
-    private static boolean innerTryUpdateLock(
+    private boolean innerTryUpdateLock(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
-        return LOCK.tryUpdateLock(A, null, address + LOCK_OFFSET) ||
+        return lock.tryUpdateLock(address + LOCK_OFFSET) ||
                 tryUpdateLock0(address, time, unit, interruptible);
     }
 
-    private static boolean tryUpdateLock0(
+    private boolean tryUpdateLock0(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
         long timeInNanos = unit.toNanos(time);
@@ -165,14 +213,17 @@ public final class BigSegmentHeader implements SegmentHeader {
         }
     }
 
-    private static boolean tryUpdateLockNanos(long address, long timeInNanos, boolean interruptible)
+    private boolean tryUpdateLockNanos(long address, long timeInNanos, boolean interruptible)
             throws InterruptedException {
         long end = System.nanoTime() + timeInNanos;
+        int failedAttempts = 1;
+        // see PhaseFairSegmentLockWord
+        long phase = lock.phase(address + LOCK_OFFSET);
         do {
-            if (LOCK.tryUpdateLock(A, null, address + LOCK_OFFSET))
+            if (lock.tryUpdateLock(address + LOCK_OFFSET, phase))
                 return true;
             checkInterrupted(interruptible);
-            ThreadHints.onSpinWait();
+            failedAttempts = idle(failedAttempts);
         } while (System.nanoTime() <= end);
         return false;
     }
@@ -180,14 +231,17 @@ public final class BigSegmentHeader implements SegmentHeader {
     /**
      * Use a timer which is more insensitive to jumps in time like GCs and context switches.
      */
-    private static boolean tryUpdateLockMillis(
+    private boolean tryUpdateLockMillis(
             long address, long timeInMillis, boolean interruptible) throws InterruptedException {
         long lastTime = System.currentTimeMillis();
+        int failedAttempts = 1;
+        // see PhaseFairSegmentLockWord
+        long phase = lock.phase(address + LOCK_OFFSET);
         do {
-            if (LOCK.tryUpdateLock(A, null, address + LOCK_OFFSET))
+            if (lock.tryUpdateLock(address + LOCK_OFFSET, phase))
                 return true;
             checkInterrupted(interruptible);
-            ThreadHints.onSpinWait();
+            failedAttempts = idle(failedAttempts);
             long now = System.currentTimeMillis();
             if (now != lastTime) {
                 lastTime = now;
@@ -197,14 +251,14 @@ public final class BigSegmentHeader implements SegmentHeader {
         return false;
     }
 
-    private static boolean innerTryWriteLock(
+    private boolean innerTryWriteLock(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
-        return LOCK.tryWriteLock(A, null, address + LOCK_OFFSET) ||
+        return lock.tryWriteLock(address + LOCK_OFFSET) ||
                 tryWriteLock0(address, time, unit, interruptible);
     }
 
-    private static boolean tryWriteLock0(
+    private boolean tryWriteLock0(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
         long timeInNanos = unit.toNanos(time);
@@ -215,16 +269,17 @@ public final class BigSegmentHeader implements SegmentHeader {
         }
     }
 
-    private static boolean tryWriteLockNanos(long address, long timeInNanos, boolean interruptible)
+    private boolean tryWriteLockNanos(long address, long timeInNanos, boolean interruptible)
             throws InterruptedException {
         long end = System.nanoTime() + timeInNanos;
+        int failedAttempts = 1;
         registerWait(address);
         try {
             do {
-                if (LOCK.tryWriteLockAndDeregisterWait(A, null, address + LOCK_OFFSET))
+                if (lock.tryWriteLockAndDeregisterWait(address + LOCK_OFFSET))
                     return true;
                 checkInterrupted(interruptible);
-                ThreadHints.onSpinWait();
+                failedAttempts = idle(failedAttempts);
             } while (System.nanoTime() <= end);
             deregisterWait(address);
             return false;
@@ -236,16 +291,17 @@ public final class BigSegmentHeader implements SegmentHeader {
     /**
      * Use a timer which is more insensitive to jumps in time like GCs and context switches.
      */
-    private static boolean tryWriteLockMillis(
+    private boolean tryWriteLockMillis(
             long address, long timeInMillis, boolean interruptible) throws InterruptedException {
         long lastTime = System.currentTimeMillis();
+        int failedAttempts = 1;
         registerWait(address);
         try {
             do {
-                if (LOCK.tryWriteLockAndDeregisterWait(A, null, address + LOCK_OFFSET))
+                if (lock.tryWriteLockAndDeregisterWait(address + LOCK_OFFSET))
                     return true;
                 checkInterrupted(interruptible);
-                ThreadHints.onSpinWait();
+                failedAttempts = idle(failedAttempts);
                 long now = System.currentTimeMillis();
                 if (now != lastTime) {
                     lastTime = now;
@@ -259,27 +315,37 @@ public final class BigSegmentHeader implements SegmentHeader {
         }
     }
 
+    /**
+     * Waits before the next lock acquisition attempt.
+     *
+     * @return the number of failed attempts, after the next attempt fails
+     */
+    private int idle(int failedAttempts) {
+        waitStrategy.idle(failedAttempts);
+        return failedAttempts != Integer.MAX_VALUE ? failedAttempts + 1 : failedAttempts;
+    }
+
     private static void checkInterrupted(boolean interruptible) throws InterruptedException {
         if (interruptible && Thread.interrupted())
             throw new InterruptedException();
     }
 
-    private static void registerWait(long address) {
-        LOCK.registerWait(A, null, address + LOCK_OFFSET);
+    private void registerWait(long address) {
+        lock.registerWait(address + LOCK_OFFSET);
     }
 
-    private static void deregisterWait(long address) {
-        LOCK.deregisterWait(A, null, address + LOCK_OFFSET);
+    private void deregisterWait(long address) {
+        lock.deregisterWait(address + LOCK_OFFSET);
     }
 
-    private static boolean innerTryUpgradeUpdateToWriteLock(
+    private boolean innerTryUpgradeUpdateToWriteLock(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
-        return LOCK.tryUpgradeUpdateToWriteLock(A, null, address + LOCK_OFFSET) ||
+        return lock.tryUpgradeUpdateToWriteLock(address + LOCK_OFFSET) ||
                 tryUpgradeUpdateToWriteLock0(address, time, unit, interruptible);
     }
 
-    private static boolean tryUpgradeUpdateToWriteLock0(
+    private boolean tryUpgradeUpdateToWriteLock0(
             long address, long time, TimeUnit unit, boolean interruptible)
             throws InterruptedException {
         long timeInNanos = unit.toNanos(time);
@@ -291,51 +357,57 @@ public final class BigSegmentHeader implements SegmentHeader {
         }
     }
 
-    private static boolean tryUpgradeUpdateToWriteLockNanos(
+    private boolean tryUpgradeUpdateToWriteLockNanos(
             long address, long timeInNanos, boolean interruptible) throws InterruptedException {
         long end = System.nanoTime() + timeInNanos;
-        registerWait(address);
+        int failedAttempts = 1;
+        registerUpgradeWait(address);
         try {
             do {
-                if (tryUpgradeUpdateToWriteLockAndDeregisterWait0(address))
+                if (tryUpgradeUpdateToWriteLockAndDeregisterWait0(address)) {
+                    markUpgradeWait(address, false);
                     return true;
+                }
                 checkInterrupted(interruptible);
-                ThreadHints.onSpinWait();
+                failedAttempts = idle(failedAttempts);
             } while (System.nanoTime() <= end);
-            deregisterWait(address);
+            deregisterUpgradeWait(address);
             return false;
         } catch (Throwable t) {
-            throw tryDeregisterWaitAndRethrow(address, t);
+            throw tryDeregisterUpgradeWaitAndRethrow(address, t);
         }
     }
 
     /**
      * Use a timer which is more insensitive to jumps in time like GCs and context switches.
      */
-    private static boolean tryUpgradeUpdateToWriteLockMillis(
+    private boolean tryUpgradeUpdateToWriteLockMillis(
             long address, long timeInMillis, boolean interruptible) throws InterruptedException {
         long lastTime = System.currentTimeMillis();
-        registerWait(address);
+        int failedAttempts = 1;
+        registerUpgradeWait(address);
         try {
             do {
-                if (tryUpgradeUpdateToWriteLockAndDeregisterWait0(address))
+                if (tryUpgradeUpdateToWriteLockAndDeregisterWait0(address)) {
+                    markUpgradeWait(address, false);
                     return true;
+                }
                 checkInterrupted(interruptible);
-                ThreadHints.onSpinWait();
+                failedAttempts = idle(failedAttempts);
                 long now = System.currentTimeMillis();
                 if (now != lastTime) {
                     lastTime = now;
                     timeInMillis--;
                 }
             } while (timeInMillis >= 0);
-            deregisterWait(address);
+            deregisterUpgradeWait(address);
             return false;
         } catch (Throwable t) {
-            throw tryDeregisterWaitAndRethrow(address, t);
+            throw tryDeregisterUpgradeWaitAndRethrow(address, t);
         }
     }
 
-    private static RuntimeException tryDeregisterWaitAndRethrow(long address, Throwable throwable) {
+    private RuntimeException tryDeregisterWaitAndRethrow(long address, Throwable throwable) {
         try {
             deregisterWait(address);
         } catch (Throwable t) {
@@ -344,8 +416,178 @@ public final class BigSegmentHeader implements SegmentHeader {
         throw Jvm.rethrow(throwable);
     }
 
-    private static boolean tryUpgradeUpdateToWriteLockAndDeregisterWait0(long address) {
-        return LOCK.tryUpgradeUpdateToWriteLockAndDeregisterWait(A, null, address + LOCK_OFFSET);
+    /**
+     * Registers the write lock wait of the update lock holder, and marks it in the holder record,
+     * so that the wait is deregistered, if the holder dies and the lock is taken over. The wait is
+     * marked after it is registered, so the mark never refers to a wait, which is not registered,
+     * except if the holder dies right after the wait is deregistered, before unmarking.
+     */
+    private void registerUpgradeWait(long address) {
+        registerWait(address);
+        markUpgradeWait(address, true);
+    }
+
+    private void deregisterUpgradeWait(long address) {
+        deregisterWait(address);
+        markUpgradeWait(address, false);
+    }
+
+    private RuntimeException tryDeregisterUpgradeWaitAndRethrow(
+            long address, Throwable throwable) {
+        try {
+            deregisterUpgradeWait(address);
+        } catch (Throwable t) {
+            throwable.addSuppressed(t);
+        }
+        throw Jvm.rethrow(throwable);
+    }
+
+    private void markUpgradeWait(long address, boolean upgradeWaitRegistered) {
+        if (holderRecovery != null) {
+            long holder = DeadLockHolderRecovery.currentHolder();
+            if (upgradeWaitRegistered)
+                holder |= DeadLockHolderRecovery.UPGRADE_WAIT_REGISTERED;
+            OS.memory().writeOrderedLong(address + LOCK_HOLDER_OFFSET, holder);
+        }
+    }
+
+    private boolean tryUpgradeUpdateToWriteLockAndDeregisterWait0(long address) {
+        return lock.tryUpgradeUpdateToWriteLockAndDeregisterWait(address + LOCK_OFFSET);
+    }
+
+    @FunctionalInterface
+    private interface LockAttempt {
+        boolean tryLock(long address, long time, TimeUnit unit, boolean interruptible)
+                throws InterruptedException;
+    }
+
+    /**
+     * If {@link #holderRecovery} is configured, waits for the lock in slices of {@link
+     * DeadLockHolderRecovery#checkIntervalNanos}, and checks if the lock holder is alive after
+     * each slice.
+     */
+    private boolean tryLock(LockAttempt attempt, long address, long time, TimeUnit unit,
+                            boolean interruptible) throws InterruptedException {
+        if (holderRecovery == null)
+            return attempt.tryLock(address, time, unit, interruptible);
+        long remainingNanos = unit.toNanos(time);
+        while (true) {
+            long start = System.nanoTime();
+            long sliceNanos = Math.min(remainingNanos, holderRecovery.checkIntervalNanos);
+            if (attempt.tryLock(address, sliceNanos, NANOSECONDS, interruptible))
+                return true;
+            remainingNanos -= System.nanoTime() - start;
+            if (remainingNanos <= 0L)
+                return false;
+            tryTakeOverFromDeadHolder(address);
+        }
+    }
+
+    /**
+     * If the recorded holder of the segment lock is dead, becomes the holder of the lock instead,
+     * recovers the segment, if the dead holder held the write lock and therefore might have left
+     * the segment in an inconsistent state, and releases the lock on behalf of the dead holder.
+     * Only one thread could take over the lock, because the holder record is replaced via CAS. The
+     * lock itself is released via CAS of the lock word, expecting the lock state, in which the
+     * lock is held on the same level as when the holder record was read, so that a lock, which is
+     * released or acquired by someone else concurrently, is never released.
+     */
+    private void tryTakeOverFromDeadHolder(long address) {
+        long lockAddr = address + LOCK_OFFSET;
+        long holderAddress = address + LOCK_HOLDER_OFFSET;
+        long lockState = lock.getState(lockAddr);
+        long deadHolder = OS.memory().readVolatileLong(holderAddress);
+        if (deadHolder == 0L || lock.getState(lockAddr) != lockState ||
+                DeadLockHolderRecovery.isAlive(deadHolder)) {
+            return;
+        }
+        if (!updateOrWriteLocked(lockState)) {
+            // The record is left by a dead thread, which doesn't hold the lock. It couldn't be
+            // replaced by a live holder after the lock state is read, because the record is dead.
+            OS.memory().compareAndSwapLong(holderAddress, deadHolder, 0L);
+            return;
+        }
+        if (!OS.memory().compareAndSwapLong(
+                holderAddress, deadHolder, DeadLockHolderRecovery.currentHolder())) {
+            return;
+        }
+        // The dead holder might have upgraded the update lock to the write lock before dying,
+        // after the lock state is read
+        long heldLockState = lock.getState(lockAddr);
+        if (!updateOrWriteLocked(heldLockState)) {
+            clearHolder(address);
+            throw new IllegalMonitorStateException("the lock of dead " +
+                    DeadLockHolderRecovery.holderToString(deadHolder) + " is not held, " +
+                    "lock state: " + lock.toString(heldLockState));
+        }
+        boolean writeLocked = lock.isWriteLocked(heldLockState);
+        try {
+            holderRecovery.onTakeOver(address, deadHolder, writeLocked);
+        } finally {
+            clearHolder(address);
+            releaseDeadHolder(address, heldLockState,
+                    DeadLockHolderRecovery.upgradeWaitRegistered(deadHolder));
+        }
+    }
+
+    private boolean updateOrWriteLocked(long lockState) {
+        return lock.isUpdateLocked(lockState) || lock.isWriteLocked(lockState);
+    }
+
+    /**
+     * Releases the lock, held by a dead holder in the given state. The CAS of the lock word could
+     * fail only because readers (if the lock is held on the update level) or write lock waiters
+     * come and go, so it is retried while the lock is held on the same level.
+     */
+    private void releaseDeadHolder(long address, long lockState, boolean deregisterWait) {
+        long lockAddr = address + LOCK_OFFSET;
+        boolean writeLocked = lock.isWriteLocked(lockState);
+        while (!lock.tryReleaseDeadHolder(lockAddr, lockState, deregisterWait)) {
+            lockState = lock.getState(lockAddr);
+            if (lock.isWriteLocked(lockState) != writeLocked ||
+                    !updateOrWriteLocked(lockState)) {
+                throw new IllegalMonitorStateException("the lock of a dead holder is released " +
+                        "concurrently, lock state: " + lock.toString(lockState));
+            }
+        }
+    }
+
+    /**
+     * Clears the holder record of the segment lock, if it is left by a dead thread, which doesn't
+     * hold the lock on the update or write level anymore (for example, if the lock was reset on
+     * recovery by an accessor, which doesn't record lock holders).
+     */
+    @Override
+    public void clearStaleLockHolder(long address) {
+        if (holderRecovery == null)
+            return;
+        long lockState = lock.getState(address + LOCK_OFFSET);
+        long holder = OS.memory().readVolatileLong(address + LOCK_HOLDER_OFFSET);
+        if (holder != 0L && !updateOrWriteLocked(lockState) &&
+                !DeadLockHolderRecovery.isAlive(holder)) {
+            OS.memory().compareAndSwapLong(address + LOCK_HOLDER_OFFSET, holder, 0L);
+        }
+    }
+
+    /**
+     * Records the current thread as the holder of the update or write lock, if the lock is
+     * acquired
+     */
+    private boolean recordHolder(long address, boolean locked) {
+        if (locked && holderRecovery != null) {
+            OS.memory().writeOrderedLong(
+                    address + LOCK_HOLDER_OFFSET, DeadLockHolderRecovery.currentHolder());
+        }
+        return locked;
+    }
+
+    /**
+     * Should be called before the update or write lock is released, so that the holder record of
+     * a lock, which is not held, is never left
+     */
+    private void clearHolder(long address) {
+        if (holderRecovery != null)
+            OS.memory().writeOrderedLong(address + LOCK_HOLDER_OFFSET, 0L);
     }
 
     @Override
@@ -376,6 +618,27 @@ public final class BigSegmentHeader implements SegmentHeader {
         OS.memory().writeInt(address + DELETED_OFFSET, (int) deleted);
     }
 
+    @Override
+    public int modificationGeneration(long address) {
+        return OS.memory().readInt(address + MODIFICATION_GENERATION_OFFSET);
+    }
+
+    @Override
+    public void incrementModificationGeneration(long address) {
+        long generationAddress = address + MODIFICATION_GENERATION_OFFSET;
+        OS.memory().writeInt(generationAddress, OS.memory().readInt(generationAddress) + 1);
+    }
+
+    @Override
+    public void incrementModificationGenerationAtomically(long address) {
+        long generationAddress = address + MODIFICATION_GENERATION_OFFSET;
+        while (true) {
+            int generation = OS.memory().readVolatileInt(generationAddress);
+            if (OS.memory().compareAndSwapInt(generationAddress, generation, generation + 1))
+                return;
+        }
+    }
+
     @Override
     public long lowestPossiblyFreeChunk(long address) {
         return OS.memory().readInt(address + LOWEST_POSSIBLY_FREE_CHUNK_OFFSET) & UNSIGNED_INT_MASK;
@@ -400,8 +663,8 @@ public final class BigSegmentHeader implements SegmentHeader {
     @Override
     public void readLock(long address) {
         try {
-            if (!innerTryReadLock(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
-                throw deadLock();
+            if (!tryLock(readLockAttempt, address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
+                throw deadLock(address);
         } catch (InterruptedException e) {
             throw new AssertionError(e);
         }
@@ -410,34 +673,34 @@ public final class BigSegmentHeader implements SegmentHeader {
     @Override
     public void readLockInterruptibly(long address) throws InterruptedException {
         if (!tryReadLock(address, LOCK_TIMEOUT_SECONDS, SECONDS))
-            throw deadLock();
+            throw deadLock(address);
     }
 
     @Override
     public boolean tryReadLock(long address) {
-        return LOCK.tryReadLock(A, null, address + LOCK_OFFSET);
+        return lock.tryReadLock(address + LOCK_OFFSET);
     }
 
     @Override
     public boolean tryReadLock(long address, long time, TimeUnit unit) throws InterruptedException {
-        return innerTryReadLock(address, time, unit, true);
+        return tryLock(readLockAttempt, address, time, unit, true);
     }
 
     @Override
     public boolean tryUpgradeReadToUpdateLock(long address) {
-        return LOCK.tryUpgradeReadToUpdateLock(A, null, address + LOCK_OFFSET);
+        return recordHolder(address, lock.tryUpgradeReadToUpdateLock(address + LOCK_OFFSET));
     }
 
     @Override
     public boolean tryUpgradeReadToWriteLock(long address) {
-        return LOCK.tryUpgradeReadToWriteLock(A, null, address + LOCK_OFFSET);
+        return recordHolder(address, lock.tryUpgradeReadToWriteLock(address + LOCK_OFFSET));
     }
 
     @Override
     public void updateLock(long address) {
         try {
-            if (!innerTryUpdateLock(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
-                throw deadLock();
+            if (!tryUpdateLockRecordingHolder(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
+                throw deadLock(address);
         } catch (InterruptedException e) {
             throw new AssertionError(e);
         }
@@ -446,25 +709,32 @@ public final class BigSegmentHeader implements SegmentHeader {
     @Override
     public void updateLockInterruptibly(long address) throws InterruptedException {
         if (!tryUpdateLock(address, LOCK_TIMEOUT_SECONDS, SECONDS))
-            throw deadLock();
+            throw deadLock(address);
     }
 
     @Override
     public boolean tryUpdateLock(long address) {
-        return LOCK.tryUpdateLock(A, null, address + LOCK_OFFSET);
+        return recordHolder(address, lock.tryUpdateLock(address + LOCK_OFFSET));
     }
 
     @Override
     public boolean tryUpdateLock(long address, long time, TimeUnit unit)
             throws InterruptedException {
-        return innerTryUpdateLock(address, time, unit, true);
+        return tryUpdateLockRecordingHolder(address, time, unit, true);
+    }
+
+    private boolean tryUpdateLockRecordingHolder(
+            long address, long time, TimeUnit unit, boolean interruptible)
+            throws InterruptedException {
+        return recordHolder(
+                address, tryLock(updateLockAttempt, address, time, unit, interruptible));
     }
 
     @Override
     public void writeLock(long address) {
         try {
-            if (!innerTryWriteLock(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
-                throw deadLock();
+            if (!tryWriteLockRecordingHolder(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
+                throw deadLock(address);
         } catch (InterruptedException e) {
             throw new AssertionError(e);
         }
@@ -473,25 +743,32 @@ public final class BigSegmentHeader implements SegmentHeader {
     @Override
     public void writeLockInterruptibly(long address) throws InterruptedException {
         if (!tryWriteLock(address, LOCK_TIMEOUT_SECONDS, SECONDS))
-            throw deadLock();
+            throw deadLock(address);
     }
 
     @Override
     public boolean tryWriteLock(long address) {
-        return LOCK.tryWriteLock(A, null, address + LOCK_OFFSET);
+        return recordHolder(address, lock.tryWriteLock(address + LOCK_OFFSET));
     }
 
     @Override
     public boolean tryWriteLock(long address, long time, TimeUnit unit)
             throws InterruptedException {
-        return innerTryWriteLock(address, time, unit, true);
+        return tryWriteLockRecordingHolder(address, time, unit, true);
+    }
+
+    private boolean tryWriteLockRecordingHolder(
+            long address, long time, TimeUnit unit, boolean interruptible)
+            throws InterruptedException {
+        return recordHolder(
+                address, tryLock(writeLockAttempt, address, time, unit, interruptible));
     }
 
     @Override
     public void upgradeUpdateToWriteLock(long address) {
         try {
             if (!innerTryUpgradeUpdateToWriteLock(address, LOCK_TIMEOUT_SECONDS, SECONDS, false))
-                throw deadLock();
+                throw deadLock(address);
         } catch (InterruptedException e) {
             throw new AssertionError(e);
         }
@@ -500,12 +777,12 @@ public final class BigSegmentHeader implements SegmentHeader {
     @Override
     public void upgradeUpdateToWriteLockInterruptibly(long address) throws InterruptedException {
         if (!tryUpgradeUpdateToWriteLock(address, LOCK_TIMEOUT_SECONDS, SECONDS))
-            throw deadLock();
+            throw deadLock(address);
     }
 
     @Override
     public boolean tryUpgradeUpdateToWriteLock(long address) {
-        return LOCK.tryUpgradeUpdateToWriteLock(A, null, address + LOCK_OFFSET);
+        return lock.tryUpgradeUpdateToWriteLock(address + LOCK_OFFSET);
     }
 
     @Override
@@ -516,51 +793,56 @@ public final class BigSegmentHeader implements SegmentHeader {
 
     @Override
     public void readUnlock(long address) {
-        LOCK.readUnlock(A, null, address + LOCK_OFFSET);
+        lock.readUnlock(address + LOCK_OFFSET);
     }
 
     @Override
     public void updateUnlock(long address) {
-        LOCK.updateUnlock(A, null, address + LOCK_OFFSET);
+        clearHolder(address);
+        lock.updateUnlock(address + LOCK_OFFSET);
     }
 
     @Override
     public void downgradeUpdateToReadLock(long address) {
-        LOCK.downgradeUpdateToReadLock(A, null, address + LOCK_OFFSET);
+        clearHolder(address);
+        lock.downgradeUpdateToReadLock(address + LOCK_OFFSET);
     }
 
     @Override
     public void writeUnlock(long address) {
-        LOCK.writeUnlock(A, null, address + LOCK_OFFSET);
+        clearHolder(address);
+        lock.writeUnlock(address + LOCK_OFFSET);
     }
 
     @Override
     public void downgradeWriteToUpdateLock(long address) {
-        LOCK.downgradeWriteToUpdateLock(A, null, address + LOCK_OFFSET);
+        lock.downgradeWriteToUpdateLock(address + LOCK_OFFSET);
     }
 
     @Override
     public void downgradeWriteToReadLock(long address) {
-        LOCK.downgradeWriteToReadLock(A, null, address + LOCK_OFFSET);
+        clearHolder(address);
+        lock.downgradeWriteToReadLock(address + LOCK_OFFSET);
     }
 
     @Override
     public void resetLock(long address) {
-        LOCK.reset(A, null, address + LOCK_OFFSET);
+        clearHolder(address);
+        lock.reset(address + LOCK_OFFSET);
     }
 
     @Override
     public long resetLockState() {
-        return LOCK.resetState();
+        return lock.resetState();
     }
 
     @Override
     public long getLockState(long address) {
-        return LOCK.getState(A, null, address + LOCK_OFFSET);
+        return lock.getState(address + LOCK_OFFSET);
     }
 
     @Override
     public String lockStateToString(long lockState) {
-        return LOCK.toString(lockState);
+        return lock.toString(lockState);
     }
 }
@@ -70,6 +70,13 @@ public abstract class ChronicleHashResources implements Runnable {
         return totalMemory;
     }
 
+    final synchronized int liveContexts() {
+        if (closed())
+            return 0;
+        expungeStateContexts();
+        return contexts.size();
+    }
+
     final boolean closed() {
         return state != OPEN;
     }
@@ -109,7 +116,18 @@ public abstract class ChronicleHashResources implements Runnable {
     private void expungeStateContexts() {
         contexts.removeIf(ref -> {
             ContextHolder contextHolder = ref.get();
-            return contextHolder == null || !contextHolder.get().owner().isAlive();
+            if (contextHolder == null)
+                return true;
+            ChainingInterface context = contextHolder.get();
+            if (context == null)
+                return true;
+            // Pooled contexts are leased to other threads after the owner thread dies
+            if (contextHolder.pooled() || context.owner().isAlive())
+                return false;
+            // The holder of a dead thread's context is usually already unreachable, but if it is
+            // still referenced from somewhere, don't let it retain the heavy context
+            contextHolder.clear();
+            return true;
         });
     }
 
@@ -295,7 +313,7 @@ public abstract class ChronicleHashResources implements Runnable {
         // (see comment (*) below in this method), it could have succeed for some contexts and
         // contextHolder.clear() is performed.
         if (context != null) {
-            if (context.owner().isAlive()) {
+            if (context.currentOwner().isAlive()) {
                 // Ensures that if the thread owning this context will come to access chronicleHash
                 // concurrently with resource releasing operation, it will fail due to the check in
                 // context.lockContextLocally() method. If the thread owning this context is
@@ -102,6 +102,13 @@ public abstract class CompactOffHeapLinearHashTable {
 
     abstract long indexToPos(long index);
 
+    /**
+     * Returns the position of the slot with the given index, {@code 0 <= slotIndex < capacity}
+     */
+    public long slotPos(long slotIndex) {
+        return indexToPos(slotIndex);
+    }
+
     public long maskUnsetKey(long key) {
         return (key &= keyMask) != UNSET_KEY ? key : keyMask;
     }
@@ -48,15 +48,32 @@ import net.openhft.chronicle.hash.impl.stage.hash.ChainingInterface;
  * ContextHolder object, and clear the reference to context via {@link #clear()} on
  * ChronicleMap.close() or from {@link sun.misc.Cleaner}'s registered cleaner for ChronicleMap, if
  * it weren't closed, but becomes unreachable and reclaimed by the garbage collector.
+ * <p>
+ * <p>If {@link ContextPool} is configured, context chains are not stored in ThreadLocals
+ * permanently, but leased from the pool for the time of each operation.
  *
  * @see ChronicleHashResources#closeContext(ContextHolder)
  */
 public final class ContextHolder {
 
     private ChainingInterface context;
+    private final boolean pooled;
 
     public ContextHolder(ChainingInterface context) {
+        this(context, false);
+    }
+
+    public ContextHolder(ChainingInterface context, boolean pooled) {
         this.context = context;
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns {@code true} if the context is leased from a {@link ContextPool}, rather than owned
+     * by a single thread.
+     */
+    public boolean pooled() {
+        return pooled;
     }
 
     public ChainingInterface get() {
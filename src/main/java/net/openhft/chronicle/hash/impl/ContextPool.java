@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free pool of context chains of a Chronicle Hash. Instead of a context chain per
+ * thread, which ever accessed the hash (see {@link
+ * net.openhft.chronicle.map.VanillaChronicleMap#cxt}), a thread leases a chain from the pool for
+ * the time of an operation (including nested contexts, opened by the same thread), and returns it
+ * when the outer context is closed. So the number of context chains is bounded by the number of
+ * threads, accessing the hash <i>concurrently</i>, plus the number of idle chains in the pool,
+ * rather than by the number of threads, ever accessed the hash. This fits applications with many
+ * short-lived threads, or a thread per request.
+ * <p>
+ * <p>If the pool is full, a returned chain is dropped, and then collected by the garbage
+ * collector.
+ */
+public final class ContextPool {
+
+    /**
+     * Idle chains, null slots are free
+     */
+    private final AtomicReferenceArray<ContextHolder> idleContexts;
+    /**
+     * The chain, leased to the thread, while it is in use by the thread
+     */
+    private final ThreadLocal<ContextHolder> leasedContext = new ThreadLocal<>();
+
+    /**
+     * @param maxIdleContexts the maximum number of idle context chains in the pool, must be
+     *                        positive
+     */
+    public ContextPool(int maxIdleContexts) {
+        if (maxIdleContexts <= 0) {
+            throw new IllegalArgumentException("maxIdleContexts should be positive, " +
+                    maxIdleContexts + " given");
+        }
+        idleContexts = new AtomicReferenceArray<>(maxIdleContexts);
+    }
+
+    /**
+     * Returns the slot to start scanning the pool from, different threads start from different
+     * slots to reduce contention on the same slots
+     */
+    private int startSlot() {
+        return (int) (Thread.currentThread().getId() % idleContexts.length());
+    }
+
+    /**
+     * Returns the chain, leased to the current thread, if the thread is in the middle of an
+     * operation with the hash, i. e. a nested context is opened, or {@code null}.
+     */
+    public ContextHolder leasedToCurrentThread() {
+        return leasedContext.get();
+    }
+
+    /**
+     * Takes an idle chain from the pool, or returns {@code null} if the pool is empty. The chain
+     * should be then leased to the current thread via {@link #lease}.
+     */
+    public ContextHolder poll() {
+        int slots = idleContexts.length();
+        int slot = startSlot();
+        for (int i = 0; i < slots; i++) {
+            ContextHolder contextHolder = idleContexts.get(slot);
+            if (contextHolder != null &&
+                    idleContexts.compareAndSet(slot, contextHolder, null)) {
+                return contextHolder;
+            }
+            if (++slot == slots)
+                slot = 0;
+        }
+        return null;
+    }
+
+    /**
+     * Leases the chain, either new, or taken from the pool via {@link #poll()}, to the current
+     * thread.
+     */
+    public void lease(ContextHolder contextHolder) {
+        leasedContext.set(contextHolder);
+        contextHolder.get().leaseToCurrentThread(this, contextHolder);
+    }
+
+    /**
+     * Called by the lessee thread, when the outer context of the chain is closed.
+     */
+    public void endLease() {
+        leasedContext.remove();
+    }
+
+    /**
+     * Returns the chain, which lease is ended, to the pool.
+     */
+    public void offer(ContextHolder contextHolder) {
+        int slots = idleContexts.length();
+        int slot = startSlot();
+        for (int i = 0; i < slots; i++) {
+            if (idleContexts.get(slot) == null &&
+                    idleContexts.compareAndSet(slot, null, contextHolder)) {
+                return;
+            }
+            if (++slot == slots)
+                slot = 0;
+        }
+        // the pool is full, drop the chain
+    }
+
+    /**
+     * Returns the current number of idle context chains in the pool.
+     */
+    public int idleContexts() {
+        int idle = 0;
+        for (int slot = 0; slot < idleContexts.length(); slot++) {
+            if (idleContexts.get(slot) != null)
+                idle++;
+        }
+        return idle;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextPool{maxIdleContexts=" + idleContexts.length() + "}";
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.hash.ChronicleHashCorruption;
+import net.openhft.chronicle.map.ChronicleHashCorruptionImpl;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static net.openhft.chronicle.map.ChronicleHashCorruptionImpl.format;
+import static net.openhft.chronicle.map.ChronicleHashCorruptionImpl.report;
+
+/**
+ * Configuration and helpers of taking over segment locks, held by dead processes. Holders of the
+ * update and write segment locks record themselves (the process id and the thread id) in the
+ * segment header, see {@link BigSegmentHeader#LOCK_HOLDER_OFFSET}. A thread, which waits for a
+ * segment lock longer than {@link #checkIntervalNanos}, checks if the recorded holder is still
+ * alive, and if it is not, takes over the lock (by a CAS of the holder record, so only one of
+ * the waiting threads takes it over), recovers the segment, which could be left in an
+ * inconsistent state by the dead holder, and releases the lock via a CAS of the lock word. Holder
+ * records are cleared before the lock is released, and when segment locks are reset on recovery,
+ * so a record never outlives the lock acquisition it was made for.
+ * <p>
+ * <p>Liveness of other processes is checked via {@code /proc}, so on other OSes than Linux only
+ * locks, held by dead threads of the current process, are taken over. If the process id of the
+ * dead holder is reused by another process, the lock is not taken over, and waiting threads fail
+ * with {@link net.openhft.chronicle.hash.locks.InterProcessDeadLockException} as usual.
+ */
+public final class DeadLockHolderRecovery {
+
+    private static final int PROCESS_ID = OS.getProcessId();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final long THREAD_ID_MASK = 0x7FFFFFFFL;
+    /**
+     * Set in the holder record, while the holder has registered a write lock wait to upgrade the
+     * update lock to the write lock, so that the wait is deregistered, if the lock is taken over
+     */
+    static final long UPGRADE_WAIT_REGISTERED = 1L << 31;
+
+    final long checkIntervalNanos;
+    private final VanillaChronicleHash<?, ?, ?, ?> h;
+    private final ChronicleHashCorruption.Listener corruptionListener;
+    private final SegmentRecovery segmentRecovery;
+
+    public DeadLockHolderRecovery(
+            VanillaChronicleHash<?, ?, ?, ?> h, long checkIntervalNanos,
+            ChronicleHashCorruption.Listener corruptionListener, SegmentRecovery segmentRecovery) {
+        if (h.segmentHeaderSize < BigSegmentHeader.LOCK_HOLDER_OFFSET + 8) {
+            throw new IllegalStateException(h.toIdentityString() +
+                    ": recording of segment lock holders needs segment headers of at least 64 " +
+                    "bytes, segmentHeaderSize: " + h.segmentHeaderSize + ", " + h.actualSegments +
+                    " segments");
+        }
+        this.h = h;
+        this.checkIntervalNanos = checkIntervalNanos;
+        this.corruptionListener = corruptionListener;
+        this.segmentRecovery = segmentRecovery;
+    }
+
+    /**
+     * Returns the lock holder record of the current thread, never 0.
+     */
+    static long currentHolder() {
+        return (((long) PROCESS_ID) << 32) | (Thread.currentThread().getId() & THREAD_ID_MASK);
+    }
+
+    static boolean upgradeWaitRegistered(long holder) {
+        return (holder & UPGRADE_WAIT_REGISTERED) != 0;
+    }
+
+    static int processId(long holder) {
+        return (int) (holder >>> 32);
+    }
+
+    static long threadId(long holder) {
+        return holder & THREAD_ID_MASK;
+    }
+
+    static String holderToString(long holder) {
+        return "process " + processId(holder) + ", thread " + threadId(holder);
+    }
+
+    /**
+     * Clears the lock holder record of the segment with the given header, if segment headers of
+     * the given hash are large enough to contain it. Should be called only when no thread could
+     * hold the segment lock, i. e. when the lock is reset on recovery.
+     */
+    public static void resetHolder(VanillaChronicleHash<?, ?, ?, ?> h, long segmentHeaderAddress) {
+        if (h.segmentHeaderSize >= BigSegmentHeader.LOCK_HOLDER_OFFSET + 8) {
+            OS.memory().writeOrderedLong(
+                    segmentHeaderAddress + BigSegmentHeader.LOCK_HOLDER_OFFSET, 0L);
+        }
+    }
+
+    /**
+     * Returns {@code false} only if the holder is known to be dead.
+     */
+    static boolean isAlive(long holder) {
+        int processId = processId(holder);
+        if (processId == PROCESS_ID) {
+            long threadId = threadId(holder);
+            // unlike Thread.getAllStackTraces(), doesn't need a safepoint and stack walks
+            for (long liveThreadId : THREADS.getAllThreadIds()) {
+                if ((liveThreadId & THREAD_ID_MASK) == threadId)
+                    return true;
+            }
+            return false;
+        }
+        if (OS.isLinux())
+            return new File("/proc/" + processId).exists();
+        return true;
+    }
+
+    /**
+     * Reports that the lock of the segment with the given header is taken over from the given dead
+     * holder by the current thread, and recovers the segment, if the lock is held on the write
+     * level.
+     */
+    void onTakeOver(long segmentHeaderAddress, long deadHolder, boolean writeLocked) {
+        int segmentIndex =
+                (int) ((segmentHeaderAddress - h.segmentHeaderAddress(0)) / h.segmentHeaderSize);
+        ChronicleHashCorruptionImpl corruption = new ChronicleHashCorruptionImpl();
+        report(corruptionListener, corruption, segmentIndex, () ->
+                format("{} lock of segment {} is held by dead {}, taken over by {}",
+                        writeLocked ? "write" : "update", segmentIndex, holderToString(deadHolder),
+                        holderToString(currentHolder()))
+        );
+        if (writeLocked)
+            segmentRecovery.recoverSegment(segmentIndex, corruptionListener, corruption);
+    }
+
+    @FunctionalInterface
+    public interface SegmentRecovery {
+
+        /**
+         * Recovers the segment with the given index, while the segment write lock is held by the
+         * current thread.
+         */
+        void recoverSegment(
+                int segmentIndex, ChronicleHashCorruption.Listener corruptionListener,
+                ChronicleHashCorruptionImpl corruption);
+    }
+}
@@ -0,0 +1,583 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static net.openhft.chronicle.hash.locks.SegmentLockStats.Level.READ;
+import static net.openhft.chronicle.hash.locks.SegmentLockStats.Level.UPDATE;
+import static net.openhft.chronicle.hash.locks.SegmentLockStats.Level.WRITE;
+
+/**
+ * Segment header, that counts segment lock acquisitions and measures wait and hold times of a
+ * sample of them, delegating everything to another segment header. All segment lock operations
+ * (from contexts, iteration, snapshots, etc.) go through {@link VanillaChronicleHash#segmentHeader},
+ * so this decorator sees all acquisitions of the segment locks by this {@code ChronicleHash}
+ * instance.
+ * <p>
+ * <p>An acquisition is contended, if the first attempt to acquire the lock fails. The hold time is
+ * measured from an acquisition (or upgrade) to the release (or downgrade) of the same lock level
+ * by the same thread. For each segment and level, the hold time is measured for at most one
+ * holder at a time, that is enough for the sampled statistics. Shared counters are estimated from
+ * the sampled acquisitions, see {@link SegmentLockStats}.
+ */
+public final class InstrumentedSegmentHeader implements SegmentHeader, SegmentLockStats {
+
+    /**
+     * Offsets of shared per segment counters, within the alignment between segment headers, see
+     * the "Segment header structure" section of the spec
+     */
+    static final long ACQUISITIONS_OFFSET = 32L;
+    static final long CONTENDED_ACQUISITIONS_OFFSET = ACQUISITIONS_OFFSET + 8L;
+    static final int MIN_SHARED_COUNTERS_SEGMENT_HEADER_SIZE = 64;
+
+    private static final int LEVELS = 3;
+    /**
+     * Local counters of a segment are 8 longs (a cache line) apart, to avoid false sharing, unless
+     * there are a lot of segments
+     */
+    private static final int MAX_PADDED_SEGMENTS = 16 * 1024;
+
+    private final SegmentHeader delegate;
+    private final VanillaChronicleHash<?, ?, ?, ?> h;
+    private final int samplingInterval;
+    private final boolean sharedCounters;
+    private final int counterStride;
+    private final AtomicLongArray localCounters;
+    private final LockTimeHistogram[] waitTimes = new LockTimeHistogram[LEVELS];
+    private final LockTimeHistogram[] holdTimes = new LockTimeHistogram[LEVELS];
+    /**
+     * Per level and segment, the id of the thread, which hold time is measured, or 0
+     */
+    private final AtomicLongArray holdSampleThreads;
+    /**
+     * Per level and segment, {@link System#nanoTime()} of the acquisition, which hold time is
+     * measured. Accessed only by the thread, registered in {@link #holdSampleThreads}
+     */
+    private final long[] holdSampleStarts;
+
+    public InstrumentedSegmentHeader(
+            SegmentHeader delegate, VanillaChronicleHash<?, ?, ?, ?> h, int samplingInterval,
+            boolean sharedCounters) {
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException(h.toIdentityString() +
+                    ": samplingInterval should be positive, " + samplingInterval + " given");
+        }
+        if (sharedCounters && h.segmentHeaderSize < MIN_SHARED_COUNTERS_SEGMENT_HEADER_SIZE) {
+            throw new IllegalStateException(h.toIdentityString() +
+                    ": shared segment lock counters need segment headers of at least " +
+                    MIN_SHARED_COUNTERS_SEGMENT_HEADER_SIZE + " bytes, segmentHeaderSize: " +
+                    h.segmentHeaderSize + ", " + h.actualSegments + " segments");
+        }
+        this.delegate = delegate;
+        this.h = h;
+        this.samplingInterval = samplingInterval;
+        this.sharedCounters = sharedCounters;
+        int segments = h.actualSegments;
+        counterStride = segments <= MAX_PADDED_SEGMENTS ? 8 : 2;
+        localCounters = sharedCounters ? null : new AtomicLongArray(segments * counterStride);
+        for (int i = 0; i < LEVELS; i++) {
+            waitTimes[i] = new LockTimeHistogram();
+            holdTimes[i] = new LockTimeHistogram();
+        }
+        holdSampleThreads = new AtomicLongArray(LEVELS * segments);
+        holdSampleStarts = new long[LEVELS * segments];
+    }
+
+    private static void addShared(long address, long delta) {
+        while (true) {
+            long value = OS.memory().readVolatileLong(address);
+            if (OS.memory().compareAndSwapLong(address, value, value + delta))
+                return;
+        }
+    }
+
+    private int segmentIndex(long address) {
+        return (int) ((address - h.segmentHeaderAddress(0)) / h.segmentHeaderSize);
+    }
+
+    private boolean sample() {
+        return samplingInterval == 1 ||
+                ThreadLocalRandom.current().nextInt(samplingInterval) == 0;
+    }
+
+    private static long startWait(boolean sampled) {
+        return sampled ? System.nanoTime() : 0L;
+    }
+
+    private void acquired(long address, Level level, boolean contended, boolean sampled,
+                          long waitStart) {
+        if (sharedCounters) {
+            // Shared counters are in the same cache line as the segment lock word, updating them
+            // on each acquisition would contend with lock operations of other threads, so they
+            // are updated only on sampled acquisitions, by the sampling interval
+            if (sampled) {
+                addShared(address + ACQUISITIONS_OFFSET, samplingInterval);
+                if (contended)
+                    addShared(address + CONTENDED_ACQUISITIONS_OFFSET, samplingInterval);
+            }
+        } else {
+            int counterIndex = segmentIndex(address) * counterStride;
+            localCounters.incrementAndGet(counterIndex);
+            if (contended)
+                localCounters.incrementAndGet(counterIndex + 1);
+        }
+        if (sampled) {
+            long now = System.nanoTime();
+            waitTimes[level.ordinal()].record(contended ? now - waitStart : 0L);
+            int slot = level.ordinal() * h.actualSegments + segmentIndex(address);
+            if (holdSampleThreads.compareAndSet(slot, 0L, Thread.currentThread().getId()))
+                holdSampleStarts[slot] = now;
+        }
+    }
+
+    private void released(long address, Level level) {
+        int slot = level.ordinal() * h.actualSegments + segmentIndex(address);
+        if (holdSampleThreads.get(slot) == Thread.currentThread().getId()) {
+            holdTimes[level.ordinal()].record(System.nanoTime() - holdSampleStarts[slot]);
+            holdSampleThreads.set(slot, 0L);
+        }
+    }
+
+    /////////////////////////////////////////////////
+    // SegmentLockStats
+
+    @Override
+    public int segments() {
+        return h.actualSegments;
+    }
+
+    @Override
+    public int samplingInterval() {
+        return samplingInterval;
+    }
+
+    @Override
+    public boolean sharedCounters() {
+        return sharedCounters;
+    }
+
+    private void checkSegmentIndex(int segmentIndex) {
+        if (segmentIndex < 0 || segmentIndex >= h.actualSegments) {
+            throw new IllegalArgumentException(h.toIdentityString() + ": segmentIndex should be " +
+                    "in [0, " + h.actualSegments + ") range, " + segmentIndex + " given");
+        }
+    }
+
+    @Override
+    public long acquisitions(int segmentIndex) {
+        checkSegmentIndex(segmentIndex);
+        if (sharedCounters) {
+            return OS.memory().readVolatileLong(
+                    h.segmentHeaderAddress(segmentIndex) + ACQUISITIONS_OFFSET);
+        }
+        return localCounters.get(segmentIndex * counterStride);
+    }
+
+    @Override
+    public long contendedAcquisitions(int segmentIndex) {
+        checkSegmentIndex(segmentIndex);
+        if (sharedCounters) {
+            return OS.memory().readVolatileLong(
+                    h.segmentHeaderAddress(segmentIndex) + CONTENDED_ACQUISITIONS_OFFSET);
+        }
+        return localCounters.get(segmentIndex * counterStride + 1);
+    }
+
+    @Override
+    public long sampledAcquisitions(Level level) {
+        return waitTimes[level.ordinal()].count();
+    }
+
+    @Override
+    public long waitNanos(Level level, double percentile) {
+        return waitTimes[level.ordinal()].percentile(percentile);
+    }
+
+    @Override
+    public long maxWaitNanos(Level level) {
+        return waitTimes[level.ordinal()].max();
+    }
+
+    @Override
+    public long sampledHolds(Level level) {
+        return holdTimes[level.ordinal()].count();
+    }
+
+    @Override
+    public long holdNanos(Level level, double percentile) {
+        return holdTimes[level.ordinal()].percentile(percentile);
+    }
+
+    @Override
+    public long maxHoldNanos(Level level) {
+        return holdTimes[level.ordinal()].max();
+    }
+
+    /////////////////////////////////////////////////
+    // Segment lock operations
+
+    @Override
+    public void readLock(long address) {
+        boolean sampled = sample();
+        if (delegate.tryReadLock(address)) {
+            acquired(address, READ, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.readLock(address);
+            acquired(address, READ, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public void readLockInterruptibly(long address) throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryReadLock(address)) {
+            acquired(address, READ, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.readLockInterruptibly(address);
+            acquired(address, READ, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public boolean tryReadLock(long address) {
+        if (delegate.tryReadLock(address)) {
+            acquired(address, READ, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryReadLock(long address, long time, TimeUnit unit)
+            throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryReadLock(address)) {
+            acquired(address, READ, false, sampled, 0L);
+            return true;
+        }
+        long waitStart = startWait(sampled);
+        if (delegate.tryReadLock(address, time, unit)) {
+            acquired(address, READ, true, sampled, waitStart);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void updateLock(long address) {
+        boolean sampled = sample();
+        if (delegate.tryUpdateLock(address)) {
+            acquired(address, UPDATE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.updateLock(address);
+            acquired(address, UPDATE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public void updateLockInterruptibly(long address) throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryUpdateLock(address)) {
+            acquired(address, UPDATE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.updateLockInterruptibly(address);
+            acquired(address, UPDATE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public boolean tryUpdateLock(long address) {
+        if (delegate.tryUpdateLock(address)) {
+            acquired(address, UPDATE, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryUpdateLock(long address, long time, TimeUnit unit)
+            throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryUpdateLock(address)) {
+            acquired(address, UPDATE, false, sampled, 0L);
+            return true;
+        }
+        long waitStart = startWait(sampled);
+        if (delegate.tryUpdateLock(address, time, unit)) {
+            acquired(address, UPDATE, true, sampled, waitStart);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void writeLock(long address) {
+        boolean sampled = sample();
+        if (delegate.tryWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.writeLock(address);
+            acquired(address, WRITE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public void writeLockInterruptibly(long address) throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.writeLockInterruptibly(address);
+            acquired(address, WRITE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public boolean tryWriteLock(long address) {
+        if (delegate.tryWriteLock(address)) {
+            acquired(address, WRITE, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryWriteLock(long address, long time, TimeUnit unit)
+            throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+            return true;
+        }
+        long waitStart = startWait(sampled);
+        if (delegate.tryWriteLock(address, time, unit)) {
+            acquired(address, WRITE, true, sampled, waitStart);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryUpgradeReadToUpdateLock(long address) {
+        if (delegate.tryUpgradeReadToUpdateLock(address)) {
+            released(address, READ);
+            acquired(address, UPDATE, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryUpgradeReadToWriteLock(long address) {
+        if (delegate.tryUpgradeReadToWriteLock(address)) {
+            released(address, READ);
+            acquired(address, WRITE, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void upgradeUpdateToWriteLock(long address) {
+        boolean sampled = sample();
+        if (delegate.tryUpgradeUpdateToWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.upgradeUpdateToWriteLock(address);
+            acquired(address, WRITE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public void upgradeUpdateToWriteLockInterruptibly(long address)
+            throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryUpgradeUpdateToWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+        } else {
+            long waitStart = startWait(sampled);
+            delegate.upgradeUpdateToWriteLockInterruptibly(address);
+            acquired(address, WRITE, true, sampled, waitStart);
+        }
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLock(long address) {
+        if (delegate.tryUpgradeUpdateToWriteLock(address)) {
+            acquired(address, WRITE, false, sample(), 0L);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLock(long address, long time, TimeUnit unit)
+            throws InterruptedException {
+        boolean sampled = sample();
+        if (delegate.tryUpgradeUpdateToWriteLock(address)) {
+            acquired(address, WRITE, false, sampled, 0L);
+            return true;
+        }
+        long waitStart = startWait(sampled);
+        if (delegate.tryUpgradeUpdateToWriteLock(address, time, unit)) {
+            acquired(address, WRITE, true, sampled, waitStart);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void readUnlock(long address) {
+        released(address, READ);
+        delegate.readUnlock(address);
+    }
+
+    @Override
+    public void updateUnlock(long address) {
+        released(address, UPDATE);
+        delegate.updateUnlock(address);
+    }
+
+    @Override
+    public void downgradeUpdateToReadLock(long address) {
+        released(address, UPDATE);
+        delegate.downgradeUpdateToReadLock(address);
+    }
+
+    @Override
+    public void writeUnlock(long address) {
+        released(address, WRITE);
+        // the write lock could be an upgraded update lock
+        released(address, UPDATE);
+        delegate.writeUnlock(address);
+    }
+
+    @Override
+    public void downgradeWriteToUpdateLock(long address) {
+        released(address, WRITE);
+        delegate.downgradeWriteToUpdateLock(address);
+    }
+
+    @Override
+    public void downgradeWriteToReadLock(long address) {
+        released(address, WRITE);
+        released(address, UPDATE);
+        delegate.downgradeWriteToReadLock(address);
+    }
+
+    /////////////////////////////////////////////////
+    // Delegated operations
+
+    @Override
+    public long entries(long address) {
+        return delegate.entries(address);
+    }
+
+    @Override
+    public void entries(long address, long size) {
+        delegate.entries(address, size);
+    }
+
+    @Override
+    public long deleted(long address) {
+        return delegate.deleted(address);
+    }
+
+    @Override
+    public void deleted(long address, long deleted) {
+        delegate.deleted(address, deleted);
+    }
+
+    @Override
+    public int modificationGeneration(long address) {
+        return delegate.modificationGeneration(address);
+    }
+
+    @Override
+    public void incrementModificationGeneration(long address) {
+        delegate.incrementModificationGeneration(address);
+    }
+
+    @Override
+    public void incrementModificationGenerationAtomically(long address) {
+        delegate.incrementModificationGenerationAtomically(address);
+    }
+
+    @Override
+    public long lowestPossiblyFreeChunk(long address) {
+        return delegate.lowestPossiblyFreeChunk(address);
+    }
+
+    @Override
+    public void lowestPossiblyFreeChunk(long address, long lowestPossiblyFreeChunk) {
+        delegate.lowestPossiblyFreeChunk(address, lowestPossiblyFreeChunk);
+    }
+
+    @Override
+    public long nextTierIndex(long address) {
+        return delegate.nextTierIndex(address);
+    }
+
+    @Override
+    public void nextTierIndex(long address, long nextTierIndex) {
+        delegate.nextTierIndex(address, nextTierIndex);
+    }
+
+    @Override
+    public void resetLock(long address) {
+        delegate.resetLock(address);
+    }
+
+    @Override
+    public void clearStaleLockHolder(long address) {
+        delegate.clearStaleLockHolder(address);
+    }
+
+    @Override
+    public long resetLockState() {
+        return delegate.resetLockState();
+    }
+
+    @Override
+    public long getLockState(long address) {
+        return delegate.getLockState(address);
+    }
+
+    @Override
+    public String lockStateToString(long lockState) {
+        return delegate.lockStateToString(lockState);
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedSegmentHeader{samplingInterval=" + samplingInterval +
+                ", sharedCounters=" + sharedCounters + ", delegate=" + delegate + "}";
+    }
+}
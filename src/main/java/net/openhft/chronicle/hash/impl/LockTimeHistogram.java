@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of nanosecond durations with power of 2 buckets: the bucket {@code i}
+ * counts durations in [2<sup>i</sup>, 2<sup>i + 1</sup>) range, the bucket 0 also counts zero
+ * durations.
+ */
+final class LockTimeHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    private static int bucket(long nanos) {
+        return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+        if (nanos > max.get())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    long percentile(double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 1.0)) {
+            throw new IllegalArgumentException(
+                    "percentile should be in [0.0, 1.0] range, " + percentile + " given");
+        }
+        long count = count();
+        if (count == 0)
+            return 0L;
+        long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min((1L << (i + 1)) - 1, max());
+        }
+        return max();
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.core.OS;
+
+/**
+ * Phase-fair segment lock word. Registered write lock waiters (threads, waiting for the write lock,
+ * or to upgrade the update lock to the write lock) prevent new acquisitions of read and update
+ * locks, like in {@link VanillaSegmentLockWord}, so writers are not starved by a continuous flow of
+ * readers. In addition, each release (or downgrade) of the write lock starts a new <i>phase</i>,
+ * and threads, which started waiting for the read or update lock in an earlier phase, acquire the
+ * lock regardless of registered write lock waiters, so readers are not starved by a continuous
+ * flow of writers either: readers and writers take turns. Upgrades of already held locks are not
+ * blocked by waiters.
+ * <p>
+ * <p>The layout of the 64-bit word: bits 0-29 are the number of read lock holders, bit 30 is set
+ * if the update lock is held, bit 31 is set if the write lock is held (the same as in {@link
+ * VanillaSegmentLockWord}), bits 32-47 are the number of registered write lock waiters, bits 48-63
+ * are the write phase, incremented (wrapping around on overflow) on each write lock release or
+ * downgrade.
+ */
+enum PhaseFairSegmentLockWord implements SegmentLockWord {
+    INSTANCE;
+
+    private static final long READ_PARTY = 1L;
+    private static final long READ_MASK = (1L << 30) - 1;
+    private static final long UPDATE_LOCKED = 1L << 30;
+    private static final long WRITE_LOCKED = 1L << 31;
+    private static final long WAIT_PARTY = 1L << 32;
+    private static final long MAX_WAIT_COUNT = (1L << 16) - 1;
+    private static final long PHASE_PARTY = 1L << 48;
+
+    private static long readLockCount(long lockState) {
+        return lockState & READ_MASK;
+    }
+
+    private static long waitCount(long lockState) {
+        return (lockState >>> 32) & MAX_WAIT_COUNT;
+    }
+
+    private static long phaseOf(long lockState) {
+        return lockState >>> 48;
+    }
+
+    private static boolean updateLocked(long lockState) {
+        return (lockState & UPDATE_LOCKED) != 0;
+    }
+
+    private static boolean writeLocked(long lockState) {
+        return (lockState & WRITE_LOCKED) != 0;
+    }
+
+    /**
+     * Returns {@code true} if registered write lock waiters should be let go first by a thread,
+     * which is waiting for the read or update lock since the given phase
+     */
+    private static boolean yieldToWaiters(long lockState, long waitingSincePhase) {
+        return waitCount(lockState) != 0 && phaseOf(lockState) == waitingSincePhase;
+    }
+
+    private static boolean cas(long lockAddr, long expected, long newState) {
+        return OS.memory().compareAndSwapLong(lockAddr, expected, newState);
+    }
+
+    private static IllegalMonitorStateException illegalState(String message, long lockState) {
+        return new IllegalMonitorStateException(message + ", lock state: " +
+                INSTANCE.toString(lockState));
+    }
+
+    @Override
+    public long phase(long lockAddr) {
+        return phaseOf(getState(lockAddr));
+    }
+
+    @Override
+    public boolean tryReadLock(long lockAddr) {
+        return tryReadLock(lockAddr, phase(lockAddr));
+    }
+
+    @Override
+    public boolean tryReadLock(long lockAddr, long waitingSincePhase) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (writeLocked(lockState) || yieldToWaiters(lockState, waitingSincePhase))
+                return false;
+            if (readLockCount(lockState) == READ_MASK)
+                throw illegalState("read lock count overflow", lockState);
+            if (cas(lockAddr, lockState, lockState + READ_PARTY))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryUpdateLock(long lockAddr) {
+        return tryUpdateLock(lockAddr, phase(lockAddr));
+    }
+
+    @Override
+    public boolean tryUpdateLock(long lockAddr, long waitingSincePhase) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if ((lockState & (UPDATE_LOCKED | WRITE_LOCKED)) != 0 ||
+                    yieldToWaiters(lockState, waitingSincePhase)) {
+                return false;
+            }
+            if (cas(lockAddr, lockState, lockState | UPDATE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryWriteLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if ((lockState & (READ_MASK | UPDATE_LOCKED | WRITE_LOCKED)) != 0)
+                return false;
+            if (cas(lockAddr, lockState, lockState | WRITE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryUpgradeReadToUpdateLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (readLockCount(lockState) == 0)
+                throw illegalState("read lock is not held", lockState);
+            if ((lockState & (UPDATE_LOCKED | WRITE_LOCKED)) != 0)
+                return false;
+            if (cas(lockAddr, lockState, (lockState - READ_PARTY) | UPDATE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryUpgradeReadToWriteLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            long readLockCount = readLockCount(lockState);
+            if (readLockCount == 0)
+                throw illegalState("read lock is not held", lockState);
+            if (readLockCount != 1 || (lockState & (UPDATE_LOCKED | WRITE_LOCKED)) != 0)
+                return false;
+            if (cas(lockAddr, lockState, (lockState - READ_PARTY) | WRITE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!updateLocked(lockState))
+                throw illegalState("update lock is not held", lockState);
+            if (readLockCount(lockState) != 0)
+                return false;
+            if (cas(lockAddr, lockState, (lockState & ~UPDATE_LOCKED) | WRITE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public void registerWait(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (waitCount(lockState) == MAX_WAIT_COUNT)
+                throw illegalState("wait count overflow", lockState);
+            if (cas(lockAddr, lockState, lockState + WAIT_PARTY))
+                return;
+        }
+    }
+
+    @Override
+    public void deregisterWait(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (waitCount(lockState) == 0)
+                throw illegalState("no registered waiters", lockState);
+            if (cas(lockAddr, lockState, lockState - WAIT_PARTY))
+                return;
+        }
+    }
+
+    @Override
+    public boolean tryWriteLockAndDeregisterWait(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (waitCount(lockState) == 0)
+                throw illegalState("no registered waiters", lockState);
+            if ((lockState & (READ_MASK | UPDATE_LOCKED | WRITE_LOCKED)) != 0)
+                return false;
+            if (cas(lockAddr, lockState, (lockState - WAIT_PARTY) | WRITE_LOCKED))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLockAndDeregisterWait(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (waitCount(lockState) == 0)
+                throw illegalState("no registered waiters", lockState);
+            if (!updateLocked(lockState))
+                throw illegalState("update lock is not held", lockState);
+            if (readLockCount(lockState) != 0)
+                return false;
+            long newState = ((lockState - WAIT_PARTY) & ~UPDATE_LOCKED) | WRITE_LOCKED;
+            if (cas(lockAddr, lockState, newState))
+                return true;
+        }
+    }
+
+    @Override
+    public void readUnlock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (readLockCount(lockState) == 0)
+                throw illegalState("read lock is not held", lockState);
+            if (cas(lockAddr, lockState, lockState - READ_PARTY))
+                return;
+        }
+    }
+
+    @Override
+    public void updateUnlock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!updateLocked(lockState))
+                throw illegalState("update lock is not held", lockState);
+            if (cas(lockAddr, lockState, lockState & ~UPDATE_LOCKED))
+                return;
+        }
+    }
+
+    @Override
+    public void writeUnlock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!writeLocked(lockState))
+                throw illegalState("write lock is not held", lockState);
+            if (cas(lockAddr, lockState, (lockState & ~WRITE_LOCKED) + PHASE_PARTY))
+                return;
+        }
+    }
+
+    @Override
+    public void downgradeUpdateToReadLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!updateLocked(lockState))
+                throw illegalState("update lock is not held", lockState);
+            if (cas(lockAddr, lockState, (lockState & ~UPDATE_LOCKED) + READ_PARTY))
+                return;
+        }
+    }
+
+    @Override
+    public void downgradeWriteToUpdateLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!writeLocked(lockState))
+                throw illegalState("write lock is not held", lockState);
+            long newState = ((lockState & ~WRITE_LOCKED) | UPDATE_LOCKED) + PHASE_PARTY;
+            if (cas(lockAddr, lockState, newState))
+                return;
+        }
+    }
+
+    @Override
+    public void downgradeWriteToReadLock(long lockAddr) {
+        while (true) {
+            long lockState = getState(lockAddr);
+            if (!writeLocked(lockState))
+                throw illegalState("write lock is not held", lockState);
+            long newState = (lockState & ~WRITE_LOCKED) + READ_PARTY + PHASE_PARTY;
+            if (cas(lockAddr, lockState, newState))
+                return;
+        }
+    }
+
+    @Override
+    public void reset(long lockAddr) {
+        OS.memory().writeVolatileLong(lockAddr, resetState());
+    }
+
+    @Override
+    public long resetState() {
+        return 0L;
+    }
+
+    @Override
+    public long getState(long lockAddr) {
+        return OS.memory().readVolatileLong(lockAddr);
+    }
+
+    @Override
+    public boolean isWriteLocked(long lockState) {
+        return writeLocked(lockState);
+    }
+
+    @Override
+    public boolean isUpdateLocked(long lockState) {
+        return updateLocked(lockState);
+    }
+
+    @Override
+    public boolean tryReleaseDeadHolder(
+            long lockAddr, long expectedLockState, boolean deregisterWait) {
+        long newState;
+        if (writeLocked(expectedLockState)) {
+            newState = (expectedLockState & ~WRITE_LOCKED) + PHASE_PARTY;
+        } else if (updateLocked(expectedLockState)) {
+            newState = expectedLockState & ~UPDATE_LOCKED;
+        } else {
+            throw illegalState("neither update nor write lock is held", expectedLockState);
+        }
+        if (deregisterWait && waitCount(newState) != 0)
+            newState -= WAIT_PARTY;
+        return cas(lockAddr, expectedLockState, newState);
+    }
+
+    @Override
+    public String toString(long lockState) {
+        return "[read locks = " + readLockCount(lockState) +
+                ", update locked = " + updateLocked(lockState) +
+                ", write locked = " + writeLocked(lockState) +
+                ", waits = " + waitCount(lockState) +
+                ", phase = " + phaseOf(lockState) + "]";
+    }
+}
@@ -27,6 +27,21 @@ public interface SegmentHeader {
 
     void deleted(long address, long deleted);
 
+    /**
+     * Returns the modification generation of the segment, incremented on each acquisition of the
+     * segment write lock and on each in-place atomic update of an entry value under the read lock.
+     * The generation is 32-bit and wraps around, so it could only be compared for equality.
+     */
+    int modificationGeneration(long address);
+
+    void incrementModificationGeneration(long address);
+
+    /**
+     * Increments the modification generation of the segment with a CAS operation, for updates
+     * made under the segment read lock, possibly concurrently with each other.
+     */
+    void incrementModificationGenerationAtomically(long address);
+
     long lowestPossiblyFreeChunk(long address);
 
     void lowestPossiblyFreeChunk(long address, long lowestPossiblyFreeChunk);
@@ -86,6 +101,13 @@ public interface SegmentHeader {
 
     void resetLock(long address);
 
+    /**
+     * Clears the record of the update or write lock holder, if lock holders are recorded (see
+     * {@link DeadLockHolderRecovery}), the record is left by a dead holder, and the lock is not
+     * held on the update or write level.
+     */
+    void clearStaleLockHolder(long address);
+
     long resetLockState();
 
     long getLockState(long address);
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+/**
+ * Operations on the 64-bit read-write-update lock word of a segment, see {@link
+ * BigSegmentHeader#LOCK_OFFSET}. The whole lock state is stored in the word, so that the lock
+ * works across processes. All methods are non-blocking, waiting is done by {@link
+ * BigSegmentHeader}.
+ */
+interface SegmentLockWord {
+
+    boolean tryReadLock(long lockAddr);
+
+    boolean tryUpdateLock(long lockAddr);
+
+    /**
+     * Returns the current phase of the lock, a thread should start waiting for the read or update
+     * lock with, see {@link PhaseFairSegmentLockWord}.
+     */
+    long phase(long lockAddr);
+
+    /**
+     * Tries to acquire the read lock by a thread, waiting since the given {@link #phase}.
+     */
+    boolean tryReadLock(long lockAddr, long waitingSincePhase);
+
+    /**
+     * Tries to acquire the update lock by a thread, waiting since the given {@link #phase}.
+     */
+    boolean tryUpdateLock(long lockAddr, long waitingSincePhase);
+
+    boolean tryWriteLock(long lockAddr);
+
+    boolean tryUpgradeReadToUpdateLock(long lockAddr);
+
+    boolean tryUpgradeReadToWriteLock(long lockAddr);
+
+    boolean tryUpgradeUpdateToWriteLock(long lockAddr);
+
+    /**
+     * Registers a write lock waiter, a waiter should deregister either by acquiring the lock via
+     * {@link #tryWriteLockAndDeregisterWait} or {@link
+     * #tryUpgradeUpdateToWriteLockAndDeregisterWait}, or via {@link #deregisterWait}.
+     */
+    void registerWait(long lockAddr);
+
+    void deregisterWait(long lockAddr);
+
+    boolean tryWriteLockAndDeregisterWait(long lockAddr);
+
+    boolean tryUpgradeUpdateToWriteLockAndDeregisterWait(long lockAddr);
+
+    void readUnlock(long lockAddr);
+
+    void updateUnlock(long lockAddr);
+
+    void writeUnlock(long lockAddr);
+
+    void downgradeUpdateToReadLock(long lockAddr);
+
+    void downgradeWriteToUpdateLock(long lockAddr);
+
+    void downgradeWriteToReadLock(long lockAddr);
+
+    void reset(long lockAddr);
+
+    long resetState();
+
+    long getState(long lockAddr);
+
+    boolean isWriteLocked(long lockState);
+
+    boolean isUpdateLocked(long lockState);
+
+    /**
+     * Releases the update or write lock (whichever is held in the given state) of a dead holder,
+     * and deregisters a write lock waiter, if {@code deregisterWait} is {@code true}, via CAS of
+     * the lock word, so the lock is released only if the lock state is still the given one.
+     *
+     * @return {@code true} if the lock word is updated, {@code false} if the lock state is not the
+     * given one
+     */
+    boolean tryReleaseDeadHolder(long lockAddr, long expectedLockState, boolean deregisterWait);
+
+    String toString(long lockState);
+}
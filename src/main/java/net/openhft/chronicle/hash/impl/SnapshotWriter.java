@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.hash.HashSegmentContext;
+import net.openhft.chronicle.hash.SegmentLock;
+import net.openhft.chronicle.hash.VanillaGlobalMutableState;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.Math.toIntExact;
+import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.GLOBAL_MUTABLE_STATE_LOCK_OFFSET;
+import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.globalMutableStateLockingStrategy;
+
+/**
+ * Writes a point-in-time copy of a persisted Chronicle Hash to a file, in the same format as the
+ * Chronicle Hash file itself, see {@link VanillaChronicleHash#snapshotTo(java.io.File, boolean, long)}.
+ * <p>
+ * <p>Each segment (the segment header and all tiers in the segment's chain) is copied to a heap
+ * buffer under the segment update lock, that prevents concurrent modifications of the segment,
+ * but allows concurrent reads, and then is written to the file after the lock is released. The
+ * global mutable state, the tier bulk headers (modification iterator bit sets in replicated
+ * Chronicle Maps) and free tiers are copied in the end, under the global mutable state lock, so
+ * that all tier bulks, referenced from the copied segments, are allocated in the copy.
+ * <p>
+ * <p>The checksum of each copied tier is stored in the tier counters area of the copy, so that an
+ * incremental snapshot writes only tiers, which checksums differ from the checksums in the previous
+ * snapshot, and segment headers of segments with modified tiers or modification generations.
+ */
+final class SnapshotWriter {
+
+    private final VanillaChronicleHash<?, ?, ?, ?> h;
+    private final RandomAccessFile raf;
+    private final FileChannel target;
+    private final long maxBytesPerSecond;
+    private final long startNanos = System.nanoTime();
+    /**
+     * The offset of the tier checksum within the tier counters area in snapshots, see {@link
+     * TierCountersArea}. Bytes 40..47 of the area are not used by Chronicle Hashes, the checksum is
+     * ignored when a snapshot is opened as a Chronicle Hash.
+     */
+    private static final int TIER_CHECKSUM_OFFSET = 40;
+    /**
+     * Bytes 32..55 of segment headers are the shared segment lock counters of {@link
+     * InstrumentedSegmentHeader} and the lock holder of {@link DeadLockHolderRecovery}
+     */
+    private static final int SEGMENT_HEADER_LOCK_AREA_START =
+            (int) InstrumentedSegmentHeader.ACQUISITIONS_OFFSET;
+    private static final int SEGMENT_HEADER_LOCK_AREA_END =
+            (int) BigSegmentHeader.LOCK_HOLDER_OFFSET + 8;
+
+    private final ByteBuffer checksumBuffer =
+            ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+    private final int segmentHeaderSize;
+    private final int tierSize;
+    private byte[] buffer = new byte[0];
+    private long[] tierIndexes = new long[1];
+    private long bytesWritten;
+
+    SnapshotWriter(VanillaChronicleHash<?, ?, ?, ?> h, RandomAccessFile raf,
+                   long maxBytesPerSecond) {
+        this.h = h;
+        this.raf = raf;
+        this.target = raf.getChannel();
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        segmentHeaderSize = h.segmentHeaderSize;
+        tierSize = toIntExact(h.tierSize);
+    }
+
+    /**
+     * @return the number of bytes written to the file
+     */
+    long write(boolean incremental) throws IOException {
+        incremental = incremental && isSnapshotOfTheSameHash();
+        if (!incremental)
+            writeHeader();
+        for (int segmentIndex = 0; segmentIndex < h.actualSegments; segmentIndex++) {
+            writeSegment(segmentIndex, incremental);
+        }
+        writeGlobalMutableStateAndFreeTiers();
+        target.force(true);
+        return bytesWritten;
+    }
+
+    /**
+     * Checks that the target file has the same self-bootstrapping header, as the snapshotted
+     * Chronicle Hash, i. e. it is likely a previous snapshot of this Chronicle Hash.
+     */
+    private boolean isSnapshotOfTheSameHash() throws IOException {
+        if (target.size() < h.sizeInBytesWithoutTiers())
+            return false;
+        int headerSize = toIntExact(h.headerSize);
+        byte[] header = new byte[headerSize];
+        h.bs.read(0, header, 0, headerSize);
+        ByteBuffer targetHeader = ByteBuffer.allocate(headerSize);
+        readFully(targetHeader, 0);
+        return Arrays.equals(header, targetHeader.array());
+    }
+
+    private void writeHeader() throws IOException {
+        // The self-bootstrapping header is not updated after the Chronicle Hash is created
+        int headerSize = toIntExact(h.headerSize);
+        ensureBufferCapacity(headerSize);
+        h.bs.read(0, buffer, 0, headerSize);
+        write(0, buffer, 0, headerSize);
+    }
+
+    private void writeSegment(int segmentIndex, boolean incremental) throws IOException {
+        long segmentHeaderOffset =
+                h.segmentHeadersOffset + ((long) segmentIndex) * segmentHeaderSize;
+        int tiers;
+        try (HashSegmentContext<?, ?> c = h.segmentContext(segmentIndex)) {
+            // Update lock, not read lock, because entry checksums are written on update unlock,
+            // after the write lock is released
+            ((SegmentLock) c).updateLock().lock();
+            SegmentHeader segmentHeader = h.segmentHeader;
+            long segmentHeaderAddress = h.segmentHeaderAddress(segmentIndex);
+            tiers = collectTierIndexes(segmentIndex, segmentHeader, segmentHeaderAddress);
+            ensureBufferCapacity(segmentHeaderSize + ((long) tiers) * tierSize);
+            h.bs.read(segmentHeaderOffset, buffer, 0, segmentHeaderSize);
+            for (int i = 0; i < tiers; i++) {
+                long tierIndex = tierIndexes[i];
+                h.tierBytesStore(tierIndex).read(h.tierBytesOffset(tierIndex),
+                        buffer, segmentHeaderSize + i * tierSize, tierSize);
+            }
+        }
+        ByteBuffer copy = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+        // The copied lock state is held by this thread
+        copy.putLong((int) BigSegmentHeader.LOCK_OFFSET, h.segmentHeader.resetLockState());
+        // Shared lock counters and the lock holder (this thread) are meaningless in the copy
+        if (segmentHeaderSize > SEGMENT_HEADER_LOCK_AREA_START) {
+            Arrays.fill(buffer, SEGMENT_HEADER_LOCK_AREA_START,
+                    Math.min(segmentHeaderSize, SEGMENT_HEADER_LOCK_AREA_END), (byte) 0);
+        }
+        // A tier could be changed without the modification generation update in the segment
+        // header, e. g. if entry checksums are written, so each tier is compared by checksum
+        long generationOffset = BigSegmentHeader.MODIFICATION_GENERATION_OFFSET;
+        boolean segmentChanged = !incremental || copy.getInt((int) generationOffset) !=
+                readSnapshotInt(segmentHeaderOffset + generationOffset);
+        for (int i = 0; i < tiers; i++) {
+            long tierFileOffset = tierFileOffset(tierIndexes[i]);
+            int tierBufferOffset = segmentHeaderSize + i * tierSize;
+            long checksum = putTierChecksum(copy, tierBufferOffset);
+            if (!incremental || readSnapshotChecksum(tierFileOffset) != checksum) {
+                write(tierFileOffset, buffer, tierBufferOffset, tierSize);
+                segmentChanged = true;
+            }
+        }
+        if (segmentChanged)
+            write(segmentHeaderOffset, buffer, 0, segmentHeaderSize);
+    }
+
+    /**
+     * Computes the checksum of the tier copy in the buffer, and stores it to the tier counters
+     * area of the copy, see {@link #TIER_CHECKSUM_OFFSET}.
+     */
+    private long putTierChecksum(ByteBuffer copy, int tierBufferOffset) {
+        int checksumOffset = tierBufferOffset + toIntExact(h.tierHashLookupOuterSize) +
+                TIER_CHECKSUM_OFFSET;
+        copy.putLong(checksumOffset, 0L);
+        long checksum = LongHashFunction.xx_r39().hashBytes(buffer, tierBufferOffset, tierSize);
+        copy.putLong(checksumOffset, checksum);
+        return checksum;
+    }
+
+    private long readSnapshotChecksum(long tierFileOffset) throws IOException {
+        long checksumPosition =
+                tierFileOffset + h.tierHashLookupOuterSize + TIER_CHECKSUM_OFFSET;
+        if (checksumPosition + 8 > target.size())
+            return 0L; // the tier is not in the previous snapshot
+        checksumBuffer.clear();
+        readFully(checksumBuffer, checksumPosition);
+        return checksumBuffer.getLong(0);
+    }
+
+    private int readSnapshotInt(long position) throws IOException {
+        checksumBuffer.clear().limit(4);
+        readFully(checksumBuffer, position);
+        return checksumBuffer.getInt(0);
+    }
+
+    private int collectTierIndexes(
+            int segmentIndex, SegmentHeader segmentHeader, long segmentHeaderAddress) {
+        int tiers = 0;
+        tierIndexes[tiers++] = segmentIndex + 1; // tiers are 1-counted
+        long nextTierIndex = segmentHeader.nextTierIndex(segmentHeaderAddress);
+        while (nextTierIndex != 0) {
+            if (tiers == tierIndexes.length)
+                tierIndexes = Arrays.copyOf(tierIndexes, tiers * 2);
+            tierIndexes[tiers++] = nextTierIndex;
+            long tierCountersAreaAddr =
+                    h.tierIndexToBaseAddr(nextTierIndex) + h.tierHashLookupOuterSize;
+            nextTierIndex = TierCountersArea.nextTierIndex(tierCountersAreaAddr);
+        }
+        return tiers;
+    }
+
+    /**
+     * Copies the global mutable state (and the area between it and segment headers, used by
+     * replicated Chronicle Maps), tier bulk headers and free tiers. Tiers, allocated after the
+     * segment, which chain they are added to, is copied, are not referenced from any segment in
+     * the copy, and not free, i. e. "leaked". They are reclaimed when the copy is {@linkplain
+     * net.openhft.chronicle.hash.ChronicleHashBuilder#recoverPersistedTo(java.io.File, boolean)
+     * recovered}.
+     */
+    private void writeGlobalMutableStateAndFreeTiers() throws IOException {
+        int globalMutableStateAreaSize = toIntExact(h.segmentHeadersOffset - h.headerSize);
+        int bulkHeaderSize = toIntExact(h.tierBulkInnerOffsetToTiers);
+        int freeTierHeaderSize = toIntExact(h.tierSize - h.tierEntrySpaceOuterSize);
+        int allocatedExtraTierBulks;
+        long dataStoreSize;
+        int freeTiers = 0;
+        h.globalMutableStateLock();
+        try {
+            VanillaGlobalMutableState globalMutableState = h.globalMutableState();
+            allocatedExtraTierBulks = globalMutableState.getAllocatedExtraTierBulks();
+            dataStoreSize = globalMutableState.getDataStoreSize();
+            for (long tierIndex = globalMutableState.getFirstFreeTierIndex(); tierIndex != 0;
+                 tierIndex = TierCountersArea.nextTierIndex(
+                         h.tierIndexToBaseAddr(tierIndex) + h.tierHashLookupOuterSize)) {
+                if (freeTiers == tierIndexes.length)
+                    tierIndexes = Arrays.copyOf(tierIndexes, freeTiers * 2);
+                tierIndexes[freeTiers++] = tierIndex;
+            }
+            ensureBufferCapacity(globalMutableStateAreaSize +
+                    ((long) allocatedExtraTierBulks) * bulkHeaderSize +
+                    ((long) freeTiers) * freeTierHeaderSize);
+            int bufferOffset = 0;
+            h.bs.read(h.headerSize, buffer, bufferOffset, globalMutableStateAreaSize);
+            bufferOffset += globalMutableStateAreaSize;
+            for (int bulkIndex = 0; bulkIndex < allocatedExtraTierBulks; bulkIndex++) {
+                long firstTierIndex =
+                        h.extraTierIndexToTierIndex(((long) bulkIndex) * h.tiersInBulk);
+                BytesStore bulkBytesStore = h.tierBytesStore(firstTierIndex);
+                bulkBytesStore.read(h.tierBytesOffset(firstTierIndex) - bulkHeaderSize,
+                        buffer, bufferOffset, bulkHeaderSize);
+                bufferOffset += bulkHeaderSize;
+            }
+            for (int i = 0; i < freeTiers; i++) {
+                long tierIndex = tierIndexes[i];
+                h.tierBytesStore(tierIndex).read(h.tierBytesOffset(tierIndex),
+                        buffer, bufferOffset, freeTierHeaderSize);
+                bufferOffset += freeTierHeaderSize;
+            }
+        } finally {
+            h.globalMutableStateUnlock();
+        }
+        // The copied lock state is held by this thread
+        ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder())
+                .putLong((int) GLOBAL_MUTABLE_STATE_LOCK_OFFSET,
+                        globalMutableStateLockingStrategy.resetState());
+
+        if (raf.length() != dataStoreSize)
+            raf.setLength(dataStoreSize);
+        int bufferOffset = 0;
+        write(h.headerSize, buffer, bufferOffset, globalMutableStateAreaSize);
+        bufferOffset += globalMutableStateAreaSize;
+        for (int bulkIndex = 0; bulkIndex < allocatedExtraTierBulks; bulkIndex++) {
+            write(bulkFileOffset(bulkIndex), buffer, bufferOffset, bulkHeaderSize);
+            bufferOffset += bulkHeaderSize;
+        }
+        for (int i = 0; i < freeTiers; i++) {
+            write(tierFileOffset(tierIndexes[i]), buffer, bufferOffset, freeTierHeaderSize);
+            bufferOffset += freeTierHeaderSize;
+        }
+    }
+
+    private long bulkFileOffset(long bulkIndex) {
+        return h.sizeInBytesWithoutTiers() + bulkIndex * h.tierBulkSizeInBytes;
+    }
+
+    /**
+     * Unlike {@link VanillaChronicleHash#tierBytesOffset(long)}, returns the offset in the file,
+     * rather than in the memory mapping of the tier bulk
+     */
+    private long tierFileOffset(long tierIndex) {
+        long tierIndexMinusOne = tierIndex - 1;
+        if (tierIndexMinusOne < h.actualSegments)
+            return h.segmentsOffset + tierIndexMinusOne * tierSize;
+        long extraTierIndex = tierIndexMinusOne - h.actualSegments;
+        long bulkIndex = extraTierIndex >> h.log2TiersInBulk;
+        return bulkFileOffset(bulkIndex) + h.tierBulkInnerOffsetToTiers +
+                (extraTierIndex & (h.tiersInBulk - 1)) * tierSize;
+    }
+
+    private void ensureBufferCapacity(long capacity) {
+        if (buffer.length < capacity)
+            buffer = new byte[toIntExact(capacity)];
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = target.read(dst, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of snapshot file at " + position);
+            position += read;
+        }
+    }
+
+    private void write(long position, byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(bytes, offset, length);
+        while (src.hasRemaining()) {
+            position += target.write(src, position);
+        }
+        bytesWritten += length;
+        throttle();
+    }
+
+    private void throttle() throws InterruptedIOException {
+        if (maxBytesPerSecond == 0)
+            return;
+        long targetNanos = (long) (bytesWritten * 1e9 / maxBytesPerSecond);
+        long aheadNanos;
+        while ((aheadNanos = targetNanos - (System.nanoTime() - startNanos)) > 0) {
+            LockSupport.parkNanos(this, Math.min(aheadNanos, TimeUnit.SECONDS.toNanos(1)));
+            if (Thread.interrupted())
+                throw new InterruptedIOException("Snapshot of " + h.toIdentityString() +
+                        " is interrupted");
+        }
+    }
+}
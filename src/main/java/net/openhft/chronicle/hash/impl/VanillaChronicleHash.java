@@ -16,6 +16,7 @@
 
 package net.openhft.chronicle.hash.impl;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
 import net.openhft.chronicle.algo.locks.*;
 import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.bytes.MappedBytesStoreFactory;
@@ -70,6 +71,30 @@ public abstract class VanillaChronicleHash<K,
 
     public static final long TIER_COUNTERS_AREA_SIZE = 64;
     public static final long RESERVED_GLOBAL_MUTABLE_STATE_BYTES = 1024;
+    /**
+     * Number of striped size cells, maintained in the reserved bytes after the global mutable
+     * state, see {@link #estimatedSize()}. Segment with index {@code i} updates the cell {@code i %
+     * SIZE_STRIPES}.
+     */
+    public static final int SIZE_STRIPES = 8;
+    /**
+     * Offset of the size cells marker from the start of the global mutable state, then each of
+     * {@link #SIZE_STRIPES} cells takes a separate cache line. Doesn't overlap with the timestamp
+     * lease and modification iterators of replicated hashes, placed in the same reserved bytes.
+     */
+    static final long SIZE_STRIPES_OFFSET = 128L;
+    /**
+     * Written to the marker, when the size cells are maintained for the whole lifetime of the
+     * data store (it is created by this version of the library), or recomputed during recovery.
+     * Older versions of the library neither update the cells nor clear the marker, so their
+     * modifications of the same data store are not accounted, until the next recovery.
+     */
+    private static final long SIZE_STRIPES_MAINTAINED = 0x5354524950455331L; // "STRIPES1"
+    /**
+     * Size of the full 64-bit key hash code, stored between the key size and the key in each entry,
+     * if {@link #storeKeyHashes} is {@code true}
+     */
+    public static final int KEY_HASH_STORED_BYTES = 8;
 
     // --- Start of instance fields ---
     /**
@@ -86,7 +111,7 @@ public abstract class VanillaChronicleHash<K,
     AcquisitionStrategy<LockingStrategy, RuntimeException>
             globalMutableStateLockAcquisitionStrategy =
             AcquisitionStrategies.spinLoopOrFail(2, TimeUnit.SECONDS);
-    private static final long GLOBAL_MUTABLE_STATE_LOCK_OFFSET = 0L;
+    static final long GLOBAL_MUTABLE_STATE_LOCK_OFFSET = 0L;
     private static final long GLOBAL_MUTABLE_STATE_VALUE_OFFSET = 8L;
     /////////////////////////////////////////////////
     // If the hash was created in the first place, or read from disk
@@ -97,8 +122,15 @@ public abstract class VanillaChronicleHash<K,
     public SizeMarshaller keySizeMarshaller;
     public SizedReader<K> keyReader;
     public DataAccess<K> keyDataAccess;
+    public LongHashFunction keyHashFunction;
+    public boolean storeKeyHashes;
     /////////////////////////////////////////////////
     public boolean checksumEntries;
+    /**
+     * If {@code true}, segment locks are {@link PhaseFairSegmentLockWord}s
+     */
+    public boolean fairSegmentLocks;
+    public ChecksumAlgorithm checksumAlgorithm;
     /////////////////////////////////////////////////
     // Concurrency (number of segments), memory management and dependent fields
     public int actualSegments;
@@ -124,6 +156,12 @@ public abstract class VanillaChronicleHash<K,
     // Miscellaneous fields
     public transient CompactOffHeapLinearHashTable hashLookup;
     public transient Identity identity;
+    /**
+     * Segment header, waiting for segment locks with the configured {@link
+     * net.openhft.chronicle.hash.locks.LockWaitStrategy}, possibly an {@link
+     * InstrumentedSegmentHeader}, if segment lock stats are configured
+     */
+    public transient SegmentHeader segmentHeader;
     protected int log2TiersInBulk;
     private Runnable preShutdownAction;
     private boolean skipCloseOnExitHook;
@@ -168,6 +206,9 @@ public abstract class VanillaChronicleHash<K,
         keySizeMarshaller = keyBuilder.sizeMarshaller();
         keyReader = keyBuilder.reader();
         keyDataAccess = keyBuilder.dataAccess();
+        keyHashFunction = privateAPI.keyHashFunction();
+        storeKeyHashes = privateAPI.storeKeyHashes();
+        fairSegmentLocks = privateAPI.fairSegmentLocks();
 
         actualSegments = privateAPI.actualSegments();
         hashSplitting = HashSplitting.forSegments(actualSegments);
@@ -210,6 +251,7 @@ public abstract class VanillaChronicleHash<K,
         tierBulkSizeInBytes = computeTierBulkBytesSize(tiersInBulk);
 
         checksumEntries = privateAPI.checksumEntries();
+        checksumAlgorithm = privateAPI.checksumAlgorithm();
 
         preShutdownAction = privateAPI.getPreShutdownAction();
         skipCloseOnExitHook = privateAPI.skipCloseOnExitHook();
@@ -251,8 +293,22 @@ public abstract class VanillaChronicleHash<K,
         keySizeMarshaller = wireIn.read(() -> "keySizeMarshaller").object(SizeMarshaller.class);
         keyReader = wireIn.read(() -> "keyReader").object(SizedReader.class);
         keyDataAccess = wireIn.read(() -> "keyDataAccess").object(DataAccess.class);
+        // The field is absent in headers of Chronicle Hashes, which use the default key hash
+        // function, including all hashes created before the function became configurable
+        LongHashFunction persistedKeyHashFunction =
+                wireIn.read(() -> "keyHashFunction").object(LongHashFunction.class);
+        keyHashFunction = persistedKeyHashFunction != null ? persistedKeyHashFunction :
+                LongHashFunction.xx_r39();
+        // Absent in headers of Chronicle Hashes with the default entry layout
+        storeKeyHashes = wireIn.read(() -> "storeKeyHashes").bool();
+        // Absent in headers of Chronicle Hashes with the default segment lock layout
+        fairSegmentLocks = wireIn.read(() -> "fairSegmentLocks").bool();
 
         checksumEntries = wireIn.read(() -> "checksumEntries").bool();
+        // Absent in headers of Chronicle Hashes with the default checksum algorithm
+        String persistedChecksumAlgorithm = wireIn.read(() -> "checksumAlgorithm").text();
+        checksumAlgorithm = persistedChecksumAlgorithm != null ?
+                ChecksumAlgorithm.valueOf(persistedChecksumAlgorithm) : ChecksumAlgorithm.XX_HASH;
 
         actualSegments = wireIn.read(() -> "actualSegments").int32();
         hashSplitting = wireIn.read(() -> "hashSplitting").typedMarshallable();
@@ -295,8 +351,16 @@ public abstract class VanillaChronicleHash<K,
         wireOut.write(() -> "keySizeMarshaller").object(keySizeMarshaller);
         wireOut.write(() -> "keyReader").object(keyReader);
         wireOut.write(() -> "keyDataAccess").object(keyDataAccess);
+        if (keyHashFunction != LongHashFunction.xx_r39())
+            wireOut.write(() -> "keyHashFunction").object(keyHashFunction);
+        if (storeKeyHashes)
+            wireOut.write(() -> "storeKeyHashes").bool(true);
+        if (fairSegmentLocks)
+            wireOut.write(() -> "fairSegmentLocks").bool(true);
 
         wireOut.write(() -> "checksumEntries").bool(checksumEntries);
+        if (checksumEntries && checksumAlgorithm != ChecksumAlgorithm.XX_HASH)
+            wireOut.write(() -> "checksumAlgorithm").text(checksumAlgorithm.name());
 
         wireOut.write(() -> "actualSegments").int32(actualSegments);
         wireOut.write(() -> "hashSplitting").object(hashSplitting);
@@ -441,11 +505,25 @@ public abstract class VanillaChronicleHash<K,
 
         if (createdOrInMemory) {
             zeroOutNewlyMappedChronicleMapBytes();
+            resetSizeStripes();
             // write the segment headers offset after zeroing out
             globalMutableState.setSegmentHeadersOffset(segmentHeadersOffset);
             globalMutableState.setDataStoreSize(sizeInBytesWithoutTiers());
         } else {
             initBulks();
+            clearStaleSegmentLockHolders();
+        }
+    }
+
+    /**
+     * Clears segment lock holder records, left by dead holders, which don't hold the locks anymore,
+     * see {@link SegmentHeader#clearStaleLockHolder}
+     */
+    private void clearStaleSegmentLockHolders() {
+        if (segmentHeader == null)
+            return;
+        for (int segmentIndex = 0; segmentIndex < actualSegments; segmentIndex++) {
+            segmentHeader.clearStaleLockHolder(segmentHeaderAddress(segmentIndex));
         }
     }
 
@@ -642,6 +720,31 @@ public abstract class VanillaChronicleHash<K,
         return file;
     }
 
+    @Override
+    public long snapshotTo(File file) throws IOException {
+        return snapshotTo(file, false, 0);
+    }
+
+    @Override
+    public long snapshotTo(File file, boolean incremental, long maxBytesPerSecond)
+            throws IOException {
+        if (maxBytesPerSecond < 0) {
+            throw new IllegalArgumentException(toIdentityString() +
+                    ": maxBytesPerSecond should be non-negative, " + maxBytesPerSecond + " given");
+        }
+        if (this.file == null) {
+            throw new UnsupportedOperationException(toIdentityString() +
+                    ": only persisted Chronicle Hashes could be snapshotted");
+        }
+        if (file.getCanonicalFile().equals(this.file.getCanonicalFile())) {
+            throw new IllegalArgumentException(toIdentityString() +
+                    ": cannot snapshot to the file of this Chronicle Hash");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return new SnapshotWriter(this, raf, maxBytesPerSecond).write(incremental);
+        }
+    }
+
     public final long sizeInBytesWithoutTiers() {
         return computeSizeInBytesWithoutTiers(segmentHeadersOffset());
     }
@@ -705,6 +808,13 @@ public abstract class VanillaChronicleHash<K,
         return segmentsOffset + segmentIndex * tierSize;
     }
 
+    /**
+     * Returns the number of bytes between the key size and the key in each entry
+     */
+    public final int keyHashStoredBytes() {
+        return storeKeyHashes ? KEY_HASH_STORED_BYTES : 0;
+    }
+
     public final int inChunks(long sizeInBytes) {
         // TODO optimize for the case when chunkSize is power of 2, that is default (and often) now
         if (sizeInBytes <= chunkSize)
@@ -756,6 +866,62 @@ public abstract class VanillaChronicleHash<K,
         return resources.totalMemory();
     }
 
+    @Override
+    public int liveContexts() {
+        return resources.liveContexts();
+    }
+
+    @Override
+    public long estimatedSize() {
+        if (!isOpen())
+            throw new ChronicleHashClosedException(this);
+        long stripesAddress = sizeStripesAddress();
+        if (OS.memory().readVolatileLong(stripesAddress) != SIZE_STRIPES_MAINTAINED)
+            return longSize();
+        long size = 0;
+        for (int stripe = 0; stripe < SIZE_STRIPES; stripe++) {
+            size += OS.memory().readVolatileLong(sizeStripeAddress(stripesAddress, stripe));
+        }
+        // concurrent updates of different stripes could be seen out of order
+        return max(0, size);
+    }
+
+    /**
+     * Adds the change of the number of entries in the segment to the size cell of the segment's
+     * group. Called under the update or write lock of the segment.
+     */
+    public void addToSizeStripe(int segmentIndex, long delta) {
+        if (delta == 0)
+            return;
+        long stripeAddress = sizeStripeAddress(sizeStripesAddress(), segmentIndex % SIZE_STRIPES);
+        while (true) {
+            long value = OS.memory().readVolatileLong(stripeAddress);
+            if (OS.memory().compareAndSwapLong(stripeAddress, value, value + delta))
+                return;
+        }
+    }
+
+    /**
+     * Zeroes out the size cells and marks them as maintained. Should be called either on a newly
+     * created data store, or during recovery, before {@link #addToSizeStripe} with the size of
+     * each segment.
+     */
+    public void resetSizeStripes() {
+        long stripesAddress = sizeStripesAddress();
+        for (int stripe = 0; stripe < SIZE_STRIPES; stripe++) {
+            OS.memory().writeLong(sizeStripeAddress(stripesAddress, stripe), 0L);
+        }
+        OS.memory().writeOrderedLong(stripesAddress, SIZE_STRIPES_MAINTAINED);
+    }
+
+    private long sizeStripesAddress() {
+        return globalMutableStateAddress() + SIZE_STRIPES_OFFSET;
+    }
+
+    private static long sizeStripeAddress(long stripesAddress, int stripe) {
+        return stripesAddress + BYTES.convert(1 + stripe, CACHE_LINES);
+    }
+
     public long allocateTier() {
         globalMutableStateLock();
         try {
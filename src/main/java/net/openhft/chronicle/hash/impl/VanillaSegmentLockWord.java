@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.algo.bytes.Access;
+import net.openhft.chronicle.algo.bytes.NativeAccess;
+import net.openhft.chronicle.algo.locks.VanillaReadWriteUpdateWithWaitsLockingStrategy;
+import net.openhft.chronicle.core.OS;
+
+/**
+ * The default segment lock word, {@link VanillaReadWriteUpdateWithWaitsLockingStrategy}. Registered
+ * write lock waiters prevent new acquisitions of read and update locks, but writers are not
+ * ordered with readers, so readers could be starved by a continuous flow of writers.
+ */
+enum VanillaSegmentLockWord implements SegmentLockWord {
+    INSTANCE;
+
+    /**
+     * Make the LOCK constant and {@link #A} of final class types (instead of interfaces) as this
+     * hopefully help JVM with inlining
+     */
+    private static final VanillaReadWriteUpdateWithWaitsLockingStrategy LOCK =
+            (VanillaReadWriteUpdateWithWaitsLockingStrategy)
+                    VanillaReadWriteUpdateWithWaitsLockingStrategy.instance();
+    private static final NativeAccess A = (NativeAccess) Access.nativeAccess();
+
+    /**
+     * The layout of the lock word, read as a little-endian 64-bit value: the lower 32 bits are the
+     * count word (bits 0-29 are the number of read lock holders, bit 30 is set if the update lock
+     * is held, bit 31 is set if the write lock is held), the higher 32 bits are the number of
+     * registered write lock waiters
+     */
+    private static final long UPDATE_LOCKED = 1L << 30;
+    private static final long WRITE_LOCKED = 1L << 31;
+    private static final long WAIT_PARTY = 1L << 32;
+
+    @Override
+    public boolean tryReadLock(long lockAddr) {
+        return LOCK.tryReadLock(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryUpdateLock(long lockAddr) {
+        return LOCK.tryUpdateLock(A, null, lockAddr);
+    }
+
+    /**
+     * Returns 0, waiting threads don't take turns with writers
+     */
+    @Override
+    public long phase(long lockAddr) {
+        return 0L;
+    }
+
+    @Override
+    public boolean tryReadLock(long lockAddr, long waitingSincePhase) {
+        return tryReadLock(lockAddr);
+    }
+
+    @Override
+    public boolean tryUpdateLock(long lockAddr, long waitingSincePhase) {
+        return tryUpdateLock(lockAddr);
+    }
+
+    @Override
+    public boolean tryWriteLock(long lockAddr) {
+        return LOCK.tryWriteLock(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryUpgradeReadToUpdateLock(long lockAddr) {
+        return LOCK.tryUpgradeReadToUpdateLock(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryUpgradeReadToWriteLock(long lockAddr) {
+        return LOCK.tryUpgradeReadToWriteLock(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLock(long lockAddr) {
+        return LOCK.tryUpgradeUpdateToWriteLock(A, null, lockAddr);
+    }
+
+    @Override
+    public void registerWait(long lockAddr) {
+        LOCK.registerWait(A, null, lockAddr);
+    }
+
+    @Override
+    public void deregisterWait(long lockAddr) {
+        LOCK.deregisterWait(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryWriteLockAndDeregisterWait(long lockAddr) {
+        return LOCK.tryWriteLockAndDeregisterWait(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean tryUpgradeUpdateToWriteLockAndDeregisterWait(long lockAddr) {
+        return LOCK.tryUpgradeUpdateToWriteLockAndDeregisterWait(A, null, lockAddr);
+    }
+
+    @Override
+    public void readUnlock(long lockAddr) {
+        LOCK.readUnlock(A, null, lockAddr);
+    }
+
+    @Override
+    public void updateUnlock(long lockAddr) {
+        LOCK.updateUnlock(A, null, lockAddr);
+    }
+
+    @Override
+    public void writeUnlock(long lockAddr) {
+        LOCK.writeUnlock(A, null, lockAddr);
+    }
+
+    @Override
+    public void downgradeUpdateToReadLock(long lockAddr) {
+        LOCK.downgradeUpdateToReadLock(A, null, lockAddr);
+    }
+
+    @Override
+    public void downgradeWriteToUpdateLock(long lockAddr) {
+        LOCK.downgradeWriteToUpdateLock(A, null, lockAddr);
+    }
+
+    @Override
+    public void downgradeWriteToReadLock(long lockAddr) {
+        LOCK.downgradeWriteToReadLock(A, null, lockAddr);
+    }
+
+    @Override
+    public void reset(long lockAddr) {
+        LOCK.reset(A, null, lockAddr);
+    }
+
+    @Override
+    public long resetState() {
+        return LOCK.resetState();
+    }
+
+    @Override
+    public long getState(long lockAddr) {
+        return LOCK.getState(A, null, lockAddr);
+    }
+
+    @Override
+    public boolean isWriteLocked(long lockState) {
+        return LOCK.isWriteLocked(lockState);
+    }
+
+    @Override
+    public boolean isUpdateLocked(long lockState) {
+        return (lockState & UPDATE_LOCKED) != 0;
+    }
+
+    @Override
+    public boolean tryReleaseDeadHolder(
+            long lockAddr, long expectedLockState, boolean deregisterWait) {
+        if ((expectedLockState & (UPDATE_LOCKED | WRITE_LOCKED)) == 0) {
+            throw new IllegalMonitorStateException(
+                    "neither update nor write lock is held, lock state: " +
+                            toString(expectedLockState));
+        }
+        long newState = expectedLockState & ~(UPDATE_LOCKED | WRITE_LOCKED);
+        if (deregisterWait && (newState >>> 32) != 0)
+            newState -= WAIT_PARTY;
+        return OS.memory().compareAndSwapLong(lockAddr, expectedLockState, newState);
+    }
+
+    @Override
+    public String toString(long lockState) {
+        return LOCK.toString(lockState);
+    }
+}
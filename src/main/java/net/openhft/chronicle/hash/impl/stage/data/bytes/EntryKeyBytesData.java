@@ -79,6 +79,8 @@ public class EntryKeyBytesData<K> extends AbstractData<K> {
         if (f == LongHashFunction.xx_r39() && entry.keySize == 4 &&
                 hh.h().keyDataAccess instanceof IntegerDataAccess) {
             return WrongXxHash.hashInt(s.segmentBS.readInt(entry.keyOffset));
+        } else if (hh.h().storeKeyHashes && f == hh.h().keyHashFunction) {
+            return entry.storedKeyHash();
         } else {
             return super.hash(f);
         }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl.stage.entry;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Memory;
+import net.openhft.chronicle.core.OS;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * CRC-32C (Castagnoli) of off-heap memory. If {@code java.util.zip.CRC32C} is available (Java 9+),
+ * the hashed memory is copied, chunk by chunk, to a thread-local direct {@code ByteBuffer}, which
+ * is passed to {@code CRC32C}, so the JVM intrinsic (SSE 4.2 {@code crc32} instruction on x86) is
+ * used. Copying is much cheaper than the software CRC. Otherwise a slicing-by-8 software
+ * implementation, producing the same results, is used.
+ * <p>
+ * <p>Raw CRC operations ({@link #rawUpdate(int, byte)}, {@link #rawUpdateLong(int, long)} and
+ * {@link #shift(int, long)}) don't apply the initial value and final inversion, they are used for
+ * incremental checksum updates, based on the linearity of CRC: for messages of the same length,
+ * {@code crc(a) ^ crc(b) == rawCrc(a ^ b)}.
+ */
+public enum Crc32C {
+    ;
+
+    private static final int POLY = 0x82F63B78;
+    private static final int[][] TABLES = new int[8][256];
+    private static final Memory MEMORY = OS.memory();
+    private static final boolean LITTLE_ENDIAN_PLATFORM =
+            ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    /**
+     * The capacity of the thread-local buffer, the memory is copied to and passed to the JDK
+     * checksum. Most entries fit a single chunk
+     */
+    static final int JDK_CHUNK_SIZE = 8192;
+
+    /**
+     * {@code ZERO_OPERATORS[k]} is the operator (a 32x32 GF(2) matrix) of appending 2^k zero bytes
+     * to a message, see {@link #shift(int, long)}
+     */
+    private static final int[][] ZERO_OPERATORS = new int[64][];
+
+    private static final MethodHandle NEW_CRC32C;
+    private static final MethodHandle RESET;
+    private static final MethodHandle UPDATE_BYTE_BUFFER;
+    private static final MethodHandle GET_VALUE;
+    private static final ThreadLocal<ChunkBuffer> CHUNK_BUFFER;
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLY : c >>> 1;
+            }
+            TABLES[0][n] = c;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int t = 1; t < 8; t++) {
+                int prev = TABLES[t - 1][n];
+                TABLES[t][n] = (prev >>> 8) ^ TABLES[0][prev & 0xFF];
+            }
+        }
+
+        // the operator for one zero bit
+        int[] operator = new int[32];
+        operator[0] = POLY;
+        for (int n = 1; n < 32; n++) {
+            operator[n] = 1 << (n - 1);
+        }
+        // squared three times, the operator for one zero byte
+        for (int i = 0; i < 3; i++) {
+            operator = gf2MatrixSquare(operator);
+        }
+        for (int k = 0; k < ZERO_OPERATORS.length; k++) {
+            ZERO_OPERATORS[k] = operator;
+            operator = gf2MatrixSquare(operator);
+        }
+
+        MethodHandle newCrc32C = null;
+        MethodHandle reset = null;
+        MethodHandle updateByteBuffer = null;
+        MethodHandle getValue = null;
+        try {
+            Class<?> crc32CClass = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            newCrc32C = lookup.findConstructor(crc32CClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            reset = lookup.findVirtual(crc32CClass, "reset", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            updateByteBuffer = lookup.findVirtual(crc32CClass, "update",
+                    MethodType.methodType(void.class, ByteBuffer.class))
+                    .asType(MethodType.methodType(void.class, Object.class, ByteBuffer.class));
+            getValue = lookup.findVirtual(crc32CClass, "getValue",
+                    MethodType.methodType(long.class))
+                    .asType(MethodType.methodType(long.class, Object.class));
+        } catch (Throwable t) {
+            // Java 8, fall back to the software implementation
+            newCrc32C = null;
+        }
+        NEW_CRC32C = newCrc32C;
+        RESET = reset;
+        UPDATE_BYTE_BUFFER = updateByteBuffer;
+        GET_VALUE = getValue;
+        CHUNK_BUFFER = newCrc32C != null ? ThreadLocal.withInitial(ChunkBuffer::new) : null;
+    }
+
+    /**
+     * A direct buffer and its address, to copy chunks of the hashed memory to, and the {@code
+     * CRC32C} instance, reset before each checksum
+     */
+    private static final class ChunkBuffer {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(JDK_CHUNK_SIZE);
+        final long address = BytesStore.wrap(buffer).addressForWrite(0);
+        final Object crc32C;
+
+        ChunkBuffer() {
+            try {
+                crc32C = NEW_CRC32C.invokeExact();
+            } catch (Throwable t) {
+                throw new AssertionError(t);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the JDK's {@code java.util.zip.CRC32C} (and the JVM intrinsic for it,
+     * if the platform supports it) is used.
+     */
+    public static boolean jdkCrc32CUsed() {
+        return NEW_CRC32C != null;
+    }
+
+    /**
+     * Returns {@code true} if updating the CRC-32C of a message of {@code messageBytes} bytes
+     * incrementally, when {@code changedBytes} bytes are changed, is likely faster than recomputing
+     * it. The JDK's CRC-32C is several times faster than the software CRC-32C of the changed bytes,
+     * so if it is used, incremental updates pay off only if less than 1/4 of the message changes.
+     */
+    public static boolean incrementalUpdateFaster(long changedBytes, long messageBytes) {
+        return NEW_CRC32C == null || changedBytes * 4 <= messageBytes;
+    }
+
+    /**
+     * Computes the standard CRC-32C of {@code len} bytes of memory, starting at {@code address}.
+     */
+    public static int crc32c(long address, long len) {
+        if (NEW_CRC32C != null)
+            return jdkCrc32C(address, len);
+        return ~rawUpdate(~0, address, len);
+    }
+
+    private static int jdkCrc32C(long address, long len) {
+        ChunkBuffer chunkBuffer = CHUNK_BUFFER.get();
+        ByteBuffer buffer = chunkBuffer.buffer;
+        Object crc32C = chunkBuffer.crc32C;
+        try {
+            RESET.invokeExact(crc32C);
+            while (len > 0) {
+                int chunk = (int) Math.min(len, JDK_CHUNK_SIZE);
+                MEMORY.copyMemory(address, chunkBuffer.address, chunk);
+                buffer.clear();
+                buffer.limit(chunk);
+                UPDATE_BYTE_BUFFER.invokeExact(crc32C, buffer);
+                address += chunk;
+                len -= chunk;
+            }
+            return (int) (long) GET_VALUE.invokeExact(crc32C);
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
+    static int rawUpdate(int crc, long address, long len) {
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        long end8 = address + (len & ~7L);
+        for (; address < end8; address += 8L) {
+            crc = rawUpdate(crc, MEMORY.readLong(address), t0, t1, t2, t3, t4, t5, t6, t7);
+        }
+        for (long end = end8 + (len & 7L); address < end; address++) {
+            crc = rawUpdate(crc, MEMORY.readByte(address));
+        }
+        return crc;
+    }
+
+    /**
+     * Updates the raw (without the initial value and the final inversion) CRC-32C with 8 bytes,
+     * read from memory as a {@code long} in the native byte order, i. e. the slicing-by-8 step.
+     */
+    public static int rawUpdateLong(int crc, long eightBytes) {
+        return rawUpdate(crc, eightBytes, TABLES[0], TABLES[1], TABLES[2], TABLES[3],
+                TABLES[4], TABLES[5], TABLES[6], TABLES[7]);
+    }
+
+    private static int rawUpdate(int crc, long v, int[] t0, int[] t1, int[] t2, int[] t3,
+                                 int[] t4, int[] t5, int[] t6, int[] t7) {
+        if (!LITTLE_ENDIAN_PLATFORM)
+            v = Long.reverseBytes(v);
+        int lo = crc ^ (int) v;
+        int hi = (int) (v >>> 32);
+        return t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF] ^
+                t4[lo >>> 24] ^ t3[hi & 0xFF] ^ t2[(hi >>> 8) & 0xFF] ^
+                t1[(hi >>> 16) & 0xFF] ^ t0[hi >>> 24];
+    }
+
+    /**
+     * Updates the raw (without the initial value and the final inversion) CRC-32C with one byte.
+     */
+    public static int rawUpdate(int crc, byte b) {
+        return (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    /**
+     * Returns the raw CRC-32C of the message, which raw CRC-32C is {@code crc}, followed by {@code
+     * zeroBytes} zero bytes, in O(log(zeroBytes)) time. This is the zlib's {@code crc32_combine()}
+     * approach: the operator of appending zero bits is a 32x32 GF(2) matrix, operators of appending
+     * 2^k zero bytes are precomputed by repeated squaring, and applied for each set bit of {@code
+     * zeroBytes}.
+     */
+    public static int shift(int crc, long zeroBytes) {
+        for (int k = 0; zeroBytes > 0 && crc != 0; k++, zeroBytes >>>= 1) {
+            if ((zeroBytes & 1) != 0)
+                crc = gf2MatrixTimes(ZERO_OPERATORS[k], crc);
+        }
+        return crc;
+    }
+
+    private static int gf2MatrixTimes(int[] mat, int vec) {
+        int sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static int[] gf2MatrixSquare(int[] mat) {
+        int[] square = new int[32];
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+        return square;
+    }
+}
@@ -17,6 +17,9 @@
 package net.openhft.chronicle.hash.impl.stage.entry;
 
 import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.bytes.RandomDataInput;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
+import net.openhft.chronicle.hash.impl.VanillaChronicleHashHolder;
 import net.openhft.sg.StageRef;
 import net.openhft.sg.Staged;
 
@@ -25,6 +28,8 @@ import static net.openhft.chronicle.hash.impl.stage.entry.ChecksumHashing.hash8T
 @Staged
 public class HashEntryChecksumStrategy implements ChecksumStrategy {
 
+    @StageRef
+    VanillaChronicleHashHolder<?> hh;
     @StageRef
     SegmentStages s;
     @StageRef
@@ -45,6 +50,13 @@ public class HashEntryChecksumStrategy implements ChecksumStrategy {
         long keyEnd = e.keyEnd();
         long len = e.entryEnd() - keyEnd;
 
+        if (hh.h().checksumAlgorithm == ChecksumAlgorithm.CRC32C) {
+            int payloadCrc = len > 0 ? Crc32C.crc32c(s.tierBaseAddr + keyEnd, len) : 0;
+            // The key part is XORed to the payload CRC, not mixed with it, to keep the checksum
+            // incrementally updatable, see writeBytesAndUpdateChecksum()
+            return keyChecksum(keyHashCode) ^ payloadCrc;
+        }
+
         long checksum;
         if (len > 0) {
             long addr = s.tierBaseAddr + keyEnd;
@@ -57,6 +69,51 @@ public class HashEntryChecksumStrategy implements ChecksumStrategy {
         return (int) ((checksum >>> 32) ^ checksum);
     }
 
+    private int keyChecksum(long keyHashCode) {
+        long keyChecksum = hash8To16Bytes(e.keySize, keyHashCode, 0L);
+        return (int) ((keyChecksum >>> 32) ^ keyChecksum);
+    }
+
+    public boolean incrementalUpdateSupported() {
+        return hh.h().checksumAlgorithm == ChecksumAlgorithm.CRC32C;
+    }
+
+    /**
+     * Overwrites {@code length} bytes of the entry payload at {@code offset} in the segment with
+     * the bytes of the {@code source}, and updates the stored checksum accordingly, without
+     * re-hashing the whole entry, unless the JDK's CRC-32C is used and the changed range is a large
+     * part of the entry, then recomputing is faster. Should be called only if {@link
+     * #incrementalUpdateSupported()} and the stored checksum is up to date.
+     */
+    public void writeBytesAndUpdateChecksum(
+            long offset, RandomDataInput source, long sourceOffset, long length) {
+        long entryEnd = e.entryEnd();
+        if (!Crc32C.incrementalUpdateFaster(length, entryEnd - e.keyEnd())) {
+            s.segmentBS.write(offset, source, sourceOffset, length);
+            computeAndStoreChecksum();
+            return;
+        }
+        // For messages of the same length, crc(a) ^ crc(b) == rawCrc(a ^ b), rawCrc of leading
+        // zero bytes is zero, so only the changed bytes are hashed, then shifted by the number of
+        // the following unchanged bytes
+        int deltaCrc = 0;
+        long i = 0;
+        for (; i <= length - 8; i += 8) {
+            long oldBytes = s.segmentBS.readLong(offset + i);
+            long newBytes = source.readLong(sourceOffset + i);
+            deltaCrc = Crc32C.rawUpdateLong(deltaCrc, oldBytes ^ newBytes);
+            s.segmentBS.writeLong(offset + i, newBytes);
+        }
+        for (; i < length; i++) {
+            byte oldByte = s.segmentBS.readByte(offset + i);
+            byte newByte = source.readByte(sourceOffset + i);
+            deltaCrc = Crc32C.rawUpdate(deltaCrc, (byte) (oldByte ^ newByte));
+            s.segmentBS.writeByte(offset + i, newByte);
+        }
+        int checksumChange = Crc32C.shift(deltaCrc, entryEnd - (offset + length));
+        s.segmentBS.writeInt(entryEnd, storedChecksum() ^ checksumChange);
+    }
+
     @Override
     public boolean innerCheckSum() {
         int oldChecksum = storedChecksum();
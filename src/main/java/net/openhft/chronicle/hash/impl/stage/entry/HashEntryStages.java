@@ -18,6 +18,7 @@ package net.openhft.chronicle.hash.impl.stage.entry;
 
 import net.openhft.chronicle.algo.bytes.Access;
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.RandomDataInput;
 import net.openhft.chronicle.hash.ChecksumEntry;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.HashEntry;
@@ -32,6 +33,7 @@ import org.jetbrains.annotations.NotNull;
 
 import static net.openhft.chronicle.algo.bytes.Access.checkedBytesStoreAccess;
 import static net.openhft.chronicle.algo.bytes.Access.nativeAccess;
+import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.KEY_HASH_STORED_BYTES;
 
 @Staged
 public abstract class HashEntryStages<K> implements HashEntry<K>, ChecksumEntry {
@@ -44,6 +46,8 @@ public abstract class HashEntryStages<K> implements HashEntry<K>, ChecksumEntry
     public CheckOnEachPublicOperation checkOnEachPublicOperation;
     @StageRef
     public HashLookupPos hlp;
+    @StageRef
+    KeyHashCode kh;
 
     public long pos = -1;
     @Stage("EntryOffset")
@@ -95,7 +99,7 @@ public abstract class HashEntryStages<K> implements HashEntry<K>, ChecksumEntry
         Bytes segmentBytes = s.segmentBytesForRead();
         segmentBytes.readPosition(keySizeOffset);
         initKeySize(hh.h().keySizeMarshaller.readSize(segmentBytes));
-        initKeyOffset(segmentBytes.readPosition());
+        initKeyOffset(segmentBytes.readPosition() + hh.h().keyHashStoredBytes());
     }
 
     public void readFoundEntry(long pos, long keySizeOffset, long keySize, long keyOffset) {
@@ -118,10 +122,23 @@ public abstract class HashEntryStages<K> implements HashEntry<K>, ChecksumEntry
         Bytes segmentBytes = s.segmentBytesForWrite();
         segmentBytes.writePosition(keySizeOffset);
         hh.h().keySizeMarshaller.writeSize(segmentBytes, keySize);
+        if (hh.h().storeKeyHashes)
+            segmentBytes.writeLong(kh.keyHashCode());
         initKeyOffset(segmentBytes.writePosition());
         key.writeTo(s.segmentBS, keyOffset);
     }
 
+    /**
+     * Should be called only if key hash codes are stored in entries of this Chronicle Hash.
+     */
+    public long storedKeyHash() {
+        return s.segmentBS.readLong(keyOffset - KEY_HASH_STORED_BYTES);
+    }
+
+    public void writeStoredKeyHash(long keyHash) {
+        s.segmentBS.writeLong(keyOffset - KEY_HASH_STORED_BYTES, keyHash);
+    }
+
     public void copyExistingEntry(
             long newPos, long bytesToCopy, long oldKeyAddr, long oldKeySizeAddr) {
         initPos(newPos);
@@ -186,6 +203,26 @@ public abstract class HashEntryStages<K> implements HashEntry<K>, ChecksumEntry
         return delayedUpdateChecksumInit() || checksumStrategy.innerCheckSum();
     }
 
+    /**
+     * Overwrites {@code length} bytes of the entry at {@code offset} in the segment with the bytes
+     * of the {@code source}. If the entry checksum is stored, it is updated incrementally, if the
+     * checksum algorithm allows, otherwise the checksum update is delayed like on other entry
+     * updates.
+     */
+    public void writeEntryBytes(
+            long offset, RandomDataInput source, long sourceOffset, long length) {
+        s.innerWriteLock.lock();
+        if (hh.h().checksumEntries && !delayedUpdateChecksumInit() &&
+                hashEntryChecksumStrategy.incrementalUpdateSupported()) {
+            hashEntryChecksumStrategy.writeBytesAndUpdateChecksum(
+                    offset, source, sourceOffset, length);
+        } else {
+            s.segmentBS.write(offset, source, sourceOffset, length);
+            if (hh.h().checksumEntries)
+                initDelayedUpdateChecksum(true);
+        }
+    }
+
     long entrySize() {
         return checksumStrategy.extraEntryBytes() + entryEnd() - keySizeOffset;
     }
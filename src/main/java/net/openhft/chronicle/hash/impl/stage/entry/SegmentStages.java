@@ -31,6 +31,7 @@ import net.openhft.chronicle.hash.impl.stage.hash.LogHolder;
 import net.openhft.chronicle.hash.impl.stage.query.KeySearch;
 import net.openhft.chronicle.hash.locks.InterProcessDeadLockException;
 import net.openhft.chronicle.hash.locks.InterProcessLock;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
 import net.openhft.chronicle.map.impl.IterationContext;
 import net.openhft.sg.Stage;
 import net.openhft.sg.StageRef;
@@ -43,6 +44,7 @@ import static net.openhft.chronicle.algo.MemoryUnit.BITS;
 import static net.openhft.chronicle.algo.MemoryUnit.LONGS;
 import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
 import static net.openhft.chronicle.hash.impl.LocalLockState.UNLOCKED;
+import static net.openhft.chronicle.hash.impl.LocalLockState.WRITE_LOCKED;
 import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.TIER_COUNTERS_AREA_SIZE;
 
 @Staged
@@ -119,7 +121,7 @@ public abstract class SegmentStages implements SegmentLock, LocksInterface {
 
     private void initSegmentHeader() {
         segmentHeaderAddress = hh.h().segmentHeaderAddress(segmentIndex);
-        segmentHeader = BigSegmentHeader.INSTANCE;
+        segmentHeader = hh.h().segmentHeader;
     }
 
     public long tierEntries() {
@@ -131,6 +133,7 @@ public abstract class SegmentStages implements SegmentLock, LocksInterface {
     }
 
     public void tierEntries(long tierEntries) {
+        hh.h().addToSizeStripe(segmentIndex, tierEntries - tierEntries());
         if (tier == 0) {
             segmentHeader.entries(segmentHeaderAddress, tierEntries);
         } else {
@@ -164,6 +167,8 @@ public abstract class SegmentStages implements SegmentLock, LocksInterface {
     }
 
     public void tierDeleted(long tierDeleted) {
+        // deleted entries of replicated hashes are not counted in the size
+        hh.h().addToSizeStripe(segmentIndex, tierDeleted() - tierDeleted);
         if (tier == 0) {
             segmentHeader.deleted(segmentHeaderAddress, tierDeleted);
         } else {
@@ -475,6 +480,10 @@ public abstract class SegmentStages implements SegmentLock, LocksInterface {
         } else if (goingToLock) {
             registerIterationContextLockedInThisThread();
         }
+        if (newState == WRITE_LOCKED && localLockState != WRITE_LOCKED) {
+            // The segment is going to be modified, see VanillaChronicleHash.snapshotTo()
+            segmentHeader.incrementModificationGeneration(segmentHeaderAddress);
+        }
         localLockState = newState;
     }
 
@@ -511,6 +520,16 @@ public abstract class SegmentStages implements SegmentLock, LocksInterface {
             LocksInterface cxt = chaining.contextAtIndexInChain(i);
             message += cxt.debugLocksState() + "\n";
         }
+        SegmentLockStats lockStats = hh.h().segmentLockStats();
+        if (lockStats != null) {
+            message += "Segment " + segmentIndex + " lock acquisitions: " +
+                    lockStats.acquisitions(segmentIndex) + ", contended: " +
+                    lockStats.contendedAcquisitions(segmentIndex) + "\n";
+            for (SegmentLockStats.Level level : SegmentLockStats.Level.values()) {
+                message += level + " lock max wait: " + lockStats.maxWaitNanos(level) +
+                        " ns, max hold: " + lockStats.maxHoldNanos(level) + " ns\n";
+            }
+        }
         throw new InterProcessDeadLockException(message, e);
     }
 
@@ -28,9 +28,12 @@ public class OwnerThreadHolder {
     final Thread owner = Thread.currentThread();
     @StageRef
     VanillaChronicleHashHolder<?> hh;
+    @StageRef
+    Chaining chaining;
 
     public void checkAccessingFromOwnerThread() {
-        if (owner != Thread.currentThread()) {
+        // A pooled context chain could be created by one thread, and then leased to others
+        if (chaining.rootContextInThisThread.currentOwner() != Thread.currentThread()) {
             throw new ConcurrentModificationException(hh.h().toIdentityString() +
                     ": Context shouldn't be accessed from multiple threads");
         }
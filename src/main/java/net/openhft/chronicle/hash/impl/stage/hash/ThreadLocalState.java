@@ -20,6 +20,8 @@ import net.openhft.chronicle.core.Memory;
 import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.hash.ChronicleHash;
 import net.openhft.chronicle.hash.ChronicleHashClosedException;
+import net.openhft.chronicle.hash.impl.ContextHolder;
+import net.openhft.chronicle.hash.impl.ContextPool;
 
 import java.lang.reflect.Field;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +49,31 @@ public abstract class ThreadLocalState {
 
     public boolean iterationContextLockedInThisThread;
     private volatile int contextLock = CONTEXT_UNLOCKED;
+    /**
+     * Set only in the root context of a chain, leased from a {@link ContextPool}
+     */
+    private ContextPool contextPool;
+    private ContextHolder contextHolder;
+    private volatile Thread lessee;
+
+    /**
+     * Makes the current thread the owner of the context chain with this root context, leased from
+     * the given pool. The chain is returned to the pool in {@link #unlockContextLocally()}.
+     */
+    public void leaseToCurrentThread(ContextPool contextPool, ContextHolder contextHolder) {
+        this.contextPool = contextPool;
+        this.contextHolder = contextHolder;
+        lessee = Thread.currentThread();
+    }
+
+    /**
+     * Returns the thread, this context chain is currently leased to, if the chain is pooled, or
+     * the thread, which created the chain, otherwise. Should be called on the root context.
+     */
+    public Thread currentOwner() {
+        Thread lessee = this.lessee;
+        return lessee != null ? lessee : owner();
+    }
 
     /**
      * Returns {@code true} if this is the outer context lock in this thread, {@code false} if this
@@ -75,8 +102,15 @@ public abstract class ThreadLocalState {
         // Ensure all reads from mapped memory are done before thread calling chronicleMap.close()
         // frees resources potentially unmapping some memory from where those reads are performed.
         MEMORY.loadFence();
+        ContextPool contextPool = this.contextPool;
+        if (contextPool != null)
+            contextPool.endLease();
         // Avoid volatile write to avoid expensive store-load barrier
         MEMORY.writeOrderedInt(this, CONTEXT_LOCK_OFFSET, CONTEXT_UNLOCKED);
+        // The chain is returned to the pool only after it is unlocked, so that the next lessee
+        // could lock it
+        if (contextPool != null)
+            contextPool.offer(contextHolder);
     }
 
     public void closeContext(String chronicleHashIdentityString) {
@@ -94,7 +128,7 @@ public abstract class ThreadLocalState {
         // If first attempt of closing a context (i. e. moving from unused to closed state) failed,
         // it means that the context is still in use. If this context belongs to the current thread,
         // this is a bug, because we cannot "wait" until context is unused in the same thread:
-        if (owner() == Thread.currentThread()) {
+        if (currentOwner() == Thread.currentThread()) {
             throw new IllegalStateException(chronicleHashIdentityString +
                     ": Attempt to close a Chronicle Hash in the context " +
                     "of not yet finished query or iteration");
@@ -122,7 +156,7 @@ public abstract class ThreadLocalState {
         } while (timeoutMillis >= 0);
         throw new RuntimeException(chronicleHashIdentityString +
                 ": Failed to close a context, belonging to the thread\n" +
-                owner() + ", in the state: " + owner().getState() + "\n" +
+                currentOwner() + ", in the state: " + currentOwner().getState() + "\n" +
                 "Possible reasons:\n" +
                 "- The context owner thread exited before closing this context. Ensure that you\n" +
                 "always close opened Chronicle Map's contexts, the best way to do this is to use\n" +
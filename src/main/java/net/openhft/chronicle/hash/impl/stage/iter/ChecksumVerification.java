@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl.stage.iter;
+
+import net.openhft.chronicle.hash.ChronicleHashCorruption;
+import net.openhft.chronicle.hash.impl.CompactOffHeapLinearHashTable;
+import net.openhft.chronicle.hash.impl.VanillaChronicleHashHolder;
+import net.openhft.chronicle.hash.impl.stage.entry.HashEntryStages;
+import net.openhft.chronicle.hash.impl.stage.entry.SegmentStages;
+import net.openhft.chronicle.map.ChronicleHashCorruptionImpl;
+import net.openhft.chronicle.map.impl.IterationContext;
+import net.openhft.sg.StageRef;
+import net.openhft.sg.Staged;
+
+import java.util.Arrays;
+
+import static net.openhft.chronicle.map.ChronicleHashCorruptionImpl.*;
+
+@Staged
+public abstract class ChecksumVerification implements IterationContext {
+
+    @StageRef
+    VanillaChronicleHashHolder<?> hh;
+    @StageRef
+    SegmentStages s;
+    @StageRef
+    HashEntryStages<?> e;
+
+    @Override
+    public long verifyChecksums(
+            int tier, long fromSlot, long toSlot,
+            ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption) {
+        CompactOffHeapLinearHashTable hl = hh.h().hashLookup;
+        long verifiedEntries = 0;
+        long[] mismatchedSlots = null;
+        int mismatches = 0;
+        // Checksums are verified under read lock, not to block concurrent updates. But a
+        // concurrent update lock holder might have updated an entry, but not yet written it's
+        // checksum (see HashEntryStages.checkSum()), so mismatches are confirmed under update lock
+        s.innerReadLock.lock();
+        try {
+            if (!goToTier(tier))
+                return -1;
+            for (long slot = fromSlot; slot < toSlot; slot++) {
+                long hlEntry = hl.readEntryVolatile(s.tierBaseAddr, hl.slotPos(slot));
+                if (hl.empty(hlEntry))
+                    continue;
+                verifiedEntries++;
+                if (!checksumMatches(hl.value(hlEntry))) {
+                    if (mismatchedSlots == null) {
+                        mismatchedSlots = new long[8];
+                    } else if (mismatches == mismatchedSlots.length) {
+                        mismatchedSlots = Arrays.copyOf(mismatchedSlots, mismatches * 2);
+                    }
+                    mismatchedSlots[mismatches++] = slot;
+                }
+            }
+        } finally {
+            s.innerReadLock.unlock();
+        }
+        if (mismatches > 0) {
+            confirmMismatches(tier, mismatchedSlots, mismatches, corruptionListener, corruption);
+        }
+        return verifiedEntries;
+    }
+
+    private boolean checksumMatches(long entryPos) {
+        try {
+            e.readExistingEntry(entryPos);
+            return e.checksumStrategy.innerCheckSum();
+        } catch (Exception ex) {
+            // Sizes in a corrupted entry might point outside the segment tier
+            return false;
+        }
+    }
+
+    private void confirmMismatches(
+            int tier, long[] mismatchedSlots, int mismatches,
+            ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption) {
+        CompactOffHeapLinearHashTable hl = hh.h().hashLookup;
+        s.innerUpdateLock.lock();
+        try {
+            if (!goToTier(tier))
+                return;
+            for (int i = 0; i < mismatches; i++) {
+                long hlEntry = hl.readEntry(s.tierBaseAddr, hl.slotPos(mismatchedSlots[i]));
+                // the entry might be removed while the segment was unlocked
+                if (hl.empty(hlEntry))
+                    continue;
+                long entryPos = hl.value(hlEntry);
+                try {
+                    e.readExistingEntry(entryPos);
+                    int storedChecksum = e.checksumStrategy.storedChecksum();
+                    int checksumFromEntry = e.checksumStrategy.computeChecksum();
+                    if (storedChecksum != checksumFromEntry) {
+                        report(corruptionListener, corruption, s.segmentIndex, () ->
+                                format("Checksum doesn't match, stored: {}, should be from " +
+                                                "the entry bytes: {}, tier: {}, entry pos: {}",
+                                        storedChecksum, checksumFromEntry, tier, entryPos)
+                        );
+                    }
+                } catch (Exception ex) {
+                    reportException(corruptionListener, corruption, s.segmentIndex, () ->
+                            format("Exception while verifying checksum of the entry " +
+                                    "at tier: {}, pos: {}", tier, entryPos), ex);
+                }
+            }
+        } finally {
+            s.innerUpdateLock.unlock();
+        }
+    }
+
+    private boolean goToTier(int tier) {
+        s.goToFirstTier();
+        while (s.tier < tier) {
+            if (!s.hasNextTier())
+                return false;
+            s.nextTier();
+        }
+        return true;
+    }
+}
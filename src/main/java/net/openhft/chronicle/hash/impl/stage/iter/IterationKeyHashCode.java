@@ -40,12 +40,22 @@ public class IterationKeyHashCode implements KeyHashCode {
     long keyHash = 0;
 
     void initKeyHash() {
+        keyHash = hh.h().storeKeyHashes ? e.storedKeyHash() : keyHashFromKeyBytes();
+    }
+
+    /**
+     * Computes the key hash code from the entry key bytes, ignoring the key hash code stored in
+     * the entry, if any.
+     */
+    public long keyHashFromKeyBytes() {
         long addr = s.tierBaseAddr + e.keyOffset;
         long len = e.keySize;
-        if (len == 4 && hh.h().keyDataAccess instanceof IntegerDataAccess) {
-            keyHash = WrongXxHash.hashInt(OS.memory().readInt(addr));
+        LongHashFunction keyHashFunction = hh.h().keyHashFunction;
+        if (len == 4 && keyHashFunction == LongHashFunction.xx_r39() &&
+                hh.h().keyDataAccess instanceof IntegerDataAccess) {
+            return WrongXxHash.hashInt(OS.memory().readInt(addr));
         } else {
-            keyHash = LongHashFunction.xx_r39().hashMemory(addr, len);
+            return keyHashFunction.hashMemory(addr, len);
         }
     }
 
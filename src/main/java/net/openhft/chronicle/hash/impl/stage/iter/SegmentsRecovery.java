@@ -18,6 +18,7 @@ package net.openhft.chronicle.hash.impl.stage.iter;
 
 import net.openhft.chronicle.hash.ChronicleHashCorruption;
 import net.openhft.chronicle.hash.VanillaGlobalMutableState;
+import net.openhft.chronicle.hash.impl.DeadLockHolderRecovery;
 import net.openhft.chronicle.hash.impl.TierCountersArea;
 import net.openhft.chronicle.hash.impl.VanillaChronicleHash;
 import net.openhft.chronicle.hash.impl.VanillaChronicleHashHolder;
@@ -124,6 +125,33 @@ public abstract class SegmentsRecovery implements IterationContext {
         }
 
         removeDuplicatesInSegments(corruptionListener, corruption);
+        recoverSizeStripes();
+    }
+
+    private void recoverSizeStripes() {
+        VanillaChronicleHash<?, ?, ?, ?> h = hh.h();
+        h.resetSizeStripes();
+        for (int segmentIndex = 0; segmentIndex < h.actualSegments; segmentIndex++) {
+            s.initSegmentIndex(segmentIndex);
+            h.addToSizeStripe(segmentIndex, s.size());
+        }
+    }
+
+    @Override
+    public void recoverSegment(
+            int segmentIndex, ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption) {
+        s.initSegmentIndex(segmentIndex);
+        s.initSegmentTier();
+        while (true) {
+            tierRecovery.recoverTier(segmentIndex, corruptionListener, corruption);
+            tierRecovery.recoverTierCounters(corruptionListener, corruption);
+            if (s.hasNextTier()) {
+                s.nextTier();
+            } else {
+                break;
+            }
+        }
     }
 
     private void removeDuplicatesInSegments(
@@ -156,6 +184,9 @@ public abstract class SegmentsRecovery implements IterationContext {
             );
             s.segmentHeader.resetLock(s.segmentHeaderAddress);
         }
+        // The lock is not held by anyone during recovery, even if it is clear, the holder record
+        // could be left by an accessor, which crashed before releasing the lock
+        DeadLockHolderRecovery.resetHolder(hh.h(), s.segmentHeaderAddress);
     }
 
     private void zeroOutFirstSegmentTierCountersArea(
@@ -110,6 +110,7 @@ public class TierRecovery {
                         }
                         long currentKeyOffset = e.keyOffset;
                         long currentKeySize = e.keySize;
+                        long currentKeyHash = khc.keyHashCode();
                         int currentEntrySizeInChunks = e.entrySizeInChunks;
                         if (insertPos >= 0 && insertPos < hlPos) {
                             // insertPos already checked
@@ -119,6 +120,7 @@ public class TierRecovery {
                             break checkDuplicateKeys;
                         }
                         if (e.keySize == currentKeySize &&
+                                (!h.storeKeyHashes || khc.keyHashCode() == currentKeyHash) &&
                                 BytesUtil.bytesEqual(s.segmentBS, currentKeyOffset,
                                         s.segmentBS, e.keyOffset, currentKeySize)) {
                             report(corruptionListener, corruption, segmentIndex, () ->
@@ -227,6 +229,26 @@ public class TierRecovery {
         recoverLowestPossibleFreeChunkTiered(corruptionListener, corruption);
     }
 
+    /**
+     * Recovers the entries counter and the lowest possibly free chunk of the current tier, after
+     * {@link #recoverTier}, without querying the entries of the tier.
+     */
+    public void recoverTierCounters(
+            ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption) {
+        CompactOffHeapLinearHashTable hl = mh.h().hashLookup;
+        long hlAddr = s.tierBaseAddr;
+        long entries = 0;
+        long hlPos = 0;
+        do {
+            if (!hl.empty(hl.readEntry(hlAddr, hlPos)))
+                entries++;
+            hlPos = hl.step(hlPos);
+        } while (hlPos != 0);
+        recoverTierEntriesCounter(entries, corruptionListener, corruption);
+        recoverLowestPossibleFreeChunkTiered(corruptionListener, corruption);
+    }
+
     private void recoverTierEntriesCounter(
             long entries, ChronicleHashCorruption.Listener corruptionListener,
             ChronicleHashCorruptionImpl corruption) {
@@ -282,6 +304,20 @@ public class TierRecovery {
             return -1;
         }
 
+        if (h.storeKeyHashes) {
+            // Key bytes are the source of truth, fix the stored hash code if it is corrupted
+            long storedKeyHash = e.storedKeyHash();
+            long keyHashFromKeyBytes = khc.keyHashFromKeyBytes();
+            if (storedKeyHash != keyHashFromKeyBytes) {
+                report(corruptionListener, corruption, segmentIndex, () ->
+                        format("Stored key hash code: {}, should be from the entry key " +
+                                        "bytes: {}, entry key: {}, entry pos: {}",
+                                storedKeyHash, keyHashFromKeyBytes, e.key(), entryPos)
+                );
+                e.writeStoredKeyHash(keyHashFromKeyBytes);
+            }
+        }
+
         long keyHashCode = khc.keyHashCode();
         int segmentIndexFromKey = h.hashSplitting.segmentIndex(keyHashCode);
         if (segmentIndexFromKey < 0 || segmentIndexFromKey >= h.actualSegments) {
@@ -20,6 +20,7 @@ import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.impl.stage.entry.HashEntryStages;
 import net.openhft.chronicle.hash.impl.stage.entry.HashLookupSearch;
+import net.openhft.chronicle.hash.impl.stage.entry.KeyHashCode;
 import net.openhft.chronicle.hash.impl.stage.entry.SegmentStages;
 import net.openhft.chronicle.map.impl.VanillaChronicleMapHolder;
 import net.openhft.sg.Stage;
@@ -43,6 +44,8 @@ public abstract class KeySearch<K> {
     protected SearchState searchState = null;
     @StageRef
     VanillaChronicleMapHolder<?, ?, ?> mh;
+    @StageRef
+    KeyHashCode khc;
 
     public abstract boolean inputKeyInit();
 
@@ -68,6 +71,12 @@ public abstract class KeySearch<K> {
                 Bytes segmentBytes = s.segmentBytesForRead();
                 segmentBytes.readPosition(keySizeOffset);
                 long keySize = mh.h().keySizeMarshaller.readSize(segmentBytes);
+                if (mh.h().storeKeyHashes) {
+                    // Different full hash codes mean different keys, key bytes comparison
+                    // (and touching key bytes memory) is not needed
+                    if (segmentBytes.readLong() != khc.keyHashCode())
+                        continue;
+                }
                 long keyOffset = segmentBytes.readPosition();
                 if (!keyEquals(keySize, keyOffset))
                     continue;
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.locks;
+
+import net.openhft.chronicle.hash.ChronicleHashBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strategy of waiting for a segment lock of a Chronicle Hash, held by another thread or process.
+ * Waiting threads repeatedly try to acquire the lock, calling {@link #idle(int)} between attempts.
+ * <p>
+ * <p>Segment locks reside in the shared memory of the hash container, and the lock holder might be
+ * in another process, so it can't wake waiting threads up. Hence, waiting threads shouldn't block
+ * for long, and the time to block shouldn't exceed 1 millisecond.
+ * <p>
+ * <p>Implementations must be safe for concurrent use from multiple threads.
+ *
+ * @see ChronicleHashBuilder#lockWaitStrategy(LockWaitStrategy)
+ */
+public interface LockWaitStrategy {
+
+    /**
+     * Returns the strategy, that busy spins with {@link
+     * net.openhft.chronicle.core.threads.ThreadHints#onSpinWait()} between attempts. It provides
+     * the lowest lock handover latency, when there are fewer active threads, than processors, but
+     * waiting threads burn whole cores and could starve the lock holder otherwise. This is the
+     * default strategy.
+     *
+     * @return the busy spin strategy
+     */
+    static LockWaitStrategy busySpin() {
+        return BusySpinLockWaitStrategy.INSTANCE;
+    }
+
+    /**
+     * Returns the strategy, that busy spins for the first 1000 attempts, then calls {@link
+     * Thread#yield()} for the next 100 attempts, then parks the thread for exponentially increasing
+     * intervals, from 1 microsecond to 1 millisecond.
+     *
+     * @return the default adaptive spin, yield and park strategy
+     * @see #spinYieldPark(int, int, long, long, TimeUnit)
+     */
+    static LockWaitStrategy spinYieldPark() {
+        return SpinYieldParkLockWaitStrategy.DEFAULT;
+    }
+
+    /**
+     * Returns the strategy, that busy spins for the first {@code spins} attempts, then calls {@link
+     * Thread#yield()} for the next {@code yields} attempts, then parks the thread for
+     * exponentially increasing intervals, from {@code minPark} to {@code maxPark}. The strategy
+     * keeps the handover latency low, when the lock is held for a short time, and doesn't burn
+     * processors, when there are more waiting threads than processors, or the lock is held for a
+     * long time.
+     *
+     * @param spins    the number of attempts to busy spin before, non-negative
+     * @param yields   the number of attempts to yield before, after the spins, non-negative
+     * @param minPark  the first park interval, positive
+     * @param maxPark  the maximum park interval, not less than {@code minPark} and not greater than
+     *                 1 millisecond
+     * @param parkUnit the unit of {@code minPark} and {@code maxPark}
+     * @return the adaptive spin, yield and park strategy
+     * @throws IllegalArgumentException if some of the parameters are out of the specified bounds
+     */
+    static LockWaitStrategy spinYieldPark(
+            int spins, int yields, long minPark, long maxPark, TimeUnit parkUnit) {
+        return new SpinYieldParkLockWaitStrategy(
+                spins, yields, parkUnit.toNanos(minPark), parkUnit.toNanos(maxPark));
+    }
+
+    /**
+     * Waits before the next attempt to acquire the lock.
+     *
+     * @param failedAttempts the number of failed attempts to acquire the lock so far, starting
+     *                       from 1. Saturates at {@link Integer#MAX_VALUE}
+     */
+    void idle(int failedAttempts);
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.locks;
+
+import net.openhft.chronicle.hash.Beta;
+
+/**
+ * Segment lock contention and hold time statistics of a {@link
+ * net.openhft.chronicle.hash.ChronicleHash}. Acquisitions and contended acquisitions (those that
+ * failed the first attempt to acquire the lock and had to wait) are counted per segment, exactly,
+ * unless {@link #sharedCounters()} is {@code true}. Shared counters are stored next to the segment
+ * lock word, so they are updated only for sampled acquisitions, by {@link #samplingInterval()},
+ * i. e. they are estimates, exact only if the sampling interval is 1. Wait and hold times are measured only for a sample of acquisitions, and are aggregated per lock
+ * level in histograms with power of 2 buckets, so percentiles are reported with up to 2x
+ * precision.
+ * <p>
+ * <p>Acquisitions of a level include upgrades to this level. Wait and hold times are accumulated
+ * since the {@code ChronicleHash} instance was created (or opened), and are not persisted. Per
+ * segment counters are also local to the instance, unless {@link #sharedCounters()} is {@code
+ * true}.
+ *
+ * @see net.openhft.chronicle.hash.ChronicleHashBuilder#segmentLockStats(int, boolean)
+ * @see net.openhft.chronicle.hash.ChronicleHash#segmentLockStats()
+ */
+@Beta
+public interface SegmentLockStats {
+
+    /**
+     * Returns the number of segments of the {@code ChronicleHash}.
+     */
+    int segments();
+
+    /**
+     * Returns {@code N}, if wait and hold times are measured for every {@code N}-th acquisition on
+     * average.
+     */
+    int samplingInterval();
+
+    /**
+     * Returns {@code true} if per segment counters are stored in the segment headers of the
+     * {@code ChronicleHash}, so they include acquisitions by all processes, accessing the same
+     * persisted {@code ChronicleHash} with shared counters configured.
+     */
+    boolean sharedCounters();
+
+    /**
+     * Returns the number of segment lock acquisitions (of any level) of the segment with the
+     * given index.
+     */
+    long acquisitions(int segmentIndex);
+
+    /**
+     * Returns the number of segment lock acquisitions (of any level) of the segment with the
+     * given index, that had to wait for the lock.
+     */
+    long contendedAcquisitions(int segmentIndex);
+
+    /**
+     * Returns the number of sampled acquisitions of the given level, i. e. the number of wait time
+     * measurements.
+     */
+    long sampledAcquisitions(Level level);
+
+    /**
+     * Returns the upper bound of the given percentile of the sampled wait times for the lock of
+     * the given level, in nanoseconds.
+     *
+     * @param percentile a value in [0.0, 1.0] range, e. g. 0.99 for the 99th percentile
+     */
+    long waitNanos(Level level, double percentile);
+
+    /**
+     * Returns the longest sampled wait time for the lock of the given level, in nanoseconds.
+     */
+    long maxWaitNanos(Level level);
+
+    /**
+     * Returns the number of sampled hold times of the lock of the given level.
+     */
+    long sampledHolds(Level level);
+
+    /**
+     * Returns the upper bound of the given percentile of the sampled hold times of the lock of
+     * the given level, in nanoseconds.
+     *
+     * @param percentile a value in [0.0, 1.0] range, e. g. 0.99 for the 99th percentile
+     */
+    long holdNanos(Level level, double percentile);
+
+    /**
+     * Returns the longest sampled hold time of the lock of the given level, in nanoseconds.
+     */
+    long maxHoldNanos(Level level);
+
+    /**
+     * The level of a segment lock.
+     */
+    enum Level {
+        READ, UPDATE, WRITE
+    }
+}
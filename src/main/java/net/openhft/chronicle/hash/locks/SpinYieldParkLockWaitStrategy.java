@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.locks;
+
+import net.openhft.chronicle.core.threads.ThreadHints;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * @see LockWaitStrategy#spinYieldPark(int, int, long, long, java.util.concurrent.TimeUnit)
+ */
+final class SpinYieldParkLockWaitStrategy implements LockWaitStrategy {
+
+    private static final long MAX_PARK_NANOS = MILLISECONDS.toNanos(1);
+
+    static final SpinYieldParkLockWaitStrategy DEFAULT = new SpinYieldParkLockWaitStrategy(
+            1000, 100, MICROSECONDS.toNanos(1), MAX_PARK_NANOS);
+
+    private final int spins;
+    private final long spinsAndYields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+    /**
+     * The number of parks after which the park interval reaches {@link #maxParkNanos}
+     */
+    private final int parksToMaxPark;
+
+    SpinYieldParkLockWaitStrategy(int spins, int yields, long minParkNanos, long maxParkNanos) {
+        if (spins < 0)
+            throw new IllegalArgumentException("spins should be non-negative, " + spins + " given");
+        if (yields < 0)
+            throw new IllegalArgumentException("yields should be non-negative, " + yields + " given");
+        if (minParkNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "minPark should be positive, " + minParkNanos + " ns given");
+        }
+        if (maxParkNanos < minParkNanos || maxParkNanos > MAX_PARK_NANOS) {
+            throw new IllegalArgumentException("maxPark should be in [minPark, 1 ms] range, " +
+                    maxParkNanos + " ns given, minPark: " + minParkNanos + " ns");
+        }
+        this.spins = spins;
+        this.spinsAndYields = (long) spins + yields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        int parksToMaxPark = 1;
+        for (long park = minParkNanos; park < maxParkNanos; park *= 2) {
+            parksToMaxPark++;
+        }
+        this.parksToMaxPark = parksToMaxPark;
+    }
+
+    @Override
+    public void idle(int failedAttempts) {
+        if (failedAttempts <= spins) {
+            ThreadHints.onSpinWait();
+        } else if (failedAttempts <= spinsAndYields) {
+            Thread.yield();
+        } else {
+            long parks = failedAttempts - spinsAndYields;
+            long parkNanos = parks >= parksToMaxPark ? maxParkNanos :
+                    Math.min(maxParkNanos, minParkNanos << (parks - 1));
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LockWaitStrategy.spinYieldPark(spins=" + spins +
+                ", yields=" + (spinsAndYields - spins) + ", minPark=" + minParkNanos +
+                " ns, maxPark=" + maxParkNanos + " ns)";
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.replication;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Striped hybrid logical clock: a timestamp is the system time in milliseconds, scaled to
+ * nanoseconds, plus a logical counter in the sub-millisecond part, which makes timestamps unique
+ * and strictly increasing even when many updates happen within the same millisecond, or when the
+ * system clock moves backwards.
+ * <p>
+ * <p>Instead of a single, globally contended last timestamp, the clock keeps a last timestamp per
+ * stripe. A thread always uses the same stripe, so timestamps, returned to the same thread, are
+ * strictly increasing. Timestamps of the stripe {@code i} are always equal to {@code i} modulo the
+ * number of stripes, so timestamps, returned to different threads, never coincide.
+ */
+public final class HybridLogicalClock implements TimestampProvider {
+
+    private static final int MAX_STRIPES = 1024;
+    /**
+     * Stripe cells are 8 longs (a cache line) apart, to avoid false sharing between threads
+     */
+    private static final int CELL_STRIDE = 8;
+
+    private final LongSupplier millisecondSupplier;
+    private final int stripes;
+    /**
+     * The first cell is a padding from the array header
+     */
+    private final AtomicLongArray lastTimestamps;
+    private final AtomicLong currentTime = new AtomicLong();
+
+    /**
+     * Creates a clock with the number of stripes, equal to the number of available processors,
+     * rounded up to a power of 2, but not more than 64.
+     */
+    public HybridLogicalClock() {
+        this(Math.min(64, Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    }
+
+    /**
+     * @param stripes the number of stripes, a power of 2, not greater than 1024
+     */
+    public HybridLogicalClock(int stripes) {
+        this(stripes, System::currentTimeMillis);
+    }
+
+    HybridLogicalClock(int stripes, LongSupplier millisecondSupplier) {
+        if (stripes <= 0 || stripes > MAX_STRIPES || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes should be a power of 2 in [1, " +
+                    MAX_STRIPES + "] range, " + stripes + " given");
+        }
+        this.stripes = stripes;
+        this.millisecondSupplier = millisecondSupplier;
+        lastTimestamps = new AtomicLongArray((stripes + 1) * CELL_STRIDE);
+    }
+
+    private static int cellIndex(int stripe) {
+        return (stripe + 1) * CELL_STRIDE;
+    }
+
+    private long physicalTime() {
+        return MILLISECONDS.toNanos(millisecondSupplier.getAsLong());
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & (stripes - 1);
+    }
+
+    /**
+     * Returns the smallest timestamp of the given stripe, not less than {@code time}
+     */
+    private long timestampOfStripe(long time, int stripe) {
+        return time + ((stripe - time) & (stripes - 1));
+    }
+
+    private void raiseLastTimestamp(int stripe, long timestamp) {
+        int cellIndex = cellIndex(stripe);
+        while (true) {
+            long lastTimestamp = lastTimestamps.get(cellIndex);
+            if (lastTimestamp >= timestamp ||
+                    lastTimestamps.compareAndSet(cellIndex, lastTimestamp, timestamp)) {
+                return;
+            }
+        }
+    }
+
+    private void raiseAllLastTimestamps(long timestamp) {
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            raiseLastTimestamp(stripe, timestamp);
+        }
+    }
+
+    private long raiseCurrentTime(long time) {
+        while (true) {
+            long current = currentTime.get();
+            if (current >= time)
+                return current;
+            if (currentTime.compareAndSet(current, time))
+                return time;
+        }
+    }
+
+    @Override
+    public long nextTimestamp() {
+        int stripe = stripe();
+        int cellIndex = cellIndex(stripe);
+        long physicalTime = physicalTime();
+        while (true) {
+            long lastTimestamp = lastTimestamps.get(cellIndex);
+            long timestamp =
+                    timestampOfStripe(Math.max(lastTimestamp + 1, physicalTime), stripe);
+            // the CAS is contended only by threads, mapped to the same stripe
+            if (lastTimestamps.compareAndSet(cellIndex, lastTimestamp, timestamp))
+                return timestamp;
+        }
+    }
+
+    @Override
+    public long currentTime() {
+        long current = currentTime.get();
+        long physicalTime = physicalTime();
+        if (physicalTime <= current)
+            return current;
+        // The current time is advanced (at most once a millisecond), so all stripes should be
+        // raised before the new current time is published
+        raiseAllLastTimestamps(physicalTime - 1);
+        return raiseCurrentTime(physicalTime);
+    }
+
+    @Override
+    public void advanceTo(long timestamp) {
+        raiseAllLastTimestamps(timestamp);
+        raiseCurrentTime(timestamp + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "HybridLogicalClock{stripes=" + stripes + "}";
+    }
+}
@@ -57,7 +57,7 @@ public interface ReplicableEntry {
      * RemoteOperationContext#remoteTimestamp()}.
      *
      * @return the timestamp of the last update to this entry
-     * @see TimeProvider
+     * @see TimestampProvider
      */
     long originTimestamp();
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.hash.replication;
+
+import net.openhft.chronicle.hash.Beta;
+
+/**
+ * Counters of replication between a replicated {@link net.openhft.chronicle.hash.ChronicleHash}
+ * and a single remote node, in both directions. All counters are accumulated since the {@code
+ * ChronicleHash} instance was created (or opened), they are not persisted.
+ * <p>
+ * <p>The pending changes are counted when they are raised or dropped via this {@code
+ * ChronicleHash} instance, so if the same persisted {@code ChronicleHash} is updated from several
+ * processes, the pending changes count of each instance is an estimate.
+ */
+@Beta
+public interface ReplicationStats {
+
+    /**
+     * Returns the identifier of the remote node.
+     */
+    byte remoteIdentifier();
+
+    /**
+     * Returns the number of changed entries, not yet sent to the remote node.
+     */
+    long pendingEntries();
+
+    /**
+     * Returns the time (in the terms of the {@link TimestampProvider} of the {@code ChronicleHash})
+     * since which there are changed entries, not yet sent to the remote node, i. e. not later than
+     * the timestamp of the oldest unsent change, or 0, if there are no pending changes.
+     */
+    long oldestPendingChangeTime();
+
+    /**
+     * Returns the number of entries, sent to the remote node.
+     */
+    long sentEntries();
+
+    /**
+     * Returns the number of bytes, sent to the remote node, as reported by the replication
+     * transport.
+     */
+    long sentBytes();
+
+    /**
+     * Returns the number of entries, received from the remote node and applied.
+     */
+    long appliedEntries();
+
+    /**
+     * Returns the number of bytes, received from the remote node and applied.
+     */
+    long appliedBytes();
+
+    /**
+     * Returns the number of batches of entries, received from the remote node and applied.
+     */
+    long appliedBatches();
+
+    /**
+     * Returns the total time, spent applying entries, received from the remote node, in
+     * nanoseconds.
+     */
+    long applyNanos();
+
+    /**
+     * Returns the longest time of applying a single batch of entries, received from the remote
+     * node, in nanoseconds.
+     */
+    long maxApplyNanos();
+
+    /**
+     * Returns the difference between the current time and the latest timestamp of the entries
+     * in the last applied batch, received from the remote node, i. e. an estimate of how far
+     * behind the remote node this node is, in nanoseconds.
+     */
+    long replicationLagNanos();
+}
@@ -27,10 +27,11 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
- * {@code TimeProvider} encapsulates time measurement for {@link ChronicleHash} replication needs.
- * It is used to obtain timestamps of entry updates, and to determine, when deleted entries become
- * eligible for complete purge from the Chronicle Hash data store.
+ * {@code TimeProvider} is a global, millisecond-precision source of non-decreasing timestamps.
+ * Replicated {@link ChronicleHash}es don't use it anymore, they obtain timestamps of entry updates
+ * from their own {@link TimestampProvider}s, which don't contend on a single global variable.
  *
+ * @see TimestampProvider
  * @see ReplicableEntry#originTimestamp()
  * @see RemoteOperationContext#remoteTimestamp()
  * @see ChronicleHashBuilderPrivateAPI#removedEntryCleanupTimeout(long, TimeUnit)
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.replication;
+
+import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Source of timestamps for a replicated {@link net.openhft.chronicle.hash.ChronicleHash}: it is
+ * used to obtain timestamps of entry updates, timestamps to bootstrap remote nodes from, and to
+ * determine, when deleted entries become eligible for complete purge from the data store.
+ * <p>
+ * <p>Timestamps are assumed to be approximately wall time in nanoseconds, because they are
+ * compared with timestamps of the same entries, made on remote nodes.
+ * <p>
+ * <p>Implementations must be safe for concurrent use from multiple threads. If no provider is
+ * configured, each replicated Chronicle Hash uses its own {@link HybridLogicalClock}.
+ *
+ * @see ChronicleHashBuilderPrivateAPI#timestampProvider(TimestampProvider)
+ * @see ReplicableEntry#originTimestamp()
+ */
+public interface TimestampProvider {
+
+    /**
+     * Returns a timestamp for an entry update. The returned timestamp is strictly greater than all
+     * timestamps, returned from this method to the same thread before, and not less than all
+     * results of {@link #currentTime()} calls, which happen-before this call.
+     *
+     * @return a timestamp for an entry update
+     */
+    long nextTimestamp();
+
+    /**
+     * Returns a non-decreasing "current time", such that all timestamps returned from {@link
+     * #nextTimestamp()} calls, which happen-after this call, are not less than the returned value.
+     *
+     * @return the current time
+     */
+    long currentTime();
+
+    /**
+     * Makes all timestamps and times, returned from this provider after this call, greater than
+     * the given timestamp. Chronicle Hash calls this method when a persisted replicated hash is
+     * opened, with the high-water mark of the timestamps, issued when the hash was accessed
+     * before, to keep timestamps monotonic across restarts, even if the system clock has moved
+     * backwards since then.
+     *
+     * @param timestamp the timestamp, all future timestamps should be greater than
+     */
+    void advanceTo(long timestamp);
+
+    /**
+     * Returns system time interval (i. e. wall time interval) between two timestamps, returned
+     * from this provider, in the given time units.
+     *
+     * @param earlierTime            the timestamp, taken earlier
+     * @param laterTime              the timestamp, taken later
+     * @param systemTimeIntervalUnit the time units to return system time interval in
+     * @return wall time interval between the specified moments in the given time unit
+     */
+    default long systemTimeIntervalBetween(
+            long earlierTime, long laterTime, TimeUnit systemTimeIntervalUnit) {
+        return systemTimeIntervalUnit.convert(laterTime - earlierTime, NANOSECONDS);
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Asynchronous view of a {@link ChronicleMap}: operations are queued to worker threads and their
+ * results are provided as {@link CompletableFuture}s, so that the calling threads (e. g. event
+ * loop threads) never wait for segment locks.
+ * <p>
+ * <p>Each worker serves a group of segments: segment with index {@code i} is served by the worker
+ * {@code i % workers}. A worker takes up to {@code maxBatchSize} queued operations at once, and
+ * performs operations for the same segment under a single segment lock acquisition, via a {@link
+ * SegmentWriter}. Operations with the same key are performed in the order of submission.
+ * <p>
+ * <p>Futures are completed by the worker threads after the segment lock is released, so dependent
+ * actions, that are not {@code *Async}, are executed in the worker threads, and shouldn't block.
+ * <p>
+ * <p>Functions, passed to {@link #compute}, are called in the worker threads while the segment
+ * is locked, they shouldn't access this or the underlying map.
+ *
+ * @param <K> the key type of the map
+ * @param <V> the value type of the map
+ */
+public final class AsyncChronicleMap<K, V> implements Closeable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Workers are woken up on submission, parking with a timeout only guards against missed
+     * wake-ups
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncChronicleMap.class);
+
+    private final VanillaChronicleMap<K, V, ?> map;
+    private final int maxBatchSize;
+    private final Worker[] workers;
+    private volatile boolean closed;
+
+    public AsyncChronicleMap(@NotNull ChronicleMap<K, V> map, int workers) {
+        this(map, workers, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param map          the map to perform operations on
+     * @param workers      the number of worker threads, if greater than the number of segments of
+     *                     the map, a worker per segment is started
+     * @param maxBatchSize the maximum number of operations, taken by a worker at once
+     */
+    public AsyncChronicleMap(@NotNull ChronicleMap<K, V> map, int workers, int maxBatchSize) {
+        if (!(map instanceof VanillaChronicleMap)) {
+            throw new IllegalArgumentException(map.toIdentityString() +
+                    ": only Chronicle Maps, created by ChronicleMapBuilder, are supported");
+        }
+        checkPositive(workers, "workers");
+        checkPositive(maxBatchSize, "maxBatchSize");
+        this.map = (VanillaChronicleMap<K, V, ?>) map;
+        this.maxBatchSize = maxBatchSize;
+        //noinspection unchecked
+        this.workers = new AsyncChronicleMap.Worker[Math.min(workers, map.segments())];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker(i);
+        }
+        for (Worker worker : this.workers) {
+            worker.thread.start();
+        }
+    }
+
+    private static void checkPositive(int value, String name) {
+        if (value <= 0)
+            throw new IllegalArgumentException(name + " should be positive, " + value + " given");
+    }
+
+    /**
+     * Returns the underlying map.
+     */
+    public ChronicleMap<K, V> map() {
+        return map;
+    }
+
+    /**
+     * @see ChronicleMap#get(Object)
+     */
+    public CompletableFuture<V> get(@NotNull K key) {
+        return submit(key, false, () -> map.get(key));
+    }
+
+    /**
+     * @see ChronicleMap#put(Object, Object)
+     */
+    public CompletableFuture<V> put(@NotNull K key, @NotNull V value) {
+        return submit(key, true, () -> map.put(key, value));
+    }
+
+    /**
+     * @see ChronicleMap#putIfAbsent(Object, Object)
+     */
+    public CompletableFuture<V> putIfAbsent(@NotNull K key, @NotNull V value) {
+        return submit(key, true, () -> map.putIfAbsent(key, value));
+    }
+
+    /**
+     * @see ChronicleMap#remove(Object)
+     */
+    public CompletableFuture<V> remove(@NotNull K key) {
+        return submit(key, true, () -> map.remove(key));
+    }
+
+    /**
+     * @see ChronicleMap#compute(Object, BiFunction)
+     */
+    public CompletableFuture<V> compute(
+            @NotNull K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return submit(key, true, () -> map.compute(key, remapping));
+    }
+
+    /**
+     * Applies the function to the underlying map in the worker thread of the key's segment, under
+     * the segment lock, along with other operations on the segment. The function should access
+     * only the given key.
+     *
+     * @param key      the key, the function accesses
+     * @param function the function to apply to the map
+     * @param <R>      the result type
+     * @return the future of the result of the function
+     */
+    public <R> CompletableFuture<R> apply(
+            @NotNull K key, @NotNull Function<? super ChronicleMap<K, V>, R> function) {
+        return submit(key, true, () -> function.apply(map));
+    }
+
+    private <R> CompletableFuture<R> submit(K key, boolean write, Operation<R> operation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(closedException());
+            return future;
+        }
+        int segmentIndex;
+        try {
+            segmentIndex = map.segmentIndex(key);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return future;
+        }
+        Worker worker = workers[segmentIndex % workers.length];
+        worker.queue.offer(new Task<>(segmentIndex, write, operation, future));
+        if (worker.parked)
+            LockSupport.unpark(worker.thread);
+        // the task could be queued concurrently with close() and not taken by the worker
+        if (closed)
+            worker.failQueuedTasks();
+        return future;
+    }
+
+    private IllegalStateException closedException() {
+        return new IllegalStateException(map.toIdentityString() + ": AsyncChronicleMap is closed");
+    }
+
+    /**
+     * Stops the worker threads, after they complete the operations they have taken. Operations,
+     * that are queued, but not yet taken, are completed exceptionally. Doesn't close the
+     * underlying map.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            if (worker.thread == Thread.currentThread())
+                continue;
+            while (true) {
+                try {
+                    worker.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Worker worker : workers) {
+            worker.failQueuedTasks();
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @FunctionalInterface
+    private interface Operation<R> {
+        R perform();
+    }
+
+    private static final class Task<R> {
+        final int segmentIndex;
+        final boolean write;
+        final Operation<R> operation;
+        final CompletableFuture<R> future;
+        boolean performed;
+        R result;
+        Throwable exception;
+
+        Task(int segmentIndex, boolean write, Operation<R> operation,
+             CompletableFuture<R> future) {
+            this.segmentIndex = segmentIndex;
+            this.write = write;
+            this.operation = operation;
+            this.future = future;
+        }
+
+        void perform() {
+            performed = true;
+            try {
+                result = operation.perform();
+            } catch (Throwable t) {
+                exception = t;
+            }
+        }
+
+        void complete() {
+            if (exception != null) {
+                future.completeExceptionally(exception);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final ConcurrentLinkedQueue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        volatile boolean parked;
+
+        Worker(int index) {
+            thread = new Thread(this,
+                    "AsyncChronicleMap worker #" + index + " for " + map.toIdentityString());
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Task<?>> batch = new ArrayList<>(maxBatchSize);
+            Map<Integer, List<Task<?>>> tasksBySegment = new LinkedHashMap<>();
+            while (!closed) {
+                Task<?> task;
+                while (batch.size() < maxBatchSize && (task = queue.poll()) != null) {
+                    batch.add(task);
+                }
+                if (batch.isEmpty()) {
+                    parked = true;
+                    if (queue.isEmpty() && !closed)
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    parked = false;
+                    continue;
+                }
+                for (Task<?> t : batch) {
+                    tasksBySegment.computeIfAbsent(t.segmentIndex, s -> new ArrayList<>()).add(t);
+                }
+                for (Map.Entry<Integer, List<Task<?>>> e : tasksBySegment.entrySet()) {
+                    performSegmentTasks(e.getKey(), e.getValue());
+                }
+                for (Task<?> t : batch) {
+                    t.complete();
+                }
+                batch.clear();
+                tasksBySegment.clear();
+            }
+        }
+
+        private void performSegmentTasks(int segmentIndex, List<Task<?>> tasks) {
+            try (VanillaSegmentWriter<K, V> writer = new VanillaSegmentWriter<>(map, segmentIndex)) {
+                for (Task<?> task : tasks) {
+                    if (task.write)
+                        writer.lockForWrites();
+                    task.perform();
+                }
+            } catch (Throwable t) {
+                LOG.error(map.toIdentityString() + ": error performing operations on segment " +
+                        segmentIndex, t);
+                for (Task<?> task : tasks) {
+                    if (!task.performed)
+                        task.exception = t;
+                }
+            }
+        }
+
+        void failQueuedTasks() {
+            Task<?> task;
+            while ((task = queue.poll()) != null) {
+                task.future.completeExceptionally(closedException());
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.hash.ChronicleHash;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.SegmentLock;
+import net.openhft.chronicle.hash.impl.VanillaChronicleHash;
+
+/**
+ * Implementation of in-place atomic operations on fields of entry values, see {@link
+ * MapEntry#addAndGetLong(long, long)}.
+ */
+final class AtomicValueAccess {
+
+    private AtomicValueAccess() {
+    }
+
+    /**
+     * Returns the address of the field of the entry value, after checking that the entry's map
+     * supports in-place atomic operations, and the field is within the value and aligned.
+     */
+    static long fieldAddress(MapEntry<?, ?> entry, long offset, int fieldSize) {
+        ChronicleHash<?, ?, ?, ?> h = entry.context().hash();
+        if (h instanceof ReplicatedChronicleMap) {
+            throw new IllegalStateException(h.toIdentityString() + ": in-place atomic value " +
+                    "operations are not supported by replicated maps, because entries, updated " +
+                    "under the read lock, couldn't be marked as changed for replication");
+        }
+        if (h instanceof VanillaChronicleHash && ((VanillaChronicleHash) h).checksumEntries) {
+            throw new IllegalStateException(h.toIdentityString() + ": in-place atomic value " +
+                    "operations are not supported by maps with entry checksums, because " +
+                    "checksums couldn't be updated under the read lock. Persisted maps checksum " +
+                    "entries by default, configure ChronicleMapBuilder.checksumEntries(false)");
+        }
+        Data<?> value = entry.value();
+        long valueSize = value.size();
+        if (offset < 0 || offset + fieldSize > valueSize) {
+            throw new IllegalArgumentException(h.toIdentityString() + ": " + fieldSize +
+                    "-byte field at offset " + offset + " is out of the value of " + valueSize +
+                    " bytes");
+        }
+        long address = value.bytes().addressForRead(value.offset() + offset);
+        if ((address & (fieldSize - 1)) != 0) {
+            throw new IllegalArgumentException(h.toIdentityString() + ": " + fieldSize +
+                    "-byte field at offset " + offset + " is not aligned, configure " +
+                    "ChronicleMapBuilder.entryAndValueOffsetAlignment() to align values");
+        }
+        return address;
+    }
+
+    static long addAndGetLong(MapEntry<?, ?> entry, long offset, long delta) {
+        long address = fieldAddress(entry, offset, 8);
+        long result;
+        while (true) {
+            long value = OS.memory().readVolatileLong(address);
+            if (OS.memory().compareAndSwapLong(address, value, value + delta)) {
+                result = value + delta;
+                break;
+            }
+        }
+        incrementModificationGeneration(entry);
+        return result;
+    }
+
+    static int addAndGetInt(MapEntry<?, ?> entry, long offset, int delta) {
+        long address = fieldAddress(entry, offset, 4);
+        int result;
+        while (true) {
+            int value = OS.memory().readVolatileInt(address);
+            if (OS.memory().compareAndSwapInt(address, value, value + delta)) {
+                result = value + delta;
+                break;
+            }
+        }
+        incrementModificationGeneration(entry);
+        return result;
+    }
+
+    static boolean compareAndSwapLong(
+            MapEntry<?, ?> entry, long offset, long expected, long newValue) {
+        long address = fieldAddress(entry, offset, 8);
+        if (!OS.memory().compareAndSwapLong(address, expected, newValue))
+            return false;
+        incrementModificationGeneration(entry);
+        return true;
+    }
+
+    static boolean compareAndSwapInt(
+            MapEntry<?, ?> entry, long offset, int expected, int newValue) {
+        long address = fieldAddress(entry, offset, 4);
+        if (!OS.memory().compareAndSwapInt(address, expected, newValue))
+            return false;
+        incrementModificationGeneration(entry);
+        return true;
+    }
+
+    static long accumulateMaxLong(MapEntry<?, ?> entry, long offset, long x) {
+        long address = fieldAddress(entry, offset, 8);
+        while (true) {
+            long value = OS.memory().readVolatileLong(address);
+            if (value >= x)
+                return value;
+            if (OS.memory().compareAndSwapLong(address, value, x)) {
+                incrementModificationGeneration(entry);
+                return x;
+            }
+        }
+    }
+
+    /**
+     * The segment modification generation is incremented after the field update, so that a
+     * {@linkplain ChronicleHash#snapshotTo(java.io.File, boolean, long) snapshot} of the segment,
+     * copied concurrently with the update, is either up to date, or has a stale generation and
+     * is copied again by the next incremental snapshot. The segment write lock is not held, hence
+     * the increment is atomic.
+     */
+    private static void incrementModificationGeneration(MapEntry<?, ?> entry) {
+        MapContext<?, ?, ?> context = entry.context();
+        VanillaChronicleHash<?, ?, ?, ?> h = (VanillaChronicleHash<?, ?, ?, ?>) context.hash();
+        int segmentIndex = ((SegmentLock) context).segmentIndex();
+        h.segmentHeader.incrementModificationGenerationAtomically(
+                h.segmentHeaderAddress(segmentIndex));
+    }
+}
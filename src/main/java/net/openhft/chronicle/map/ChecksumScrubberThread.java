@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.hash.ChecksumScrubberStats;
+import net.openhft.chronicle.hash.ChronicleHashClosedException;
+import net.openhft.chronicle.hash.ChronicleHashCorruption;
+import net.openhft.chronicle.map.impl.IterationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Verifies entry checksums of a Chronicle Map in the background, walking segments and their tiers
+ * round-robin.
+ *
+ * @see ChronicleMapBuilder#checksumScrubbing(long, ChronicleHashCorruption.Listener)
+ */
+class ChecksumScrubberThread extends Thread
+        implements Closeable, ChecksumScrubberStats, ChronicleHashCorruption.Listener {
+    private static final Logger LOG = LoggerFactory.getLogger(ChecksumScrubberThread.class);
+
+    /**
+     * The number of hash lookup slots, verified during a single acquisition of a segment lock. It
+     * bounds the time for which concurrent updates of the segment are blocked.
+     */
+    private static final long SLOTS_PER_LOCK = 64;
+    /**
+     * A pass over a small or empty map shouldn't turn into a busy loop
+     */
+    private static final long MIN_SCAN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Don't store a strong ref to a map in order to avoid it's leaking, if the user forgets to
+     * close() map, the same as in {@link OldDeletedEntriesCleanupThread}.
+     */
+    private final WeakReference<VanillaChronicleMap<?, ?, ?>> mapRef;
+    private final long entriesPerSecond;
+    private final ChronicleHashCorruption.Listener corruptionListener;
+    private final ChronicleHashCorruptionImpl corruption = new ChronicleHashCorruptionImpl();
+    private final int segments;
+    private final long tierSlots;
+
+    /**
+     * This object is used to determine that this thread is parked from {@link #sleepNanos(long)},
+     * not somewhere inside ChronicleMap logic, to interrupt() selectively in {@link #close()}.
+     */
+    private final Object scrubberSleepingHandle = new Object();
+
+    private volatile boolean shutdown;
+
+    // Counters are updated only from this thread, volatile for reads from the other threads
+    private volatile long verifiedEntries;
+    private volatile long corruptions;
+    private volatile long completedScans;
+
+    // The current position of the scan
+    private int segmentIndex;
+    private int tier;
+    private long slot;
+
+    private long scanStart;
+    private long throttleStart;
+    private long entriesSinceThrottleStart;
+
+    ChecksumScrubberThread(
+            VanillaChronicleMap<?, ?, ?> map, long entriesPerSecond,
+            ChronicleHashCorruption.Listener corruptionListener) {
+        super("Checksum Scrubber Thread for " + map.toIdentityString());
+        setDaemon(true);
+        setPriority(MIN_PRIORITY);
+        this.mapRef = new WeakReference<>(map);
+        this.entriesPerSecond = entriesPerSecond;
+        this.corruptionListener = corruptionListener;
+        segments = map.segments();
+        tierSlots = map.tierHashLookupCapacity;
+    }
+
+    @Override
+    public void run() {
+        scanStart = throttleStart = System.nanoTime();
+        while (!shutdown) {
+            long verified = verifyNextSlots();
+            if (verified < 0)
+                return;
+            verifiedEntries += verified;
+            entriesSinceThrottleStart += verified;
+            long targetNanos = (long) (entriesSinceThrottleStart * 1e9 / entriesPerSecond);
+            long aheadNanos = targetNanos - (System.nanoTime() - throttleStart);
+            if (aheadNanos > 0)
+                sleepNanos(aheadNanos);
+        }
+    }
+
+    /**
+     * @return the number of verified entries, or -1 if the scrubber thread should be shut down
+     */
+    private long verifyNextSlots() {
+        VanillaChronicleMap<?, ?, ?> map = mapRef.get();
+        if (map == null)
+            return -1;
+        long verified;
+        long toSlot = Math.min(slot + SLOTS_PER_LOCK, tierSlots);
+        try (IterationContext<?, ?, ?> c = map.iterationContext()) {
+            c.initSegmentIndex(segmentIndex);
+            verified = c.verifyChecksums(tier, slot, toSlot, this, corruption);
+        } catch (ChronicleHashClosedException e) {
+            // close() is called concurrently
+            return -1;
+        }
+        if (verified < 0) {
+            // No more tiers in the segment
+            slot = 0;
+            tier = 0;
+            if (++segmentIndex == segments) {
+                segmentIndex = 0;
+                scanCompleted();
+            }
+            return 0;
+        }
+        if (toSlot == tierSlots) {
+            slot = 0;
+            tier++;
+        } else {
+            slot = toSlot;
+        }
+        return verified;
+    }
+
+    private void scanCompleted() {
+        completedScans++;
+        long scanTime = System.nanoTime() - scanStart;
+        LOG.debug("Checksum scan {} time: {} ns, total verified entries: {}",
+                completedScans, scanTime, verifiedEntries);
+        if (scanTime < MIN_SCAN_NANOS)
+            sleepNanos(MIN_SCAN_NANOS - scanTime);
+        scanStart = throttleStart = System.nanoTime();
+        entriesSinceThrottleStart = 0;
+    }
+
+    @Override
+    public void onCorruption(ChronicleHashCorruption corruption) {
+        corruptions++;
+        try {
+            corruptionListener.onCorruption(corruption);
+        } catch (RuntimeException e) {
+            // Don't let a failing listener stop scrubbing
+            LOG.error("Exception from checksum scrubbing corruption listener", e);
+        }
+    }
+
+    private void sleepNanos(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !shutdown)
+            LockSupport.parkNanos(scrubberSleepingHandle, remaining);
+    }
+
+    @Override
+    public long verifiedEntries() {
+        return verifiedEntries;
+    }
+
+    @Override
+    public long corruptions() {
+        return corruptions;
+    }
+
+    @Override
+    public long completedScans() {
+        return completedScans;
+    }
+
+    @Override
+    public void close() {
+        shutdown = true;
+        // this means blocked in sleepNanos()
+        if (LockSupport.getBlocker(this) == scrubberSleepingHandle)
+            this.interrupt(); // unblock
+    }
+}
@@ -171,6 +171,98 @@ public interface ChronicleMap<K, V> extends ConcurrentMap<K, V>,
      */
     <R> R getMapped(K key, @NotNull SerializableFunction<? super V, R> function);
 
+    /**
+     * Returns the index of the segment, the given key belongs to. Segments are indexed from 0 to
+     * {@link #segments()}{@code - 1}. The mapping of keys to segments is stable for the lifetime
+     * of the map data store, so it could be used to partition writes between threads.
+     *
+     * @param key the key to find the segment of
+     * @return the index of the segment of the key
+     * @see #segmentWriter(int)
+     */
+    int segmentIndex(@NotNull K key);
+
+    /**
+     * Returns an exclusive writer of the segment with the given index, bound to the current thread.
+     * This method blocks until no other thread or process holds the update or the write lock of
+     * the segment. See {@link SegmentWriter} for details.
+     *
+     * @param segmentIndex the index of the segment to write to
+     * @return a new writer of the segment, should be closed after use
+     * @throws IllegalArgumentException if the segment index is out of {@code [0, segments())}
+     * @see #segmentIndex(Object)
+     */
+    @NotNull
+    SegmentWriter<K, V> segmentWriter(int segmentIndex);
+
+    /**
+     * Atomically adds the given delta to the 64-bit field of the value, mapped to the given key,
+     * in-place, holding just the read lock of the segment, i. e. concurrent calls of in-place
+     * atomic operations don't exclude each other and readers. See {@link
+     * MapEntry#addAndGetLong(long, long)} for the requirements, in particular, a persisted map
+     * should be configured with {@link ChronicleMapBuilder#checksumEntries(boolean)
+     * checksumEntries(false)}.
+     * <p>
+     * <p><b>The update is lost, if it is done concurrently with a read-modify-write operation of
+     * the same value</b>, which holds the update lock, e. g. {@link #compute}, {@link #merge} or
+     * {@link #replace(Object, Object, Object)}: such operations don't exclude in-place atomic
+     * operations, see {@link MapEntry#addAndGetLong(long, long)}.
+     *
+     * @param key    the key of the present entry
+     * @param offset the offset of the field within the value, in bytes
+     * @param delta  the value to add to the field
+     * @return the updated value of the field
+     * @throws IllegalStateException if there is no entry for the key
+     */
+    long addAndGetLong(@NotNull K key, long offset, long delta);
+
+    /**
+     * Atomically adds the given delta to the 32-bit field of the value, mapped to the given key,
+     * in-place, holding just the read lock of the segment. See {@link MapEntry#addAndGetInt(long,
+     * int)} for the requirements. The update is lost, if it is done concurrently with a
+     * read-modify-write operation of the same value, e. g. {@link #compute}.
+     *
+     * @return the updated value of the field
+     * @throws IllegalStateException if there is no entry for the key
+     */
+    int addAndGetInt(@NotNull K key, long offset, int delta);
+
+    /**
+     * Atomically sets the 64-bit field of the value, mapped to the given key, to the {@code
+     * newValue}, if it is equal to the {@code expected} value, holding just the read lock of the
+     * segment. See {@link MapEntry#compareAndSwapLong(long, long, long)} for the requirements.
+     * A successful swap is lost, if it is done concurrently with a read-modify-write operation of
+     * the same value, e. g. {@link #compute}.
+     *
+     * @return {@code true} if the field is updated
+     * @throws IllegalStateException if there is no entry for the key
+     */
+    boolean compareAndSwapLong(@NotNull K key, long offset, long expected, long newValue);
+
+    /**
+     * Atomically sets the 32-bit field of the value, mapped to the given key, to the {@code
+     * newValue}, if it is equal to the {@code expected} value, holding just the read lock of the
+     * segment. See {@link MapEntry#compareAndSwapInt(long, int, int)} for the requirements.
+     * A successful swap is lost, if it is done concurrently with a read-modify-write operation of
+     * the same value, e. g. {@link #compute}.
+     *
+     * @return {@code true} if the field is updated
+     * @throws IllegalStateException if there is no entry for the key
+     */
+    boolean compareAndSwapInt(@NotNull K key, long offset, int expected, int newValue);
+
+    /**
+     * Atomically sets the 64-bit field of the value, mapped to the given key, to the given value,
+     * if it is greater than the current value of the field, holding just the read lock of the
+     * segment. See {@link MapEntry#accumulateMaxLong(long, long)} for the requirements. The
+     * update is lost, if it is done concurrently with a read-modify-write operation of the same
+     * value, e. g. {@link #compute}.
+     *
+     * @return the updated value of the field
+     * @throws IllegalStateException if there is no entry for the key
+     */
+    long accumulateMaxLong(@NotNull K key, long offset, long value);
+
     /**
      * Exports all the entries to a {@link File} storing them in JSON format, an attempt is
      * made where possible to use standard java serialisation and keep the data human readable, data
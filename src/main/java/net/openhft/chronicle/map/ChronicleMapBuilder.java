@@ -23,6 +23,7 @@ import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesMarshallable;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
 import net.openhft.chronicle.hash.ChronicleHashBuilder;
 import net.openhft.chronicle.hash.ChronicleHashCorruption;
 import net.openhft.chronicle.hash.ChronicleHashRecoveryFailedException;
@@ -31,12 +32,16 @@ import net.openhft.chronicle.hash.impl.stage.entry.ChecksumStrategy;
 import net.openhft.chronicle.hash.impl.util.CanonicalRandomAccessFiles;
 import net.openhft.chronicle.hash.impl.util.Throwables;
 import net.openhft.chronicle.hash.impl.util.math.PoissonDistribution;
+import net.openhft.chronicle.hash.locks.LockWaitStrategy;
+import net.openhft.chronicle.hash.replication.HybridLogicalClock;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import net.openhft.chronicle.hash.serialization.*;
 import net.openhft.chronicle.hash.serialization.impl.SerializationBuilder;
 import net.openhft.chronicle.map.replication.MapRemoteOperations;
 import net.openhft.chronicle.set.ChronicleSetBuilder;
 import net.openhft.chronicle.values.ValueModel;
 import net.openhft.chronicle.values.Values;
+import net.openhft.chronicle.wire.Marshallable;
 import net.openhft.chronicle.wire.TextWire;
 import net.openhft.chronicle.wire.Wire;
 import org.jetbrains.annotations.NotNull;
@@ -60,6 +65,7 @@ import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static net.openhft.chronicle.core.Maths.*;
 import static net.openhft.chronicle.hash.impl.CompactOffHeapLinearHashTable.*;
 import static net.openhft.chronicle.hash.impl.SizePrefixedBlob.*;
+import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.KEY_HASH_STORED_BYTES;
 import static net.openhft.chronicle.hash.impl.VanillaChronicleHash.throwRecoveryOrReturnIOException;
 import static net.openhft.chronicle.hash.impl.util.FileIOUtils.readFully;
 import static net.openhft.chronicle.hash.impl.util.FileIOUtils.writeFully;
@@ -121,6 +127,11 @@ import static net.openhft.chronicle.map.VanillaChronicleMap.alignAddr;
  * <li>{@link #entryOperations(MapEntryOperations)}</li>
  * <li>{@link #mapMethods(MapMethods)}</li>
  * <li>{@link #defaultValueProvider(DefaultValueProvider)}</li>
+ * <li>{@link #checksumScrubbing(long, ChronicleHashCorruption.Listener)}</li>
+ * <li>{@link #lockWaitStrategy(LockWaitStrategy)}</li>
+ * <li>{@link #segmentLockStats(int, boolean)}</li>
+ * <li>{@link #recoverLocksOfDeadProcesses(long, TimeUnit, ChronicleHashCorruption.Listener)}</li>
+ * <li>{@link #contextPool(int)}</li>
  * </ul>
  *
  * @param <K> key type of the maps, produced by this builder
@@ -172,11 +183,18 @@ public final class ChronicleMapBuilder<K, V> implements
      */
     long cleanupTimeout = 1;
     TimeUnit cleanupTimeoutUnit = TimeUnit.MINUTES;
+    long cleanupEntriesPerSecond = 0;
     boolean cleanupRemovedEntries = true;
+    /**
+     * {@code null} means a separate {@link HybridLogicalClock} for each map
+     */
+    TimestampProvider timestampProvider = null;
     //////////////////////////////
     // Configuration fields
     DefaultValueProvider<K, V> defaultValueProvider = DefaultSpi.defaultValueProvider();
     byte replicationIdentifier = -1;
+    boolean replicationChangeSummaries = false;
+    boolean replicationStatsMBeans = false;
     MapMethods<K, V, ?> methods = DefaultSpi.mapMethods();
     MapEntryOperations<K, V, ?> entryOperations = mapEntryOperations();
     MapRemoteOperations<K, V, ?> remoteOperations = mapRemoteOperations();
@@ -206,6 +224,27 @@ public final class ChronicleMapBuilder<K, V> implements
     private double nonTieredSegmentsPercentile = 0.99999;
     private boolean aligned64BitMemoryOperationsAtomic = OS.is64Bit();
     private ChecksumEntries checksumEntries = ChecksumEntries.IF_PERSISTED;
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.XX_HASH;
+    private long checksumScrubbingEntriesPerSecond = 0;
+    private ChronicleHashCorruption.Listener checksumScrubbingCorruptionListener;
+    LockWaitStrategy lockWaitStrategy = LockWaitStrategy.busySpin();
+    /**
+     * 0 if segment lock stats are not collected
+     */
+    int segmentLockStatsSamplingInterval = 0;
+    boolean segmentLockStatsSharedCounters = false;
+    /**
+     * 0 if locks of dead processes are not taken over
+     */
+    long deadLockHolderCheckIntervalNanos = 0;
+    ChronicleHashCorruption.Listener deadLockHolderCorruptionListener;
+    /**
+     * 0 if contexts are stored in thread locals
+     */
+    int maxIdleContexts = 0;
+    private LongHashFunction keyHashFunction = LongHashFunction.xx_r39();
+    private boolean storeKeyHashes = false;
+    private boolean fairSegmentLocks = false;
     private boolean putReturnsNull = false;
     private boolean removeReturnsNull = false;
     private boolean replicated;
@@ -746,6 +785,8 @@ public final class ChronicleMapBuilder<K, V> implements
         double keySize = averageKeySize();
         size += averageSizeStoringLength(keyBuilder, keySize);
         size += keySize;
+        if (storeKeyHashes)
+            size += KEY_HASH_STORED_BYTES;
         if (replicated)
             size += ReplicatedChronicleMap.ADDITIONAL_ENTRY_BYTES;
         if (checksumEntries())
@@ -1333,6 +1374,9 @@ public final class ChronicleMapBuilder<K, V> implements
                 ", entries=" + entries() +
                 ", putReturnsNull=" + putReturnsNull() +
                 ", removeReturnsNull=" + removeReturnsNull() +
+                ", keyHashFunction=" + keyHashFunction +
+                ", storeKeyHashes=" + storeKeyHashes +
+                ", fairSegmentLocks=" + fairSegmentLocks +
                 ", keyBuilder=" + keyBuilder +
                 ", valueBuilder=" + valueBuilder +
                 '}';
@@ -1360,6 +1404,21 @@ public final class ChronicleMapBuilder<K, V> implements
         return this;
     }
 
+    ChronicleMapBuilder<K, V> removedEntryCleanupRate(long entriesPerSecond) {
+        if (entriesPerSecond < 0) {
+            throw new IllegalArgumentException("entriesPerSecond should be non-negative, " +
+                    entriesPerSecond + " given");
+        }
+        cleanupEntriesPerSecond = entriesPerSecond;
+        return this;
+    }
+
+    ChronicleMapBuilder<K, V> timestampProvider(TimestampProvider timestampProvider) {
+        Objects.requireNonNull(timestampProvider);
+        this.timestampProvider = timestampProvider;
+        return this;
+    }
+
     ChronicleMapBuilder<K, V> cleanupRemovedEntries(boolean cleanupRemovedEntries) {
         this.cleanupRemovedEntries = cleanupRemovedEntries;
         return this;
@@ -1407,6 +1466,43 @@ public final class ChronicleMapBuilder<K, V> implements
         return this;
     }
 
+    @Override
+    public ChronicleMapBuilder<K, V> keyHashFunction(@NotNull LongHashFunction keyHashFunction) {
+        Objects.requireNonNull(keyHashFunction);
+        if (keyHashFunction != LongHashFunction.xx_r39() &&
+                !(keyHashFunction instanceof Marshallable)) {
+            throw new IllegalArgumentException("Key hash function " + keyHashFunction + " should " +
+                    "implement " + Marshallable.class.getName() + " to be stored in the " +
+                    "Chronicle Map's header");
+        }
+        this.keyHashFunction = keyHashFunction;
+        return this;
+    }
+
+    LongHashFunction keyHashFunction() {
+        return keyHashFunction;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> storeKeyHashes(boolean storeKeyHashes) {
+        this.storeKeyHashes = storeKeyHashes;
+        return this;
+    }
+
+    boolean storeKeyHashes() {
+        return storeKeyHashes;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> fairSegmentLocks(boolean fairSegmentLocks) {
+        this.fairSegmentLocks = fairSegmentLocks;
+        return this;
+    }
+
+    boolean fairSegmentLocks() {
+        return fairSegmentLocks;
+    }
+
     @Override
     public ChronicleMapBuilder<K, V> aligned64BitMemoryOperationsAtomic(
             boolean aligned64BitMemoryOperationsAtomic) {
@@ -1433,6 +1529,70 @@ public final class ChronicleMapBuilder<K, V> implements
         }
     }
 
+    @Override
+    public ChronicleMapBuilder<K, V> checksumAlgorithm(
+            @NotNull ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = Objects.requireNonNull(checksumAlgorithm);
+        return this;
+    }
+
+    ChecksumAlgorithm checksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> checksumScrubbing(
+            long entriesPerSecond, @NotNull ChronicleHashCorruption.Listener corruptionListener) {
+        if (entriesPerSecond <= 0) {
+            throw new IllegalArgumentException("entriesPerSecond should be positive, " +
+                    entriesPerSecond + " given");
+        }
+        this.checksumScrubbingEntriesPerSecond = entriesPerSecond;
+        this.checksumScrubbingCorruptionListener = Objects.requireNonNull(corruptionListener);
+        return this;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> lockWaitStrategy(@NotNull LockWaitStrategy lockWaitStrategy) {
+        this.lockWaitStrategy = Objects.requireNonNull(lockWaitStrategy);
+        return this;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> segmentLockStats(
+            int samplingInterval, boolean sharedCounters) {
+        if (samplingInterval <= 0) {
+            throw new IllegalArgumentException("samplingInterval should be positive, " +
+                    samplingInterval + " given");
+        }
+        this.segmentLockStatsSamplingInterval = samplingInterval;
+        this.segmentLockStatsSharedCounters = sharedCounters;
+        return this;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> recoverLocksOfDeadProcesses(
+            long checkAfter, TimeUnit unit,
+            @NotNull ChronicleHashCorruption.Listener corruptionListener) {
+        if (checkAfter <= 0) {
+            throw new IllegalArgumentException("checkAfter should be positive, " +
+                    checkAfter + " given");
+        }
+        this.deadLockHolderCheckIntervalNanos = unit.toNanos(checkAfter);
+        this.deadLockHolderCorruptionListener = Objects.requireNonNull(corruptionListener);
+        return this;
+    }
+
+    @Override
+    public ChronicleMapBuilder<K, V> contextPool(int maxIdleContexts) {
+        if (maxIdleContexts <= 0) {
+            throw new IllegalArgumentException("maxIdleContexts should be positive, " +
+                    maxIdleContexts + " given");
+        }
+        this.maxIdleContexts = maxIdleContexts;
+        return this;
+    }
+
     boolean aligned64BitMemoryOperationsAtomic() {
         return aligned64BitMemoryOperationsAtomic;
     }
@@ -1551,6 +1711,45 @@ public final class ChronicleMapBuilder<K, V> implements
         return this;
     }
 
+    /**
+     * Configures whether replicated maps, created by this builder, should maintain hierarchical
+     * summaries of the changes, not yet replicated to each remote node: a bit per segment tier,
+     * which has changed entries, and a bit per 64 such bits. Polling for changes then skips all
+     * clean tiers at once, so that its cost is proportional to the number of changes rather than
+     * to the size of the map. Maintaining summaries costs an extra atomic operation per update,
+     * when the tier has no pending changes for some remote node yet.
+     * <p>
+     * <p>This configuration changes the memory layout, so it is stored in the header of persisted
+     * maps and cannot be changed for an existing map. By default summaries are not maintained.
+     *
+     * @param replicationChangeSummaries if summaries of changes should be maintained
+     * @return this builder back
+     * @see Replica.ModificationIterator
+     */
+    public ChronicleMapBuilder<K, V> replicationChangeSummaries(
+            boolean replicationChangeSummaries) {
+        this.replicationChangeSummaries = replicationChangeSummaries;
+        return this;
+    }
+
+    /**
+     * Configures whether replicated maps, created by this builder, should register {@link
+     * ReplicationStatsMXBean}s with the platform MBean server, one per remote node, under {@code
+     * net.openhft.chronicle.map:type=ReplicationStats,map=<map identity>,remote=<identifier>}
+     * names. The same stats are always available via {@link
+     * ReplicatedChronicleMap#replicationStats(byte)}. By default MBeans are not registered.
+     * <p>
+     * <p>This configuration is not stored in the header of persisted maps, it applies only to the
+     * instances, created by this builder.
+     *
+     * @param replicationStatsMBeans if replication stats MBeans should be registered
+     * @return this builder back
+     */
+    public ChronicleMapBuilder<K, V> replicationStatsMBeans(boolean replicationStatsMBeans) {
+        this.replicationStatsMBeans = replicationStatsMBeans;
+        return this;
+    }
+
     public ChronicleMapBuilder<K, V> replicatedMapClassName(final String replicatedMapClassName) {
         this.replicatedMapClassName = replicatedMapClassName;
         return this;
@@ -1695,6 +1894,7 @@ public final class ChronicleMapBuilder<K, V> implements
 
     private void prepareMapPublication(VanillaChronicleMap map) throws IOException {
         establishReplication(map);
+        establishChecksumScrubbing(map);
         map.setResourcesName();
         map.registerCleaner();
         // Ensure safe publication of the ChronicleMap
@@ -1911,6 +2111,9 @@ public final class ChronicleMapBuilder<K, V> implements
             VanillaChronicleMap<K, V, ?> map) {
         if (map instanceof ReplicatedChronicleMap) {
             ReplicatedChronicleMap result = (ReplicatedChronicleMap) map;
+            result.advanceTimestampsToPersistedLease();
+            if (replicationStatsMBeans)
+                result.registerReplicationStatsMBeans();
             if (cleanupRemovedEntries)
                 establishCleanupThread(result);
         }
@@ -1922,6 +2125,20 @@ public final class ChronicleMapBuilder<K, V> implements
         cleanupThread.start();
     }
 
+    private void establishChecksumScrubbing(VanillaChronicleMap<K, V, ?> map) {
+        if (checksumScrubbingEntriesPerSecond == 0)
+            return;
+        if (!map.checksumEntries) {
+            throw new IllegalStateException(map.toIdentityString() + ": checksum scrubbing " +
+                    "is configured, but entry checksums are not stored");
+        }
+        ChecksumScrubberThread scrubberThread = new ChecksumScrubberThread(
+                map, checksumScrubbingEntriesPerSecond, checksumScrubbingCorruptionListener);
+        map.checksumScrubberStats = scrubberThread;
+        map.addCloseable(scrubberThread);
+        scrubberThread.start();
+    }
+
     /**
      * Inject your SPI code around basic {@code ChronicleMap}'s operations with entries:
      * removing entries, replacing entries' value and inserting new entries.
@@ -16,7 +16,10 @@
 
 package net.openhft.chronicle.map;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
 import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import net.openhft.chronicle.hash.serialization.impl.SerializationBuilder;
 import net.openhft.chronicle.map.replication.MapRemoteOperations;
 
@@ -96,11 +99,36 @@ class ChronicleMapBuilderPrivateAPI<K, V>
         return b.checksumEntries();
     }
 
+    @Override
+    public ChecksumAlgorithm checksumAlgorithm() {
+        return b.checksumAlgorithm();
+    }
+
+    @Override
+    public LongHashFunction keyHashFunction() {
+        return b.keyHashFunction();
+    }
+
+    @Override
+    public boolean storeKeyHashes() {
+        return b.storeKeyHashes();
+    }
+
+    @Override
+    public boolean fairSegmentLocks() {
+        return b.fairSegmentLocks();
+    }
+
     @Override
     public void replication(byte identifier) {
         b.replication(identifier);
     }
 
+    @Override
+    public void replicationChangeSummaries(boolean replicationChangeSummaries) {
+        b.replicationChangeSummaries(replicationChangeSummaries);
+    }
+
     @Override
     public void cleanupRemovedEntries(boolean cleanupRemovedEntries) {
         b.cleanupRemovedEntries(cleanupRemovedEntries);
@@ -111,6 +139,16 @@ class ChronicleMapBuilderPrivateAPI<K, V>
         b.removedEntryCleanupTimeout(removedEntryCleanupTimeout, unit);
     }
 
+    @Override
+    public void removedEntryCleanupRate(long entriesPerSecond) {
+        b.removedEntryCleanupRate(entriesPerSecond);
+    }
+
+    @Override
+    public void timestampProvider(TimestampProvider timestampProvider) {
+        b.timestampProvider(timestampProvider);
+    }
+
     @Override
     public void remoteOperations(MapRemoteOperations<K, V, ?> remoteOperations) {
         b.remoteOperations(remoteOperations);
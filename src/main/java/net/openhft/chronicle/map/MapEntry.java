@@ -16,6 +16,8 @@
 
 package net.openhft.chronicle.map;
 
+import net.openhft.chronicle.bytes.RandomDataInput;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.HashEntry;
 import org.jetbrains.annotations.NotNull;
@@ -60,4 +62,116 @@ public interface MapEntry<K, V> extends HashEntry<K> {
      */
     @Override
     void doRemove();
+
+    /**
+     * Overwrites {@code length} bytes of the entry's {@linkplain #value() value}, starting from
+     * {@code offsetInValue}, with the bytes of the given {@code source}, starting from {@code
+     * sourceOffset}, in-place, and updates the entry checksum, if checksums are {@linkplain
+     * ChronicleMapBuilder#checksumEntries(boolean) stored}. If {@link ChecksumAlgorithm#CRC32C} is
+     * {@linkplain ChronicleMapBuilder#checksumAlgorithm(ChecksumAlgorithm) configured}, the
+     * checksum is updated incrementally, with the cost proportional to {@code length} rather than
+     * to the entry size. The value size is not changed.
+     * <p>
+     * <p>Unlike {@link #doReplaceValue(Data)}, this method bypasses {@link MapEntryOperations},
+     * and changes are not raised for replication by itself.
+     *
+     * @param offsetInValue the offset of the first overwritten byte within the value
+     * @param source        the bytes to write
+     * @param sourceOffset  the offset of the first byte to write in the {@code source}
+     * @param length        the number of bytes to write
+     * @throws IndexOutOfBoundsException if the written range is out of the value bounds
+     * @throws RuntimeException          if the context of this entry is locked improperly, e. g. on
+     *                                   the {@linkplain MapQueryContext#readLock() read} level,
+     *                                   that is not upgradable to the {@linkplain
+     *                                   MapQueryContext#updateLock() update} level.
+     */
+    void writeValueBytes(
+            long offsetInValue, RandomDataInput source, long sourceOffset, long length);
+
+    /**
+     * Atomically adds the given delta to the 64-bit field of the {@linkplain #value() value},
+     * in-place, with a hardware atomic operation. The field could be updated concurrently by this
+     * method, called in other threads and processes, holding just the read lock of the segment,
+     * i. e. the context of this entry should hold at least the read lock. The field should be
+     * aligned by 8 bytes in memory, see {@link
+     * ChronicleMapBuilder#entryAndValueOffsetAlignment(int)}.
+     * <p>
+     * <p>In-place atomic operations are not supported by replicated maps and maps with
+     * {@linkplain ChronicleMapBuilder#checksumEntries(boolean) entry checksums}, because updates
+     * under the read lock couldn't be replicated and checksummed. <b>Persisted maps checksum
+     * entries by default</b>, so a map, persisted to a file, should be configured with {@code
+     * checksumEntries(false)} to use in-place atomic operations.
+     * <p>
+     * <p><b>In-place atomic operations are atomic only with respect to each other.</b> Operations,
+     * which read the value and then write a new value under the update lock, such as {@link
+     * ChronicleMap#compute}, {@link ChronicleMap#merge}, {@link ChronicleMap#replace(Object,
+     * Object, Object)}, {@link #doReplaceValue(Data)} and merges of {@link
+     * net.openhft.chronicle.map.replication.ConflictFreeRemoteOperations}, don't exclude them, so
+     * an in-place update of the value between the read and the write of such an operation is lost.
+     * Values, updated in-place, should not be updated by such operations concurrently.
+     * <p>
+     * <p>An update increments the modification generation of the segment, so it is picked up by
+     * the next {@linkplain net.openhft.chronicle.hash.ChronicleHash#snapshotTo(java.io.File,
+     * boolean, long) incremental snapshot}.
+     *
+     * @param offset the offset of the field within the value, in bytes
+     * @param delta  the value to add to the field
+     * @return the updated value of the field
+     * @throws IllegalArgumentException if the field is out of the value or not aligned
+     * @throws IllegalStateException    if the map doesn't support in-place atomic operations
+     */
+    default long addAndGetLong(long offset, long delta) {
+        return AtomicValueAccess.addAndGetLong(this, offset, delta);
+    }
+
+    /**
+     * Atomically adds the given delta to the 32-bit field of the {@linkplain #value() value}, the
+     * same as {@link #addAndGetLong(long, long)} for 64-bit fields. The field should be aligned by
+     * 4 bytes in memory. Like {@link #addAndGetLong(long, long)}, it could be lost, if done
+     * concurrently with a read-modify-write operation under the update lock, e. g. {@link
+     * ChronicleMap#compute}.
+     *
+     * @return the updated value of the field
+     */
+    default int addAndGetInt(long offset, int delta) {
+        return AtomicValueAccess.addAndGetInt(this, offset, delta);
+    }
+
+    /**
+     * Atomically sets the 64-bit field of the {@linkplain #value() value} to the {@code newValue},
+     * if it is equal to the {@code expected} value. See {@link #addAndGetLong(long, long)} for
+     * the requirements. A successful swap could be lost, if done concurrently with a
+     * read-modify-write operation under the update lock, e. g. {@link ChronicleMap#compute}.
+     *
+     * @return {@code true} if the field is updated
+     */
+    default boolean compareAndSwapLong(long offset, long expected, long newValue) {
+        return AtomicValueAccess.compareAndSwapLong(this, offset, expected, newValue);
+    }
+
+    /**
+     * Atomically sets the 32-bit field of the {@linkplain #value() value} to the {@code newValue},
+     * if it is equal to the {@code expected} value. The field should be aligned by 4 bytes in
+     * memory, see {@link #addAndGetLong(long, long)} for other requirements. A successful swap
+     * could be lost, if done concurrently with a read-modify-write operation under the update
+     * lock, e. g. {@link ChronicleMap#compute}.
+     *
+     * @return {@code true} if the field is updated
+     */
+    default boolean compareAndSwapInt(long offset, int expected, int newValue) {
+        return AtomicValueAccess.compareAndSwapInt(this, offset, expected, newValue);
+    }
+
+    /**
+     * Atomically sets the 64-bit field of the {@linkplain #value() value} to the given value, if
+     * it is greater than the current value of the field. See {@link #addAndGetLong(long, long)}
+     * for the requirements. The update could be lost, if done concurrently with a
+     * read-modify-write operation under the update lock, e. g. {@link ChronicleMap#compute}.
+     *
+     * @return the updated value of the field, i. e. the maximum of the previous value and the
+     * given value
+     */
+    default long accumulateMaxLong(long offset, long value) {
+        return AtomicValueAccess.accumulateMaxLong(this, offset, value);
+    }
 }
@@ -13,65 +13,91 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package net.openhft.chronicle.map;
 
 import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.ChronicleHashClosedException;
 import net.openhft.chronicle.hash.ReplicatedHashSegmentContext;
+import net.openhft.chronicle.hash.SegmentLock;
 import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.ref.WeakReference;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.Predicate;
 
-import static net.openhft.chronicle.hash.replication.TimeProvider.currentTime;
-import static net.openhft.chronicle.hash.replication.TimeProvider.systemTimeIntervalBetween;
-
+/**
+ * Purges old removed entries of a replicated Chronicle Map in the background. Each pass visits only
+ * segments, which have removed entries, in the order of the decreasing share of removed entries
+ * among all entries of the segment. The counters of removed entries are maintained in segment
+ * tiers by removes and read without locking, so segments without removed entries are not locked
+ * at all. The number of visited entries per second could be limited, and segments, which are
+ * locked by other threads or processes, are skipped until the next pass, after a growing pause.
+ *
+ * @see ChronicleHashBuilderPrivateAPI#removedEntryCleanupRate(long)
+ */
 class OldDeletedEntriesCleanupThread extends Thread
         implements Closeable, Predicate<ReplicableEntry> {
     private static final Logger LOG = LoggerFactory.getLogger(OldDeletedEntriesCleanupThread.class);
 
+    private static final long MIN_CONTENTION_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_CONTENTION_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * The share of removed entries in a segment is scaled to this value in sort keys
+     */
+    private static final double SHARE_SCALE = 1 << 30;
+    /**
+     * Returned from {@link #cleanupSegment(int)}, if the segment is locked by another thread
+     */
+    private static final long SEGMENT_CONTENDED = -2;
+
     /**
      * Don't store a strong ref to a map in order to avoid it's leaking, if the user forgets to
      * close() map, from where this thread is shut down explicitly. Dereference map within
-     * a single method, {@link #cleanupSegment()}. The map has a chance to be collected by GC when
-     * this thread is sleeping after cleaning up a segment.
+     * single methods, {@link #orderSegments()} and {@link #cleanupSegment(int)}. The map has a
+     * chance to be collected by GC when this thread is sleeping between segments and passes.
      */
     private final WeakReference<ReplicatedChronicleMap<?, ?, ?>> mapRef;
     /**
-     * {@code cleanupTimeout}, {@link #cleanupTimeoutUnit} and {@link #segments} are parts of the
-     * cleaned Map's state, extracted in order to minimize accesses to the map.
+     * {@code cleanupTimeout}, {@link #cleanupTimeoutUnit}, {@link #timestampProvider}, {@link
+     * #entriesPerSecond} and {@link #segments} are parts of the cleaned Map's state, extracted in
+     * order to minimize accesses to the map.
      *
      * @see ChronicleHashBuilderPrivateAPI#removedEntryCleanupTimeout(long, TimeUnit)
      */
     private final long cleanupTimeout;
     private final TimeUnit cleanupTimeoutUnit;
+    private final TimestampProvider timestampProvider;
+    /**
+     * 0 means the rate is not limited
+     */
+    private final long entriesPerSecond;
     private final int segments;
 
     /**
-     * {@code segmentsPermutation} and {@link #inverseSegmentsPermutation} determine random order,
-     * in which segments are cleaned up.
+     * Sort keys of the segments to visit during the current pass: the share of removed entries in
+     * the high half, the segment index in the low half
      */
-    private final int[] segmentsPermutation;
-    private final int[] inverseSegmentsPermutation;
+    private final long[] segmentOrder;
 
     /**
-     * This object is used to determine that this thread is parked from {@link #sleepMillis(long)}
-     * or {@link #sleepNanos(long)}, not somewhere inside ChronicleMap logic, to interrupt()
-     * selectively in {@link #close()}.
+     * This object is used to determine that this thread is parked from {@link #sleepNanos(long)},
+     * not somewhere inside ChronicleMap logic, to interrupt() selectively in {@link #close()}.
      */
     private final Object cleanupSleepingHandle = new Object();
 
     private volatile boolean shutdown;
 
-    private long prevSegment0ScanStart = -1;
+    private long visitedEntries;
     private long removedCompletely;
+    private long contentionBackoffNanos = MIN_CONTENTION_BACKOFF_NANOS;
+    private long throttleStart;
+    private long entriesSinceThrottleStart;
 
     OldDeletedEntriesCleanupThread(ReplicatedChronicleMap<?, ?, ?> map) {
         super("Cleanup Thread for " + map.toIdentityString());
@@ -79,89 +105,94 @@ class OldDeletedEntriesCleanupThread extends Thread
         this.mapRef = new WeakReference<>(map);
         cleanupTimeout = map.cleanupTimeout;
         cleanupTimeoutUnit = map.cleanupTimeoutUnit;
+        timestampProvider = map.timestampProvider;
+        entriesPerSecond = map.cleanupEntriesPerSecond;
         segments = map.segments();
-
-        segmentsPermutation = randomPermutation(map.segments());
-        inverseSegmentsPermutation = inversePermutation(segmentsPermutation);
-    }
-
-    private static int[] randomPermutation(int n) {
-        int[] a = new int[n];
-        for (int i = 0; i < n; i++) {
-            a[i] = i;
-        }
-        shuffle(a);
-        return a;
-    }
-
-    // Implementing Fisher–Yates shuffle
-    private static void shuffle(int[] a) {
-        Random rnd = ThreadLocalRandom.current();
-        for (int i = a.length - 1; i > 0; i--) {
-            int index = rnd.nextInt(i + 1);
-            int e = a[index];
-            a[index] = a[i];
-            a[i] = e;
-        }
-    }
-
-    private static int[] inversePermutation(int[] permutation) {
-        int n = permutation.length;
-        int[] inverse = new int[n];
-        for (int i = 0; i < n; i++) {
-            inverse[permutation[i]] = i;
-        }
-        return inverse;
+        segmentOrder = new long[segments];
     }
 
     @Override
     public void run() {
+        long passPeriodNanos = cleanupTimeoutUnit.toNanos(cleanupTimeout);
         while (!shutdown) {
-            int nextSegmentIndex = cleanupSegment();
-            if (nextSegmentIndex == -1)
+            long passStart = throttleStart = System.nanoTime();
+            entriesSinceThrottleStart = 0;
+            int segmentsToVisit = orderSegments();
+            if (segmentsToVisit < 0)
                 return;
-            if (nextSegmentIndex == 0) {
-                long currentTime = currentTime();
-                long mapScanTime = systemTimeIntervalBetween(
-                        prevSegment0ScanStart, currentTime, cleanupTimeoutUnit);
-                LOG.debug("Old deleted entries scan time: {} {}", mapScanTime, cleanupTimeoutUnit);
-                if (mapScanTime < cleanupTimeout) {
-                    long timeToSleep = cleanupTimeoutUnit.toMillis(cleanupTimeout - mapScanTime);
-                    if (timeToSleep > 0) {
-                        sleepMillis(timeToSleep);
-                    } else {
-                        sleepNanos(cleanupTimeoutUnit.toNanos(cleanupTimeout - mapScanTime));
-                    }
+            // segmentOrder is sorted ascending, visit the densest segments first
+            for (int i = segmentsToVisit - 1; i >= 0 && !shutdown; i--) {
+                int segmentIndex = (int) segmentOrder[i];
+                long visited = cleanupSegment(segmentIndex);
+                if (visited == -1)
+                    return;
+                if (visited == SEGMENT_CONTENDED) {
+                    LOG.debug("Segment {} is locked, skipped until the next pass", segmentIndex);
+                    sleepNanos(contentionBackoffNanos);
+                    contentionBackoffNanos =
+                            Math.min(contentionBackoffNanos * 2, MAX_CONTENTION_BACKOFF_NANOS);
+                    continue;
                 }
+                contentionBackoffNanos = MIN_CONTENTION_BACKOFF_NANOS;
+                throttle(visited);
             }
+            long passTime = System.nanoTime() - passStart;
+            LOG.debug("Old deleted entries cleanup pass over {} segments time: {} ns",
+                    segmentsToVisit, passTime);
+            if (passTime < passPeriodNanos)
+                sleepNanos(passPeriodNanos - passTime);
+        }
+    }
+
+    /**
+     * Fills {@link #segmentOrder} with the sort keys of the segments, which have removed entries.
+     *
+     * @return the number of segments to visit, or -1 if cleanup thread should be shut down
+     */
+    private int orderSegments() {
+        ReplicatedChronicleMap<?, ?, ?> map = mapRef.get();
+        if (map == null)
+            return -1;
+        int segmentsToVisit = 0;
+        for (int segmentIndex = 0; segmentIndex < segments; segmentIndex++) {
+            long removed = map.segmentRemovedEntries(segmentIndex);
+            if (removed <= 0)
+                continue;
+            long entries = Math.max(removed, map.segmentEntriesIncludingRemoved(segmentIndex));
+            long share = (long) (SHARE_SCALE * removed / entries);
+            segmentOrder[segmentsToVisit++] = (share << 32) | segmentIndex;
         }
+        Arrays.sort(segmentOrder, 0, segmentsToVisit);
+        return segmentsToVisit;
     }
 
     /**
-     * @return next segment index to cleanup, or -1 if cleanup thread should be shut down
+     * @return the number of visited entries, {@link #SEGMENT_CONTENDED} if the segment is locked,
+     * or -1 if cleanup thread should be shut down
      */
-    private int cleanupSegment() {
+    private long cleanupSegment(int segmentIndex) {
         ReplicatedChronicleMap<?, ?, ?> map = mapRef.get();
         if (map == null)
             return -1;
-        int segmentIndex = map.globalMutableState().getCurrentCleanupSegmentIndex();
-        int nextSegmentIndex;
         try (MapSegmentContext<?, ?, ?> context = map.segmentContext(segmentIndex)) {
-            if (segmentIndex == 0)
-                prevSegment0ScanStart = currentTime();
+            // Don't wait for writers, the segment is cleaned up during the next pass
+            if (!((SegmentLock) context).updateLock().tryLock())
+                return SEGMENT_CONTENDED;
+            visitedEntries = 0;
             removedCompletely = 0;
             if (((ReplicatedHashSegmentContext<?, ?>) context)
                     .forEachSegmentReplicableEntryWhile(this)) {
                 LOG.debug("Removed {} old deleted entries in the segment {}",
                         removedCompletely, segmentIndex);
-                nextSegmentIndex = nextSegmentIndex(segmentIndex);
-                map.globalMutableState().setCurrentCleanupSegmentIndex(nextSegmentIndex);
-                return nextSegmentIndex;
+                return visitedEntries;
             } else {
                 // forEachWhile returned false => interrupted => shutdown = true
                 assert shutdown;
                 return -1;
             }
+        } catch (ChronicleHashClosedException e) {
+            // close() is called concurrently
+            return -1;
         }
     }
 
@@ -169,9 +200,10 @@ class OldDeletedEntriesCleanupThread extends Thread
     public boolean test(ReplicableEntry e) {
         if (shutdown)
             return false;
+        visitedEntries++;
         if (e instanceof MapAbsentEntry) {
-            long deleteTimeout = systemTimeIntervalBetween(
-                    e.originTimestamp(), currentTime(), cleanupTimeoutUnit);
+            long deleteTimeout = timestampProvider.systemTimeIntervalBetween(
+                    e.originTimestamp(), timestampProvider.currentTime(), cleanupTimeoutUnit);
             if (deleteTimeout > cleanupTimeout && !e.isChanged()) {
                 e.doRemoveCompletely();
                 removedCompletely++;
@@ -180,29 +212,28 @@ class OldDeletedEntriesCleanupThread extends Thread
         return true;
     }
 
-    private void sleepMillis(long millis) {
-        long deadline = System.currentTimeMillis() + millis;
-        while (System.currentTimeMillis() < deadline && !shutdown)
-            LockSupport.parkUntil(cleanupSleepingHandle, deadline);
+    private void throttle(long visited) {
+        if (entriesPerSecond == 0)
+            return;
+        entriesSinceThrottleStart += visited;
+        long targetNanos = (long) (entriesSinceThrottleStart * 1e9 / entriesPerSecond);
+        long aheadNanos = targetNanos - (System.nanoTime() - throttleStart);
+        if (aheadNanos > 0)
+            sleepNanos(aheadNanos);
     }
 
     private void sleepNanos(long nanos) {
         long deadline = System.nanoTime() + nanos;
-        while (System.nanoTime() < deadline && !shutdown)
-            LockSupport.parkNanos(cleanupSleepingHandle, deadline);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !shutdown)
+            LockSupport.parkNanos(cleanupSleepingHandle, remaining);
     }
 
     @Override
     public void close() {
         shutdown = true;
-        // this means blocked in sleepMillis() or sleepNanos()
+        // this means blocked in sleepNanos()
         if (LockSupport.getBlocker(this) == cleanupSleepingHandle)
             this.interrupt(); // unblock
     }
-
-    private int nextSegmentIndex(int segmentIndex) {
-        int permutationIndex = inverseSegmentsPermutation[segmentIndex];
-        int nextPermutationIndex = (permutationIndex + 1) % segments;
-        return segmentsPermutation[nextPermutationIndex];
-    }
 }
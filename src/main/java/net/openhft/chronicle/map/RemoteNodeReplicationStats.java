@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.hash.replication.ReplicationStats;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ReplicationStats} of a {@link ReplicatedChronicleMap}, updated by the {@link
+ * ReplicatedChronicleMap.ModificationIterator} for the remote node, by {@link
+ * ReplicatedChronicleMap#readExternalEntries} and by the replication transport.
+ */
+final class RemoteNodeReplicationStats implements ReplicationStats, ReplicationStatsMXBean {
+
+    private final TimestampProvider timestampProvider;
+    private final byte remoteIdentifier;
+
+    private final AtomicLong pendingEntries = new AtomicLong();
+    private volatile long oldestPendingChangeTime;
+    private final LongAdder sentEntries = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+
+    // Updated by threads, applying entries from the remote node, serially in practice
+    private final LongAdder appliedEntries = new LongAdder();
+    private final LongAdder appliedBytes = new LongAdder();
+    private final LongAdder appliedBatches = new LongAdder();
+    private final LongAdder applyNanos = new LongAdder();
+    private final AtomicLong maxApplyNanos = new AtomicLong();
+    private volatile long replicationLagNanos;
+
+    RemoteNodeReplicationStats(TimestampProvider timestampProvider, byte remoteIdentifier) {
+        this.timestampProvider = timestampProvider;
+        this.remoteIdentifier = remoteIdentifier;
+    }
+
+    void onChangeRaised() {
+        if (pendingEntries.getAndIncrement() <= 0)
+            oldestPendingChangeTime = timestampProvider.currentTime();
+    }
+
+    void onChangeDropped() {
+        pendingEntries.decrementAndGet();
+    }
+
+    void onEntrySent() {
+        sentEntries.increment();
+    }
+
+    /**
+     * Should be called by the replication transport.
+     */
+    void onBytesSent(long bytes) {
+        sentBytes.add(bytes);
+    }
+
+    void onBatchApplied(long entries, long bytes, long nanos, long latestTimestamp) {
+        appliedEntries.add(entries);
+        appliedBytes.add(bytes);
+        appliedBatches.increment();
+        applyNanos.add(nanos);
+        long max;
+        while ((max = maxApplyNanos.get()) < nanos && !maxApplyNanos.compareAndSet(max, nanos)) {
+            // retry
+        }
+        if (entries > 0)
+            replicationLagNanos = Math.max(0L, timestampProvider.currentTime() - latestTimestamp);
+    }
+
+    @Override
+    public byte remoteIdentifier() {
+        return remoteIdentifier;
+    }
+
+    @Override
+    public long pendingEntries() {
+        // could be negative transiently, or if changes are raised by other processes
+        return Math.max(0L, pendingEntries.get());
+    }
+
+    @Override
+    public long oldestPendingChangeTime() {
+        return pendingEntries() > 0 ? oldestPendingChangeTime : 0L;
+    }
+
+    @Override
+    public long sentEntries() {
+        return sentEntries.sum();
+    }
+
+    @Override
+    public long sentBytes() {
+        return sentBytes.sum();
+    }
+
+    @Override
+    public long appliedEntries() {
+        return appliedEntries.sum();
+    }
+
+    @Override
+    public long appliedBytes() {
+        return appliedBytes.sum();
+    }
+
+    @Override
+    public long appliedBatches() {
+        return appliedBatches.sum();
+    }
+
+    @Override
+    public long applyNanos() {
+        return applyNanos.sum();
+    }
+
+    @Override
+    public long maxApplyNanos() {
+        return maxApplyNanos.get();
+    }
+
+    @Override
+    public long replicationLagNanos() {
+        return replicationLagNanos;
+    }
+
+    @Override
+    public byte getRemoteIdentifier() {
+        return remoteIdentifier();
+    }
+
+    @Override
+    public long getPendingEntries() {
+        return pendingEntries();
+    }
+
+    @Override
+    public long getOldestPendingChangeTime() {
+        return oldestPendingChangeTime();
+    }
+
+    @Override
+    public long getSentEntries() {
+        return sentEntries();
+    }
+
+    @Override
+    public long getSentBytes() {
+        return sentBytes();
+    }
+
+    @Override
+    public long getAppliedEntries() {
+        return appliedEntries();
+    }
+
+    @Override
+    public long getAppliedBytes() {
+        return appliedBytes();
+    }
+
+    @Override
+    public long getAppliedBatches() {
+        return appliedBatches();
+    }
+
+    @Override
+    public long getApplyNanos() {
+        return applyNanos();
+    }
+
+    @Override
+    public long getMaxApplyNanos() {
+        return maxApplyNanos();
+    }
+
+    @Override
+    public long getReplicationLagNanos() {
+        return replicationLagNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationStats{remoteIdentifier=" + remoteIdentifier +
+                ", pendingEntries=" + pendingEntries() +
+                ", sentEntries=" + sentEntries() +
+                ", appliedEntries=" + appliedEntries() +
+                ", replicationLagNanos=" + replicationLagNanos() + "}";
+    }
+}
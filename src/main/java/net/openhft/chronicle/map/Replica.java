@@ -128,6 +128,26 @@ public interface Replica extends Closeable {
          */
         boolean nextEntry(@NotNull final Callback callback, final int chronicleId);
 
+        /**
+         * A non-blocking call that provides up to {@code maxEntries} entries that have changed to
+         * {@code callback.onEntry()}. Implementations may provide several entries under a single
+         * lock acquisition, that is cheaper than calling {@link #nextEntry(Callback, int)} for
+         * each entry.
+         *
+         * @param callback    a callback which will be called for each provided entry
+         * @param chronicleId only assigned when using chronicle channels
+         * @param maxEntries  the maximum number of entries to provide
+         * @return the number of entries, accepted by the {@code callback.onEntry()} method
+         */
+        default int nextEntries(
+                @NotNull final Callback callback, final int chronicleId, final int maxEntries) {
+            int entries = 0;
+            while (entries < maxEntries && nextEntry(callback, chronicleId)) {
+                entries++;
+            }
+            return entries;
+        }
+
         /**
          * Dirties all entries with a modification time equal to {@code fromTimeStamp} or newer and
          * origin identifier equal to the current node identifier. It means all these entries will
@@ -204,6 +224,22 @@ public interface Replica extends Closeable {
          *                             (NOT origin id of the entry)
          */
         void readExternalEntry(@NotNull Bytes source, byte remoteNodeIdentifier);
+
+        /**
+         * Reads all entries, written to the {@code source} by {@code writeExternalEntry()} one
+         * after another, like {@link #readExternalEntry(Bytes, byte)} called until the {@code
+         * source} is exhausted. Implementations may apply entries in a different order, as long
+         * as entries with the same key are applied in the order they are written.
+         *
+         * @param source               bytes to read entries from
+         * @param remoteNodeIdentifier the identifier of the remove node, from which these events
+         *                             came (NOT origin id of the entries)
+         */
+        default void readExternalEntries(@NotNull Bytes source, byte remoteNodeIdentifier) {
+            while (source.readRemaining() > 0) {
+                readExternalEntry(source, remoteNodeIdentifier);
+            }
+        }
     }
 
 }
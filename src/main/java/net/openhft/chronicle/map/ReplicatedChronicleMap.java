@@ -19,11 +19,17 @@ package net.openhft.chronicle.map;
 import net.openhft.chronicle.algo.bitset.BitSetFrame;
 import net.openhft.chronicle.algo.bitset.SingleThreadedFlatBitSetFrame;
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesUtil;
+import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.VanillaGlobalMutableState;
+import net.openhft.chronicle.hash.impl.BigSegmentHeader;
 import net.openhft.chronicle.hash.impl.TierCountersArea;
 import net.openhft.chronicle.hash.impl.stage.hash.ChainingInterface;
+import net.openhft.chronicle.hash.replication.HybridLogicalClock;
 import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.hash.replication.ReplicationStats;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import net.openhft.chronicle.map.impl.CompiledReplicatedMapIterationContext;
 import net.openhft.chronicle.map.impl.CompiledReplicatedMapQueryContext;
 import net.openhft.chronicle.map.replication.MapRemoteOperations;
@@ -31,21 +37,32 @@ import net.openhft.chronicle.values.Values;
 import net.openhft.chronicle.wire.WireIn;
 import net.openhft.chronicle.wire.WireOut;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static net.openhft.chronicle.algo.MemoryUnit.*;
 import static net.openhft.chronicle.algo.bitset.BitSetFrame.NOT_FOUND;
+import static net.openhft.chronicle.algo.bytes.Access.checkedRandomDataInputAccess;
 import static net.openhft.chronicle.algo.bytes.Access.nativeAccess;
-import static net.openhft.chronicle.hash.replication.TimeProvider.currentTime;
 
 /**
  * <h2>A Replicating Multi Master HashMap</h2> <p>Each remote hash map, mirrors its changes over to
@@ -94,16 +111,49 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
     public static final int ADDITIONAL_ENTRY_BYTES = 10;
     static final byte ENTRY_HUNK = 1;
     static final byte BOOTSTRAP_TIME_HUNK = 2;
+    static final byte VALUE_DELTA_HUNK = 3;
+    /**
+     * Hunks of entries of key-only hashes (e. g. {@link net.openhft.chronicle.set.ChronicleSet}),
+     * see {@link #writeKeyHunk}
+     */
+    static final byte KEY_HUNK = 4;
+    static final byte REMOVED_KEY_HUNK = 5;
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
     private static final Logger LOG = LoggerFactory.getLogger(ReplicatedChronicleMap.class);
+    /**
+     * Offset of the persisted lease of entry update timestamps from the start of the global mutable
+     * state area. The lease is stored in the reserved global mutable state bytes, after the global
+     * mutable state value, on a separate cache line from the global mutable state lock.
+     */
+    private static final long TIMESTAMP_LEASE_OFFSET = 64L;
+    /**
+     * After a restart, timestamps could be up to this value ahead of the system time
+     */
+    private static final long TIMESTAMP_LEASE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
     public transient boolean cleanupRemovedEntries;
     public transient long cleanupTimeout;
     public transient TimeUnit cleanupTimeoutUnit;
+    public transient long cleanupEntriesPerSecond;
     public transient MapRemoteOperations<K, V, R> remoteOperations;
+    public transient TimestampProvider timestampProvider;
     transient BitSetFrame tierModIterFrame;
     private long tierModIterBitSetSizeInBits;
     private long tierModIterBitSetOuterSize;
     private long segmentModIterBitSetsForIdentifierOuterSize;
     private long tierBulkModIterBitSetsForIdentifierOuterSize;
+    /**
+     * If {@code true}, each modification iterator maintains hierarchical summaries of the changes
+     * in its bit sets, see {@link ChronicleMapBuilder#replicationChangeSummaries(boolean)}
+     */
+    private boolean changeSummaries;
+    /**
+     * The summary of the changes for each remote identifier consists of level 1 words, a bit per
+     * level 0 word, followed by level 0 words, a bit per segment tier (first tiers and extra tiers,
+     * in the order of tier indexes)
+     */
+    private transient long changeSummaryLevel1Words;
+    private transient long changeSummaryForIdentifierOuterSize;
+    private transient long startOfChangeSummaries;
     /**
      * Default value is 0, that corresponds to "unset" identifier value (valid ids are positive)
      */
@@ -117,6 +167,23 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
     private transient AtomicReferenceArray<ModificationIterator> modificationIterators;
     private transient long startOfModificationIterators;
     private transient long[] remoteNodeCouldBootstrapFrom;
+    /**
+     * Per remote identifier: key hashes of value deltas, received from the remote node, which
+     * couldn't be applied, and for which a full value (or a delta, that could be applied) is not
+     * received yet, mapped to the timestamp of the earliest such delta. Created on the first
+     * missed delta. The bootstrap time from the remote node is capped by these timestamps, see
+     * {@link #earliestMissedValueDeltaTimestamp(byte)}.
+     */
+    private transient AtomicReferenceArray<ConcurrentHashMap<Long, Long>> missedValueDeltas;
+    private transient AtomicReferenceArray<RemoteNodeReplicationStats> replicationStats;
+    /**
+     * Object names of registered replication stats MBeans, {@code null} if they are not registered
+     */
+    private transient List<ObjectName> replicationStatsMBeanNames;
+    /**
+     * A local copy of the persisted timestamp lease, to avoid reading it on each update
+     */
+    private transient volatile long timestampLease;
 
     public ReplicatedChronicleMap(@NotNull ChronicleMapBuilder<K, V> builder) throws IOException {
         super(builder);
@@ -126,6 +193,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 computeSegmentModIterBitSetsForIdentifierOuterSize();
         tierBulkModIterBitSetsForIdentifierOuterSize =
                 computeTierBulkModIterBitSetsForIdentifierOuterSize(tiersInBulk);
+        changeSummaries = builder.replicationChangeSummaries;
+        computeChangeSummarySizes();
     }
 
     @Override
@@ -138,6 +207,9 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 wireIn.read(() -> "segmentModIterBitSetsForIdentifierOuterSize").int64();
         tierBulkModIterBitSetsForIdentifierOuterSize =
                 wireIn.read(() -> "tierBulkModIterBitSetsForIdentifierOuterSize").int64();
+        // Absent in headers of maps without change summaries
+        changeSummaries = wireIn.read(() -> "changeSummaries").bool();
+        computeChangeSummarySizes();
     }
 
     @Override
@@ -150,6 +222,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 .int64(segmentModIterBitSetsForIdentifierOuterSize);
         wireOut.write(() -> "tierBulkModIterBitSetsForIdentifierOuterSize")
                 .int64(tierBulkModIterBitSetsForIdentifierOuterSize);
+        if (changeSummaries)
+            wireOut.write(() -> "changeSummaries").bool(true);
     }
 
     @Override
@@ -174,6 +248,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
         modificationIterators = new AtomicReferenceArray<>(128);
         tierModIterFrame = new SingleThreadedFlatBitSetFrame(computeTierModIterBitSetSizeInBits());
         remoteNodeCouldBootstrapFrom = new long[128];
+        missedValueDeltas = new AtomicReferenceArray<>(128);
+        replicationStats = new AtomicReferenceArray<>(128);
     }
 
     @Override
@@ -185,12 +261,27 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
         cleanupRemovedEntries = builder.cleanupRemovedEntries;
         cleanupTimeout = builder.cleanupTimeout;
         cleanupTimeoutUnit = builder.cleanupTimeoutUnit;
+        cleanupEntriesPerSecond = builder.cleanupEntriesPerSecond;
+        timestampProvider = builder.timestampProvider != null ? builder.timestampProvider :
+                new HybridLogicalClock();
     }
 
     private long computeTierModIterBitSetSizeInBits() {
         return LONGS.align(actualChunksPerSegmentTier, BITS);
     }
 
+    private void computeChangeSummarySizes() {
+        if (!changeSummaries) {
+            changeSummaryLevel1Words = 0;
+            changeSummaryForIdentifierOuterSize = 0;
+            return;
+        }
+        long level0Words = LONGS.alignAndConvert(actualSegments + maxExtraTiers, BITS);
+        changeSummaryLevel1Words = LONGS.alignAndConvert(level0Words, BITS);
+        changeSummaryForIdentifierOuterSize = CACHE_LINES.align(
+                BYTES.convert(changeSummaryLevel1Words + level0Words, LONGS), BYTES);
+    }
+
     private long computeTierModIterBitSetOuterSize() {
         long tierModIterBitSetOuterSize = BYTES.convert(computeTierModIterBitSetSizeInBits(), BITS);
         // protect from false sharing between bit sets of adjacent segments
@@ -220,7 +311,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
 
     @Override
     public long mapHeaderInnerSize() {
-        return super.mapHeaderInnerSize() + (segmentModIterBitSetsForIdentifierOuterSize * 128);
+        return super.mapHeaderInnerSize() + (segmentModIterBitSetsForIdentifierOuterSize * 128) +
+                (changeSummaryForIdentifierOuterSize * 128);
     }
 
     @Override
@@ -233,18 +325,193 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
         return remoteNodeCouldBootstrapFrom[remoteIdentifier];
     }
 
+    /**
+     * Returns the counters of replication between this map and the given remote node.
+     *
+     * @param remoteIdentifier the identifier of the remote node
+     */
+    public ReplicationStats replicationStats(byte remoteIdentifier) {
+        return remoteNodeReplicationStats(remoteIdentifier);
+    }
+
+    /**
+     * Returns the counters of replication between this map and all remote nodes, this map has
+     * replicated with so far.
+     */
+    public List<ReplicationStats> allReplicationStats() {
+        List<ReplicationStats> allStats = new ArrayList<>();
+        for (int remoteIdentifier = 0; remoteIdentifier < 128; remoteIdentifier++) {
+            RemoteNodeReplicationStats stats = replicationStats.get(remoteIdentifier);
+            if (stats != null)
+                allStats.add(stats);
+        }
+        return allStats;
+    }
+
+    RemoteNodeReplicationStats remoteNodeReplicationStats(byte remoteIdentifier) {
+        RemoteNodeReplicationStats stats = replicationStats.get(remoteIdentifier);
+        if (stats != null)
+            return stats;
+        stats = new RemoteNodeReplicationStats(timestampProvider, remoteIdentifier);
+        if (!replicationStats.compareAndSet(remoteIdentifier, null, stats))
+            return replicationStats.get(remoteIdentifier);
+        synchronized (replicationStats) {
+            if (replicationStatsMBeanNames != null)
+                registerReplicationStatsMBean(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Registers {@link ReplicationStatsMXBean}s of this map with the platform MBean server, for
+     * all remote nodes, including those this map starts to replicate with later. MBeans are
+     * unregistered when this map is closed.
+     */
+    void registerReplicationStatsMBeans() {
+        synchronized (replicationStats) {
+            if (replicationStatsMBeanNames != null)
+                return;
+            List<ObjectName> names = new CopyOnWriteArrayList<>();
+            replicationStatsMBeanNames = names;
+            // doesn't refer to this map, not to prevent it from being cleaned
+            addCloseable(() -> {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                for (ObjectName name : names) {
+                    try {
+                        server.unregisterMBean(name);
+                    } catch (JMException e) {
+                        LOG.warn("Error unregistering " + name, e);
+                    }
+                }
+            });
+            for (int remoteIdentifier = 0; remoteIdentifier < 128; remoteIdentifier++) {
+                RemoteNodeReplicationStats stats = replicationStats.get(remoteIdentifier);
+                if (stats != null)
+                    registerReplicationStatsMBean(stats);
+            }
+        }
+    }
+
+    private void registerReplicationStatsMBean(RemoteNodeReplicationStats stats) {
+        try {
+            ObjectName name = new ObjectName("net.openhft.chronicle.map:type=ReplicationStats," +
+                    "map=" + ObjectName.quote(toIdentityString()) +
+                    ",remote=" + stats.remoteIdentifier());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(stats, ReplicationStatsMXBean.class, true), name);
+            replicationStatsMBeanNames.add(name);
+        } catch (JMException e) {
+            LOG.warn(toIdentityString() + ": error registering replication stats MBean", e);
+        }
+    }
+
     @Override
     public void onHeaderCreated() {
         // Pad modification iterators at 3 cache lines from the end of the map header,
         // to avoid false sharing with the header of the first segment
         startOfModificationIterators = super.mapHeaderInnerSize() +
                 RESERVED_GLOBAL_MUTABLE_STATE_BYTES - BYTES.convert(3, CACHE_LINES);
+        // Align change summaries, because they are updated with CAS
+        startOfChangeSummaries = CACHE_LINES.align(startOfModificationIterators +
+                segmentModIterBitSetsForIdentifierOuterSize * 128, BYTES);
+        assert globalMutableStateTotalUsedSize() <= TIMESTAMP_LEASE_OFFSET;
     }
 
     @Override
     protected void zeroOutNewlyMappedChronicleMapBytes() {
         super.zeroOutNewlyMappedChronicleMapBytes();
         bs.zeroOut(super.mapHeaderInnerSize(), this.mapHeaderInnerSize());
+        bs.writeLong(headerSize + TIMESTAMP_LEASE_OFFSET, 0L);
+    }
+
+    private long timestampLeaseAddress() {
+        return bsAddress() + headerSize + TIMESTAMP_LEASE_OFFSET;
+    }
+
+    /**
+     * Makes the timestamp provider of this map to return timestamps, greater than all timestamps,
+     * issued when this map was accessed before (possibly, in other processes).
+     */
+    void advanceTimestampsToPersistedLease() {
+        long persistedLease = OS.memory().readVolatileLong(timestampLeaseAddress());
+        if (persistedLease > 0)
+            timestampProvider.advanceTo(persistedLease);
+        timestampLease = persistedLease;
+    }
+
+    /**
+     * Returns a timestamp for an update of an entry of this map. The persisted timestamp lease is
+     * extended, if the timestamp is beyond it, before the timestamp is returned, so that it is
+     * never possible to issue timestamps, not greater than this one, after a restart.
+     *
+     * @see TimestampProvider#nextTimestamp()
+     */
+    public long nextTimestamp() {
+        long timestamp = timestampProvider.nextTimestamp();
+        if (timestamp > timestampLease)
+            extendTimestampLease(timestamp);
+        return timestamp;
+    }
+
+    /**
+     * @see TimestampProvider#currentTime()
+     */
+    public long currentTime() {
+        return timestampProvider.currentTime();
+    }
+
+    /**
+     * Returns the number of removed entries, which are retained in the given segment (in all its
+     * tiers) until they are cleaned up. The counters are read without acquiring the segment lock,
+     * so the result is an estimate, if the segment is updated concurrently.
+     *
+     * @see OldDeletedEntriesCleanupThread
+     */
+    long segmentRemovedEntries(int segmentIndex) {
+        return sumSegmentTierCounters(segmentIndex, true);
+    }
+
+    /**
+     * Returns the number of entries in the given segment, including removed entries, which are
+     * not yet cleaned up. The same as {@link #segmentRemovedEntries(int)}, it is an estimate.
+     */
+    long segmentEntriesIncludingRemoved(int segmentIndex) {
+        return sumSegmentTierCounters(segmentIndex, false);
+    }
+
+    private long sumSegmentTierCounters(int segmentIndex, boolean deleted) {
+        long segmentHeaderAddress = segmentHeaderAddress(segmentIndex);
+        BigSegmentHeader segmentHeader = BigSegmentHeader.INSTANCE;
+        long sum = deleted ? segmentHeader.deleted(segmentHeaderAddress) :
+                segmentHeader.entries(segmentHeaderAddress);
+        // Tiers are never returned to the free list, so it is safe to follow the chain without
+        // the lock. A tier, which is being linked concurrently, may still refer to the free tiers,
+        // that have zero counters and the chain end.
+        long nextTierIndex = segmentHeader.nextTierIndex(segmentHeaderAddress);
+        while (nextTierIndex != 0) {
+            long tierCountersAreaAddr = tierIndexToBaseAddr(nextTierIndex) + tierHashLookupOuterSize;
+            sum += deleted ? TierCountersArea.deleted(tierCountersAreaAddr) :
+                    TierCountersArea.entries(tierCountersAreaAddr);
+            nextTierIndex = TierCountersArea.nextTierIndex(tierCountersAreaAddr);
+        }
+        return sum;
+    }
+
+    private void extendTimestampLease(long timestamp) {
+        long leaseAddress = timestampLeaseAddress();
+        long newLease = timestamp + TIMESTAMP_LEASE_NANOS;
+        while (true) {
+            long persistedLease = OS.memory().readVolatileLong(leaseAddress);
+            if (persistedLease >= timestamp) {
+                // extended concurrently, possibly by another process
+                timestampLease = persistedLease;
+                return;
+            }
+            if (OS.memory().compareAndSwapLong(leaseAddress, persistedLease, newLease)) {
+                timestampLease = newLease;
+                return;
+            }
+        }
     }
 
     @Override
@@ -343,7 +610,7 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             long offsetToTierBitSet = segmentIndex * tierModIterBitSetOuterSize;
             for (ModificationIterator it : assignedModificationIterators) {
                 if (it.remoteIdentifier != remoteIdentifier)
-                    it.raiseChangeInSegment(offsetToTierBitSet, pos);
+                    it.raiseChangeInSegment(tierIndex, offsetToTierBitSet, pos);
             }
         } else {
             long extraTierIndex = tierIndex - 1 - actualSegments;
@@ -352,7 +619,7 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                     (extraTierIndex & (tiersInBulk - 1)) * tierModIterBitSetOuterSize;
             for (ModificationIterator it : assignedModificationIterators) {
                 if (it.remoteIdentifier != remoteIdentifier)
-                    it.raiseChangeInTierBulk(bulkIndex, offsetToTierBitSet, pos);
+                    it.raiseChangeInTierBulk(tierIndex, bulkIndex, offsetToTierBitSet, pos);
             }
         }
     }
@@ -390,7 +657,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 long newOffsetToTierBitSet = newSegmentIndex * tierModIterBitSetOuterSize;
                 for (ModificationIterator modificationIterator : assignedModificationIterators) {
                     if (modificationIterator.dropChangeInSegment(oldOffsetToTierBitSet, oldPos))
-                        modificationIterator.raiseChangeInSegment(newOffsetToTierBitSet, newPos);
+                        modificationIterator.raiseChangeInSegment(
+                                newTierIndex, newOffsetToTierBitSet, newPos);
                 }
             } else {
                 long newExtraTierIndex = newTierIndex - 1 - actualSegments;
@@ -399,8 +667,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                         (newExtraTierIndex & (tiersInBulk - 1)) * tierModIterBitSetOuterSize;
                 for (ModificationIterator modificationIterator : assignedModificationIterators) {
                     if (modificationIterator.dropChangeInSegment(oldOffsetToTierBitSet, oldPos)) {
-                        modificationIterator
-                                .raiseChangeInTierBulk(newBulkIndex, newOffsetToTierBitSet, newPos);
+                        modificationIterator.raiseChangeInTierBulk(
+                                newTierIndex, newBulkIndex, newOffsetToTierBitSet, newPos);
                     }
                 }
             }
@@ -415,7 +683,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 for (ModificationIterator modificationIterator : assignedModificationIterators) {
                     if (modificationIterator
                             .dropChangeInTierBulk(oldBulkIndex, oldOffsetToTierBitSet, oldPos)) {
-                        modificationIterator.raiseChangeInSegment(newOffsetToTierBitSet, newPos);
+                        modificationIterator.raiseChangeInSegment(
+                                newTierIndex, newOffsetToTierBitSet, newPos);
                     }
                 }
             } else {
@@ -426,8 +695,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
                 for (ModificationIterator modificationIterator : assignedModificationIterators) {
                     if (modificationIterator
                             .dropChangeInTierBulk(oldBulkIndex, oldOffsetToTierBitSet, oldPos)) {
-                        modificationIterator
-                                .raiseChangeInTierBulk(newBulkIndex, newOffsetToTierBitSet, newPos);
+                        modificationIterator.raiseChangeInTierBulk(
+                                newTierIndex, newBulkIndex, newOffsetToTierBitSet, newPos);
                     }
                 }
             }
@@ -464,10 +733,24 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
     @Override
     public void writeExternalEntry(
             ReplicableEntry entry, Bytes payload, @NotNull Bytes destination, int chronicleId) {
+        writeExternalEntry(entry, payload, destination, chronicleId, null);
+    }
+
+    /**
+     * The same as {@link #writeExternalEntry(ReplicableEntry, Bytes, Bytes, int)}, but if the
+     * {@code valueDeltaEncoder} is given, a value, that changes partially since the last time it is
+     * written with the same encoder, is written as a delta from the previous value.
+     *
+     * @param valueDeltaEncoder the state of delta-encoded replication to the remote node, the
+     *                          entry is written for, or {@code null} to always write full values
+     */
+    public void writeExternalEntry(
+            ReplicableEntry entry, Bytes payload, @NotNull Bytes destination, int chronicleId,
+            @Nullable ValueDeltaEncoder valueDeltaEncoder) {
         if (payload != null)
             writePayload(payload, destination);
         if (entry != null)
-            writeExternalEntry0(entry, destination);
+            writeExternalEntry0(entry, destination, valueDeltaEncoder);
     }
 
     private void writePayload(Bytes payload, Bytes destination) {
@@ -479,7 +762,13 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
      * This method does not set a segment lock, A segment lock should be obtained before calling
      * this method, especially when being used in a multi threaded context.
      */
-    private void writeExternalEntry0(ReplicableEntry entry, Bytes destination) {
+    private void writeExternalEntry0(
+            ReplicableEntry entry, Bytes destination, ValueDeltaEncoder valueDeltaEncoder) {
+        if (keyOnly()) {
+            writeKeyHunk(entry, destination);
+            return;
+        }
+        long hunkPosition = destination.writePosition();
         destination.writeByte(ENTRY_HUNK);
 
         destination.writeStopBit(entry.originTimestamp());
@@ -516,19 +805,94 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             }
         }
 
-        if (isDeleted)
+        if (isDeleted) {
+            if (valueDeltaEncoder != null)
+                valueDeltaEncoder.forget(key.hash(keyHashFunction));
             return;
+        }
 
         Data value = ((MapEntry) entry).value();
         valueSizeMarshaller.writeSize(destination, value.size());
-        value.writeTo(destination, destination.writePosition());
-        destination.writeSkip(value.size());
+        if (valueDeltaEncoder != null &&
+                valueDeltaEncoder.writeDelta(key.hash(keyHashFunction), value, destination)) {
+            destination.writeByte(hunkPosition, VALUE_DELTA_HUNK);
+        } else {
+            value.writeTo(destination, destination.writePosition());
+            destination.writeSkip(value.size());
+        }
 
         if (debugEnabled) {
             LOG.debug(message + "value=" + value + ")");
         }
     }
 
+    /**
+     * Returns {@code true} if values of this hash are always empty, so that entries are replicated
+     * without value framing, via {@link #writeKeyHunk}.
+     */
+    private boolean keyOnly() {
+        return valueSizeMarshaller.maxStorableSize() == 0;
+    }
+
+    /**
+     * Writes an entry of a key-only hash. The format: {@link #KEY_HUNK} or {@link
+     * #REMOVED_KEY_HUNK} byte, the origin timestamp, see {@link #writeKeyHunkTimestamp}, the origin
+     * identifier byte, the key size and the key. Compared to {@link #ENTRY_HUNK}, the deleted flag
+     * is folded into the hunk type, and the value size is not written.
+     */
+    private void writeKeyHunk(ReplicableEntry entry, Bytes destination) {
+        if (entry.originIdentifier() == 0)
+            throw new IllegalStateException("Identifier can't be 0");
+        Data key;
+        if (entry instanceof MapEntry) {
+            destination.writeByte(KEY_HUNK);
+            key = ((MapEntry) entry).key();
+        } else {
+            destination.writeByte(REMOVED_KEY_HUNK);
+            key = ((MapAbsentEntry) entry).absentKey();
+        }
+        writeKeyHunkTimestamp(destination, entry.originTimestamp());
+        destination.writeByte(entry.originIdentifier());
+        keySizeMarshaller.writeSize(destination, key.size());
+        key.writeTo(destination, destination.writePosition());
+        destination.writeSkip(key.size());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("WRITING ENTRY TO DEST -  into local-id={}, {}(key={})", identifier(),
+                    entry instanceof MapEntry ? "put" : "remove", key);
+        }
+    }
+
+    /**
+     * Timestamps of {@link TimestampProvider}s are approximately wall time in nanoseconds, usually
+     * with sub-millisecond part used as a logical counter, see {@link HybridLogicalClock}. A whole
+     * timestamp takes 9 stop bit encoded bytes, while milliseconds and the small sub-millisecond
+     * part, written separately, take 7-8 bytes. The encoding is lossless for any timestamp.
+     */
+    private static void writeKeyHunkTimestamp(Bytes destination, long timestamp) {
+        destination.writeStopBit(timestamp / NANOS_PER_MILLI);
+        destination.writeStopBit(timestamp % NANOS_PER_MILLI);
+    }
+
+    /**
+     * Reads a timestamp, written by {@link #writeKeyHunk}.
+     */
+    public static long readKeyHunkTimestamp(Bytes source) {
+        long millis = source.readStopBit();
+        return millis * NANOS_PER_MILLI + source.readStopBit();
+    }
+
+    private static boolean isKeyHunk(byte hunk) {
+        return hunk == KEY_HUNK || hunk == REMOVED_KEY_HUNK;
+    }
+
+    /**
+     * Reads the origin timestamp of an entry hunk, {@code source}'s read position should be right
+     * after the hunk type byte.
+     */
+    private static long readHunkTimestamp(byte hunk, Bytes source) {
+        return isKeyHunk(hunk) ? readKeyHunkTimestamp(source) : source.readStopBit();
+    }
+
     @Override
     ChainingInterface newQueryContext() {
         return new CompiledReplicatedMapQueryContext<>(this);
@@ -550,14 +914,359 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
      */
     @Override
     public void readExternalEntry(@NotNull Bytes source, byte remoteNodeIdentifier) {
+        long start = source.readPosition();
         byte hunk = source.readByte();
         if (hunk == BOOTSTRAP_TIME_HUNK) {
-            setRemoteNodeCouldBootstrapFrom(remoteNodeIdentifier, source.readLong());
+            setRemoteNodeCouldBootstrapFrom(remoteNodeIdentifier, Math.min(source.readLong(),
+                    earliestMissedValueDeltaTimestamp(remoteNodeIdentifier)));
         } else {
-            assert hunk == ENTRY_HUNK;
+            long startNanos = System.nanoTime();
+            long timestamp = readHunkTimestamp(hunk, source);
+            source.readPosition(start + 1);
             try (CompiledReplicatedMapQueryContext<K, V, R> remoteOpContext = mapContext()) {
-                remoteOpContext.processReplicatedEvent(remoteNodeIdentifier, source);
+                applyEntryHunk(remoteOpContext, hunk, source, remoteNodeIdentifier, null, null);
             }
+            remoteNodeReplicationStats(remoteNodeIdentifier).onBatchApplied(1,
+                    source.readPosition() - start, System.nanoTime() - startNanos, timestamp);
+        }
+    }
+
+    /**
+     * Applies an entry or a value delta hunk, {@code source}'s read position should be right
+     * after the hunk type byte. Value deltas, which couldn't be applied, are remembered until
+     * a hunk of the same key is applied, see {@link #missedValueDeltas}.
+     *
+     * @return {@code true} if the hunk is applied, {@code false} if it is a value delta, the base
+     * of which is missing, the key of the entry is written to the {@code resendRequests} in this
+     * case, if they are given
+     */
+    private boolean applyEntryHunk(
+            CompiledReplicatedMapQueryContext<K, V, R> context, byte hunk, Bytes source,
+            byte remoteNodeIdentifier, @Nullable Bytes patchBuffer,
+            @Nullable Bytes resendRequests) {
+        long hunkPosition = source.readPosition();
+        boolean applied = processEntryHunk(
+                context, hunk, source, remoteNodeIdentifier, patchBuffer, resendRequests);
+        ConcurrentHashMap<Long, Long> missed = missedValueDeltas.get(remoteNodeIdentifier);
+        if (!applied) {
+            if (missed == null) {
+                missedValueDeltas.compareAndSet(remoteNodeIdentifier, null,
+                        new ConcurrentHashMap<>());
+                missed = missedValueDeltas.get(remoteNodeIdentifier);
+            }
+            long end = source.readPosition();
+            source.readPosition(hunkPosition);
+            long timestamp = source.readStopBit();
+            missed.merge(hunkKeyHash(hunk, source, hunkPosition), timestamp, Math::min);
+            source.readPosition(end);
+        } else if (missed != null && !missed.isEmpty()) {
+            long end = source.readPosition();
+            missed.remove(hunkKeyHash(hunk, source, hunkPosition));
+            source.readPosition(end);
+        }
+        return applied;
+    }
+
+    /**
+     * Returns the hash of the key of the hunk, which starts right after the hunk type byte at the
+     * given position. The read position of the {@code source} is moved.
+     */
+    private long hunkKeyHash(byte hunk, Bytes source, long hunkPosition) {
+        source.readPosition(hunkPosition);
+        // the format is read by ReplicatedInput.processReplicatedEvent(),
+        // processReplicatedValueDelta() and processReplicatedKeyEvent()
+        readHunkTimestamp(hunk, source);
+        source.readByte(); // origin identifier
+        if (!isKeyHunk(hunk))
+            source.readBoolean(); // is deleted
+        long keySize = keySizeMarshaller.readSize(source);
+        return keyHashFunction.hash(
+                source, checkedRandomDataInputAccess(), source.readPosition(), keySize);
+    }
+
+    /**
+     * Returns the timestamp of the earliest value delta from the given remote node, which couldn't
+     * be applied, and for which the full value is not received since, or {@link Long#MAX_VALUE},
+     * if there are no such deltas. Bootstrap times from the remote node are capped by this
+     * timestamp, so that the full values are sent again after reconnection, if resend requests
+     * are not made or lost.
+     */
+    private long earliestMissedValueDeltaTimestamp(byte remoteNodeIdentifier) {
+        ConcurrentHashMap<Long, Long> missed = missedValueDeltas.get(remoteNodeIdentifier);
+        long earliest = Long.MAX_VALUE;
+        if (missed != null) {
+            for (Long timestamp : missed.values()) {
+                earliest = Math.min(earliest, timestamp);
+            }
+        }
+        return earliest;
+    }
+
+    private boolean processEntryHunk(
+            CompiledReplicatedMapQueryContext<K, V, R> context, byte hunk, Bytes source,
+            byte remoteNodeIdentifier, @Nullable Bytes patchBuffer,
+            @Nullable Bytes resendRequests) {
+        if (hunk == ENTRY_HUNK) {
+            context.processReplicatedEvent(remoteNodeIdentifier, source);
+            return true;
+        }
+        if (isKeyHunk(hunk)) {
+            context.processReplicatedKeyEvent(
+                    remoteNodeIdentifier, source, hunk == REMOVED_KEY_HUNK);
+            return true;
+        }
+        if (hunk != VALUE_DELTA_HUNK) {
+            throw new IllegalStateException(toIdentityString() +
+                    ": unknown replication hunk type: " + hunk);
+        }
+        if (patchBuffer == null)
+            patchBuffer = Bytes.elasticHeapByteBuffer(128);
+        long hunkPosition = source.readPosition();
+        if (context.processReplicatedValueDelta(remoteNodeIdentifier, source, patchBuffer))
+            return true;
+        if (resendRequests != null) {
+            long end = source.readPosition();
+            source.readPosition(hunkPosition);
+            // the format is read by ReplicatedInput.processReplicatedValueDelta()
+            source.readStopBit(); // timestamp
+            source.readByte(); // origin identifier
+            source.readBoolean(); // is deleted
+            long keySize = keySizeMarshaller.readSize(source);
+            keySizeMarshaller.writeSize(resendRequests, keySize);
+            resendRequests.write(source, source.readPosition(), keySize);
+            source.readPosition(end);
+        }
+        return false;
+    }
+
+    /**
+     * Applies resend requests, collected on the remote node by {@link #readExternalEntries(Bytes,
+     * byte, Bytes)}: the next values of the requested keys are written in full, and the current
+     * values are written again, by the modification iterator for the remote node.
+     *
+     * @param resendRequests    the resend requests
+     * @param remoteIdentifier  the identifier of the remote node, requested the values
+     * @param valueDeltaEncoder the state of delta-encoded replication to the remote node
+     */
+    public void raiseChangesForResendRequests(
+            @NotNull Bytes resendRequests, byte remoteIdentifier,
+            @Nullable ValueDeltaEncoder valueDeltaEncoder) {
+        while (resendRequests.readRemaining() > 0) {
+            long keySize = keySizeMarshaller.readSize(resendRequests);
+            long keyOffset = resendRequests.readPosition();
+            if (valueDeltaEncoder != null) {
+                valueDeltaEncoder.forget(keyHashFunction.hash(resendRequests,
+                        checkedRandomDataInputAccess(), keyOffset, keySize));
+            }
+            try (ExternalMapQueryContext<K, V, ?> q =
+                         queryContext(resendRequests, keyOffset, keySize)) {
+                q.updateLock().lock();
+                MapEntry<K, V> entry = q.entry();
+                // If the entry is removed since, the removal is replicated
+                if (entry != null)
+                    ((ReplicableEntry) entry).raiseChangedFor(remoteIdentifier);
+            }
+            resendRequests.readSkip(keySize);
+        }
+    }
+
+    /**
+     * Applies all hunks, written to the {@code source} by {@link #writeExternalEntry} one after
+     * another, with the same effect as calling {@link #readExternalEntry} for each of them.
+     * Entries are grouped by segment, and each group is applied under a single segment lock
+     * acquisition, while {@link MapRemoteOperations} still decide on each entry separately. Entries
+     * with the same key are applied in the order they are written to the {@code source}. Bootstrap
+     * time hunks are applied after all entries. Value deltas, which couldn't be applied, are not
+     * requested again, but cap the bootstrap time from the remote node, see {@link
+     * #readExternalEntries(Bytes, byte, Bytes)}.
+     */
+    @Override
+    public void readExternalEntries(@NotNull Bytes source, byte remoteNodeIdentifier) {
+        readExternalEntries(source, remoteNodeIdentifier, null);
+    }
+
+    /**
+     * The same as {@link #readExternalEntries(Bytes, byte)}, but also collects resend requests for
+     * value deltas, written by {@link #writeExternalEntry(ReplicableEntry, Bytes, Bytes, int,
+     * ValueDeltaEncoder)}, which couldn't be applied, because the current value of the key on this
+     * node is not the base of the delta. The requests should be delivered to the remote node and
+     * applied via {@link #raiseChangesForResendRequests}. If some deltas are not applied, the
+     * bootstrap time from the remote node is not moved beyond the earliest of their timestamps,
+     * in this and the following calls, until the full values of the keys are received, so that
+     * the full values are sent again after reconnection, if the requests are lost.
+     *
+     * @param resendRequests the bytes to write resend requests to, or {@code null} to not request
+     *                       full values for deltas, which couldn't be applied, in this case the
+     *                       full values are received only after reconnection
+     */
+    public void readExternalEntries(@NotNull Bytes source, byte remoteNodeIdentifier,
+                                    @Nullable Bytes resendRequests) {
+        long start = source.readPosition();
+        long startNanos = System.nanoTime();
+        long latestTimestamp = 0;
+        int entries = 0;
+        long[] segmentsAndOrders = new long[16];
+        long[] hunkPositions = new long[16];
+        long[] keyOffsets = new long[16];
+        long[] keySizes = new long[16];
+        boolean bootstrapTimeRead = false;
+        long bootstrapTime = 0;
+        while (source.readRemaining() > 0) {
+            byte hunk = source.readByte();
+            if (hunk == BOOTSTRAP_TIME_HUNK) {
+                bootstrapTime = source.readLong();
+                bootstrapTimeRead = true;
+                continue;
+            }
+            if (entries == hunkPositions.length) {
+                int newLength = entries * 2;
+                segmentsAndOrders = Arrays.copyOf(segmentsAndOrders, newLength);
+                hunkPositions = Arrays.copyOf(hunkPositions, newLength);
+                keyOffsets = Arrays.copyOf(keyOffsets, newLength);
+                keySizes = Arrays.copyOf(keySizes, newLength);
+            }
+            // points to the hunk type byte, see applyEntryHunk()
+            hunkPositions[entries] = source.readPosition() - 1;
+            // the format is read by ReplicatedInput.processReplicatedEvent(),
+            // processReplicatedValueDelta() and processReplicatedKeyEvent()
+            latestTimestamp = Math.max(latestTimestamp, readHunkTimestamp(hunk, source));
+            source.readByte(); // origin identifier
+            // the deleted flag of key hunks is the hunk type, they have no value anyway
+            boolean isDeleted = !isKeyHunk(hunk) && source.readBoolean();
+            long keySize = keySizeMarshaller.readSize(source);
+            long keyOffset = source.readPosition();
+            // The same as Data.hash() of the key, wrapped by processReplicatedEvent()
+            long keyHash = keyHashFunction.hash(
+                    source, checkedRandomDataInputAccess(), keyOffset, keySize);
+            int segmentIndex = hashSplitting.segmentIndex(keyHash);
+            // sorting by this value groups entries by segment, keeping the order within a segment
+            segmentsAndOrders[entries] = (((long) segmentIndex) << 32) | entries;
+            keyOffsets[entries] = keyOffset;
+            keySizes[entries] = keySize;
+            source.readSkip(keySize);
+            if (hunk == VALUE_DELTA_HUNK) {
+                valueSizeMarshaller.readSize(source);
+                source.readSkip(source.readInt());
+            } else if (hunk == ENTRY_HUNK) {
+                if (!isDeleted)
+                    source.readSkip(valueSizeMarshaller.readSize(source));
+            } else if (!isKeyHunk(hunk)) {
+                throw new IllegalStateException(toIdentityString() +
+                        ": unknown replication hunk type: " + hunk);
+            }
+            entries++;
+        }
+        long end = source.readPosition();
+        Arrays.sort(segmentsAndOrders, 0, entries);
+        ExternalEntriesApplication application =
+                new ExternalEntriesApplication(remoteNodeIdentifier, resendRequests);
+        try {
+            for (int i = 0; i < entries; ) {
+                i = readExternalEntriesOfSegment(source, application, entries,
+                        segmentsAndOrders, hunkPositions, keyOffsets, keySizes, i);
+            }
+        } finally {
+            source.readPosition(end);
+        }
+        if (bootstrapTimeRead) {
+            setRemoteNodeCouldBootstrapFrom(remoteNodeIdentifier, Math.min(bootstrapTime,
+                    earliestMissedValueDeltaTimestamp(remoteNodeIdentifier)));
+        }
+        remoteNodeReplicationStats(remoteNodeIdentifier).onBatchApplied(
+                entries, end - start, System.nanoTime() - startNanos, latestTimestamp);
+    }
+
+    /**
+     * The state of a {@link #readExternalEntries(Bytes, byte, Bytes)} call, shared between
+     * segments.
+     */
+    private static class ExternalEntriesApplication {
+        final byte remoteNodeIdentifier;
+        final Bytes resendRequests;
+        Bytes patchBuffer;
+
+        ExternalEntriesApplication(byte remoteNodeIdentifier, Bytes resendRequests) {
+            this.remoteNodeIdentifier = remoteNodeIdentifier;
+            this.resendRequests = resendRequests;
+        }
+    }
+
+    /**
+     * Applies the hunk at the given position, within a {@link #readExternalEntries(Bytes, byte,
+     * Bytes)} call.
+     */
+    private void applyEntryHunk(CompiledReplicatedMapQueryContext<K, V, R> context, Bytes source,
+                                long hunkPosition, ExternalEntriesApplication application) {
+        source.readPosition(hunkPosition);
+        byte hunk = source.readByte();
+        if (hunk == VALUE_DELTA_HUNK && application.patchBuffer == null)
+            application.patchBuffer = Bytes.elasticHeapByteBuffer(128);
+        applyEntryHunk(context, hunk, source, application.remoteNodeIdentifier,
+                application.patchBuffer, application.resendRequests);
+    }
+
+    /**
+     * Applies entries of the same segment, starting from {@code from}-th in the sorted {@code
+     * segmentsAndOrders}. The first entry is applied in the outer context, that holds the segment
+     * lock, while the rest are applied in nested contexts, sharing the lock with the outer.
+     *
+     * @return the index of the first entry, not applied by this call
+     */
+    private int readExternalEntriesOfSegment(
+            Bytes source, ExternalEntriesApplication application, int entries,
+            long[] segmentsAndOrders, long[] hunkPositions, long[] keyOffsets, long[] keySizes,
+            int from) {
+        int segmentIndex = (int) (segmentsAndOrders[from] >>> 32);
+        int firstOrder = (int) segmentsAndOrders[from];
+        try (CompiledReplicatedMapQueryContext<K, V, R> outerContext = mapContext()) {
+            applyEntryHunk(outerContext, source, hunkPositions[firstOrder], application);
+            // Hold the strongest lock, needed for any remote operation, so that nested contexts
+            // don't need to upgrade the lock
+            outerContext.writeLock().lock();
+            int i = from + 1;
+            for (; i < entries && (int) (segmentsAndOrders[i] >>> 32) == segmentIndex; i++) {
+                int order = (int) segmentsAndOrders[i];
+                if (keySizes[order] == keySizes[firstOrder] &&
+                        BytesUtil.bytesEqual(source, keyOffsets[order],
+                                source, keyOffsets[firstOrder], keySizes[order])) {
+                    // Nested contexts cannot access the same key as the outer context, start
+                    // a new group from this entry
+                    break;
+                }
+                try (CompiledReplicatedMapQueryContext<K, V, R> nestedContext = mapContext()) {
+                    applyEntryHunk(nestedContext, source, hunkPositions[order], application);
+                }
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Atomically raises the given bits in the word at the given address.
+     *
+     * @return {@code true} if some of the bits were not raised before
+     */
+    private static boolean setBits(long wordAddr, long bits) {
+        while (true) {
+            long word = OS.memory().readVolatileLong(wordAddr);
+            if ((word & bits) == bits)
+                return false;
+            if (OS.memory().compareAndSwapLong(wordAddr, word, word | bits))
+                return true;
+        }
+    }
+
+    /**
+     * Atomically clears the given bits in the word at the given address.
+     *
+     * @return the new value of the word
+     */
+    private static long clearBits(long wordAddr, long bits) {
+        while (true) {
+            long word = OS.memory().readVolatileLong(wordAddr);
+            long newWord = word & ~bits;
+            if (word == newWord || OS.memory().compareAndSwapLong(wordAddr, word, newWord))
+                return newWord;
         }
     }
 
@@ -602,12 +1311,25 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
         private final byte remoteIdentifier;
         private final long segmentBitSetsAddr;
         private final long offsetToBitSetsWithinATierBulk;
+        /**
+         * The address of the summary of changes for this remote identifier, if {@link
+         * #changeSummaries} is {@code true}
+         */
+        private final long changeSummaryAddr;
+        private final RemoteNodeReplicationStats stats;
 
         private ModificationNotifier modificationNotifier;
 
         private long bootstrapTimeAfterNextIterationComplete = 0L;
         private boolean somethingSentOnThisIteration = false;
 
+        // The iteration state in the summaries mode: the tier index of the "cursor" (0 if the
+        // iteration is not started yet, the other cursor fields are derived from this tier index),
+        // and if all segment locks were acquired and released after the bootstrap time for the
+        // current iteration is taken, see nextEntryPosBySummaries()
+        private long summaryCursorTierIndex;
+        private boolean segmentLocksSyncedOnThisIteration;
+
         // The iteration "cursor" consists of 4 fields:
         // 1) if segmentIndex >= 0, bulkIndex = -1, tierIndexOffsetWithinBulk = -1:
         // => we are in "first tiers" aka "segments"
@@ -630,6 +1352,7 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
 
         public ModificationIterator(byte remoteIdentifier, boolean sharedMemoryInit) {
             this.remoteIdentifier = remoteIdentifier;
+            stats = remoteNodeReplicationStats(remoteIdentifier);
             segmentBitSetsAddr = bsAddress() + startOfModificationIterators +
                     remoteIdentifier * segmentModIterBitSetsForIdentifierOuterSize;
             if (!sharedMemoryInit) {
@@ -638,6 +1361,16 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             }
             offsetToBitSetsWithinATierBulk =
                     remoteIdentifier * tierBulkModIterBitSetsForIdentifierOuterSize;
+            if (changeSummaries) {
+                changeSummaryAddr = bsAddress() + startOfChangeSummaries +
+                        remoteIdentifier * changeSummaryForIdentifierOuterSize;
+                if (!sharedMemoryInit) {
+                    nativeAccess().zeroOut(null, changeSummaryAddr,
+                            changeSummaryForIdentifierOuterSize);
+                }
+            } else {
+                changeSummaryAddr = 0L;
+            }
 
             resetCursor();
         }
@@ -649,36 +1382,156 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             entryPos = -1;
 
             tierBitSetAddr = segmentBitSetsAddr; // + tierModIterBitSetOuterSize * segmentIndex = 0
+            summaryCursorTierIndex = 0;
         }
 
         public void setModificationNotifier(@NotNull ModificationNotifier modificationNotifier) {
             this.modificationNotifier = modificationNotifier;
         }
 
-        void raiseChangeInSegment(long offsetToTierBitSet, long pos) {
-            tierModIterFrame.set(nativeAccess(), null,
-                    segmentBitSetsAddr + offsetToTierBitSet, pos);
+        void raiseChangeInSegment(long tierIndex, long offsetToTierBitSet, long pos) {
+            long bitSetAddr = segmentBitSetsAddr + offsetToTierBitSet;
+            if (!tierModIterFrame.isSet(nativeAccess(), null, bitSetAddr, pos))
+                stats.onChangeRaised();
+            tierModIterFrame.set(nativeAccess(), null, bitSetAddr, pos);
+            if (changeSummaries)
+                raiseChangeSummary(tierIndex);
             if (modificationNotifier != null)
                 modificationNotifier.onChange();
         }
 
-        void raiseChangeInTierBulk(int bulkIndex, long offsetToTierBitSet, long pos) {
+        void raiseChangeInTierBulk(
+                long tierIndex, int bulkIndex, long offsetToTierBitSet, long pos) {
             TierBulkData tierBulkData = tierBulkOffsets.get(bulkIndex);
             long bitSetAddr = bitSetsAddr(tierBulkData) + offsetToTierBitSet;
+            if (!tierModIterFrame.isSet(nativeAccess(), null, bitSetAddr, pos))
+                stats.onChangeRaised();
             tierModIterFrame.set(nativeAccess(), null, bitSetAddr, pos);
+            if (changeSummaries)
+                raiseChangeSummary(tierIndex);
             if (modificationNotifier != null)
                 modificationNotifier.onChange();
         }
 
+        private long changeSummaryLevel0WordAddr(long level0WordIndex) {
+            return changeSummaryAddr +
+                    BYTES.convert(changeSummaryLevel1Words + level0WordIndex, LONGS);
+        }
+
+        private long changeSummaryLevel1WordAddr(long level0WordIndex) {
+            return changeSummaryAddr + BYTES.convert(level0WordIndex >>> 6, LONGS);
+        }
+
+        /**
+         * Called when the segment lock is held on the update level (at least), after the bit of
+         * the change is raised.
+         */
+        private void raiseChangeSummary(long tierIndex) {
+            long tierIndexMinusOne = tierIndex - 1;
+            long level0WordIndex = tierIndexMinusOne >>> 6;
+            long level0WordAddr = changeSummaryLevel0WordAddr(level0WordIndex);
+            // Level 0 bits of the tiers of the same segment are cleared only under the same
+            // segment lock, so if the bit is already raised, it stays raised
+            if (!setBits(level0WordAddr, 1L << tierIndexMinusOne))
+                return;
+            // must follow the level 0 bit raise, see clearChangeSummary()
+            setBits(changeSummaryLevel1WordAddr(level0WordIndex), 1L << level0WordIndex);
+        }
+
+        /**
+         * Called when the segment lock is held on the update level, after it is checked that the
+         * bit set of the tier has no changes.
+         */
+        private void clearChangeSummary(long tierIndex) {
+            long tierIndexMinusOne = tierIndex - 1;
+            long level0WordIndex = tierIndexMinusOne >>> 6;
+            long level0WordAddr = changeSummaryLevel0WordAddr(level0WordIndex);
+            if (clearBits(level0WordAddr, 1L << tierIndexMinusOne) != 0L)
+                return;
+            long level1WordAddr = changeSummaryLevel1WordAddr(level0WordIndex);
+            long level1Bit = 1L << level0WordIndex;
+            clearBits(level1WordAddr, level1Bit);
+            // A change could be concurrently raised in a tier of another segment, summarized by
+            // the same level 0 word, which has observed the level 1 bit still raised. The level 1
+            // bit is cleared before the level 0 word is re-checked, and raiseChangeSummary() does
+            // the same in the reverse order, so either this or that thread raises the bit back
+            if (OS.memory().readVolatileLong(level0WordAddr) != 0L)
+                setBits(level1WordAddr, level1Bit);
+        }
+
+        /**
+         * @return the index of the next tier, not less than {@code fromTierIndex}, which summary
+         * bit is raised, or {@link BitSetFrame#NOT_FOUND}
+         */
+        private long nextChangedTier(long fromTierIndex) {
+            long extraTiersInUse = globalMutableState().getAllocatedExtraTierBulks() * tiersInBulk;
+            long level0Words = LONGS.alignAndConvert(actualSegments + extraTiersInUse, BITS);
+            long tierIndexMinusOne = fromTierIndex - 1;
+            long level0WordIndex = tierIndexMinusOne >>> 6;
+            while (level0WordIndex < level0Words) {
+                long level1Word = OS.memory().readVolatileLong(
+                        changeSummaryLevel1WordAddr(level0WordIndex)) & (-1L << level0WordIndex);
+                if (level1Word == 0L) {
+                    // skip all level 0 words, summarized by this level 1 word
+                    level0WordIndex = ((level0WordIndex >>> 6) + 1) << 6;
+                    tierIndexMinusOne = level0WordIndex << 6;
+                    continue;
+                }
+                long nextLevel0WordIndex =
+                        (level0WordIndex & ~63L) + Long.numberOfTrailingZeros(level1Word);
+                if (nextLevel0WordIndex != level0WordIndex) {
+                    level0WordIndex = nextLevel0WordIndex;
+                    tierIndexMinusOne = level0WordIndex << 6;
+                }
+                long level0Word = OS.memory().readVolatileLong(
+                        changeSummaryLevel0WordAddr(level0WordIndex)) & (-1L << tierIndexMinusOne);
+                if (level0Word != 0L)
+                    return (level0WordIndex << 6) + Long.numberOfTrailingZeros(level0Word) + 1;
+                level0WordIndex++;
+                tierIndexMinusOne = level0WordIndex << 6;
+            }
+            return NOT_FOUND;
+        }
+
+        private void moveCursorToTier(long tierIndex) {
+            summaryCursorTierIndex = tierIndex;
+            entryPos = -1;
+            long tierIndexMinusOne = tierIndex - 1;
+            if (tierIndexMinusOne < actualSegments) {
+                segmentIndex = (int) tierIndexMinusOne;
+                bulkIndex = -1;
+                tierIndexOffsetWithinBulk = -1;
+                tierBitSetAddr =
+                        segmentBitSetsAddr + tierIndexMinusOne * tierModIterBitSetOuterSize;
+            } else {
+                long extraTierIndex = tierIndexMinusOne - actualSegments;
+                segmentIndex = -1;
+                bulkIndex = (int) (extraTierIndex >> log2TiersInBulk);
+                tierIndexOffsetWithinBulk = (int) (extraTierIndex & (tiersInBulk - 1));
+                // maps the tier bulk, if it is allocated by another process
+                tierBytesStore(tierIndex);
+                tierBitSetAddr = bitSetsAddr(tierBulkOffsets.get(bulkIndex)) +
+                        tierIndexOffsetWithinBulk * tierModIterBitSetOuterSize;
+            }
+        }
+
         boolean dropChangeInSegment(long offsetToTierBitSet, long pos) {
-            return tierModIterFrame.clearIfSet(nativeAccess(), null,
-                    segmentBitSetsAddr + offsetToTierBitSet, pos);
+            if (tierModIterFrame.clearIfSet(nativeAccess(), null,
+                    segmentBitSetsAddr + offsetToTierBitSet, pos)) {
+                stats.onChangeDropped();
+                return true;
+            }
+            return false;
         }
 
         boolean dropChangeInTierBulk(int bulkIndex, long offsetToTierBitSet, long pos) {
             TierBulkData tierBulkData = tierBulkOffsets.get(bulkIndex);
             long bitSetAddr = bitSetsAddr(tierBulkData) + offsetToTierBitSet;
-            return tierModIterFrame.clearIfSet(nativeAccess(), null, bitSetAddr, pos);
+            if (tierModIterFrame.clearIfSet(nativeAccess(), null, bitSetAddr, pos)) {
+                stats.onChangeDropped();
+                return true;
+            }
+            return false;
         }
 
         boolean isChangedSegment(long offsetToTierBitSet, long pos) {
@@ -710,6 +1563,8 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
         }
 
         private long nextEntryPos(Callback callback, int chronicleId) {
+            if (changeSummaries)
+                return nextEntryPosBySummaries(callback, chronicleId);
             long nextEntryPos;
             boolean allBitSetsScannedFromTheStart = false;
             // at most 2 iterations
@@ -781,6 +1636,96 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             return NOT_FOUND;
         }
 
+        /**
+         * The counterpart of {@link #nextEntryPos} in the summaries mode, which visits only tiers
+         * with raised summary bits. Instead of acquiring and releasing the lock of each segment
+         * before scanning it, all segment locks are acquired and released once in an iteration,
+         * when the first change is found, and then the iteration is restarted, which is needed
+         * only to report the bootstrap time, i. e. if something is sent on this iteration.
+         */
+        private long nextEntryPosBySummaries(Callback callback, int chronicleId) {
+            boolean iterationStartedInThisCall = false;
+            while (true) {
+                if (summaryCursorTierIndex == 0 && !segmentLocksSyncedOnThisIteration) {
+                    // at most 2 iterations, like in nextEntryPos()
+                    if (iterationStartedInThisCall)
+                        return NOT_FOUND;
+                    iterationStartedInThisCall = true;
+                    bootstrapTimeAfterNextIterationComplete = currentTime();
+                    somethingSentOnThisIteration = false;
+                }
+                long nextEntryPos = NOT_FOUND;
+                if (summaryCursorTierIndex > 0) {
+                    nextEntryPos = tierModIterFrame.nextSetBit(nativeAccess(), null,
+                            tierBitSetAddr, entryPos + 1);
+                    if (nextEntryPos == NOT_FOUND && entryPos == -1)
+                        nextEntryPos = clearChangeSummaryIfTierIsClean();
+                }
+                if (nextEntryPos != NOT_FOUND) {
+                    if (segmentLocksSyncedOnThisIteration)
+                        return nextEntryPos;
+                    // see the comment in nextEntryPos(), the same happens-before is built for
+                    // all segments at once
+                    for (int i = 0; i < actualSegments; i++) {
+                        acquireAndReleaseUpdateLock(i);
+                    }
+                    segmentLocksSyncedOnThisIteration = true;
+                    summaryCursorTierIndex = 0;
+                    entryPos = -1;
+                    continue;
+                }
+                long nextTierIndex = nextChangedTier(summaryCursorTierIndex + 1);
+                if (nextTierIndex != NOT_FOUND) {
+                    moveCursorToTier(nextTierIndex);
+                    continue;
+                }
+                // we walked through all changed tiers, "iteration"
+                resetCursor();
+                segmentLocksSyncedOnThisIteration = false;
+                if (callback != null && somethingSentOnThisIteration) {
+                    callback.onBootstrapTime(bootstrapTimeAfterNextIterationComplete, chronicleId);
+                }
+            }
+        }
+
+        /**
+         * The summary bit of a tier could be raised, while the bit set of the tier has no changes,
+         * e. g. if the changes are dropped. The summary bit is cleared only under the segment lock,
+         * to exclude concurrent raise of changes in this tier.
+         *
+         * @return the position of the first change in the tier, found under the segment lock, or
+         * {@link BitSetFrame#NOT_FOUND}, if the tier is clean and its summary bit is cleared
+         */
+        private long clearChangeSummaryIfTierIsClean() {
+            try (CompiledReplicatedMapIterationContext<K, V, R> context = iterationContext()) {
+                initContextToCursorTier(context);
+                context.updateLock().lock();
+                long firstEntryPos =
+                        tierModIterFrame.nextSetBit(nativeAccess(), null, tierBitSetAddr, 0L);
+                if (firstEntryPos == NOT_FOUND)
+                    clearChangeSummary(summaryCursorTierIndex);
+                return firstEntryPos;
+            }
+        }
+
+        private void initContextToCursorTier(CompiledReplicatedMapIterationContext<K, V, R> context) {
+            if (segmentIndex >= 0) {
+                // we are in first tiers (aka "segments")
+                context.initSegmentIndex(segmentIndex);
+            } else {
+                // we are in extra tiers
+                TierBulkData tierBulkData = tierBulkOffsets.get(bulkIndex);
+                long tierBaseAddr = tierAddr(tierBulkData, tierIndexOffsetWithinBulk);
+                long tierCountersAreaAddr = tierBaseAddr + tierHashLookupOuterSize;
+                context.initSegmentIndex(
+                        TierCountersArea.segmentIndex(tierCountersAreaAddr));
+                int tier = TierCountersArea.tier(tierCountersAreaAddr);
+                long tierIndex = actualSegments +
+                        (bulkIndex << log2TiersInBulk) + tierIndexOffsetWithinBulk + 1;
+                context.initSegmentTier(tier, tierIndex, tierBaseAddr);
+            }
+        }
+
         private void acquireAndReleaseUpdateLock(int segmentIndex) {
             try (CompiledReplicatedMapIterationContext<K, V, R> c = iterationContext()) {
                 c.initSegmentIndex(segmentIndex);
@@ -794,42 +1739,63 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
          */
         @Override
         public boolean nextEntry(@NotNull Callback callback, int chronicleId) {
+            return nextEntries(callback, chronicleId, 1) > 0;
+        }
+
+        /**
+         * Provides up to {@code maxEntries} changed entries from the same segment tier to {@code
+         * callback.onEntry()}, under a single segment lock acquisition.
+         *
+         * @param callback call this to get entries, this class will take care of the locking
+         * @param maxEntries the maximum number of entries to process
+         * @return the number of entries processed, 0 if there are no changed entries
+         */
+        @Override
+        public int nextEntries(@NotNull Callback callback, int chronicleId, int maxEntries) {
+            if (maxEntries <= 0)
+                throw new IllegalArgumentException(toIdentityString() +
+                        ": maxEntries should be positive, " + maxEntries + " given");
             while (true) {
                 long nextEntryPos = nextEntryPos(callback, chronicleId);
                 if (nextEntryPos == NOT_FOUND)
-                    return false;
+                    return 0;
                 entryPos = nextEntryPos;
 
                 try (CompiledReplicatedMapIterationContext<K, V, R> context = iterationContext()) {
-                    if (segmentIndex >= 0) {
-                        // we are in first tiers (aka "segments")
-                        context.initSegmentIndex(segmentIndex);
-                    } else {
-                        // we are in extra tiers
-                        TierBulkData tierBulkData = tierBulkOffsets.get(bulkIndex);
-                        long tierBaseAddr = tierAddr(tierBulkData, tierIndexOffsetWithinBulk);
-                        long tierCountersAreaAddr = tierBaseAddr + tierHashLookupOuterSize;
-                        context.initSegmentIndex(
-                                TierCountersArea.segmentIndex(tierCountersAreaAddr));
-                        int tier = TierCountersArea.tier(tierCountersAreaAddr);
-                        long tierIndex = actualSegments +
-                                (bulkIndex << log2TiersInBulk) + tierIndexOffsetWithinBulk + 1;
-                        context.initSegmentTier(tier, tierIndex, tierBaseAddr);
-                    }
-
+                    initContextToCursorTier(context);
                     context.updateLock().lock();
 
-                    if (entryIsStillDirty(entryPos)) {
-                        context.readExistingEntry(entryPos);
-                        ReplicableEntry entry = (ReplicableEntry) context.entryForIteration();
-                        callback.onEntry(entry, chronicleId);
-                        somethingSentOnThisIteration = true;
-                        clearEntry(entryPos);
-                        return true;
+                    int entries = 0;
+                    while (true) {
+                        if (entryIsStillDirty(entryPos)) {
+                            context.readExistingEntry(entryPos);
+                            ReplicableEntry entry = (ReplicableEntry) context.entryForIteration();
+                            callback.onEntry(entry, chronicleId);
+                            somethingSentOnThisIteration = true;
+                            clearEntry(entryPos);
+                            stats.onEntrySent();
+                            stats.onChangeDropped();
+                            if (++entries == maxEntries)
+                                return entries;
+                        }
+                        // if the entryPos was already cleared by another thread
+                        // while we were trying to obtain segment lock (for example, in
+                        // relocation()), go to pick up next. Don't go beyond the current tier,
+                        // that is all locked by the current context
+                        if ((nextEntryPos = tierModIterFrame.nextSetBit(nativeAccess(), null,
+                                tierBitSetAddr, entryPos + 1)) == NOT_FOUND) {
+                            break;
+                        }
+                        entryPos = nextEntryPos;
+                    }
+                    if (changeSummaries && tierModIterFrame.nextSetBit(
+                            nativeAccess(), null, tierBitSetAddr, 0L) == NOT_FOUND) {
+                        clearChangeSummary(summaryCursorTierIndex);
                     }
-                    // if the entryPos was already cleared by another thread
-                    // while we were trying to obtain segment lock (for example, in relocation()),
-                    // go to pick up next (next iteration in the `while (true)` loop)
+                    if (entries > 0)
+                        return entries;
+                    // no entries still dirty in this tier, go to pick up next (next iteration
+                    // in the `while (true)` loop)
                 }
             }
         }
@@ -842,6 +1808,61 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             tierModIterFrame.clear(nativeAccess(), null, tierBitSetAddr, entryPos);
         }
 
+        /**
+         * Bulk alternative to {@link #dirtyEntries(long)}: instead of raising change bits for all
+         * entries, that should be published to a new remote node, and then visiting them one by one,
+         * writes them segment by segment to the {@code buffer}, in the format of {@link
+         * #writeExternalEntry}, and passes the buffer to the {@code segmentSnapshotConsumer} after
+         * each segment. The remote node should apply each snapshot via {@link
+         * #readExternalEntries}, which merges entries with a single lock acquisition per segment.
+         * <p>
+         * <p>Each segment is written under a single update lock acquisition, and the changes of the
+         * written entries, pending for the remote node, are dropped under the same lock, so this
+         * iterator takes over only the changes, made after the snapshot of the segment is taken.
+         * The consumer is called outside of the segment lock.
+         * <p>
+         * <p>Snapshots are bounded by {@code maxSnapshotBytes}: when a snapshot of a segment
+         * reaches this size, change bits are raised for the rest of the entries of the segment,
+         * as by {@link #dirtyEntries(long)}, so they are published by this iterator in the usual
+         * way, i. e. in bounded batches, releasing the segment lock between them.
+         *
+         * @param fromTimeStamp           the timestamp from which all entries should be published,
+         *                                the same as for {@link #dirtyEntries(long)}
+         * @param buffer                  the buffer to write snapshots of segments to, it is
+         *                                cleared before each segment
+         * @param maxSnapshotBytes        the size of the snapshot, after which no more entries
+         *                                are added to it
+         * @param segmentSnapshotConsumer the consumer of the snapshots of non-empty segments
+         */
+        public void bootstrapSegments(long fromTimeStamp, @NotNull Bytes buffer,
+                                      int maxSnapshotBytes,
+                                      @NotNull Consumer<Bytes> segmentSnapshotConsumer) {
+            if (maxSnapshotBytes <= 0)
+                throw new IllegalArgumentException(toIdentityString() +
+                        ": maxSnapshotBytes should be positive, " + maxSnapshotBytes + " given");
+            try (CompiledReplicatedMapIterationContext<K, V, R> c = iterationContext()) {
+                for (int segmentIndex = 0; segmentIndex < actualSegments; segmentIndex++) {
+                    buffer.clear();
+                    c.initSegmentIndex(segmentIndex);
+                    c.forEachSegmentReplicableEntry(e -> {
+                        // the same condition as in dirtyEntries()
+                        if (e.originIdentifier() != localIdentifier ||
+                                e.originTimestamp() >= fromTimeStamp) {
+                            if (buffer.writePosition() < maxSnapshotBytes) {
+                                writeExternalEntry0(e, buffer, null);
+                                dropChange0(c.tierIndex(), c.pos());
+                                stats.onEntrySent();
+                            } else {
+                                raiseChange0(c.tierIndex(), c.pos());
+                            }
+                        }
+                    });
+                    if (buffer.writePosition() > 0)
+                        segmentSnapshotConsumer.accept(buffer);
+                }
+            }
+        }
+
         @Override
         public void dirtyEntries(long fromTimeStamp) {
             try (CompiledReplicatedMapIterationContext<K, V, R> c = iterationContext()) {
@@ -880,13 +1901,13 @@ public class ReplicatedChronicleMap<K, V, R> extends VanillaChronicleMap<K, V, R
             if (tierIndex <= actualSegments) {
                 long segmentIndex = tierIndex - 1;
                 long offsetToTierBitSet = segmentIndex * tierModIterBitSetOuterSize;
-                raiseChangeInSegment(offsetToTierBitSet, pos);
+                raiseChangeInSegment(tierIndex, offsetToTierBitSet, pos);
             } else {
                 long extraTierIndex = tierIndex - 1 - actualSegments;
                 int bulkIndex = (int) (extraTierIndex >> log2TiersInBulk);
                 long offsetToTierBitSet =
                         (extraTierIndex & (tiersInBulk - 1)) * tierModIterBitSetOuterSize;
-                raiseChangeInTierBulk(bulkIndex, offsetToTierBitSet, pos);
+                raiseChangeInTierBulk(tierIndex, bulkIndex, offsetToTierBitSet, pos);
             }
         }
 
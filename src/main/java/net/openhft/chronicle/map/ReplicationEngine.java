@@ -0,0 +1,547 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.map.replication.ReplicationChannel;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static net.openhft.chronicle.map.ReplicatedChronicleMap.BOOTSTRAP_TIME_HUNK;
+
+/**
+ * Replicates a {@linkplain ChronicleMapBuilder#replication(byte) replicated} Chronicle Map to and
+ * from a single remote node over a {@link ReplicationChannel}. Both nodes should run a {@code
+ * ReplicationEngine} over the two ends of the same channel.
+ * <p>
+ * <p>The sending side drains the {@linkplain Replica#acquireModificationIterator(byte)
+ * modification iterator} for the remote node, up to {@code entriesPerLock} entries per segment
+ * lock acquisition, into batches of up to {@code maxBatchBytes}, each batch is sent as a single
+ * frame. Up to {@code maxUnackedBatches} batches are sent without waiting for acknowledgements
+ * from the remote node. The receiving side applies each batch via {@link
+ * ReplicatedChronicleMap#readExternalEntries}, under one lock acquisition per segment.
+ * <p>
+ * <p>Only the sending thread writes to the channel. The receiving thread passes the frames it
+ * should send in response (bootstrap, acknowledgement and resend frames) to the sending thread,
+ * which sends them between batches and while waiting for acknowledgements, so the receiving
+ * thread never blocks on writing to the channel and always drains it. Otherwise, if both nodes
+ * send a lot, the receiving threads of both nodes could block on writing to the channels, which
+ * are full because none of the nodes reads them.
+ * <p>
+ * <p>Acknowledgements are used only for flow control. An acknowledgement is sent for the latest
+ * applied batch, acknowledging all preceding batches. Entries, lost in flight when the channel
+ * breaks, are sent again when nodes are connected again via a new channel: on connection, each
+ * node tells the other the timestamp it could {@linkplain Replica#remoteNodeCouldBootstrapFrom(byte)
+ * bootstrap from}, and the other node sends all entries, modified since that time, as
+ * {@linkplain ReplicatedChronicleMap.ModificationIterator#bootstrapSegments segment snapshots},
+ * one entries frame of up to {@code maxBatchBytes} per segment, before it sends any other
+ * changes. Entries of a segment, not fitting its snapshot, are sent as other changes.
+ * <p>
+ * <p>Frame format: 32-bit length of the rest of the frame, the frame type byte, and the frame
+ * body, specific for the type:
+ * <ul>
+ * <li>Handshake: the identifier of the sending node.</li>
+ * <li>Bootstrap: 64-bit timestamp, the receiving node should send entries, modified since.
+ * Sent in response to the handshake.</li>
+ * <li>Entries: 64-bit batch sequence number, then a sequence of entry and bootstrap time hunks
+ * in the format of {@link ReplicatedChronicleMap#writeExternalEntry}.</li>
+ * <li>Ack: 64-bit sequence number of the latest applied batch.</li>
+ * <li>Resend: keys of {@linkplain #valueDeltas(ValueDeltaEncoder) value deltas}, which
+ * couldn't be applied by the sending node, in the format of {@link
+ * ReplicatedChronicleMap#readExternalEntries(Bytes, byte, Bytes)} resend requests.</li>
+ * </ul>
+ */
+public final class ReplicationEngine implements Closeable {
+
+    public static final int DEFAULT_ENTRIES_PER_LOCK = 32;
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 << 10;
+    public static final int DEFAULT_MAX_UNACKED_BATCHES = 8;
+
+    static final byte HANDSHAKE_FRAME = 1;
+    static final byte BOOTSTRAP_FRAME = 2;
+    static final byte ENTRIES_FRAME = 3;
+    static final byte ACK_FRAME = 4;
+    static final byte RESEND_FRAME = 5;
+    private static final int FRAME_HEADER_SIZE = 5;
+    private static final int SEQUENCE_SIZE = 8;
+
+    /**
+     * The sender is woken up via {@link Replica.ModificationNotifier}, parking with a timeout
+     * only guards against missed wake-ups
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicationEngine.class);
+
+    private final ReplicatedChronicleMap<?, ?, ?> map;
+    private final ReplicationChannel channel;
+    private final int entriesPerLock;
+    private final int maxBatchBytes;
+    private final int maxUnackedBatches;
+    private final Thread sender;
+    private final Thread receiver;
+
+    private volatile boolean closed;
+    private volatile boolean started;
+    private volatile boolean senderParked;
+    private volatile boolean changed;
+    private volatile boolean controlFramesPending;
+    private volatile boolean handshakeReceived;
+    private volatile boolean bootstrapReceived;
+    private volatile byte remoteIdentifier;
+    private volatile long remoteBootstrapTimestamp;
+    private volatile long ackedBatches;
+    private volatile ValueDeltaEncoder valueDeltaEncoder;
+
+    private volatile long sentBatches;
+    private volatile long sentEntries;
+    private volatile long receivedBatches;
+
+    /**
+     * Resend frames, prepared by the receiver thread, to be sent by the sender thread
+     */
+    private final ConcurrentLinkedQueue<byte[]> resendFrames = new ConcurrentLinkedQueue<>();
+
+    // accessed only from the receiver thread
+    private byte[] receiveBuffer = new byte[1024];
+    private Bytes receiveBytes = Bytes.wrapForRead(receiveBuffer);
+    private final Bytes resendRequests = Bytes.elasticHeapByteBuffer(256);
+    // accessed only from the sender thread
+    private byte[] sendFrame = new byte[0];
+    private final byte[] ackFrame = new byte[FRAME_HEADER_SIZE + SEQUENCE_SIZE];
+    private boolean bootstrapSent;
+    private long ackedReceivedBatches;
+
+    public ReplicationEngine(@NotNull ChronicleMap<?, ?> map, @NotNull ReplicationChannel channel) {
+        this(map, channel, DEFAULT_ENTRIES_PER_LOCK, DEFAULT_MAX_BATCH_BYTES,
+                DEFAULT_MAX_UNACKED_BATCHES);
+    }
+
+    /**
+     * @param map               the replicated map
+     * @param channel           the channel to the remote node
+     * @param entriesPerLock    the maximum number of entries, sent per segment lock acquisition
+     * @param maxBatchBytes     the size of the batch, after which no more entries are added to it
+     * @param maxUnackedBatches the maximum number of batches, sent but not yet acknowledged
+     */
+    public ReplicationEngine(@NotNull ChronicleMap<?, ?> map, @NotNull ReplicationChannel channel,
+                             int entriesPerLock, int maxBatchBytes, int maxUnackedBatches) {
+        if (!(map instanceof ReplicatedChronicleMap)) {
+            throw new IllegalArgumentException(map.toIdentityString() +
+                    ": only replicated Chronicle Maps could be replicated by ReplicationEngine");
+        }
+        checkPositive(entriesPerLock, "entriesPerLock");
+        checkPositive(maxBatchBytes, "maxBatchBytes");
+        checkPositive(maxUnackedBatches, "maxUnackedBatches");
+        this.map = (ReplicatedChronicleMap<?, ?, ?>) map;
+        this.channel = channel;
+        this.entriesPerLock = entriesPerLock;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxUnackedBatches = maxUnackedBatches;
+        sender = new Thread(this::send, "Replication sender for " + map.toIdentityString());
+        sender.setDaemon(true);
+        receiver = new Thread(this::receive, "Replication receiver for " + map.toIdentityString());
+        receiver.setDaemon(true);
+    }
+
+    private static void checkPositive(int value, String name) {
+        if (value <= 0)
+            throw new IllegalArgumentException(name + " should be positive, " + value + " given");
+    }
+
+    /**
+     * Makes this engine send values, that change partially, as deltas from the values, sent
+     * before. Value deltas are always accepted from the remote node, regardless of this setting.
+     * Should be called before {@link #start()}.
+     *
+     * @param valueDeltaEncoder a new encoder, not used to write entries before
+     * @return this engine back
+     */
+    public synchronized ReplicationEngine valueDeltas(
+            @NotNull ValueDeltaEncoder valueDeltaEncoder) {
+        if (started)
+            throw new IllegalStateException("ReplicationEngine is already started");
+        this.valueDeltaEncoder = valueDeltaEncoder;
+        return this;
+    }
+
+    /**
+     * Starts the sending and the receiving threads.
+     *
+     * @return this engine back
+     */
+    public synchronized ReplicationEngine start() {
+        if (started)
+            throw new IllegalStateException("ReplicationEngine is already started");
+        if (closed)
+            throw new IllegalStateException("ReplicationEngine is closed");
+        started = true;
+        receiver.start();
+        sender.start();
+        return this;
+    }
+
+    /**
+     * @return {@code true} if this engine is started and not closed (explicitly or because of a
+     * channel failure)
+     */
+    public boolean isRunning() {
+        return started && !closed;
+    }
+
+    /**
+     * @return the identifier of the remote node, or 0 if the handshake is not yet received
+     */
+    public byte remoteIdentifier() {
+        return remoteIdentifier;
+    }
+
+    public long sentBatches() {
+        return sentBatches;
+    }
+
+    public long sentEntries() {
+        return sentEntries;
+    }
+
+    public long receivedBatches() {
+        return receivedBatches;
+    }
+
+    /**
+     * @return the number of sent batches, applied by the remote node
+     */
+    public long ackedBatches() {
+        return ackedBatches;
+    }
+
+    private void send() {
+        Bytes batch = Bytes.elasticHeapByteBuffer(maxBatchBytes + 1024);
+        Replica.ModificationIterator.Callback callback =
+                new Replica.ModificationIterator.Callback() {
+                    @Override
+                    public void onEntry(ReplicableEntry entry, int chronicleId) {
+                        map.writeExternalEntry(
+                                entry, null, batch, chronicleId, valueDeltaEncoder);
+                        sentEntries++;
+                    }
+
+                    @Override
+                    public void onBootstrapTime(long bootstrapTime, int chronicleId) {
+                        batch.writeByte(BOOTSTRAP_TIME_HUNK);
+                        batch.writeLong(bootstrapTime);
+                    }
+                };
+        try {
+            sendHandshake();
+            while (!bootstrapReceived) {
+                if (closed)
+                    return;
+                sendControlFrames();
+                if (!controlFramesPending && !bootstrapReceived)
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            ReplicatedChronicleMap<?, ?, ?>.ModificationIterator modificationIterator =
+                    map.acquireModificationIterator(remoteIdentifier);
+            modificationIterator.setModificationNotifier(this::onChange);
+            modificationIterator.bootstrapSegments(remoteBootstrapTimestamp, batch,
+                    maxBatchBytes, snapshot -> {
+                        try {
+                            sendBatch(snapshot);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+
+            while (!closed) {
+                if (!awaitSendWindow())
+                    return;
+                sendControlFrames();
+                changed = false;
+                batch.clear();
+                while (batch.writePosition() < maxBatchBytes &&
+                        modificationIterator.nextEntries(
+                                callback, map.identifier(), entriesPerLock) > 0) {
+                    // keep filling the batch
+                }
+                int batchSize = (int) batch.writePosition();
+                if (batchSize == 0) {
+                    senderParked = true;
+                    if (!changed && !controlFramesPending && !closed)
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    senderParked = false;
+                    continue;
+                }
+                sendBatch(batch);
+            }
+        } catch (Throwable t) {
+            onFailure(t);
+        }
+    }
+
+    /**
+     * @return {@code false} if this engine is closed while waiting
+     */
+    private boolean awaitSendWindow() throws IOException {
+        while (sentBatches - ackedBatches >= maxUnackedBatches) {
+            if (closed)
+                return false;
+            // The remote node might wait for acknowledgements from this node as well
+            sendControlFrames();
+            // woken up by the receiver thread on ack or when there are control frames to send
+            if (!controlFramesPending && sentBatches - ackedBatches >= maxUnackedBatches)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the frames in response to the frames, received by the receiver thread: the bootstrap
+     * frame in response to the handshake, resend requests and the acknowledgement of the latest
+     * applied batch.
+     */
+    private void sendControlFrames() throws IOException {
+        controlFramesPending = false;
+        if (handshakeReceived && !bootstrapSent) {
+            sendBootstrap();
+            bootstrapSent = true;
+        }
+        byte[] resendFrame;
+        while ((resendFrame = resendFrames.poll()) != null) {
+            writeFrame(resendFrame, resendFrame.length);
+        }
+        long receivedBatches = this.receivedBatches;
+        if (receivedBatches != ackedReceivedBatches) {
+            sendAck(receivedBatches);
+            ackedReceivedBatches = receivedBatches;
+        }
+    }
+
+    /**
+     * Called from the receiver thread
+     */
+    private void onControlFramePending() {
+        controlFramesPending = true;
+        LockSupport.unpark(sender);
+    }
+
+    /**
+     * Sends the batch as a single entries frame, after waiting for acknowledgements from the
+     * remote node, if needed.
+     */
+    private void sendBatch(Bytes batch) throws IOException {
+        if (!awaitSendWindow())
+            return;
+        sendControlFrames();
+        int batchSize = (int) batch.readRemaining();
+        int frameSize = FRAME_HEADER_SIZE + SEQUENCE_SIZE + batchSize;
+        if (sendFrame.length < frameSize)
+            sendFrame = new byte[frameSize];
+        long batchSequence = sentBatches + 1;
+        ByteBuffer.wrap(sendFrame).putInt(frameSize - 4).put(ENTRIES_FRAME)
+                .putLong(batchSequence);
+        batch.read(sendFrame, FRAME_HEADER_SIZE + SEQUENCE_SIZE, batchSize);
+        writeFrame(sendFrame, frameSize);
+        sentBatches = batchSequence;
+        map.remoteNodeReplicationStats(remoteIdentifier).onBytesSent(frameSize);
+    }
+
+    private void onChange() {
+        changed = true;
+        if (senderParked)
+            LockSupport.unpark(sender);
+    }
+
+    private void sendHandshake() throws IOException {
+        byte[] frame = new byte[FRAME_HEADER_SIZE + 1];
+        ByteBuffer.wrap(frame).putInt(frame.length - 4).put(HANDSHAKE_FRAME)
+                .put(map.identifier());
+        writeFrame(frame, frame.length);
+    }
+
+    /**
+     * Called only from the sender thread
+     */
+    private void writeFrame(byte[] frame, int frameSize) throws IOException {
+        channel.write(frame, 0, frameSize);
+    }
+
+    private void receive() {
+        try {
+            while (!closed) {
+                if (!readFully(receiveBuffer, 0, FRAME_HEADER_SIZE, true))
+                    break;
+                ByteBuffer header = ByteBuffer.wrap(receiveBuffer, 0, FRAME_HEADER_SIZE);
+                int bodySize = header.getInt() - 1;
+                byte frameType = header.get();
+                if (bodySize < 0)
+                    throw new IOException("Corrupted frame, body size: " + bodySize);
+                if (receiveBuffer.length < bodySize) {
+                    receiveBuffer = Arrays.copyOf(receiveBuffer,
+                            Math.max(bodySize, receiveBuffer.length * 2));
+                    receiveBytes = Bytes.wrapForRead(receiveBuffer);
+                }
+                readFully(receiveBuffer, 0, bodySize, false);
+                ByteBuffer body = ByteBuffer.wrap(receiveBuffer, 0, bodySize);
+                switch (frameType) {
+                    case HANDSHAKE_FRAME:
+                        onHandshake(body.get());
+                        break;
+                    case BOOTSTRAP_FRAME:
+                        remoteBootstrapTimestamp = body.getLong();
+                        bootstrapReceived = true;
+                        LockSupport.unpark(sender);
+                        break;
+                    case ENTRIES_FRAME:
+                        long batchSequence = body.getLong();
+                        receiveBytes.readPosition(0);
+                        receiveBytes.readLimit(bodySize);
+                        receiveBytes.readPosition(SEQUENCE_SIZE);
+                        resendRequests.clear();
+                        map.readExternalEntries(receiveBytes, remoteIdentifier, resendRequests);
+                        if (resendRequests.writePosition() > 0)
+                            resendFrames.add(resendFrame());
+                        receivedBatches = batchSequence;
+                        onControlFramePending();
+                        break;
+                    case RESEND_FRAME:
+                        receiveBytes.readPosition(0);
+                        receiveBytes.readLimit(bodySize);
+                        map.raiseChangesForResendRequests(
+                                receiveBytes, remoteIdentifier, valueDeltaEncoder);
+                        break;
+                    case ACK_FRAME:
+                        ackedBatches = body.getLong();
+                        LockSupport.unpark(sender);
+                        break;
+                    default:
+                        throw new IOException("Unknown frame type: " + frameType);
+                }
+            }
+        } catch (Throwable t) {
+            onFailure(t);
+            return;
+        }
+        // the remote node closed the channel
+        close();
+    }
+
+    private void onHandshake(byte remoteIdentifier) {
+        if (remoteIdentifier <= 0 || remoteIdentifier == map.identifier()) {
+            throw new IllegalStateException(map.toIdentityString() +
+                    ": invalid remote node identifier " + remoteIdentifier);
+        }
+        this.remoteIdentifier = remoteIdentifier;
+        handshakeReceived = true;
+        onControlFramePending();
+    }
+
+    private void sendBootstrap() throws IOException {
+        // The remote node doesn't send entries until it receives this frame, so the bootstrap
+        // timestamp couldn't change until the remote node acts on it
+        byte[] frame = new byte[FRAME_HEADER_SIZE + 8];
+        ByteBuffer.wrap(frame).putInt(frame.length - 4).put(BOOTSTRAP_FRAME)
+                .putLong(map.remoteNodeCouldBootstrapFrom(remoteIdentifier));
+        writeFrame(frame, frame.length);
+    }
+
+    /**
+     * Resend requests are rare, so a new frame is allocated for each of them, to be passed to the
+     * sender thread.
+     */
+    private byte[] resendFrame() {
+        int requestsSize = (int) resendRequests.writePosition();
+        byte[] frame = new byte[FRAME_HEADER_SIZE + requestsSize];
+        ByteBuffer.wrap(frame).putInt(frame.length - 4).put(RESEND_FRAME);
+        resendRequests.read(frame, FRAME_HEADER_SIZE, requestsSize);
+        return frame;
+    }
+
+    private void sendAck(long batchSequence) throws IOException {
+        ByteBuffer.wrap(ackFrame).putInt(ackFrame.length - 4).put(ACK_FRAME).putLong(batchSequence);
+        writeFrame(ackFrame, ackFrame.length);
+    }
+
+    /**
+     * @return {@code false} if {@code eofAllowed} and the channel is closed by the remote node
+     * before any bytes are read
+     */
+    private boolean readFully(byte[] bytes, int offset, int length, boolean eofAllowed)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            int r = channel.read(bytes, offset + read, length - read);
+            if (r < 0) {
+                if (eofAllowed && read == 0)
+                    return false;
+                throw new EOFException();
+            }
+            read += r;
+        }
+        return true;
+    }
+
+    private void onFailure(Throwable t) {
+        if (!closed) {
+            LOG.error("Replication of " + map.toIdentityString() + " over " + channel +
+                    " failed", t);
+        }
+        close();
+    }
+
+    /**
+     * Stops replication and closes the channel. Entries, sent but not yet applied by the remote
+     * node, are sent again after reconnection, see the class-level documentation.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.error("Error while closing " + channel, e);
+        }
+        LockSupport.unpark(sender);
+        Thread currentThread = Thread.currentThread();
+        if (started) {
+            try {
+                if (currentThread != sender)
+                    sender.join();
+                if (currentThread != receiver)
+                    receiver.join();
+            } catch (InterruptedException e) {
+                currentThread.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Exclusive writer of a single segment of a {@link ChronicleMap}, for workloads, where writes are
+ * already partitioned between threads, so that exactly one thread writes to each segment.
+ * <p>
+ * <p>While the writer is open, it holds the update lock of the segment, i. e. no other thread or
+ * process could modify the segment, but readers in all processes are not blocked. The first
+ * write after opening or {@link #publish()} upgrades the lock to the write level, after that
+ * writes to the segment acquire and release no shared locks at all: segment locking by the
+ * writes, made in the owner thread, is only counted locally, as for {@linkplain
+ * ChronicleMap#queryContext(Object) nested contexts} on the same segment. {@link #publish()}
+ * downgrades the lock back to the update level, making the writes, made since the previous
+ * publication, visible to readers atomically. Readers, that try to access the segment between
+ * publications, wait for the next {@code publish()}, so it should be called after each batch of
+ * writes.
+ * <p>
+ * <p>Any {@code ChronicleMap} operation, performed in the owner thread on a key of the writer's
+ * segment, shares the writer's lock, including reads.
+ * <p>
+ * <p>A writer is bound to the thread, which has obtained it, and shouldn't be accessed from other
+ * threads, including {@link #close()}.
+ *
+ * @param <K> the key type of the map
+ * @param <V> the value type of the map
+ * @see ChronicleMap#segmentWriter(int)
+ */
+public interface SegmentWriter<K, V> extends AutoCloseable {
+
+    /**
+     * Returns the index of the segment, owned by this writer.
+     */
+    int segmentIndex();
+
+    /**
+     * Associates the value with the key, like {@link ChronicleMap#put(Object, Object)}.
+     *
+     * @throws IllegalArgumentException if the key doesn't belong to the segment of this writer
+     */
+    V put(@NotNull K key, @NotNull V value);
+
+    /**
+     * Removes the mapping for the key, like {@link ChronicleMap#remove(Object)}.
+     *
+     * @throws IllegalArgumentException if the key doesn't belong to the segment of this writer
+     */
+    V remove(@NotNull K key);
+
+    /**
+     * Makes the writes, made since the previous publication, visible to readers, by downgrading
+     * the segment lock from the write to the update level. Does nothing, if there were no writes.
+     */
+    void publish();
+
+    /**
+     * Publishes the writes, if there are any unpublished, and releases the segment.
+     */
+    @Override
+    void close();
+}
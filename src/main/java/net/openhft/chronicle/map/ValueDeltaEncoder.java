@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.algo.bytes.Access.checkedRandomDataInputAccess;
+
+/**
+ * Sending side state of delta-encoded value replication to a single remote node. For recently
+ * replicated keys, it keeps hashes of fixed-size blocks of the last value, sent to the remote node.
+ * When a value of the same size is sent for the same key again, only the blocks, that have
+ * changed, are sent, along with the fingerprint of the base value, the delta is applied to.
+ * <p>
+ * <p>The receiving node applies a delta only if the fingerprint of its current value of the key
+ * matches the base fingerprint. Otherwise (the receiving node has missed the base value, or has
+ * updated the value itself), it requests the full value, see {@link
+ * ReplicatedChronicleMap#readExternalEntries(Bytes, byte, Bytes)} and {@link
+ * ReplicatedChronicleMap#raiseChangesForResendRequests(Bytes, byte, ValueDeltaEncoder)}.
+ * <p>
+ * <p>A new encoder should be used each time a connection to the remote node is established, so
+ * that the first value of each key is sent in full.
+ *
+ * @see ReplicatedChronicleMap#writeExternalEntry(ReplicableEntry, Bytes, Bytes, int,
+ * ValueDeltaEncoder)
+ */
+public final class ValueDeltaEncoder {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+    public static final int DEFAULT_MAX_KEYS = 1 << 16;
+
+    private static final LongHashFunction HASH_FUNCTION = LongHashFunction.xx_r39();
+
+    private final int blockSize;
+    /**
+     * Key hash -> {value fingerprint, value size, block hashes...} of the last sent value, least
+     * recently sent keys are evicted first
+     */
+    private final LinkedHashMap<Long, long[]> bases;
+
+    public ValueDeltaEncoder() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param blockSize the granularity of value changes detection, in bytes
+     * @param maxKeys   the maximum number of keys, the last sent values are remembered for
+     */
+    public ValueDeltaEncoder(int blockSize, int maxKeys) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException(
+                    "blockSize should be positive, " + blockSize + " given");
+        }
+        if (maxKeys <= 0)
+            throw new IllegalArgumentException("maxKeys should be positive, " + maxKeys + " given");
+        this.blockSize = blockSize;
+        bases = new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * Returns the fingerprint of the value, the delta base is identified by.
+     */
+    public static long fingerprint(Data<?> value) {
+        return value.hash(HASH_FUNCTION);
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Remembers the given value as the base for the next delta of the key, and writes the delta of
+     * the value from the previous base to the {@code destination}, if the previous base is known
+     * and the delta is considerably smaller than the value. The delta format: 32-bit size of the
+     * rest of the delta, 64-bit fingerprint of the base value, then a sequence of changed ranges:
+     * stop bit encoded offset within the value and length, and the bytes of the range.
+     *
+     * @return {@code true} if the delta is written, {@code false} if the value should be sent in
+     * full, nothing is written to the {@code destination} in this case
+     */
+    synchronized boolean writeDelta(long keyHash, Data<?> value, Bytes destination) {
+        long size = value.size();
+        long blocks = (size + blockSize - 1) / blockSize;
+        long[] newBase = new long[(int) (2 + blocks)];
+        newBase[0] = fingerprint(value);
+        newBase[1] = size;
+        for (int block = 0; block < blocks; block++) {
+            long blockOffset = (long) block * blockSize;
+            newBase[2 + block] = HASH_FUNCTION.hash(value.bytes(), checkedRandomDataInputAccess(),
+                    value.offset() + blockOffset, Math.min(blockSize, size - blockOffset));
+        }
+        long[] base = bases.put(keyHash, newBase);
+        if (base == null || base[1] != size)
+            return false;
+        long changedBytes = 0;
+        for (int block = 0; block < blocks; block++) {
+            if (base[2 + block] != newBase[2 + block])
+                changedBytes += blockSize;
+        }
+        if (changedBytes * 2 > size)
+            return false;
+
+        long deltaSizePosition = destination.writePosition();
+        destination.writeInt(0);
+        destination.writeLong(base[0]);
+        for (int block = 0; block < blocks; ) {
+            if (base[2 + block] == newBase[2 + block]) {
+                block++;
+                continue;
+            }
+            // coalesce consecutive changed blocks into a single range
+            int rangeEndBlock = block + 1;
+            while (rangeEndBlock < blocks && base[2 + rangeEndBlock] != newBase[2 + rangeEndBlock])
+                rangeEndBlock++;
+            long rangeOffset = (long) block * blockSize;
+            long rangeLength = Math.min((long) rangeEndBlock * blockSize, size) - rangeOffset;
+            destination.writeStopBit(rangeOffset);
+            destination.writeStopBit(rangeLength);
+            destination.write(destination.writePosition(), value.bytes(),
+                    value.offset() + rangeOffset, rangeLength);
+            destination.writeSkip(rangeLength);
+            block = rangeEndBlock;
+        }
+        destination.writeInt(deltaSizePosition,
+                (int) (destination.writePosition() - deltaSizePosition - 4));
+        return true;
+    }
+
+    /**
+     * Forgets the base value of the key, the next value of the key is sent in full.
+     */
+    synchronized void forget(long keyHash) {
+        bases.remove(keyHash);
+    }
+
+    /**
+     * Forgets all base values.
+     */
+    public synchronized void clear() {
+        bases.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ValueDeltaEncoder{blockSize=" + blockSize + "}";
+    }
+}
@@ -16,12 +16,12 @@
 
 package net.openhft.chronicle.map;
 
-import net.openhft.chronicle.algo.hashing.LongHashFunction;
 import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.bytes.PointerBytesStore;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.hash.ChecksumScrubberStats;
 import net.openhft.chronicle.hash.ChronicleHashClosedException;
 import net.openhft.chronicle.hash.ChronicleHashCorruption;
 import net.openhft.chronicle.hash.Data;
@@ -30,6 +30,7 @@ import net.openhft.chronicle.hash.impl.stage.entry.LocksInterface;
 import net.openhft.chronicle.hash.impl.stage.hash.ChainingInterface;
 import net.openhft.chronicle.hash.impl.util.Objects;
 import net.openhft.chronicle.hash.impl.util.Throwables;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
 import net.openhft.chronicle.hash.serialization.DataAccess;
 import net.openhft.chronicle.hash.serialization.SizeMarshaller;
 import net.openhft.chronicle.hash.serialization.SizedReader;
@@ -40,6 +41,7 @@ import net.openhft.chronicle.set.ChronicleSet;
 import net.openhft.chronicle.wire.WireIn;
 import net.openhft.chronicle.wire.WireOut;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
@@ -80,6 +82,10 @@ public class VanillaChronicleMap<K, V, R>
     transient boolean removeReturnsNull;
     transient Set<Entry<K, V>> entrySet;
     transient ThreadLocal<ContextHolder> cxt;
+    /**
+     * If not null, context chains are leased from this pool, rather than stored in {@link #cxt}
+     */
+    transient ContextPool contextPool;
     /////////////////////////////////////////////////
     private transient String name;
     /**
@@ -89,6 +95,14 @@ public class VanillaChronicleMap<K, V, R>
      */
     private transient String identityString;
     private transient boolean defaultEntryOperationsAndMethods;
+    /**
+     * Set in {@link ChronicleMapBuilder}, if checksum scrubbing is configured
+     */
+    transient ChecksumScrubberStats checksumScrubberStats;
+    /**
+     * The same object as {@link #segmentHeader}, if segment lock stats are configured
+     */
+    transient SegmentLockStats segmentLockStats;
 
     public VanillaChronicleMap(ChronicleMapBuilder<K, V> builder) throws IOException {
         super(builder);
@@ -152,6 +166,23 @@ public class VanillaChronicleMap<K, V, R>
         defaultEntryOperationsAndMethods = entryOperations == DefaultSpi.mapEntryOperations() &&
                 methods == DefaultSpi.mapMethods();
         defaultValueProvider = builder.defaultValueProvider;
+        DeadLockHolderRecovery holderRecovery = null;
+        if (builder.deadLockHolderCheckIntervalNanos > 0) {
+            holderRecovery = new DeadLockHolderRecovery(this,
+                    builder.deadLockHolderCheckIntervalNanos,
+                    builder.deadLockHolderCorruptionListener, this::recoverSegment);
+        }
+        segmentHeader =
+                BigSegmentHeader.of(fairSegmentLocks, builder.lockWaitStrategy, holderRecovery);
+        if (builder.maxIdleContexts > 0)
+            contextPool = new ContextPool(builder.maxIdleContexts);
+        if (builder.segmentLockStatsSamplingInterval > 0) {
+            InstrumentedSegmentHeader instrumentedSegmentHeader = new InstrumentedSegmentHeader(
+                    segmentHeader, this, builder.segmentLockStatsSamplingInterval,
+                    builder.segmentLockStatsSharedCounters);
+            segmentHeader = instrumentedSegmentHeader;
+            segmentLockStats = instrumentedSegmentHeader;
+        }
     }
 
     @Override
@@ -169,6 +200,14 @@ public class VanillaChronicleMap<K, V, R>
         }
     }
 
+    private void recoverSegment(
+            int segmentIndex, ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption) {
+        try (IterationContext<K, V, ?> iterationContext = iterationContext()) {
+            iterationContext.recoverSegment(segmentIndex, corruptionListener, corruption);
+        }
+    }
+
     private void initOwnTransients() {
         couldNotDetermineAlignmentBeforeAllocation =
                 greatestCommonDivisor((int) chunkSize, alignment) != alignment;
@@ -267,6 +306,18 @@ public class VanillaChronicleMap<K, V, R>
         return name;
     }
 
+    @Nullable
+    @Override
+    public ChecksumScrubberStats checksumScrubberStats() {
+        return checksumScrubberStats;
+    }
+
+    @Nullable
+    @Override
+    public SegmentLockStats segmentLockStats() {
+        return segmentLockStats;
+    }
+
     @Override
     public String toIdentityString() {
         if (identityString == null)
@@ -306,6 +357,9 @@ public class VanillaChronicleMap<K, V, R>
         ThreadLocal<ContextHolder> cxt = this.cxt;
         if (cxt == null)
             throw new ChronicleHashClosedException(this);
+        ContextPool contextPool = this.contextPool;
+        if (contextPool != null)
+            return leaseContext(contextPool, true);
         ContextHolder contextHolder = cxt.get();
         if (contextHolder == null) {
             ChainingInterface queryContext = newQueryContext();
@@ -331,6 +385,43 @@ public class VanillaChronicleMap<K, V, R>
         }
     }
 
+    /**
+     * Returns the root of the context chain, leased to the current thread, see {@link
+     * ContextPool}.
+     *
+     * @param query if a new chain should be rooted in a query context, rather than in an
+     *              iteration context, if a new chain is created
+     */
+    private ChainingInterface leaseContext(ContextPool contextPool, boolean query) {
+        ContextHolder contextHolder = contextPool.leasedToCurrentThread();
+        if (contextHolder != null) {
+            ChainingInterface context = contextHolder.get();
+            if (context != null)
+                return context;
+            throw new ChronicleHashClosedException(this);
+        }
+        contextHolder = contextPool.poll();
+        if (contextHolder == null) {
+            ChainingInterface context = query ? newQueryContext() : newIterationContext();
+            try {
+                contextHolder = new ContextHolder(context, true);
+                addContext(contextHolder);
+            } catch (Throwable throwable) {
+                try {
+                    ((AutoCloseable) context).close();
+                } catch (Throwable t) {
+                    throwable.addSuppressed(t);
+                }
+                throw throwable;
+            }
+        }
+        ChainingInterface context = contextHolder.get();
+        if (context == null)
+            throw new ChronicleHashClosedException(this);
+        contextPool.lease(contextHolder);
+        return context;
+    }
+
     ChainingInterface newQueryContext() {
         return new CompiledMapQueryContext<>(this);
     }
@@ -348,6 +439,9 @@ public class VanillaChronicleMap<K, V, R>
         ThreadLocal<ContextHolder> cxt = this.cxt;
         if (cxt == null)
             throw new ChronicleHashClosedException(this);
+        ContextPool contextPool = this.contextPool;
+        if (contextPool != null)
+            return leaseContext(contextPool, false);
         ContextHolder contextHolder = cxt.get();
         if (contextHolder == null) {
             ChainingInterface iterationContext = newIterationContext();
@@ -441,6 +535,64 @@ public class VanillaChronicleMap<K, V, R>
         }
     }
 
+    @Override
+    public int segmentIndex(@NotNull K key) {
+        checkKey(key);
+        try (QueryContextInterface<K, V, R> c = mapContext()) {
+            Data<K> inputKey = c.inputKeyDataAccess().getData(key);
+            return hashSplitting.segmentIndex(inputKey.hash(keyHashFunction));
+        }
+    }
+
+    @NotNull
+    @Override
+    public SegmentWriter<K, V> segmentWriter(int segmentIndex) {
+        return new VanillaSegmentWriter<>(this, segmentIndex);
+    }
+
+    @Override
+    public long addAndGetLong(@NotNull K key, long offset, long delta) {
+        try (QueryContextInterface<K, V, R> q = queryContext(key)) {
+            return readLockedEntry(q, key).addAndGetLong(offset, delta);
+        }
+    }
+
+    @Override
+    public int addAndGetInt(@NotNull K key, long offset, int delta) {
+        try (QueryContextInterface<K, V, R> q = queryContext(key)) {
+            return readLockedEntry(q, key).addAndGetInt(offset, delta);
+        }
+    }
+
+    @Override
+    public boolean compareAndSwapLong(@NotNull K key, long offset, long expected, long newValue) {
+        try (QueryContextInterface<K, V, R> q = queryContext(key)) {
+            return readLockedEntry(q, key).compareAndSwapLong(offset, expected, newValue);
+        }
+    }
+
+    @Override
+    public boolean compareAndSwapInt(@NotNull K key, long offset, int expected, int newValue) {
+        try (QueryContextInterface<K, V, R> q = queryContext(key)) {
+            return readLockedEntry(q, key).compareAndSwapInt(offset, expected, newValue);
+        }
+    }
+
+    @Override
+    public long accumulateMaxLong(@NotNull K key, long offset, long value) {
+        try (QueryContextInterface<K, V, R> q = queryContext(key)) {
+            return readLockedEntry(q, key).accumulateMaxLong(offset, value);
+        }
+    }
+
+    private MapEntry<K, V> readLockedEntry(QueryContextInterface<K, V, R> q, K key) {
+        q.readLock().lock();
+        MapEntry<K, V> entry = q.entry();
+        if (entry == null)
+            throw new IllegalStateException(toIdentityString() + ": no entry for key " + key);
+        return entry;
+    }
+
     @Override
     public MapSegmentContext<K, V, ?> segmentContext(int segmentIndex) {
         IterationContext<K, V, ?> c = iterationContext();
@@ -479,7 +631,7 @@ public class VanillaChronicleMap<K, V, R>
             Data<K> inputKey = c.inputKeyDataAccess().getData((K) key);
             long inputKeySize = inputKey.size();
 
-            long keyHash = inputKey.hash(LongHashFunction.xx_r39());
+            long keyHash = inputKey.hash(keyHashFunction);
             HashSplitting hs = this.hashSplitting;
             int segmentIndex = hs.segmentIndex(keyHash);
             segmentHeaderAddress = segmentHeaderAddress(segmentIndex);
@@ -507,11 +659,11 @@ public class VanillaChronicleMap<K, V, R>
                 }
             }
             if (needReadLock) {
-                BigSegmentHeader.INSTANCE.readLock(segmentHeaderAddress);
+                segmentHeader.readLock(segmentHeaderAddress);
                 needReadUnlock = true;
             }
-            return tieredValue(c, segmentHeaderAddress, segmentIndex, searchKey, searchStartPos,
-                    inputKeySize, inputKey, using);
+            return tieredValue(c, segmentHeaderAddress, segmentIndex, keyHash, searchKey,
+                    searchStartPos, inputKeySize, inputKey, using);
         } catch (Throwable t) {
             primaryExc = t;
             throw t;
@@ -533,7 +685,7 @@ public class VanillaChronicleMap<K, V, R>
         Throwable thrown = null;
         try {
             if (needReadUnlock)
-                BigSegmentHeader.INSTANCE.readUnlock(segmentHeaderAddress);
+                segmentHeader.readUnlock(segmentHeaderAddress);
         } catch (Throwable t) {
             thrown = t;
         }
@@ -553,12 +705,12 @@ public class VanillaChronicleMap<K, V, R>
 
     private V tieredValue(CompiledMapQueryContext<K, V, R> q,
                           long segmentHeaderAddress, int segmentIndex,
-                          long searchKey, long searchStartPos,
+                          long keyHash, long searchKey, long searchStartPos,
                           long inputKeySize, Data<K> inputKey, V using) {
         int tier = 0;
         long tierBaseAddr = segmentBaseAddr(segmentIndex);
         while (true) {
-            V value = searchValue(q, searchKey, searchStartPos, tierBaseAddr,
+            V value = searchValue(q, keyHash, searchKey, searchStartPos, tierBaseAddr,
                     inputKeySize, inputKey, using);
             if (value != null)
                 return value;
@@ -578,7 +730,7 @@ public class VanillaChronicleMap<K, V, R>
     }
 
     private V searchValue(CompiledMapQueryContext<K, V, R> q,
-                          long searchKey, long searchStartPos, long tierBaseAddr,
+                          long keyHash, long searchKey, long searchStartPos, long tierBaseAddr,
                           long inputKeySize, Data<K> inputKey, V using) {
         CompactOffHeapLinearHashTable hl = this.hashLookup;
 
@@ -617,6 +769,8 @@ public class VanillaChronicleMap<K, V, R>
             bs.readLimit(bs.capacity());
             bs.readPosition(keySizeOffset);
             long keySize = keySizeMarshaller.readSize(bs);
+            if (storeKeyHashes && bs.readLong() != keyHash)
+                continue;
             long keyOffset = bs.readPosition();
             if (!((inputKeySize == keySize) &&
                     (inputKey.equivalent(segmentBytesStore, keyOffset)))) {
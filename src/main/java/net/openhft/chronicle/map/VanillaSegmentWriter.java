@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.map.impl.QueryContextInterface;
+import org.jetbrains.annotations.NotNull;
+
+final class VanillaSegmentWriter<K, V> implements SegmentWriter<K, V> {
+
+    private final VanillaChronicleMap<K, V, ?> map;
+    private final int segmentIndex;
+    /**
+     * Context without a key, locked on the segment. It is the root context, locked on the
+     * segment, for all contexts, accessing the segment in the owner thread while it is open
+     */
+    private final QueryContextInterface<K, V, ?> context;
+    private boolean writeLocked = false;
+    private boolean closed = false;
+
+    VanillaSegmentWriter(VanillaChronicleMap<K, V, ?> map, int segmentIndex) {
+        if (segmentIndex < 0 || segmentIndex >= map.segments()) {
+            throw new IllegalArgumentException(map.toIdentityString() + ": segmentIndex should " +
+                    "be in [0, " + map.segments() + "), " + segmentIndex + " given");
+        }
+        this.map = map;
+        this.segmentIndex = segmentIndex;
+        context = map.mapContext();
+        try {
+            context.initSegmentIndex(segmentIndex);
+            context.updateLock().lock();
+        } catch (Throwable throwable) {
+            try {
+                context.close();
+            } catch (Throwable t) {
+                throwable.addSuppressed(t);
+            }
+            throw throwable;
+        }
+    }
+
+    @Override
+    public int segmentIndex() {
+        return segmentIndex;
+    }
+
+    @Override
+    public V put(@NotNull K key, @NotNull V value) {
+        beforeWrite(key);
+        return map.put(key, value);
+    }
+
+    @Override
+    public V remove(@NotNull K key) {
+        beforeWrite(key);
+        return map.remove(key);
+    }
+
+    private void beforeWrite(K key) {
+        checkOpen();
+        int keySegmentIndex = map.segmentIndex(key);
+        if (keySegmentIndex != segmentIndex) {
+            throw new IllegalArgumentException(map.toIdentityString() + ": key " + key +
+                    " belongs to segment " + keySegmentIndex + ", writer of segment " +
+                    segmentIndex + " is used");
+        }
+        lockForWrites();
+    }
+
+    /**
+     * Upgrades the segment lock to the write level, if it is not yet upgraded since the previous
+     * publication.
+     */
+    void lockForWrites() {
+        if (!writeLocked) {
+            context.writeLock().lock();
+            writeLocked = true;
+        }
+    }
+
+    @Override
+    public void publish() {
+        checkOpen();
+        if (writeLocked) {
+            context.writeLock().unlock();
+            writeLocked = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        context.close();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException(map.toIdentityString() + ": writer of segment " +
+                    segmentIndex + " is closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentWriter{map=" + map.toIdentityString() + ", segmentIndex=" +
+                segmentIndex + "}";
+    }
+}
@@ -29,4 +29,28 @@ public interface IterationContext<K, V, R> extends MapEntry<K, V>, MapSegmentCon
     void recoverSegments(
             ChronicleHashCorruption.Listener corruptionListener,
             ChronicleHashCorruptionImpl corruption);
+
+    /**
+     * Recovers all tiers of the segment with the given index, while the segment is write locked
+     * by the current thread (and other accessors of the hash are possibly alive), after the lock
+     * is taken over from a dead holder. Unlike {@link #recoverSegments}, doesn't recover the
+     * global state of the hash and doesn't remove entries with duplicate keys in different tiers,
+     * because that requires locking the segment.
+     */
+    void recoverSegment(
+            int segmentIndex, ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption);
+
+    /**
+     * Verifies checksums of the entries, referenced from the hash lookup slots with indexes from
+     * {@code fromSlot} (inclusive) to {@code toSlot} (exclusive) of the given tier of the current
+     * segment.
+     *
+     * @return the number of verified entries, or -1 if the segment doesn't have a tier with the
+     * given number
+     */
+    long verifyChecksums(
+            int tier, long fromSlot, long toSlot,
+            ChronicleHashCorruption.Listener corruptionListener,
+            ChronicleHashCorruptionImpl corruption);
 }
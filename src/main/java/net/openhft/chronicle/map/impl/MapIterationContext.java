@@ -62,6 +62,7 @@ import net.openhft.sg.Staged;
 
         TierRecovery.class,
         SegmentsRecovery.class,
+        ChecksumVerification.class,
 }, nested = {
         ReadLock.class,
         UpdateLock.class,
@@ -21,6 +21,7 @@ import net.openhft.chronicle.hash.impl.stage.entry.*;
 import net.openhft.chronicle.hash.impl.stage.hash.KeyBytesInterop;
 import net.openhft.chronicle.hash.impl.stage.hash.LogHolder;
 import net.openhft.chronicle.hash.impl.stage.hash.OwnerThreadHolder;
+import net.openhft.chronicle.hash.impl.stage.iter.ChecksumVerification;
 import net.openhft.chronicle.hash.impl.stage.iter.IterationAlloc;
 import net.openhft.chronicle.hash.impl.stage.iter.IterationKeyHashCode;
 import net.openhft.chronicle.hash.impl.stage.iter.IterationSegmentStages;
@@ -69,6 +70,7 @@ import net.openhft.sg.Staged;
 
         ReplicatedTierRecovery.class,
         SegmentsRecovery.class,
+        ChecksumVerification.class,
 }, nested = {
         ReadLock.class,
         UpdateLock.class,
@@ -29,7 +29,12 @@ public class WrappedValueInstanceDataHolder<V> {
     public Data<V> wrappedData = null;
     @StageRef
     VanillaChronicleMapHolder<?, V, ?> mh;
-    private final DataAccess<V> wrappedValueDataAccess = mh.m().valueDataAccess.copy();
+    /**
+     * Copied lazily, because values are wrapped only by a few operations, e. g. {@link
+     * net.openhft.chronicle.map.MapContext#wrapValueAsData}, but the copy (with its serialization
+     * buffers) would be made for every context of every thread otherwise
+     */
+    private DataAccess<V> wrappedValueDataAccess = null;
     private WrappedValueInstanceDataHolder<V> next;
     private V value;
 
@@ -65,7 +70,20 @@ public class WrappedValueInstanceDataHolder<V> {
             next.closeValue();
     }
 
+    // The stage compiler makes a stage of each non-final field, requiring init check and close
+    // methods. wrappedValueDataAccess is initialized manually in initWrappedData(), and is kept
+    // for reuse when the context is closed, the same as the next field.
+    boolean wrappedValueDataAccessInit() {
+        return true;
+    }
+
+    void closeWrappedValueDataAccess() {
+        // do nothing, the copy is reused
+    }
+
     private void initWrappedData() {
+        if (wrappedValueDataAccess == null)
+            wrappedValueDataAccess = mh.m().valueDataAccess.copy();
         wrappedData = wrappedValueDataAccess.getData(value);
     }
 
@@ -17,6 +17,7 @@
 package net.openhft.chronicle.map.impl.stage.entry;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.RandomDataInput;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.impl.CompactOffHeapLinearHashTable;
 import net.openhft.chronicle.hash.impl.stage.entry.AllocatedChunks;
@@ -111,6 +112,18 @@ public abstract class MapEntryStages<K, V> extends HashEntryStages<K>
         return valueOffset + valueSize;
     }
 
+    @Override
+    public void writeValueBytes(
+            long offsetInValue, RandomDataInput source, long sourceOffset, long length) {
+        checkOnEachPublicOperation.checkOnEachPublicOperation();
+        if (offsetInValue < 0 || length < 0 || offsetInValue + length > valueSize) {
+            throw new IndexOutOfBoundsException(hh.h().toIdentityString() +
+                    ": writing " + length + " bytes at offset " + offsetInValue +
+                    " in value of " + valueSize + " bytes");
+        }
+        writeEntryBytes(valueOffset + offsetInValue, source, sourceOffset, length);
+    }
+
     @NotNull
     @Override
     public Data<V> value() {
@@ -230,8 +243,8 @@ public abstract class MapEntryStages<K, V> extends HashEntryStages<K>
     }
 
     long sizeOfEverythingBeforeValue(long keySize, long valueSize) {
-        return mh.m().keySizeMarshaller.storingLength(keySize) + keySize +
-                checksumStrategy.extraEntryBytes() +
+        return mh.m().keySizeMarshaller.storingLength(keySize) + mh.m().keyHashStoredBytes() +
+                keySize + checksumStrategy.extraEntryBytes() +
                 mh.m().valueSizeMarshaller.storingLength(valueSize);
     }
 
@@ -18,6 +18,7 @@ package net.openhft.chronicle.map.impl.stage.entry;
 
 import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.map.ReplicatedChronicleMap;
 import net.openhft.chronicle.map.impl.ReplicatedChronicleMapHolder;
 import net.openhft.chronicle.map.impl.stage.replication.ReplicationUpdate;
 import net.openhft.chronicle.map.replication.MapReplicableEntry;
@@ -25,7 +26,6 @@ import net.openhft.sg.Stage;
 import net.openhft.sg.StageRef;
 import net.openhft.sg.Staged;
 
-import static net.openhft.chronicle.hash.replication.TimeProvider.currentTime;
 import static net.openhft.chronicle.map.ReplicatedChronicleMap.ADDITIONAL_ENTRY_BYTES;
 
 @Staged
@@ -154,15 +154,17 @@ public abstract class ReplicatedMapEntryStages<K, V> extends MapEntryStages<K, V
     public void updatedReplicationStateOnPresentEntry() {
         if (!ru.replicationUpdateInit()) {
             s.innerWriteLock.lock();
-            long timestamp = Math.max(timestamp() + 1, currentTime());
-            updateReplicationState(mh.m().identifier(), timestamp);
+            ReplicatedChronicleMap<?, ?, ?> map = mh.m();
+            long timestamp = Math.max(timestamp() + 1, map.nextTimestamp());
+            updateReplicationState(map.identifier(), timestamp);
         }
     }
 
     public void updatedReplicationStateOnAbsentEntry() {
         if (!ru.replicationUpdateInit()) {
             s.innerWriteLock.lock();
-            updateReplicationState(mh.m().identifier(), currentTime());
+            ReplicatedChronicleMap<?, ?, ?> map = mh.m();
+            updateReplicationState(map.identifier(), map.nextTimestamp());
         }
     }
 
@@ -21,7 +21,10 @@ import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.impl.stage.entry.SegmentStages;
 import net.openhft.chronicle.hash.impl.stage.hash.CheckOnEachPublicOperation;
 import net.openhft.chronicle.hash.replication.RemoteOperationContext;
+import net.openhft.chronicle.map.MapEntry;
 import net.openhft.chronicle.map.Replica;
+import net.openhft.chronicle.map.ReplicatedChronicleMap;
+import net.openhft.chronicle.map.ValueDeltaEncoder;
 import net.openhft.chronicle.map.impl.ReplicatedChronicleMapHolder;
 import net.openhft.chronicle.map.impl.stage.data.DummyValueZeroData;
 import net.openhft.chronicle.map.impl.stage.query.ReplicatedMapQuery;
@@ -77,6 +80,92 @@ public abstract class ReplicatedInput<K, V, R> implements RemoteOperationContext
         }
     }
 
+    /**
+     * Applies an entry of a key-only hash, written without value framing by {@link
+     * ReplicatedChronicleMap#writeExternalEntry(net.openhft.chronicle.hash.replication.ReplicableEntry,
+     * Bytes, Bytes, int)}. Present entries are applied with an empty value.
+     */
+    public void processReplicatedKeyEvent(
+            byte remoteNodeIdentifier, Bytes replicatedInputBytes, boolean isDeleted) {
+        long timestamp = ReplicatedChronicleMap.readKeyHunkTimestamp(replicatedInputBytes);
+        byte identifier = replicatedInputBytes.readByte();
+        ru.initReplicationUpdate(identifier, timestamp, remoteNodeIdentifier);
+
+        long keySize = mh.m().keySizeMarshaller.readSize(replicatedInputBytes);
+        long keyOffset = replicatedInputBytes.readPosition();
+
+        q.initInputKey(q.getInputKeyBytesAsData(replicatedInputBytes, keyOffset, keySize));
+        replicatedInputBytes.readSkip(keySize);
+        if (isDeleted) {
+            s.innerUpdateLock.lock();
+            mh.m().remoteOperations.remove(this);
+        } else {
+            Data<V> value = q.wrapValueBytesAsData(
+                    replicatedInputBytes, replicatedInputBytes.readPosition(), 0);
+            s.innerWriteLock.lock();
+            mh.m().remoteOperations.put(this, value);
+        }
+    }
+
+    /**
+     * Applies a value delta, written by {@link ValueDeltaEncoder}, to the current value of the
+     * entry, and then applies the result like a full value, via {@link
+     * net.openhft.chronicle.map.replication.MapRemoteOperations#put}. The value is patched in the
+     * {@code patchBuffer}, so that the remote operations strategy could still reject the update.
+     *
+     * @return {@code false} if the current value of the entry is not the base of the delta, the
+     * delta is skipped in this case
+     */
+    public boolean processReplicatedValueDelta(
+            byte remoteNodeIdentifier, Bytes replicatedInputBytes, Bytes patchBuffer) {
+        long timestamp = replicatedInputBytes.readStopBit();
+        byte identifier = replicatedInputBytes.readByte();
+        ru.initReplicationUpdate(identifier, timestamp, remoteNodeIdentifier);
+
+        boolean isDeleted = replicatedInputBytes.readBoolean();
+        assert !isDeleted;
+        long keySize = mh.m().keySizeMarshaller.readSize(replicatedInputBytes);
+        long keyOffset = replicatedInputBytes.readPosition();
+
+        q.initInputKey(q.getInputKeyBytesAsData(replicatedInputBytes, keyOffset, keySize));
+        replicatedInputBytes.readSkip(keySize);
+        long valueSize = mh.m().valueSizeMarshaller.readSize(replicatedInputBytes);
+        int deltaSize = replicatedInputBytes.readInt();
+        long deltaEnd = replicatedInputBytes.readPosition() + deltaSize;
+        try {
+            long baseFingerprint = replicatedInputBytes.readLong();
+            s.innerWriteLock.lock();
+            MapEntry<K, V> entry = q.entry();
+            if (entry == null)
+                return false;
+            Data<V> baseValue = entry.value();
+            if (baseValue.size() != valueSize ||
+                    ValueDeltaEncoder.fingerprint(baseValue) != baseFingerprint) {
+                return false;
+            }
+            patchBuffer.clear();
+            baseValue.writeTo(patchBuffer, 0);
+            patchBuffer.writeSkip(valueSize);
+            while (replicatedInputBytes.readPosition() < deltaEnd) {
+                long rangeOffset = replicatedInputBytes.readStopBit();
+                long rangeLength = replicatedInputBytes.readStopBit();
+                if (rangeOffset < 0 || rangeLength < 0 || rangeOffset + rangeLength > valueSize) {
+                    throw new IllegalStateException(mh.h().toIdentityString() +
+                            ": corrupted value delta, range offset: " + rangeOffset +
+                            ", length: " + rangeLength + ", value size: " + valueSize);
+                }
+                patchBuffer.write(rangeOffset, replicatedInputBytes,
+                        replicatedInputBytes.readPosition(), rangeLength);
+                replicatedInputBytes.readSkip(rangeLength);
+            }
+            Data<V> value = q.wrapValueBytesAsData(patchBuffer, 0, valueSize);
+            mh.m().remoteOperations.put(this, value);
+            return true;
+        } finally {
+            replicatedInputBytes.readPosition(deltaEnd);
+        }
+    }
+
     @Override
     public void remotePut(
             Data<V> newValue,
@@ -16,6 +16,7 @@
 
 package net.openhft.chronicle.map.impl.stage.iter;
 
+import net.openhft.chronicle.bytes.RandomDataInput;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.impl.stage.replication.ReplicableEntryDelegating;
 import net.openhft.chronicle.hash.replication.ReplicableEntry;
@@ -63,6 +64,12 @@ public class ReplicatedMapEntryDelegating<K, V>
         delegate.doRemove();
     }
 
+    @Override
+    public void writeValueBytes(
+            long offsetInValue, RandomDataInput source, long sourceOffset, long length) {
+        delegate.writeValueBytes(offsetInValue, source, sourceOffset, length);
+    }
+
     @Override
     public ReplicableEntry d() {
         return e;
@@ -30,9 +30,6 @@ import net.openhft.sg.Staged;
 
 import java.util.function.Consumer;
 
-import static net.openhft.chronicle.hash.replication.TimeProvider.currentTime;
-import static net.openhft.chronicle.hash.replication.TimeProvider.systemTimeIntervalBetween;
-
 @Staged
 public class ReplicatedQueryAlloc extends QueryAlloc {
 
@@ -111,10 +108,10 @@ public class ReplicatedQueryAlloc extends QueryAlloc {
             ReplicatedChronicleMap<?, ?, ?> map = mh.m();
             if (!(e instanceof MapAbsentEntry) || iterationContext.pos() == posToSkip)
                 return;
-            long currentTime = currentTime();
+            long currentTime = map.currentTime();
             if (e.originTimestamp() > currentTime)
                 return; // presumably unsynchronized clocks
-            long deleteTimeout = systemTimeIntervalBetween(
+            long deleteTimeout = map.timestampProvider.systemTimeIntervalBetween(
                     e.originTimestamp(), currentTime, map.cleanupTimeoutUnit);
             if (deleteTimeout <= map.cleanupTimeout || e.isChanged())
                 return;
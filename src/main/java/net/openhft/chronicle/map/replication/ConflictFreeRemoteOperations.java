@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.replication.DefaultEventualConsistencyStrategy;
+import net.openhft.chronicle.map.MapEntry;
+
+/**
+ * Base {@link MapRemoteOperations} of conflict-free replicated value types: a remote update of a
+ * present entry is merged with the current value, instead of being accepted or discarded
+ * according to {@link DefaultEventualConsistencyStrategy}. Merges are commutative, associative
+ * and idempotent, so all nodes converge to the same value regardless of the order, in which
+ * updates are delivered, and of duplicate deliveries.
+ * <p>
+ * <p>Updates of absent or removed entries and remote removes are resolved by timestamps, like by
+ * default, i. e. a remove wins over concurrent updates with earlier timestamps, and a value,
+ * updated after the remove, starts from scratch.
+ * <p>
+ * <p>The merged value is computed from the serialized forms of the current and the remote values,
+ * without deserialization. If the merged value has the same size as the current one, only the
+ * changed 8-byte words are written in place via {@link MapEntry#writeValueBytes}, and the entry
+ * checksum, if stored, is updated incrementally with {@link
+ * net.openhft.chronicle.hash.ChecksumAlgorithm#CRC32C}.
+ *
+ * @param <K> the map key type
+ * @param <V> the map value type
+ * @param <R> the return type of {@link net.openhft.chronicle.map.MapEntryOperations} specified
+ *            for the queried map
+ * @see PNCounter
+ * @see LongRegister
+ * @see LongORSet
+ */
+public abstract class ConflictFreeRemoteOperations<K, V, R> implements MapRemoteOperations<K, V, R> {
+
+    @Override
+    public void put(MapRemoteQueryContext<K, V, R> q, Data<V> newValue) {
+        MapReplicableEntry<K, V> entry = q.entry();
+        if (entry == null) {
+            MapRemoteOperations.super.put(q, newValue);
+            return;
+        }
+        Data<V> currentValue = entry.value();
+        Bytes<?> merged = ConflictFreeValues.buffer();
+        merge(currentValue, newValue, merged);
+        long mergedSize = merged.readRemaining();
+        // Change flags are not raised by the merge: changes of this node, which the remote node
+        // doesn't know about, are already scheduled for replication, or sent
+        if (mergedSize == currentValue.size()) {
+            writeChangedWords(entry, currentValue, merged);
+        } else {
+            q.replaceValue(entry, q.wrapValueBytesAsData(
+                    merged.bytesStore(), merged.readPosition(), mergedSize));
+            if (newValue.size() == mergedSize &&
+                    newValue.equivalent(merged, merged.readPosition())) {
+                // The remote value dominates, nothing to replicate further
+                entry.dropChanged();
+            }
+        }
+        // The entry timestamp is the timestamp of the latest merged update, to resolve remote
+        // removes against it
+        if (q.remoteTimestamp() > entry.originTimestamp())
+            entry.updateOrigin(q.remoteIdentifier(), q.remoteTimestamp());
+    }
+
+    /**
+     * Writes the merged serialized form of the current and the remote values to the {@code
+     * merged} bytes, from its read position. Both the values and the merged form consist of 8-byte
+     * words.
+     *
+     * @param currentValue the current value of the entry
+     * @param remoteValue  the value, replicated from the remote node
+     * @param merged       the destination of the merged value
+     */
+    protected abstract void merge(Data<V> currentValue, Data<V> remoteValue, Bytes<?> merged);
+
+    private static void writeChangedWords(
+            MapEntry<?, ?> entry, Data<?> currentValue, Bytes<?> merged) {
+        long size = currentValue.size();
+        long mergedOffset = merged.readPosition();
+        for (long offset = 0; offset < size; ) {
+            if (currentValue.bytes().readLong(currentValue.offset() + offset) ==
+                    merged.readLong(mergedOffset + offset)) {
+                offset += 8;
+                continue;
+            }
+            // coalesce consecutive changed words into a single write
+            long end = offset + 8;
+            while (end < size && currentValue.bytes().readLong(currentValue.offset() + end) !=
+                    merged.readLong(mergedOffset + end)) {
+                end += 8;
+            }
+            entry.writeValueBytes(offset, merged, mergedOffset + offset, end - offset);
+            offset = end;
+        }
+    }
+}
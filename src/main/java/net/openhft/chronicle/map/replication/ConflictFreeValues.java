@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ExternalMapQueryContext;
+import net.openhft.chronicle.map.MapEntry;
+import net.openhft.chronicle.map.Replica;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utilities, shared by conflict-free replicated value types.
+ */
+final class ConflictFreeValues {
+
+    private static final ThreadLocal<Bytes<ByteBuffer>> BUFFER =
+            ThreadLocal.withInitial(() -> Bytes.elasticByteBuffer(256));
+
+    private ConflictFreeValues() {
+    }
+
+    /**
+     * Returns a cleared, thread-local buffer for a serialized value.
+     */
+    static Bytes<ByteBuffer> buffer() {
+        Bytes<ByteBuffer> buffer = BUFFER.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    static byte localIdentifier(ChronicleMap<?, ?> map) {
+        if (!(map instanceof Replica)) {
+            throw new IllegalArgumentException(map.toIdentityString() +
+                    ": conflict-free replicated values could be updated only in replicated maps");
+        }
+        return ((Replica) map).identifier();
+    }
+
+    /**
+     * Updates the value of the key under the update lock. The new serialized value is written by
+     * the {@code update} from the current serialized value, the written bytes are returned (they
+     * are valid until the next use of the buffer in the current thread).
+     */
+    static <K, V> Bytes<ByteBuffer> update(ChronicleMap<K, V> map, K key, LocalUpdate<V> update) {
+        byte localIdentifier = localIdentifier(map);
+        try (ExternalMapQueryContext<K, V, ?> q = map.queryContext(key)) {
+            q.updateLock().lock();
+            MapEntry<K, V> entry = q.entry();
+            Bytes<ByteBuffer> updated = buffer();
+            if (!update.update(entry != null ? entry.value() : null, localIdentifier, updated))
+                return updated;
+            Data<V> newValue = q.wrapValueBytesAsData(
+                    updated.bytesStore(), updated.readPosition(), updated.readRemaining());
+            if (entry != null) {
+                q.replaceValue(entry, newValue);
+            } else {
+                q.insert(q.absentEntry(), newValue);
+            }
+            return updated;
+        }
+    }
+
+    static long wordAt(Data<?> value, long index) {
+        return value.bytes().readLong(value.offset() + index * 8L);
+    }
+
+    static long words(Data<?> value) {
+        return value.size() / 8L;
+    }
+
+    @FunctionalInterface
+    interface LocalUpdate<V> {
+        /**
+         * Writes the updated serialized value to {@code updated}.
+         *
+         * @param currentValue    the current value, or {@code null} if the key is absent
+         * @param localIdentifier the identifier of the current node
+         * @param updated         the destination for the updated value
+         * @return {@code false} if the value shouldn't be changed
+         */
+        boolean update(@Nullable Data<V> currentValue, byte localIdentifier, Bytes<?> updated);
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.serialization.SizedReader;
+import net.openhft.chronicle.hash.serialization.SizedWriter;
+import net.openhft.chronicle.hash.serialization.impl.EnumMarshallable;
+import net.openhft.chronicle.map.ChronicleMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static net.openhft.chronicle.map.replication.ConflictFreeValues.wordAt;
+import static net.openhft.chronicle.map.replication.ConflictFreeValues.words;
+
+/**
+ * Conflict-free replicated set of {@code long} elements with observed-remove semantics
+ * (OR-Set): a remove cancels only the adds of the element, which the removing node has observed,
+ * so an add, concurrent with a remove of the same element, wins. The set doesn't keep tombstones
+ * of removed elements: each add is tagged with the node identifier and the node's add counter,
+ * and the set keeps a version vector of the add counters of all nodes, which tells whether a tag,
+ * absent in one of the merged sets, was removed, or not yet observed.
+ * <p>
+ * <p>The serialized form is the number of version vector entries, the version vector entries
+ * (node identifier and add counter, ordered by node identifier), then element entries (element,
+ * node identifier and add counter of the tag, ordered by element and node identifier), all
+ * entries are sequences of 64-bit words. Example configuration: <pre>{@code
+ * ChronicleMapBuilder<String, LongORSet> builder = ChronicleMap
+ *     .of(String.class, LongORSet.class)
+ *     .valueMarshaller(LongORSet.Marshaller.INSTANCE)
+ *     .averageValueSize(LongORSet.averageSize(expectedNodes, expectedElements))
+ *     .replication(identifier);
+ * ((ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI())
+ *     .remoteOperations(LongORSet.remoteOperations());
+ * ...
+ * LongORSet.add(map, "members", 42);
+ * boolean member = map.get("members").contains(42);}</pre>
+ *
+ * @see ConflictFreeRemoteOperations
+ */
+public final class LongORSet {
+
+    private static final int VERSION_WORDS = 2;
+    private static final int ELEMENT_WORDS = 3;
+
+    /**
+     * Node identifier and add counter pairs
+     */
+    private final long[] versions;
+    /**
+     * Element, node identifier and add counter triples
+     */
+    private final long[] elements;
+
+    private LongORSet(long[] versions, long[] elements) {
+        this.versions = versions;
+        this.elements = elements;
+    }
+
+    /**
+     * Returns the average size of the serialized form of a set, updated on the given number of
+     * nodes, with the given number of elements.
+     */
+    public static long averageSize(int nodes, int elements) {
+        return 8L + nodes * VERSION_WORDS * 8L + elements * ELEMENT_WORDS * 8L;
+    }
+
+    /**
+     * Returns the remote operations, which merge replicated sets.
+     */
+    public static <K, R> MapRemoteOperations<K, LongORSet, R> remoteOperations() {
+        return new RemoteOperations<>();
+    }
+
+    /**
+     * Adds the element to the set, mapped to the key in the given replicated map. An absent set is
+     * created.
+     *
+     * @throws IllegalArgumentException if the map is not replicated
+     */
+    public static <K> void add(ChronicleMap<K, LongORSet> map, K key, long element) {
+        ConflictFreeValues.update(map, key, (current, localIdentifier, out) -> {
+            long versionCount = current != null ? wordAt(current, 0) : 0;
+            long addCounter = version(current, versionCount, localIdentifier) + 1;
+            long versionsEnd = 1 + versionCount * VERSION_WORDS;
+            // the version vector with the incremented counter of the current node
+            long countPosition = out.writePosition();
+            out.writeLong(0);
+            long newVersionCount = 0;
+            boolean versionWritten = false;
+            for (long i = 1; i < versionsEnd; i += VERSION_WORDS) {
+                long identifier = wordAt(current, i);
+                if (!versionWritten && identifier >= localIdentifier) {
+                    versionWritten = true;
+                    out.writeLong(localIdentifier).writeLong(addCounter);
+                    newVersionCount++;
+                    if (identifier == localIdentifier)
+                        continue;
+                }
+                out.writeLong(identifier).writeLong(wordAt(current, i + 1));
+                newVersionCount++;
+            }
+            if (!versionWritten) {
+                out.writeLong(localIdentifier).writeLong(addCounter);
+                newVersionCount++;
+            }
+            out.writeLong(countPosition, newVersionCount);
+            // the previous tags of the element are replaced with the new one
+            long words = current != null ? words(current) : 0;
+            boolean elementWritten = false;
+            for (long i = versionsEnd; i < words; i += ELEMENT_WORDS) {
+                long e = wordAt(current, i);
+                if (e == element)
+                    continue;
+                if (!elementWritten && e > element) {
+                    elementWritten = true;
+                    writeElement(out, element, localIdentifier, addCounter);
+                }
+                writeElement(out, e, wordAt(current, i + 1), wordAt(current, i + 2));
+            }
+            if (!elementWritten)
+                writeElement(out, element, localIdentifier, addCounter);
+            return true;
+        });
+    }
+
+    /**
+     * Removes the element from the set, mapped to the key in the given replicated map.
+     *
+     * @return {@code true} if the set contained the element
+     * @throws IllegalArgumentException if the map is not replicated
+     */
+    public static <K> boolean remove(ChronicleMap<K, LongORSet> map, K key, long element) {
+        boolean[] removed = new boolean[1];
+        ConflictFreeValues.update(map, key, (current, localIdentifier, out) -> {
+            if (current == null)
+                return false;
+            long versionsEnd = 1 + wordAt(current, 0) * VERSION_WORDS;
+            for (long i = 0; i < versionsEnd; i++) {
+                out.writeLong(wordAt(current, i));
+            }
+            long words = words(current);
+            for (long i = versionsEnd; i < words; i += ELEMENT_WORDS) {
+                long e = wordAt(current, i);
+                if (e == element) {
+                    removed[0] = true;
+                } else {
+                    writeElement(out, e, wordAt(current, i + 1), wordAt(current, i + 2));
+                }
+            }
+            return removed[0];
+        });
+        return removed[0];
+    }
+
+    /**
+     * Returns the add counter of the node with the given identifier in the version vector of the
+     * serialized set.
+     */
+    private static long version(@Nullable Data<?> set, long versionCount, long identifier) {
+        for (long i = 1; i < 1 + versionCount * VERSION_WORDS; i += VERSION_WORDS) {
+            if (wordAt(set, i) == identifier)
+                return wordAt(set, i + 1);
+        }
+        return 0;
+    }
+
+    private static void writeElement(Bytes<?> out, long element, long identifier, long counter) {
+        out.writeLong(element);
+        out.writeLong(identifier);
+        out.writeLong(counter);
+    }
+
+    /**
+     * Returns {@code true} if the set contains the element.
+     */
+    public boolean contains(long element) {
+        for (int i = 0; i < elements.length; i += ELEMENT_WORDS) {
+            if (elements[i] == element)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the elements of the set, in ascending order.
+     */
+    public long[] elements() {
+        long[] result = new long[elements.length / ELEMENT_WORDS];
+        int size = 0;
+        for (int i = 0; i < elements.length; i += ELEMENT_WORDS) {
+            // tags of the same element are adjacent
+            if (size == 0 || result[size - 1] != elements[i])
+                result[size++] = elements[i];
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     */
+    public int size() {
+        return elements().length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LongORSet))
+            return false;
+        LongORSet other = (LongORSet) o;
+        return Arrays.equals(versions, other.versions) && Arrays.equals(elements, other.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(versions) + Arrays.hashCode(elements);
+    }
+
+    @Override
+    public String toString() {
+        return "LongORSet" + Arrays.toString(elements());
+    }
+
+    /**
+     * Marshaller of {@link LongORSet}, which should be configured as the value marshaller of maps
+     * with set values.
+     */
+    public static final class Marshaller implements SizedReader<LongORSet>, SizedWriter<LongORSet>,
+            EnumMarshallable<Marshaller> {
+        public static final Marshaller INSTANCE = new Marshaller();
+
+        private Marshaller() {
+        }
+
+        @NotNull
+        @Override
+        public LongORSet read(@NotNull Bytes in, long size, @Nullable LongORSet using) {
+            long[] versions = new long[(int) in.readLong() * VERSION_WORDS];
+            for (int i = 0; i < versions.length; i++) {
+                versions[i] = in.readLong();
+            }
+            long[] elements = new long[(int) (size / 8 - 1 - versions.length)];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = in.readLong();
+            }
+            return new LongORSet(versions, elements);
+        }
+
+        @Override
+        public long size(@NotNull LongORSet toWrite) {
+            return 8L * (1 + toWrite.versions.length + toWrite.elements.length);
+        }
+
+        @Override
+        public void write(@NotNull Bytes out, long size, @NotNull LongORSet toWrite) {
+            out.writeLong(toWrite.versions.length / VERSION_WORDS);
+            for (long word : toWrite.versions) {
+                out.writeLong(word);
+            }
+            for (long word : toWrite.elements) {
+                out.writeLong(word);
+            }
+        }
+
+        @Override
+        public Marshaller readResolve() {
+            return INSTANCE;
+        }
+    }
+
+    private static final class RemoteOperations<K, R>
+            extends ConflictFreeRemoteOperations<K, LongORSet, R> {
+
+        @Override
+        protected void merge(
+                Data<LongORSet> currentValue, Data<LongORSet> remoteValue, Bytes<?> merged) {
+            long currentVersions = wordAt(currentValue, 0);
+            long remoteVersions = wordAt(remoteValue, 0);
+            long currentVersionsEnd = 1 + currentVersions * VERSION_WORDS;
+            long remoteVersionsEnd = 1 + remoteVersions * VERSION_WORDS;
+
+            // the version vectors are merged by taking maximum counters
+            long countPosition = merged.writePosition();
+            merged.writeLong(0);
+            long mergedVersions = 0;
+            long i = 1, j = 1;
+            while (i < currentVersionsEnd || j < remoteVersionsEnd) {
+                long currentIdentifier =
+                        i < currentVersionsEnd ? wordAt(currentValue, i) : Long.MAX_VALUE;
+                long remoteIdentifier =
+                        j < remoteVersionsEnd ? wordAt(remoteValue, j) : Long.MAX_VALUE;
+                if (currentIdentifier < remoteIdentifier) {
+                    merged.writeLong(currentIdentifier).writeLong(wordAt(currentValue, i + 1));
+                    i += VERSION_WORDS;
+                } else if (remoteIdentifier < currentIdentifier) {
+                    merged.writeLong(remoteIdentifier).writeLong(wordAt(remoteValue, j + 1));
+                    j += VERSION_WORDS;
+                } else {
+                    merged.writeLong(currentIdentifier).writeLong(Math.max(
+                            wordAt(currentValue, i + 1), wordAt(remoteValue, j + 1)));
+                    i += VERSION_WORDS;
+                    j += VERSION_WORDS;
+                }
+                mergedVersions++;
+            }
+            merged.writeLong(countPosition, mergedVersions);
+
+            // A tag, present on both sides, is kept. A tag, present only on one side, is kept, if
+            // the other side hasn't observed it yet, otherwise it was removed on the other side
+            long currentWords = words(currentValue);
+            long remoteWords = words(remoteValue);
+            i = currentVersionsEnd;
+            j = remoteVersionsEnd;
+            while (i < currentWords || j < remoteWords) {
+                int cmp;
+                if (i >= currentWords) {
+                    cmp = 1;
+                } else if (j >= remoteWords) {
+                    cmp = -1;
+                } else {
+                    cmp = Long.compare(wordAt(currentValue, i), wordAt(remoteValue, j));
+                    if (cmp == 0)
+                        cmp = Long.compare(wordAt(currentValue, i + 1), wordAt(remoteValue, j + 1));
+                }
+                if (cmp < 0) {
+                    keepIfNotObserved(currentValue, i, remoteValue, remoteVersions, merged);
+                    i += ELEMENT_WORDS;
+                } else if (cmp > 0) {
+                    keepIfNotObserved(remoteValue, j, currentValue, currentVersions, merged);
+                    j += ELEMENT_WORDS;
+                } else {
+                    long currentCounter = wordAt(currentValue, i + 2);
+                    long remoteCounter = wordAt(remoteValue, j + 2);
+                    if (currentCounter == remoteCounter) {
+                        writeElement(merged, wordAt(currentValue, i),
+                                wordAt(currentValue, i + 1), currentCounter);
+                    } else {
+                        // At most one of the tags survives: the other side has observed the
+                        // tag with a smaller counter, because it has the greater counter
+                        keepIfNotObserved(currentValue, i, remoteValue, remoteVersions, merged);
+                        keepIfNotObserved(remoteValue, j, currentValue, currentVersions, merged);
+                    }
+                    i += ELEMENT_WORDS;
+                    j += ELEMENT_WORDS;
+                }
+            }
+        }
+
+        private static void keepIfNotObserved(
+                Data<LongORSet> set, long elementIndex, Data<LongORSet> otherSet,
+                long otherSetVersions, Bytes<?> merged) {
+            long identifier = wordAt(set, elementIndex + 1);
+            long counter = wordAt(set, elementIndex + 2);
+            if (counter > version(otherSet, otherSetVersions, identifier))
+                writeElement(merged, wordAt(set, elementIndex), identifier, counter);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.map.ChronicleMap;
+
+import static net.openhft.chronicle.map.replication.ConflictFreeValues.wordAt;
+
+/**
+ * Conflict-free replicated registers of {@code Long} values, which keep the maximum or the minimum
+ * of all values, written on any node. Values of maps with register values are ordinary {@code
+ * Long}s, and only the remote operations should be configured: <pre>{@code
+ * ChronicleMapBuilder<String, Long> builder = ChronicleMap
+ *     .of(String.class, Long.class)
+ *     .replication(identifier);
+ * ((ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI())
+ *     .remoteOperations(LongRegister.MAX.remoteOperations());
+ * ...
+ * LongRegister.MAX.update(map, "highWatermark", offset);}</pre>
+ *
+ * @see ConflictFreeRemoteOperations
+ */
+public enum LongRegister {
+    /**
+     * The register, which keeps the maximum of all written values
+     */
+    MAX {
+        @Override
+        long merge(long a, long b) {
+            return Math.max(a, b);
+        }
+    },
+    /**
+     * The register, which keeps the minimum of all written values
+     */
+    MIN {
+        @Override
+        long merge(long a, long b) {
+            return Math.min(a, b);
+        }
+    };
+
+    abstract long merge(long a, long b);
+
+    /**
+     * Returns the remote operations, which merge replicated values of this register type.
+     */
+    public <K, R> MapRemoteOperations<K, Long, R> remoteOperations() {
+        return new RemoteOperations<>(this);
+    }
+
+    /**
+     * Merges the given value into the register, mapped to the key in the given replicated map.
+     * An absent register is created with the given value.
+     *
+     * @return the new value of the register
+     * @throws IllegalArgumentException if the map is not replicated
+     */
+    public <K> long update(ChronicleMap<K, Long> map, K key, long value) {
+        Bytes<?> updated = ConflictFreeValues.update(map, key, (current, localIdentifier, out) -> {
+            if (current == null) {
+                out.writeLong(value);
+                return true;
+            }
+            long currentValue = wordAt(current, 0);
+            long newValue = merge(currentValue, value);
+            out.writeLong(newValue);
+            return newValue != currentValue;
+        });
+        return updated.readLong(updated.readPosition());
+    }
+
+    private static final class RemoteOperations<K, R>
+            extends ConflictFreeRemoteOperations<K, Long, R> {
+        private final LongRegister register;
+
+        RemoteOperations(LongRegister register) {
+            this.register = register;
+        }
+
+        @Override
+        protected void merge(Data<Long> currentValue, Data<Long> remoteValue, Bytes<?> merged) {
+            merged.writeLong(register.merge(wordAt(currentValue, 0), wordAt(remoteValue, 0)));
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.serialization.SizedReader;
+import net.openhft.chronicle.hash.serialization.SizedWriter;
+import net.openhft.chronicle.hash.serialization.impl.EnumMarshallable;
+import net.openhft.chronicle.map.ChronicleMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static net.openhft.chronicle.map.replication.ConflictFreeValues.wordAt;
+import static net.openhft.chronicle.map.replication.ConflictFreeValues.words;
+
+/**
+ * Conflict-free replicated counter, which could be incremented and decremented concurrently on
+ * different nodes without losing updates (PN-Counter). The counter keeps the sums of increments
+ * and decrements, made on each node, in a separate slot. A merge takes the maximum of each sum
+ * from both sides. A G-Counter (grow-only counter) is a {@code PNCounter}, which is only
+ * incremented.
+ * <p>
+ * <p>The serialized form is a sequence of slots, ordered by node identifier, each of three 64-bit
+ * words: node identifier, increments and decrements. Example configuration: <pre>{@code
+ * ChronicleMapBuilder<String, PNCounter> builder = ChronicleMap
+ *     .of(String.class, PNCounter.class)
+ *     .valueMarshaller(PNCounter.Marshaller.INSTANCE)
+ *     .averageValueSize(PNCounter.slotsSize(expectedNodes))
+ *     .replication(identifier);
+ * ((ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI())
+ *     .remoteOperations(PNCounter.remoteOperations());
+ * ...
+ * PNCounter.add(map, "hits", 1);
+ * long hits = map.get("hits").value();}</pre>
+ *
+ * @see ConflictFreeRemoteOperations
+ */
+public final class PNCounter {
+
+    private static final int SLOT_WORDS = 3;
+
+    /**
+     * Node identifier, increments and decrements triples
+     */
+    private final long[] slots;
+
+    private PNCounter(long[] slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Returns the size of the serialized form of a counter, updated on the given number of nodes.
+     */
+    public static long slotsSize(int nodes) {
+        return nodes * SLOT_WORDS * 8L;
+    }
+
+    /**
+     * Returns the remote operations, which merge replicated counters.
+     */
+    public static <K, R> MapRemoteOperations<K, PNCounter, R> remoteOperations() {
+        return new RemoteOperations<>();
+    }
+
+    /**
+     * Adds the {@code delta} (which could be negative) to the counter, mapped to the key in the
+     * given replicated map, in the slot of the current node. An absent counter is created.
+     *
+     * @return the new value of the counter
+     * @throws IllegalArgumentException if the map is not replicated
+     */
+    public static <K> long add(ChronicleMap<K, PNCounter> map, K key, long delta) {
+        long increment = delta >= 0 ? delta : 0;
+        long decrement = delta >= 0 ? 0 : Math.negateExact(delta);
+        Bytes<?> updated = ConflictFreeValues.update(map, key, (current, localIdentifier, out) -> {
+            long words = current != null ? words(current) : 0;
+            boolean added = false;
+            for (long i = 0; i < words; i += SLOT_WORDS) {
+                long identifier = wordAt(current, i);
+                if (!added && identifier >= localIdentifier) {
+                    added = true;
+                    if (identifier == localIdentifier) {
+                        writeSlot(out, identifier, wordAt(current, i + 1) + increment,
+                                wordAt(current, i + 2) + decrement);
+                        continue;
+                    }
+                    writeSlot(out, localIdentifier, increment, decrement);
+                }
+                writeSlot(out, identifier, wordAt(current, i + 1), wordAt(current, i + 2));
+            }
+            if (!added)
+                writeSlot(out, localIdentifier, increment, decrement);
+            return true;
+        });
+        long value = 0;
+        for (long offset = updated.readPosition(); offset < updated.readLimit();
+             offset += SLOT_WORDS * 8L) {
+            value += updated.readLong(offset + 8) - updated.readLong(offset + 16);
+        }
+        return value;
+    }
+
+    private static void writeSlot(Bytes<?> out, long identifier, long increments, long decrements) {
+        out.writeLong(identifier);
+        out.writeLong(increments);
+        out.writeLong(decrements);
+    }
+
+    /**
+     * Returns the value of the counter: the total increments minus the total decrements.
+     */
+    public long value() {
+        return increments() - decrements();
+    }
+
+    /**
+     * Returns the sum of increments, made on all nodes.
+     */
+    public long increments() {
+        long increments = 0;
+        for (int i = 0; i < slots.length; i += SLOT_WORDS) {
+            increments += slots[i + 1];
+        }
+        return increments;
+    }
+
+    /**
+     * Returns the sum of decrements, made on all nodes.
+     */
+    public long decrements() {
+        long decrements = 0;
+        for (int i = 0; i < slots.length; i += SLOT_WORDS) {
+            decrements += slots[i + 2];
+        }
+        return decrements;
+    }
+
+    /**
+     * Returns the sum of increments, made on the node with the given identifier.
+     */
+    public long increments(byte identifier) {
+        int slot = slot(identifier);
+        return slot >= 0 ? slots[slot + 1] : 0;
+    }
+
+    /**
+     * Returns the sum of decrements, made on the node with the given identifier.
+     */
+    public long decrements(byte identifier) {
+        int slot = slot(identifier);
+        return slot >= 0 ? slots[slot + 2] : 0;
+    }
+
+    private int slot(byte identifier) {
+        for (int i = 0; i < slots.length; i += SLOT_WORDS) {
+            if (slots[i] == identifier)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PNCounter && Arrays.equals(slots, ((PNCounter) o).slots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+
+    @Override
+    public String toString() {
+        return "PNCounter{value=" + value() + "}";
+    }
+
+    /**
+     * Marshaller of {@link PNCounter}, which should be configured as the value marshaller of maps
+     * with counter values.
+     */
+    public static final class Marshaller implements SizedReader<PNCounter>, SizedWriter<PNCounter>,
+            EnumMarshallable<Marshaller> {
+        public static final Marshaller INSTANCE = new Marshaller();
+
+        private Marshaller() {
+        }
+
+        @NotNull
+        @Override
+        public PNCounter read(@NotNull Bytes in, long size, @Nullable PNCounter using) {
+            long[] slots = new long[(int) (size / 8)];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = in.readLong();
+            }
+            return new PNCounter(slots);
+        }
+
+        @Override
+        public long size(@NotNull PNCounter toWrite) {
+            return toWrite.slots.length * 8L;
+        }
+
+        @Override
+        public void write(@NotNull Bytes out, long size, @NotNull PNCounter toWrite) {
+            for (long word : toWrite.slots) {
+                out.writeLong(word);
+            }
+        }
+
+        @Override
+        public Marshaller readResolve() {
+            return INSTANCE;
+        }
+    }
+
+    private static final class RemoteOperations<K, R>
+            extends ConflictFreeRemoteOperations<K, PNCounter, R> {
+
+        @Override
+        protected void merge(
+                Data<PNCounter> currentValue, Data<PNCounter> remoteValue, Bytes<?> merged) {
+            long currentWords = words(currentValue);
+            long remoteWords = words(remoteValue);
+            long i = 0, j = 0;
+            while (i < currentWords || j < remoteWords) {
+                long currentIdentifier = i < currentWords ? wordAt(currentValue, i) : Long.MAX_VALUE;
+                long remoteIdentifier = j < remoteWords ? wordAt(remoteValue, j) : Long.MAX_VALUE;
+                if (currentIdentifier < remoteIdentifier) {
+                    writeSlot(merged, currentIdentifier,
+                            wordAt(currentValue, i + 1), wordAt(currentValue, i + 2));
+                    i += SLOT_WORDS;
+                } else if (remoteIdentifier < currentIdentifier) {
+                    writeSlot(merged, remoteIdentifier,
+                            wordAt(remoteValue, j + 1), wordAt(remoteValue, j + 2));
+                    j += SLOT_WORDS;
+                } else {
+                    writeSlot(merged, currentIdentifier,
+                            Math.max(wordAt(currentValue, i + 1), wordAt(remoteValue, j + 1)),
+                            Math.max(wordAt(currentValue, i + 2), wordAt(remoteValue, j + 2)));
+                    i += SLOT_WORDS;
+                    j += SLOT_WORDS;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.map.ReplicationEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A full-duplex byte stream between two replicated Chronicle Map nodes, used by {@link
+ * ReplicationEngine}. {@link #write} and {@link #read} are called from different threads, but
+ * each of them is never called concurrently with itself.
+ *
+ * @see SocketReplicationChannel
+ * @see SharedMemoryReplicationChannel
+ */
+public interface ReplicationChannel extends Closeable {
+
+    /**
+     * Writes all {@code length} bytes from the given array, blocking if needed.
+     *
+     * @throws IOException if the channel is closed or broken
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Reads up to {@code length} bytes into the given array, blocking until at least one byte is
+     * available.
+     *
+     * @return the number of bytes read, or -1 if the channel is closed by the other side
+     * @throws IOException if the channel is closed or broken
+     */
+    int read(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Closes this channel. Threads blocked in {@link #write} or {@link #read} should return or
+     * throw promptly.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.core.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static net.openhft.chronicle.core.OS.pageAlign;
+
+/**
+ * {@link ReplicationChannel} over a pair of single-producer, single-consumer byte rings in a
+ * memory-mapped file, for replication between processes on the same host (or between maps in the
+ * same process), without going through the network stack.
+ * <p>
+ * <p>One side {@linkplain #create(File, int) creates} the file, the other side {@linkplain
+ * #open(File) opens} it after that. Each side writes to one ring and reads from the other.
+ * Waiting for data or free space in the ring spins for a while, then parks with growing pauses.
+ * <p>
+ * <p>Each side marks the file as attached while its channel is open. The file couldn't be
+ * {@linkplain #create(File, int) re-created} until both sides are {@linkplain #close() closed},
+ * because the other side may still access the mapped memory.
+ */
+public final class SharedMemoryReplicationChannel implements ReplicationChannel {
+
+    private static final long CAPACITY_OFFSET = 0L;
+    private static final long CREATOR_ATTACHED_OFFSET = 8L;
+    private static final long OPENER_ATTACHED_OFFSET = 16L;
+    private static final long FIRST_RING_OFFSET = 64L;
+    // ring header fields are on separate cache lines, to avoid false sharing between the writer
+    // and the reader
+    private static final long WRITE_SEQUENCE_OFFSET = 0L;
+    private static final long READ_SEQUENCE_OFFSET = 64L;
+    private static final long CLOSED_OFFSET = 128L;
+    private static final long RING_HEADER_SIZE = 192L;
+
+    private static final int SPINS_BEFORE_PARKING = 1000;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final File file;
+    private final long address;
+    private final long mappingSize;
+    private final NativeBytesStore<Void> memory;
+    private final int capacity;
+    private final long writeRingOffset;
+    private final long readRingOffset;
+    private final long attachedOffset;
+
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile boolean closed;
+
+    private SharedMemoryReplicationChannel(File file, RandomAccessFile raf, int capacity,
+                                           boolean creator) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        long ringSize = RING_HEADER_SIZE + capacity;
+        mappingSize = pageAlign(FIRST_RING_OFFSET + 2 * ringSize);
+        if (raf.length() < mappingSize)
+            raf.setLength(mappingSize);
+        address = OS.map(raf.getChannel(), READ_WRITE, 0, mappingSize);
+        memory = new NativeBytesStore<>(address, mappingSize, null, false);
+        long firstRingOffset = FIRST_RING_OFFSET;
+        long secondRingOffset = FIRST_RING_OFFSET + ringSize;
+        writeRingOffset = creator ? firstRingOffset : secondRingOffset;
+        readRingOffset = creator ? secondRingOffset : firstRingOffset;
+        attachedOffset = creator ? CREATOR_ATTACHED_OFFSET : OPENER_ATTACHED_OFFSET;
+        memory.writeOrderedLong(attachedOffset, 1L);
+    }
+
+    /**
+     * Creates (or re-creates) the given file with two rings of the given capacity, and returns the
+     * channel for the creating side.
+     * <p>
+     * <p>The previous file is deleted rather than truncated, so that a process which still has it
+     * mapped doesn't crash on access to the truncated memory.
+     *
+     * @param ringCapacity the capacity of each of the two rings in bytes, a power of 2
+     * @throws IllegalStateException if the file is attached by a channel of either side, which
+     * isn't closed yet. If the process which had the channel open has died, the file should be
+     * deleted manually
+     */
+    public static SharedMemoryReplicationChannel create(File file, int ringCapacity)
+            throws IOException {
+        if (ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException(
+                    "ringCapacity should be a positive power of 2, " + ringCapacity + " given");
+        }
+        if (file.exists()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                FileChannel fileChannel = raf.getChannel();
+                if (readHeaderLong(fileChannel, CREATOR_ATTACHED_OFFSET) != 0 ||
+                        readHeaderLong(fileChannel, OPENER_ATTACHED_OFFSET) != 0) {
+                    throw new IllegalStateException(file + " is still attached by an open " +
+                            "SharedMemoryReplicationChannel, both sides should be closed before " +
+                            "re-creating it");
+                }
+            }
+            // a fresh file instead of the previous state, see the method doc
+            Files.delete(file.toPath());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            SharedMemoryReplicationChannel channel =
+                    new SharedMemoryReplicationChannel(file, raf, ringCapacity, true);
+            channel.memory.writeOrderedInt(CAPACITY_OFFSET, ringCapacity);
+            return channel;
+        }
+    }
+
+    /**
+     * Opens the file, created by the other side via {@link #create(File, int)}, and returns the
+     * channel for the opening side.
+     */
+    public static SharedMemoryReplicationChannel open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel fileChannel = raf.getChannel();
+            int capacity = fileChannel.size() >= FIRST_RING_OFFSET ? readCapacity(fileChannel) : 0;
+            if (capacity <= 0) {
+                throw new IllegalStateException(file + " is not created by " +
+                        "SharedMemoryReplicationChannel.create() yet");
+            }
+            return new SharedMemoryReplicationChannel(file, raf, capacity, false);
+        }
+    }
+
+    private static int readCapacity(FileChannel fileChannel) throws IOException {
+        ByteBuffer buffer = readHeader(fileChannel, CAPACITY_OFFSET, 4);
+        return buffer != null ? buffer.getInt(0) : 0;
+    }
+
+    private static long readHeaderLong(FileChannel fileChannel, long offset) throws IOException {
+        ByteBuffer buffer = readHeader(fileChannel, offset, 8);
+        return buffer != null ? buffer.getLong(0) : 0L;
+    }
+
+    /**
+     * @return the buffer with the read bytes, or {@code null} if the file is shorter
+     */
+    private static ByteBuffer readHeader(FileChannel fileChannel, long offset, int size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, offset + buffer.position()) < 0)
+                return null;
+        }
+        return buffer;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        enter();
+        try {
+            long writeSequence = memory.readLong(writeRingOffset + WRITE_SEQUENCE_OFFSET);
+            int idleIterations = 0;
+            while (length > 0) {
+                checkNotClosed();
+                if (memory.readVolatileLong(readRingOffset + CLOSED_OFFSET) != 0)
+                    throw new IOException(this + " is closed by the other side");
+                long readSequence =
+                        memory.readVolatileLong(writeRingOffset + READ_SEQUENCE_OFFSET);
+                int free = (int) (capacity - (writeSequence - readSequence));
+                if (free == 0) {
+                    idle(idleIterations++);
+                    continue;
+                }
+                idleIterations = 0;
+                int toWrite = Math.min(free, length);
+                int ringPos = (int) (writeSequence & (capacity - 1));
+                int firstPart = Math.min(toWrite, capacity - ringPos);
+                long dataOffset = writeRingOffset + RING_HEADER_SIZE;
+                memory.write(dataOffset + ringPos, bytes, offset, firstPart);
+                if (firstPart < toWrite)
+                    memory.write(dataOffset, bytes, offset + firstPart, toWrite - firstPart);
+                writeSequence += toWrite;
+                // publishes the written bytes to the reader
+                memory.writeOrderedLong(writeRingOffset + WRITE_SEQUENCE_OFFSET, writeSequence);
+                offset += toWrite;
+                length -= toWrite;
+            }
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        enter();
+        try {
+            long readSequence = memory.readLong(readRingOffset + READ_SEQUENCE_OFFSET);
+            int idleIterations = 0;
+            while (true) {
+                checkNotClosed();
+                long writeSequence =
+                        memory.readVolatileLong(readRingOffset + WRITE_SEQUENCE_OFFSET);
+                int available = (int) (writeSequence - readSequence);
+                if (available == 0) {
+                    // the writer sets the closed flag after the last write, so if the ring is
+                    // still empty after the flag is observed, there will be no more data
+                    if (memory.readVolatileLong(readRingOffset + CLOSED_OFFSET) != 0 &&
+                            memory.readVolatileLong(readRingOffset + WRITE_SEQUENCE_OFFSET) ==
+                                    readSequence) {
+                        return -1;
+                    }
+                    idle(idleIterations++);
+                    continue;
+                }
+                int toRead = Math.min(available, length);
+                int ringPos = (int) (readSequence & (capacity - 1));
+                int firstPart = Math.min(toRead, capacity - ringPos);
+                long dataOffset = readRingOffset + RING_HEADER_SIZE;
+                memory.read(dataOffset + ringPos, bytes, offset, firstPart);
+                if (firstPart < toRead)
+                    memory.read(dataOffset, bytes, offset + firstPart, toRead - firstPart);
+                // releases the space to the writer
+                memory.writeOrderedLong(readRingOffset + READ_SEQUENCE_OFFSET,
+                        readSequence + toRead);
+                return toRead;
+            }
+        } finally {
+            exit();
+        }
+    }
+
+    private void idle(int idleIterations) throws InterruptedIOException {
+        if (idleIterations < SPINS_BEFORE_PARKING)
+            return;
+        int parks = idleIterations - SPINS_BEFORE_PARKING;
+        LockSupport.parkNanos(this, Math.min(MAX_PARK_NANOS, 1000L << Math.min(parks, 10)));
+        if (Thread.interrupted())
+            throw new InterruptedIOException();
+    }
+
+    private void enter() throws ClosedChannelException {
+        users.incrementAndGet();
+        if (closed) {
+            users.decrementAndGet();
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void exit() {
+        users.decrementAndGet();
+    }
+
+    private void checkNotClosed() throws ClosedChannelException {
+        if (closed)
+            throw new ClosedChannelException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        synchronized (this) {
+            if (closed)
+                return;
+            memory.writeOrderedLong(writeRingOffset + CLOSED_OFFSET, 1L);
+            closed = true;
+            // threads in write() and read() observe the closed flag within MAX_PARK_NANOS, the
+            // memory couldn't be unmapped before they leave
+            while (users.get() != 0) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            // the memory is not accessed by this side anymore, the file could be re-created
+            memory.writeOrderedLong(attachedOffset, 0L);
+            OS.unmap(address, mappingSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SharedMemoryReplicationChannel{file=" + file + "}";
+    }
+}
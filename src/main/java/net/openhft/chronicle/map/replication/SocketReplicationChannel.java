@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.replication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * {@link ReplicationChannel} over a blocking NIO TCP connection, for replication between hosts, or
+ * processes on the same host via loopback.
+ */
+public final class SocketReplicationChannel implements ReplicationChannel {
+
+    private final SocketChannel socketChannel;
+
+    /**
+     * @param socketChannel a connected socket channel, it is put into blocking mode
+     */
+    public SocketReplicationChannel(SocketChannel socketChannel) throws IOException {
+        socketChannel.configureBlocking(true);
+        // Batches are flushed explicitly, Nagle's algorithm only adds latency
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.socketChannel = socketChannel;
+    }
+
+    /**
+     * Connects to the given address, and returns a channel over the connection.
+     */
+    public static SocketReplicationChannel connect(InetSocketAddress address) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open(address);
+        try {
+            return new SocketReplicationChannel(socketChannel);
+        } catch (IOException | RuntimeException e) {
+            socketChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Accepts a connection on the given server socket channel (blocking until a connection is
+     * made), and returns a channel over the connection.
+     */
+    public static SocketReplicationChannel accept(ServerSocketChannel serverSocketChannel)
+            throws IOException {
+        SocketChannel socketChannel = serverSocketChannel.accept();
+        try {
+            return new SocketReplicationChannel(socketChannel);
+        } catch (IOException | RuntimeException e) {
+            socketChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(bytes, offset, length);
+        while (src.hasRemaining()) {
+            socketChannel.write(src);
+        }
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        return socketChannel.read(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socketChannel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketReplicationChannel{" + socketChannel + "}";
+    }
+}
@@ -16,10 +16,13 @@
 
 package net.openhft.chronicle.set;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
 import net.openhft.chronicle.hash.ChronicleHashBuilder;
 import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
 import net.openhft.chronicle.hash.ChronicleHashCorruption;
 import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.locks.LockWaitStrategy;
 import net.openhft.chronicle.hash.serialization.*;
 import net.openhft.chronicle.map.*;
 import net.openhft.chronicle.map.replication.MapRemoteOperations;
@@ -29,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@code ChronicleSetBuilder} manages the whole set of {@link ChronicleSet} configurations, could
@@ -264,6 +268,24 @@ public final class ChronicleSetBuilder<K>
         return this;
     }
 
+    @Override
+    public ChronicleSetBuilder<K> keyHashFunction(@NotNull LongHashFunction keyHashFunction) {
+        chronicleMapBuilder.keyHashFunction(keyHashFunction);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> storeKeyHashes(boolean storeKeyHashes) {
+        chronicleMapBuilder.storeKeyHashes(storeKeyHashes);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> fairSegmentLocks(boolean fairSegmentLocks) {
+        chronicleMapBuilder.fairSegmentLocks(fairSegmentLocks);
+        return this;
+    }
+
     @Override
     public ChronicleSetBuilder<K> aligned64BitMemoryOperationsAtomic(
             boolean aligned64BitMemoryOperationsAtomic) {
@@ -277,6 +299,45 @@ public final class ChronicleSetBuilder<K>
         return this;
     }
 
+    @Override
+    public ChronicleSetBuilder<K> checksumAlgorithm(@NotNull ChecksumAlgorithm checksumAlgorithm) {
+        chronicleMapBuilder.checksumAlgorithm(checksumAlgorithm);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> checksumScrubbing(
+            long entriesPerSecond, @NotNull ChronicleHashCorruption.Listener corruptionListener) {
+        chronicleMapBuilder.checksumScrubbing(entriesPerSecond, corruptionListener);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> lockWaitStrategy(@NotNull LockWaitStrategy lockWaitStrategy) {
+        chronicleMapBuilder.lockWaitStrategy(lockWaitStrategy);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> segmentLockStats(int samplingInterval, boolean sharedCounters) {
+        chronicleMapBuilder.segmentLockStats(samplingInterval, sharedCounters);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> recoverLocksOfDeadProcesses(
+            long checkAfter, TimeUnit unit,
+            @NotNull ChronicleHashCorruption.Listener corruptionListener) {
+        chronicleMapBuilder.recoverLocksOfDeadProcesses(checkAfter, unit, corruptionListener);
+        return this;
+    }
+
+    @Override
+    public ChronicleSetBuilder<K> contextPool(int maxIdleContexts) {
+        chronicleMapBuilder.contextPool(maxIdleContexts);
+        return this;
+    }
+
     /**
      * Inject your SPI code around basic {@code ChronicleSet}'s operations with entries:
      * removing entries and inserting new entries.
@@ -16,8 +16,11 @@
 
 package net.openhft.chronicle.set;
 
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
 import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
 import net.openhft.chronicle.hash.Data;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
 import net.openhft.chronicle.hash.serialization.impl.SerializationBuilder;
 import net.openhft.chronicle.map.replication.MapRemoteOperations;
 import net.openhft.chronicle.map.replication.MapRemoteQueryContext;
@@ -101,11 +104,36 @@ class ChronicleSetBuilderPrivateAPI<K>
         return mapB.checksumEntries();
     }
 
+    @Override
+    public ChecksumAlgorithm checksumAlgorithm() {
+        return mapB.checksumAlgorithm();
+    }
+
+    @Override
+    public LongHashFunction keyHashFunction() {
+        return mapB.keyHashFunction();
+    }
+
+    @Override
+    public boolean storeKeyHashes() {
+        return mapB.storeKeyHashes();
+    }
+
+    @Override
+    public boolean fairSegmentLocks() {
+        return mapB.fairSegmentLocks();
+    }
+
     @Override
     public void replication(byte identifier) {
         mapB.replication(identifier);
     }
 
+    @Override
+    public void replicationChangeSummaries(boolean replicationChangeSummaries) {
+        mapB.replicationChangeSummaries(replicationChangeSummaries);
+    }
+
     @Override
     public void cleanupRemovedEntries(boolean cleanupRemovedEntries) {
         mapB.cleanupRemovedEntries(cleanupRemovedEntries);
@@ -116,6 +144,16 @@ class ChronicleSetBuilderPrivateAPI<K>
         mapB.removedEntryCleanupTimeout(removedEntryCleanupTimeout, unit);
     }
 
+    @Override
+    public void removedEntryCleanupRate(long entriesPerSecond) {
+        mapB.removedEntryCleanupRate(entriesPerSecond);
+    }
+
+    @Override
+    public void timestampProvider(TimestampProvider timestampProvider) {
+        mapB.timestampProvider(timestampProvider);
+    }
+
     @Override
     public void remoteOperations(SetRemoteOperations<K, ?> remoteOperations) {
         mapB.remoteOperations(new MapRemoteOperations<K, DummyValue, Object>() {
@@ -17,13 +17,17 @@
 package net.openhft.chronicle.set;
 
 import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.hash.ChecksumScrubberStats;
 import net.openhft.chronicle.hash.Data;
 import net.openhft.chronicle.hash.impl.util.Objects;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
 import net.openhft.chronicle.map.ChronicleMap;
 import net.openhft.chronicle.map.VanillaChronicleMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
@@ -124,11 +128,44 @@ class SetFromMap<E> extends AbstractSet<E> implements ChronicleSet<E> {
         return m.longSize();
     }
 
+    @Override
+    public long estimatedSize() {
+        return m.estimatedSize();
+    }
+
     @Override
     public long offHeapMemoryUsed() {
         return m.offHeapMemoryUsed();
     }
 
+    @Override
+    public int liveContexts() {
+        return m.liveContexts();
+    }
+
+    @Nullable
+    @Override
+    public ChecksumScrubberStats checksumScrubberStats() {
+        return m.checksumScrubberStats();
+    }
+
+    @Nullable
+    @Override
+    public SegmentLockStats segmentLockStats() {
+        return m.segmentLockStats();
+    }
+
+    @Override
+    public long snapshotTo(File file) throws IOException {
+        return m.snapshotTo(file);
+    }
+
+    @Override
+    public long snapshotTo(File file, boolean incremental, long maxBytesPerSecond)
+            throws IOException {
+        return m.snapshotTo(file, incremental, maxBytesPerSecond);
+    }
+
     @Override
     public Class<E> keyClass() {
         return m.keyClass();
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.impl;
+
+import net.openhft.chronicle.core.OS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseFairSegmentLockWordTest {
+
+    private static final SegmentLockWord LOCK = PhaseFairSegmentLockWord.INSTANCE;
+
+    private long lockAddr;
+
+    @Before
+    public void allocate() {
+        lockAddr = OS.memory().allocate(8);
+        LOCK.reset(lockAddr);
+    }
+
+    @After
+    public void free() {
+        OS.memory().freeMemory(lockAddr, 8);
+    }
+
+    @Test
+    public void waitingWriterBlocksNewReaders() {
+        assertTrue(LOCK.tryReadLock(lockAddr));
+        LOCK.registerWait(lockAddr);
+        long phase = LOCK.phase(lockAddr);
+        assertFalse(LOCK.tryReadLock(lockAddr));
+        assertFalse(LOCK.tryReadLock(lockAddr, phase));
+        assertFalse(LOCK.tryUpdateLock(lockAddr, phase));
+
+        LOCK.readUnlock(lockAddr);
+        assertTrue(LOCK.tryWriteLockAndDeregisterWait(lockAddr));
+        LOCK.writeUnlock(lockAddr);
+        assertEquals(phase + 1, LOCK.phase(lockAddr));
+        assertTrue(LOCK.tryReadLock(lockAddr));
+    }
+
+    @Test
+    public void readerWaitingSinceEarlierPhaseOvertakesWaitingWriter() {
+        assertTrue(LOCK.tryWriteLock(lockAddr));
+        // a reader starts waiting while the write lock is held
+        long readerPhase = LOCK.phase(lockAddr);
+        assertFalse(LOCK.tryReadLock(lockAddr, readerPhase));
+        // another writer is waiting too
+        LOCK.registerWait(lockAddr);
+
+        LOCK.writeUnlock(lockAddr);
+        // the reader is admitted regardless of the waiting writer
+        assertTrue(LOCK.tryReadLock(lockAddr, readerPhase));
+        // but readers, arriving in the new phase, are not
+        assertFalse(LOCK.tryReadLock(lockAddr, LOCK.phase(lockAddr)));
+        assertFalse(LOCK.tryWriteLockAndDeregisterWait(lockAddr));
+
+        LOCK.readUnlock(lockAddr);
+        assertTrue(LOCK.tryWriteLockAndDeregisterWait(lockAddr));
+        LOCK.writeUnlock(lockAddr);
+        assertEquals(0, LOCK.getState(lockAddr) & 0xFFFF_FFFF_FFFFL);
+    }
+
+    @Test
+    public void writeDowngradesStartNewPhase() {
+        long phase = LOCK.phase(lockAddr);
+        assertTrue(LOCK.tryWriteLock(lockAddr));
+        LOCK.downgradeWriteToUpdateLock(lockAddr);
+        assertEquals(phase + 1, LOCK.phase(lockAddr));
+        assertTrue(LOCK.tryUpgradeUpdateToWriteLock(lockAddr));
+        LOCK.downgradeWriteToReadLock(lockAddr);
+        assertEquals(phase + 2, LOCK.phase(lockAddr));
+        LOCK.readUnlock(lockAddr);
+    }
+
+    @Test
+    public void phaseWrapsAround() {
+        for (int i = 0; i < (1 << 16); i++) {
+            assertTrue(LOCK.tryWriteLock(lockAddr));
+            LOCK.writeUnlock(lockAddr);
+        }
+        assertEquals(0, LOCK.phase(lockAddr));
+        assertEquals(0, LOCK.getState(lockAddr));
+    }
+}
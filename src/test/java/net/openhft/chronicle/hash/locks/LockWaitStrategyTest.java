@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.locks;
+
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ExternalMapQueryContext;
+import net.openhft.chronicle.map.MapEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LockWaitStrategyTest {
+
+    private static ChronicleMap<Integer, Long> map(LockWaitStrategy lockWaitStrategy) {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .actualSegments(1)
+                .lockWaitStrategy(lockWaitStrategy)
+                .create();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxParkIsLimited() {
+        LockWaitStrategy.spinYieldPark(10, 10, 1, 2, MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxParkIsNotLessThanMinPark() {
+        LockWaitStrategy.spinYieldPark(10, 10, 100, 10, MICROSECONDS);
+    }
+
+    @Test
+    public void contendedIncrementsAreNotLost() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        int incrementsPerThread = 2_000;
+        try (ChronicleMap<Integer, Long> map = map(
+                LockWaitStrategy.spinYieldPark(10, 10, 1, 100, MICROSECONDS))) {
+            List<Thread> incrementers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread incrementer = new Thread(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        map.merge(i % 4, 1L, Long::sum);
+                    }
+                });
+                incrementer.start();
+                incrementers.add(incrementer);
+            }
+            for (Thread incrementer : incrementers) {
+                incrementer.join();
+            }
+            long sum = 0;
+            for (long count : map.values()) {
+                sum += count;
+            }
+            assertEquals((long) threads * incrementsPerThread, sum);
+        }
+    }
+
+    @Test
+    public void tryLockTimesOutWhileParking() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = map(LockWaitStrategy.spinYieldPark())) {
+            map.put(1, 1L);
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                    c.writeLock().lock();
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            holder.start();
+            locked.await();
+            try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                long start = System.nanoTime();
+                assertFalse(c.readLock().tryLock(50, MILLISECONDS));
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("waited " + waitedMillis + " ms", waitedMillis >= 49);
+                release.countDown();
+                holder.join();
+                assertTrue(c.readLock().tryLock(1, TimeUnit.SECONDS));
+                MapEntry<Integer, Long> entry = c.entry();
+                assertEquals(1L, (long) entry.value().get());
+            }
+        }
+    }
+}
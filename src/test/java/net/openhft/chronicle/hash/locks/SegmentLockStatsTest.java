@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.locks;
+
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+import net.openhft.chronicle.map.ChronicleMapTest;
+import net.openhft.chronicle.map.ExternalMapQueryContext;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.openhft.chronicle.hash.locks.SegmentLockStats.Level.READ;
+import static net.openhft.chronicle.hash.locks.SegmentLockStats.Level.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentLockStatsTest {
+
+    private static ChronicleMapBuilder<Integer, Long> builder() {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .actualSegments(1);
+    }
+
+    @Test
+    public void segmentLockStatsAreNotCollectedByDefault() {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            assertNull(map.segmentLockStats());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void samplingIntervalShouldBePositive() {
+        builder().segmentLockStats(0, false);
+    }
+
+    @Test
+    public void acquisitionsAreCounted() {
+        try (ChronicleMap<Integer, Long> map = builder().segmentLockStats(1, false).create()) {
+            for (int i = 0; i < 100; i++) {
+                map.put(i, (long) i);
+            }
+            for (int i = 0; i < 100; i++) {
+                map.get(i);
+            }
+            SegmentLockStats stats = map.segmentLockStats();
+            assertNotNull(stats);
+            assertEquals(1, stats.segments());
+            assertTrue(stats.acquisitions(0) >= 200);
+            assertEquals(0, stats.contendedAcquisitions(0));
+            assertTrue(stats.sampledAcquisitions(READ) >= 100);
+            assertEquals(stats.sampledAcquisitions(READ), stats.sampledHolds(READ));
+            assertEquals(0, stats.waitNanos(READ, 0.99));
+            assertTrue(stats.holdNanos(READ, 0.5) <= stats.maxHoldNanos(READ));
+        }
+    }
+
+    @Test
+    public void contendedAcquisitionIsCounted() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().segmentLockStats(1, false).create()) {
+            map.put(1, 1L);
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                    c.writeLock().lock();
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            holder.start();
+            locked.await();
+            Thread reader = new Thread(() -> map.get(1));
+            reader.start();
+            Thread.sleep(50);
+            release.countDown();
+            holder.join();
+            reader.join();
+
+            SegmentLockStats stats = map.segmentLockStats();
+            assertEquals(1, stats.contendedAcquisitions(0));
+            assertTrue(stats.maxWaitNanos(READ) >= MILLISECONDS.toNanos(40));
+            assertTrue(stats.maxHoldNanos(WRITE) >= MILLISECONDS.toNanos(40));
+        }
+    }
+
+    @Test
+    public void sharedCountersAreSeenByAllInstances() throws IOException {
+        File file = ChronicleMapTest.getPersistenceFile();
+        // shared counters are exact only without sampling
+        ChronicleMapBuilder<Integer, Long> builder = builder().segmentLockStats(1, true);
+        try (ChronicleMap<Integer, Long> map1 = builder.createPersistedTo(file);
+             ChronicleMap<Integer, Long> map2 = builder.createPersistedTo(file)) {
+            map1.put(1, 1L);
+            long acquisitions = map1.segmentLockStats().acquisitions(0);
+            assertTrue(acquisitions > 0);
+            assertEquals(acquisitions, map2.segmentLockStats().acquisitions(0));
+            map2.get(1);
+            assertEquals(acquisitions + 1, map1.segmentLockStats().acquisitions(0));
+        }
+    }
+
+    @Test
+    public void sampledSharedCountersEstimateAcquisitions() throws IOException {
+        File file = ChronicleMapTest.getPersistenceFile();
+        try (ChronicleMap<Integer, Long> map =
+                     builder().segmentLockStats(8, true).createPersistedTo(file)) {
+            map.put(1, 1L);
+            SegmentLockStats stats = map.segmentLockStats();
+            long before = stats.acquisitions(0);
+            int gets = 20_000;
+            for (int i = 0; i < gets; i++) {
+                map.get(1);
+            }
+            long estimate = stats.acquisitions(0) - before;
+            assertEquals(0, estimate % 8);
+            assertTrue("estimate: " + estimate, Math.abs(estimate - gets) < gets / 5);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.hash.replication;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HybridLogicalClockTest {
+
+    @Test
+    public void timestampsAreStrictlyIncreasingWithinTheSameMillisecond() {
+        HybridLogicalClock clock = new HybridLogicalClock(4, () -> 1000L);
+        long prev = clock.nextTimestamp();
+        assertTrue(prev >= MILLISECONDS.toNanos(1000L));
+        for (int i = 0; i < 10_000; i++) {
+            long timestamp = clock.nextTimestamp();
+            assertTrue(timestamp > prev);
+            prev = timestamp;
+        }
+    }
+
+    @Test
+    public void timestampsAreMonotonicWhenSystemClockMovesBackwards() {
+        AtomicLong millis = new AtomicLong(1000L);
+        HybridLogicalClock clock = new HybridLogicalClock(1, millis::get);
+        long before = clock.nextTimestamp();
+        millis.set(500L);
+        assertTrue(clock.nextTimestamp() > before);
+        assertTrue(clock.currentTime() >= MILLISECONDS.toNanos(1000L));
+    }
+
+    @Test
+    public void timestampsOfDifferentThreadsAreUnique() throws InterruptedException {
+        HybridLogicalClock clock = new HybridLogicalClock(4, () -> 1000L);
+        Set<Long> timestamps = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int timestampsPerThread = 10_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < timestampsPerThread; i++) {
+                    timestamps.add(clock.nextTimestamp());
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * timestampsPerThread, timestamps.size());
+    }
+
+    @Test
+    public void nextTimestampIsNotLessThanCurrentTime() {
+        AtomicLong millis = new AtomicLong(1000L);
+        HybridLogicalClock clock = new HybridLogicalClock(16, millis::get);
+        for (int i = 0; i < 100; i++) {
+            millis.addAndGet(i % 3);
+            long currentTime = clock.currentTime();
+            assertTrue(clock.nextTimestamp() >= currentTime);
+        }
+    }
+
+    @Test
+    public void advanceTo() {
+        HybridLogicalClock clock = new HybridLogicalClock(8, () -> 1000L);
+        long highWaterMark = MILLISECONDS.toNanos(5000L);
+        clock.advanceTo(highWaterMark);
+        assertTrue(clock.nextTimestamp() > highWaterMark);
+        assertTrue(clock.currentTime() > highWaterMark);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stripesShouldBePowerOfTwo() {
+        new HybridLogicalClock(3);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncChronicleMapTest {
+
+    private static ChronicleMap<Integer, Integer> map() {
+        return ChronicleMap.of(Integer.class, Integer.class)
+                .entries(1000)
+                .actualSegments(8)
+                .create();
+    }
+
+    @Test
+    public void operationsCompleteWithResults() throws Exception {
+        try (ChronicleMap<Integer, Integer> map = map();
+             AsyncChronicleMap<Integer, Integer> async = new AsyncChronicleMap<>(map, 2)) {
+            assertNull(async.put(1, 1).get(1, TimeUnit.SECONDS));
+            assertEquals(1, (int) async.putIfAbsent(1, 2).get(1, TimeUnit.SECONDS));
+            assertEquals(1, (int) async.get(1).get(1, TimeUnit.SECONDS));
+            assertEquals(11, (int) async.compute(1, (k, v) -> v + 10).get(1, TimeUnit.SECONDS));
+            assertEquals(11, (int) async.remove(1).get(1, TimeUnit.SECONDS));
+            assertNull(async.get(1).get(1, TimeUnit.SECONDS));
+            assertEquals(0, (long) async.apply(1, m -> m.longSize()).get(1, TimeUnit.SECONDS));
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void operationsOnTheSameKeyAreOrdered() throws Exception {
+        try (ChronicleMap<Integer, Integer> map = map();
+             AsyncChronicleMap<Integer, Integer> async = new AsyncChronicleMap<>(map, 3, 16)) {
+            List<Thread> threads = new ArrayList<>();
+            List<List<CompletableFuture<Integer>>> futuresByThread = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                List<CompletableFuture<Integer>> futures = new ArrayList<>();
+                futuresByThread.add(futures);
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        futures.add(async.compute(i % 20, (k, v) -> v == null ? 1 : v + 1));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (List<CompletableFuture<Integer>> futures : futuresByThread) {
+                int[] lastResults = new int[20];
+                for (int i = 0; i < futures.size(); i++) {
+                    int result = futures.get(i).get(10, TimeUnit.SECONDS);
+                    // computations, submitted later by the same thread, see earlier ones
+                    assertTrue(result > lastResults[i % 20]);
+                    lastResults[i % 20] = result;
+                }
+            }
+            for (int key = 0; key < 20; key++) {
+                assertEquals(200, (int) map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void submissionDoesNotWaitForSegmentLock() throws Exception {
+        try (ChronicleMap<Integer, Integer> map = map();
+             AsyncChronicleMap<Integer, Integer> async = new AsyncChronicleMap<>(map, 1)) {
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                try (ExternalMapQueryContext<Integer, Integer, ?> c = map.queryContext(1)) {
+                    c.writeLock().lock();
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            holder.start();
+            locked.await();
+            CompletableFuture<Integer> put = async.put(1, 1);
+            Thread.sleep(100);
+            assertFalse(put.isDone());
+            release.countDown();
+            assertNull(put.get(10, TimeUnit.SECONDS));
+            assertEquals(1, (int) map.get(1));
+            holder.join();
+        }
+    }
+
+    @Test
+    public void operationFailureCompletesFutureExceptionally() throws Exception {
+        try (ChronicleMap<Integer, Integer> map = map();
+             AsyncChronicleMap<Integer, Integer> async = new AsyncChronicleMap<>(map, 1)) {
+            CompletableFuture<Integer> failed = async.compute(1, (k, v) -> {
+                throw new IllegalStateException("test");
+            });
+            CompletableFuture<Integer> put = async.put(1, 1);
+            try {
+                failed.get(1, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            // the failure doesn't affect other operations in the batch
+            assertNull(put.get(1, TimeUnit.SECONDS));
+            assertEquals(1, (int) map.get(1));
+        }
+    }
+
+    @Test
+    public void operationsAfterCloseFail() throws InterruptedException {
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            AsyncChronicleMap<Integer, Integer> async = new AsyncChronicleMap<>(map, 2);
+            async.close();
+            try {
+                async.put(1, 1).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertNull(map.get(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void workersShouldBePositive() {
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            new AsyncChronicleMap<>(map, 0);
+        }
+    }
+}
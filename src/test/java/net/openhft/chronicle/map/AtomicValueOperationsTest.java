@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class AtomicValueOperationsTest {
+
+    private static ChronicleMap<Integer, Long> longMap() {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .entryAndValueOffsetAlignment(8)
+                .create();
+    }
+
+    @Test
+    public void addAndGetLong() {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.put(1, 10L);
+            assertEquals(15L, map.addAndGetLong(1, 0, 5));
+            assertEquals(12L, map.addAndGetLong(1, 0, -3));
+            assertEquals(12L, (long) map.get(1));
+        }
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.put(1, 0L);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        map.addAndGetLong(1, 0, 1);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(40_000L, (long) map.get(1));
+        }
+    }
+
+    @Test
+    public void compareAndSwapAndAccumulateMax() {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.put(1, 10L);
+            assertFalse(map.compareAndSwapLong(1, 0, 11, 20));
+            assertTrue(map.compareAndSwapLong(1, 0, 10, 20));
+            assertEquals(20L, map.accumulateMaxLong(1, 0, 15));
+            assertEquals(25L, map.accumulateMaxLong(1, 0, 25));
+            assertEquals(25L, (long) map.get(1));
+        }
+    }
+
+    @Test
+    public void intFields() {
+        try (ChronicleMap<Integer, Integer> map = ChronicleMap.of(Integer.class, Integer.class)
+                .entries(100)
+                .entryAndValueOffsetAlignment(4)
+                .create()) {
+            map.put(1, 1);
+            assertEquals(3, map.addAndGetInt(1, 0, 2));
+            assertTrue(map.compareAndSwapInt(1, 0, 3, 7));
+            assertEquals(7, (int) map.get(1));
+        }
+    }
+
+    @Test
+    public void operationsOnEntryInContext() {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.put(1, 1L);
+            try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                c.readLock().lock();
+                MapEntry<Integer, Long> entry = c.entry();
+                assertNotNull(entry);
+                assertEquals(2L, entry.addAndGetLong(0, 1));
+                assertEquals(2L, (long) entry.value().get());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void absentKey() {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.addAndGetLong(1, 0, 1);
+        }
+    }
+
+    @Test
+    public void fieldOutOfValueOrUnaligned() {
+        try (ChronicleMap<Integer, Long> map = longMap()) {
+            map.put(1, 1L);
+            try {
+                map.addAndGetLong(1, 4, 1);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+            try {
+                map.addAndGetInt(1, 8, 1);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+            assertEquals(1L, (long) map.get(1));
+        }
+    }
+
+    @Test
+    public void incrementalSnapshotIncludesAtomicUpdates() throws IOException {
+        File file = getPersistenceFile();
+        File snapshot = getPersistenceFile();
+        ChronicleMapBuilder<Integer, Long> builder = ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .entryAndValueOffsetAlignment(8)
+                .checksumEntries(false);
+        try (ChronicleMap<Integer, Long> map = builder.createPersistedTo(file)) {
+            map.put(1, 1L);
+            map.put(2, 2L);
+            map.snapshotTo(snapshot, true, 0);
+
+            map.addAndGetLong(1, 0, 10);
+            assertTrue(map.compareAndSwapLong(2, 0, 2, 20));
+            map.snapshotTo(snapshot, true, 0);
+        }
+        try (ChronicleMap<Integer, Long> copy = builder.createPersistedTo(snapshot)) {
+            assertEquals(11L, (long) copy.get(1));
+            assertEquals(20L, (long) copy.get(2));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notSupportedByPersistedMapsWithEntryChecksums() throws IOException {
+        try (ChronicleMap<Integer, Long> map = ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .entryAndValueOffsetAlignment(8)
+                .createPersistedTo(getPersistenceFile())) {
+            map.put(1, 1L);
+            map.addAndGetLong(1, 0, 1);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notSupportedByReplicatedMaps() {
+        try (ChronicleMap<Integer, Long> map = ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .replication((byte) 1)
+                .create()) {
+            map.put(1, 1L);
+            map.addAndGetLong(1, 0, 1);
+        }
+    }
+}
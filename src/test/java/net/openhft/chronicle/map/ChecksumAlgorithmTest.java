@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
+import net.openhft.chronicle.hash.ChecksumEntry;
+import net.openhft.chronicle.hash.impl.stage.entry.Crc32C;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class ChecksumAlgorithmTest {
+
+    private static final int VALUE_SIZE = 1000;
+
+    private static ChronicleMapBuilder<Long, byte[]> builder() {
+        return ChronicleMap.of(Long.class, byte[].class)
+                .entries(100)
+                .averageValueSize(VALUE_SIZE)
+                .checksumEntries(true)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32C);
+    }
+
+    @Test
+    public void crc32cCheckValue() {
+        byte[] input = "123456789".getBytes(StandardCharsets.US_ASCII);
+        NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(input.length);
+        try {
+            store.write(0, input);
+            assertEquals(0xE3069283, Crc32C.crc32c(store.addressForRead(0), input.length));
+        } finally {
+            store.release();
+        }
+    }
+
+    @Test
+    public void crc32cOfMultipleChunksEqualsBytewiseCrc32c() {
+        // longer than a few chunks, copied to the direct buffer for the JDK checksum, and not
+        // a multiple of the chunk size
+        int len = 5 * 8192 + 13;
+        NativeBytesStore<Void> store = NativeBytesStore.nativeStoreWithFixedCapacity(len);
+        try {
+            Random random = new Random(1);
+            int crc = ~0;
+            for (int i = 0; i < len; i++) {
+                byte b = (byte) random.nextInt();
+                store.writeByte(i, b);
+                crc = Crc32C.rawUpdate(crc, b);
+            }
+            assertEquals(~crc, Crc32C.crc32c(store.addressForRead(0), len));
+            // an unaligned subregion
+            crc = ~0;
+            for (int i = 3; i < len - 5; i++) {
+                crc = Crc32C.rawUpdate(crc, store.readByte(i));
+            }
+            assertEquals(~crc, Crc32C.crc32c(store.addressForRead(3), len - 8));
+        } finally {
+            store.release();
+        }
+    }
+
+    @Test
+    public void incrementalChecksumUpdate() throws IOException {
+        File file = getPersistenceFile();
+        byte[] value = new byte[VALUE_SIZE];
+        Arrays.fill(value, (byte) 1);
+        byte[] patch = {5, 6, 7, 8, 9};
+        try (ChronicleMap<Long, byte[]> map = builder().createPersistedTo(file)) {
+            assertEquals(ChecksumAlgorithm.CRC32C,
+                    ((VanillaChronicleMap) map).checksumAlgorithm);
+            map.put(1L, value);
+            for (long offset : new long[]{0, 1, VALUE_SIZE / 2, VALUE_SIZE - patch.length}) {
+                try (ExternalMapQueryContext<Long, byte[], ?> c = map.queryContext(1L)) {
+                    c.updateLock().lock();
+                    MapEntry<Long, byte[]> entry = c.entry();
+                    assertNotNull(entry);
+                    entry.writeValueBytes(offset, BytesStore.wrap(patch), 0, patch.length);
+                    assertTrue(((ChecksumEntry) entry).checkSum());
+                }
+                System.arraycopy(patch, 0, value, (int) offset, patch.length);
+                assertArrayEquals(value, map.get(1L));
+            }
+        }
+
+        // The algorithm is not configured, it should be read from the header
+        try (ChronicleMap<Long, byte[]> map = ChronicleMap.of(Long.class, byte[].class)
+                .entries(100)
+                .averageValueSize(VALUE_SIZE)
+                .recoverPersistedTo(file, false, c -> fail(c.message()))) {
+            assertEquals(ChecksumAlgorithm.CRC32C,
+                    ((VanillaChronicleMap) map).checksumAlgorithm);
+            assertArrayEquals(value, map.get(1L));
+        }
+    }
+
+    @Test
+    public void shiftEqualsAppendingZeroBytes() {
+        Random random = new Random(1);
+        for (int zeroBytes : new int[]{0, 1, 7, 8, 100, 4097}) {
+            int crc = random.nextInt();
+            int expected = crc;
+            for (int i = 0; i < zeroBytes; i++) {
+                expected = Crc32C.rawUpdate(expected, (byte) 0);
+            }
+            assertEquals(expected, Crc32C.shift(crc, zeroBytes));
+        }
+    }
+
+    @Test
+    public void incrementalChecksumUpdateOfLongRanges() {
+        Random random = new Random(1);
+        byte[] value = new byte[VALUE_SIZE];
+        random.nextBytes(value);
+        try (ChronicleMap<Long, byte[]> map = builder().create()) {
+            map.put(1L, value);
+            // unaligned ranges, updated incrementally 8 bytes at a time, and a range, for which
+            // the checksum is recomputed if the JDK's CRC-32C is used
+            for (int length : new int[]{21, 64, VALUE_SIZE / 2 + 3}) {
+                byte[] patch = new byte[length];
+                random.nextBytes(patch);
+                long offset = random.nextInt(VALUE_SIZE - length);
+                try (ExternalMapQueryContext<Long, byte[], ?> c = map.queryContext(1L)) {
+                    c.updateLock().lock();
+                    MapEntry<Long, byte[]> entry = c.entry();
+                    assertNotNull(entry);
+                    entry.writeValueBytes(offset, BytesStore.wrap(patch), 0, length);
+                    assertTrue(((ChecksumEntry) entry).checkSum());
+                }
+                System.arraycopy(patch, 0, value, (int) offset, length);
+                assertArrayEquals(value, map.get(1L));
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void writeValueBytesOutOfBounds() {
+        try (ChronicleMap<Long, byte[]> map = builder().create()) {
+            map.put(1L, new byte[10]);
+            try (ExternalMapQueryContext<Long, byte[], ?> c = map.queryContext(1L)) {
+                c.updateLock().lock();
+                MapEntry<Long, byte[]> entry = c.entry();
+                assertNotNull(entry);
+                entry.writeValueBytes(8, BytesStore.wrap(new byte[4]), 0, 4);
+            }
+        }
+    }
+}
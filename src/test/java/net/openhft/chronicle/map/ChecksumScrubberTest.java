@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.core.values.LongValue;
+import net.openhft.chronicle.hash.ChecksumScrubberStats;
+import net.openhft.chronicle.hash.ChronicleHashCorruption;
+import net.openhft.chronicle.values.Values;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class ChecksumScrubberTest {
+
+    private static final int ENTRIES = 1000;
+
+    private static ChronicleMapBuilder<Integer, LongValue> builder(
+            ChronicleHashCorruption.Listener corruptionListener) {
+        return ChronicleMap.of(Integer.class, LongValue.class)
+                .entries(ENTRIES)
+                .checksumEntries(true)
+                .checksumScrubbing(1_000_000, corruptionListener);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void scrubberDoesNotReportCorrectEntries() throws InterruptedException {
+        try (ChronicleMap<Integer, LongValue> map = builder(c -> fail(c.message())).create()) {
+            LongValue value = Values.newHeapInstance(LongValue.class);
+            for (int i = 0; i < ENTRIES; i++) {
+                value.setValue(i);
+                map.put(i, value);
+            }
+            ChecksumScrubberStats stats = map.checksumScrubberStats();
+            assertNotNull(stats);
+            long scans = stats.completedScans();
+            // wait for a complete scan, started after all entries are inserted
+            waitFor(() -> stats.completedScans() >= scans + 2);
+            assertTrue(stats.verifiedEntries() >= ENTRIES);
+            assertEquals(0, stats.corruptions());
+        }
+    }
+
+    @Test
+    public void scrubberReportsCorruptedEntry() throws InterruptedException {
+        AtomicInteger corruptionCounter = new AtomicInteger(0);
+        try (ChronicleMap<Integer, LongValue> map =
+                     builder(c -> corruptionCounter.incrementAndGet()).create()) {
+            LongValue value = Values.newHeapInstance(LongValue.class);
+            for (int i = 0; i < ENTRIES; i++) {
+                value.setValue(i);
+                map.put(i, value);
+            }
+
+            try (ExternalMapQueryContext<Integer, LongValue, ?> c = map.queryContext(42)) {
+                c.updateLock().lock();
+                MapEntry<Integer, LongValue> entry = c.entry();
+                assertNotNull(entry);
+                // This value bytes update bypass Chronicle Map internals, so checksum is not
+                // updated automatically
+                entry.value().getUsing(Values.newNativeReference(LongValue.class)).setValue(-1);
+            }
+
+            ChecksumScrubberStats stats = map.checksumScrubberStats();
+            assertNotNull(stats);
+            waitFor(() -> corruptionCounter.get() > 0);
+            assertTrue(stats.corruptions() > 0);
+        }
+    }
+
+    @Test
+    public void noStatsIfScrubbingIsNotConfigured() {
+        try (ChronicleMap<Integer, LongValue> map = ChronicleMap.of(Integer.class, LongValue.class)
+                .entries(ENTRIES)
+                .create()) {
+            assertNull(map.checksumScrubberStats());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scrubbingRequiresChecksums() {
+        builder(c -> {}).checksumEntries(false).create();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveRate() {
+        builder(c -> {}).checksumScrubbing(0, c -> {});
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
+import net.openhft.chronicle.hash.ChecksumEntry;
+import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.map.replication.LongORSet;
+import net.openhft.chronicle.map.replication.LongRegister;
+import net.openhft.chronicle.map.replication.MapRemoteOperations;
+import net.openhft.chronicle.map.replication.PNCounter;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConflictFreeReplicationTest {
+
+    private static <V> ReplicatedChronicleMap<String, V, ?> replicatedMap(
+            ChronicleMapBuilder<String, V> builder, MapRemoteOperations<String, V, ?> ops,
+            int identifier) {
+        builder.entries(100).averageKeySize(10).replication((byte) identifier);
+        ((ChronicleHashBuilderPrivateAPI<?, MapRemoteOperations<String, V, ?>>)
+                builder.privateAPI()).remoteOperations(ops);
+        return (ReplicatedChronicleMap<String, V, ?>) builder.create();
+    }
+
+    private static ReplicatedChronicleMap<String, PNCounter, ?> counters(int identifier) {
+        return replicatedMap(ChronicleMap.of(String.class, PNCounter.class)
+                .valueMarshaller(PNCounter.Marshaller.INSTANCE)
+                .averageValueSize(PNCounter.slotsSize(2)), PNCounter.remoteOperations(), identifier);
+    }
+
+    private static ReplicatedChronicleMap<String, LongORSet, ?> sets(int identifier) {
+        return replicatedMap(ChronicleMap.of(String.class, LongORSet.class)
+                        .valueMarshaller(LongORSet.Marshaller.INSTANCE)
+                        .averageValueSize(LongORSet.averageSize(2, 4)),
+                LongORSet.remoteOperations(), identifier);
+    }
+
+    /**
+     * Sends all changes of the {@code source} map, not yet replicated to the {@code target}.
+     */
+    private static void replicate(ReplicatedChronicleMap<String, ?, ?> source,
+                                  ReplicatedChronicleMap<String, ?, ?> target) {
+        Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+        Replica.ModificationIterator modificationIterator =
+                source.acquireModificationIterator(target.identifier());
+        Replica.ModificationIterator.Callback callback =
+                new Replica.ModificationIterator.Callback() {
+                    @Override
+                    public void onEntry(ReplicableEntry entry, int chronicleId) {
+                        source.writeExternalEntry(entry, null, buffer, chronicleId);
+                    }
+
+                    @Override
+                    public void onBootstrapTime(long bootstrapTime, int chronicleId) {
+                    }
+                };
+        while (modificationIterator.nextEntries(callback, source.identifier(), 10) > 0) {
+            // drain all changed entries
+        }
+        target.readExternalEntries(buffer, source.identifier());
+    }
+
+    private static void replicateBothWays(ReplicatedChronicleMap<String, ?, ?> map1,
+                                          ReplicatedChronicleMap<String, ?, ?> map2) {
+        replicate(map1, map2);
+        replicate(map2, map1);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() {
+        try (ReplicatedChronicleMap<String, PNCounter, ?> map1 = counters(1);
+             ReplicatedChronicleMap<String, PNCounter, ?> map2 = counters(2)) {
+            // make both maps aware of each other
+            map1.acquireModificationIterator(map2.identifier());
+            map2.acquireModificationIterator(map1.identifier());
+
+            assertEquals(5, PNCounter.add(map1, "c", 5));
+            assertEquals(3, PNCounter.add(map2, "c", 3));
+            assertEquals(1, PNCounter.add(map2, "c", -2));
+            replicateBothWays(map1, map2);
+            assertEquals(6, map1.get("c").value());
+            assertEquals(6, map2.get("c").value());
+
+            // the existing slots are merged in place, the replay of the same changes is idempotent
+            PNCounter.add(map1, "c", 10);
+            replicate(map1, map2);
+            replicateBothWays(map1, map2);
+            assertEquals(16, map1.get("c").value());
+            assertEquals(map1.get("c"), map2.get("c"));
+            assertEquals(15, map2.get("c").increments((byte) 1));
+            assertEquals(2, map2.get("c").decrements((byte) 2));
+        }
+    }
+
+    @Test
+    public void inPlaceMergesUpdateEntryChecksums() {
+        ChronicleMapBuilder<String, PNCounter> builder =
+                ChronicleMap.of(String.class, PNCounter.class)
+                        .valueMarshaller(PNCounter.Marshaller.INSTANCE)
+                        .averageValueSize(PNCounter.slotsSize(2))
+                        .checksumEntries(true)
+                        .checksumAlgorithm(ChecksumAlgorithm.CRC32C);
+        try (ReplicatedChronicleMap<String, PNCounter, ?> map1 =
+                     replicatedMap(builder.clone(), PNCounter.remoteOperations(), 1);
+             ReplicatedChronicleMap<String, PNCounter, ?> map2 =
+                     replicatedMap(builder.clone(), PNCounter.remoteOperations(), 2)) {
+            map1.acquireModificationIterator(map2.identifier());
+            map2.acquireModificationIterator(map1.identifier());
+
+            PNCounter.add(map1, "c", 5);
+            PNCounter.add(map2, "c", 3);
+            replicateBothWays(map1, map2);
+            // the slots of both nodes exist, the next merge is done in place
+            PNCounter.add(map1, "c", 10);
+            replicate(map1, map2);
+            assertEquals(18, map2.get("c").value());
+            try (ExternalMapQueryContext<String, PNCounter, ?> c = map2.queryContext("c")) {
+                c.updateLock().lock();
+                assertTrue(((ChecksumEntry) c.entry()).checkSum());
+            }
+        }
+    }
+
+    @Test
+    public void registersKeepMaximum() {
+        ChronicleMapBuilder<String, Long> builder = ChronicleMap.of(String.class, Long.class);
+        try (ReplicatedChronicleMap<String, Long, ?> map1 =
+                     replicatedMap(builder.clone(), LongRegister.MAX.remoteOperations(), 1);
+             ReplicatedChronicleMap<String, Long, ?> map2 =
+                     replicatedMap(builder.clone(), LongRegister.MAX.remoteOperations(), 2)) {
+            map1.acquireModificationIterator(map2.identifier());
+            map2.acquireModificationIterator(map1.identifier());
+
+            LongRegister.MAX.update(map1, "r", 7);
+            assertEquals(7, LongRegister.MAX.update(map1, "r", 3));
+            LongRegister.MAX.update(map2, "r", 5);
+            replicateBothWays(map1, map2);
+            assertEquals(7L, (long) map1.get("r"));
+            assertEquals(7L, (long) map2.get("r"));
+        }
+    }
+
+    @Test
+    public void concurrentAddWinsOverRemove() {
+        try (ReplicatedChronicleMap<String, LongORSet, ?> map1 = sets(1);
+             ReplicatedChronicleMap<String, LongORSet, ?> map2 = sets(2)) {
+            map1.acquireModificationIterator(map2.identifier());
+            map2.acquireModificationIterator(map1.identifier());
+
+            LongORSet.add(map1, "s", 1);
+            LongORSet.add(map1, "s", 2);
+            replicateBothWays(map1, map2);
+            assertArrayEquals(new long[] {1, 2}, map2.get("s").elements());
+
+            // the observed add of 1 is removed on node 2, while node 1 adds 1 again concurrently
+            assertTrue(LongORSet.remove(map2, "s", 1));
+            assertTrue(LongORSet.remove(map2, "s", 2));
+            assertFalse(LongORSet.remove(map2, "s", 3));
+            LongORSet.add(map1, "s", 1);
+            LongORSet.add(map2, "s", 3);
+            replicateBothWays(map1, map2);
+            replicateBothWays(map1, map2);
+            assertArrayEquals(new long[] {1, 3}, map1.get("s").elements());
+            assertEquals(map1.get("s"), map2.get("s"));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContextPoolTest {
+
+    private static ChronicleMapBuilder<Integer, Long> builder() {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(1000)
+                .actualSegments(4)
+                .contextPool(4);
+    }
+
+    private static VanillaChronicleMap<Integer, Long, ?> vanilla(ChronicleMap<Integer, Long> map) {
+        return (VanillaChronicleMap<Integer, Long, ?>) map;
+    }
+
+    @Test
+    public void shortLivedThreadsReuseContexts() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            for (int t = 0; t < 100; t++) {
+                int key = t;
+                Thread thread = new Thread(() -> {
+                    map.put(key, (long) key);
+                    map.get(key);
+                    map.forEach((k, v) -> {
+                    });
+                });
+                thread.start();
+                thread.join();
+            }
+            assertEquals(100, map.size());
+            assertEquals(1, vanilla(map).contextPool.idleContexts());
+        }
+    }
+
+    @Test
+    public void concurrentThreads() throws InterruptedException {
+        int threads = 16;
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        map.merge(i % 100, 1L, Long::sum);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            for (long count : map.values()) {
+                assertEquals(threads * 100L, count);
+            }
+            assertTrue(vanilla(map).contextPool.idleContexts() <= 4);
+        }
+    }
+
+    @Test
+    public void nestedContextsShareTheLeasedChain() {
+        try (ChronicleMap<Integer, Long> map = builder().actualSegments(1).create()) {
+            map.put(1, 1L);
+            map.put(2, 2L);
+            // both keys are in the same segment, nested contexts of different chains would
+            // dead lock
+            try (ExternalMapQueryContext<Integer, Long, ?> c1 = map.queryContext(1)) {
+                c1.writeLock().lock();
+                try (ExternalMapQueryContext<Integer, Long, ?> c2 = map.queryContext(2)) {
+                    c2.writeLock().lock();
+                    MapEntry<Integer, Long> entry = c2.entry();
+                    assertNotNull(entry);
+                    entry.doReplaceValue(c2.wrapValueAsData(3L));
+                }
+            }
+            assertEquals(3L, (long) map.get(2));
+            assertEquals(1, vanilla(map).contextPool.idleContexts());
+        }
+    }
+
+    @Test
+    public void openedContextIsConfinedToThread() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            AtomicReference<Throwable> thrown = new AtomicReference<>();
+            try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                Thread other = new Thread(() -> {
+                    try {
+                        c.entry();
+                    } catch (Throwable t) {
+                        thrown.set(t);
+                    }
+                });
+                other.start();
+                other.join();
+            }
+            assertTrue(thrown.get() instanceof ConcurrentModificationException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxIdleContextsShouldBePositive() {
+        ChronicleMap.of(Integer.class, Long.class).contextPool(0);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.hash.ChronicleHashCorruption;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeadLockHolderRecoveryTest {
+
+    private final List<ChronicleHashCorruption> corruptions = new CopyOnWriteArrayList<>();
+
+    private ChronicleMapBuilder<Integer, Long> builder() {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .actualSegments(1)
+                .recoverLocksOfDeadProcesses(10, TimeUnit.MILLISECONDS, corruptions::add);
+    }
+
+    /**
+     * Acquires the lock of the segment of the key in a thread, which dies without releasing it
+     */
+    private static void lockAndDie(ChronicleMap<Integer, Long> map, int key, boolean write)
+            throws InterruptedException {
+        Thread holder = new Thread(() -> {
+            ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(key);
+            if (write) {
+                c.writeLock().lock();
+            } else {
+                c.updateLock().lock();
+            }
+        });
+        holder.start();
+        holder.join();
+    }
+
+    @Test(timeout = 10_000)
+    public void writeLockOfDeadThreadIsTakenOver() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            map.put(1, 1L);
+            lockAndDie(map, 1, true);
+            map.put(2, 2L);
+            assertEquals(1L, (long) map.get(1));
+            assertEquals(2L, (long) map.get(2));
+            assertEquals(2, map.size());
+            // the segment is not corrupted, only the takeover is reported
+            assertEquals(1, corruptions.size());
+            assertTrue(corruptions.get(0).message().startsWith("write lock of segment 0"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void updateLockOfDeadThreadIsTakenOver() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            map.put(1, 1L);
+            lockAndDie(map, 1, false);
+            // read locks are compatible with the update lock, so only the write level waits
+            assertEquals(1L, (long) map.get(1));
+            map.put(1, 2L);
+            assertEquals(2L, (long) map.get(1));
+            assertEquals(1, corruptions.size());
+            assertTrue(corruptions.get(0).message().startsWith("update lock of segment 0"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void lockOfLiveHolderIsNotTakenOverAfterTakeOver() throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            map.put(1, 1L);
+            lockAndDie(map, 1, true);
+            map.put(2, 2L);
+            assertEquals(1, corruptions.size());
+            try (ExternalMapQueryContext<Integer, Long, ?> c = map.queryContext(1)) {
+                c.updateLock().lock();
+                boolean[] locked = {true};
+                Thread waiter = new Thread(() -> {
+                    try (ExternalMapQueryContext<Integer, Long, ?> c2 = map.queryContext(2)) {
+                        locked[0] = c2.updateLock().tryLock(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+                waiter.start();
+                waiter.join();
+                assertFalse(locked[0]);
+            }
+            // the holder record is cleared on both the take-over and the unlock
+            assertEquals(1, corruptions.size());
+            map.put(3, 3L);
+            assertEquals(3, map.size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tooManySegments() {
+        ChronicleMap.of(Integer.class, Long.class)
+                .entries(1_000_000)
+                .actualSegments(1 << 15)
+                .recoverLocksOfDeadProcesses(10, TimeUnit.MILLISECONDS, corruptions::add)
+                .create();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkAfterShouldBePositive() {
+        ChronicleMap.of(Integer.class, Long.class)
+                .recoverLocksOfDeadProcesses(0, TimeUnit.MILLISECONDS, corruptions::add);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.hash.ChronicleHashClosedException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EstimatedSizeTest {
+
+    private static ChronicleMapBuilder<Integer, Integer> builder() {
+        return ChronicleMap.of(Integer.class, Integer.class)
+                .entries(10_000)
+                .actualSegments(256)
+                // allow extra tiers to be allocated
+                .maxBloatFactor(10);
+    }
+
+    @Test
+    public void estimatedSizeFollowsInsertionsAndRemovals() {
+        try (ChronicleMap<Integer, Integer> map = builder().create()) {
+            assertEquals(0, map.estimatedSize());
+            // more entries than configured, to populate extra tiers
+            for (int i = 0; i < 30_000; i++) {
+                map.put(i, i);
+            }
+            assertEquals(30_000, map.estimatedSize());
+            for (int i = 0; i < 30_000; i += 3) {
+                map.remove(i);
+            }
+            // replacing values doesn't change the size
+            for (int i = 1; i < 30_000; i += 3) {
+                map.put(i, -i);
+            }
+            assertEquals(map.longSize(), map.estimatedSize());
+            map.clear();
+            assertEquals(0, map.estimatedSize());
+        }
+    }
+
+    @Test
+    public void estimatedSizeIsExactAfterConcurrentModifications() throws InterruptedException {
+        try (ChronicleMap<Integer, Integer> map = builder().create()) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                executor.submit(() -> {
+                    for (int i = thread; i < 20_000; i += 4) {
+                        map.put(i, i);
+                        if (i % 5 == 0)
+                            map.remove(i);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+            assertEquals(16_000, map.longSize());
+            assertEquals(16_000, map.estimatedSize());
+        }
+    }
+
+    @Test
+    public void deletedEntriesOfReplicatedMapAreNotCounted() {
+        try (ChronicleMap<Integer, Integer> map = builder().replication((byte) 1).create()) {
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, i);
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                map.remove(i);
+            }
+            assertEquals(500, map.estimatedSize());
+            // inserted again in place of the deleted entry
+            map.put(0, 0);
+            assertEquals(501, map.estimatedSize());
+        }
+    }
+
+    @Test
+    public void recoveryRecomputesEstimatedSize() throws IOException {
+        File file = ChronicleMapTest.getPersistenceFile();
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, i);
+            }
+            ((VanillaChronicleMap) map).addToSizeStripe(0, 100);
+            assertEquals(1100, map.estimatedSize());
+        }
+        try (ChronicleMap<Integer, Integer> map = builder().recoverPersistedTo(file, false)) {
+            assertEquals(1000, map.estimatedSize());
+        }
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            map.remove(0);
+            assertEquals(999, map.estimatedSize());
+        }
+    }
+
+    @Test(expected = ChronicleHashClosedException.class)
+    public void estimatedSizeOfClosedMapThrows() {
+        ChronicleMap<Integer, Integer> map = builder().create();
+        map.close();
+        map.estimatedSize();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FairSegmentLocksTest {
+
+    private static ChronicleMapBuilder<Integer, Long> builder() {
+        return ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .actualSegments(1)
+                .fairSegmentLocks(true);
+    }
+
+    @Test
+    public void contendedReadsAndWrites() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        int operationsPerThread = 5_000;
+        try (ChronicleMap<Integer, Long> map = builder().create()) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean writer = t % 2 == 0;
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        if (writer) {
+                            map.merge(i % 4, 1L, Long::sum);
+                        } else {
+                            map.get(i % 4);
+                        }
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long sum = 0;
+            for (long count : map.values()) {
+                sum += count;
+            }
+            assertEquals((long) (threads + 1) / 2 * operationsPerThread, sum);
+        }
+    }
+
+    @Test
+    public void fairSegmentLocksModeIsPersisted() throws IOException {
+        File file = ChronicleMapTest.getPersistenceFile();
+        try (ChronicleMap<Integer, Long> map = builder().createPersistedTo(file)) {
+            map.put(1, 1L);
+        }
+        try (ChronicleMap<Integer, Long> map = ChronicleMap.of(Integer.class, Long.class)
+                .createPersistedTo(file)) {
+            assertTrue(((VanillaChronicleMap) map).fairSegmentLocks);
+            assertEquals(1L, (long) map.get(1));
+            map.put(2, 2L);
+        }
+    }
+
+    @Test
+    public void fairSegmentLocksAreOffByDefault() {
+        try (ChronicleMap<Integer, Long> map = ChronicleMap.of(Integer.class, Long.class)
+                .entries(100)
+                .create()) {
+            assertFalse(((VanillaChronicleMap) map).fairSegmentLocks);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.algo.hashing.LongHashFunction;
+import net.openhft.chronicle.hash.KeyHashFunctions;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class KeyHashFunctionTest {
+
+    @Test
+    public void mix64PrimitiveAndBytesHashesAreConsistent() {
+        LongHashFunction f = KeyHashFunctions.mix64();
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long v : new long[]{0L, 1L, -1L, Long.MIN_VALUE, 0x0123456789ABCDEFL}) {
+            buffer.clear();
+            buffer.putLong(0, v);
+            assertEquals(f.hashLong(v), f.hashBytes(buffer.array(), 0, 8));
+            buffer.putInt(0, (int) v);
+            assertEquals(f.hashInt((int) v), f.hashBytes(buffer.array(), 0, 4));
+        }
+        assertEquals(LongHashFunction.xx_r39().hashBytes(new byte[3]),
+                f.hashBytes(new byte[3]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonMarshallableKeyHashFunctionIsRejected() {
+        ChronicleMap.of(Long.class, Long.class).keyHashFunction(LongHashFunction.city_1_1());
+    }
+
+    @Test
+    public void persistedKeyHashFunctionIsUsedOnReopenAndRecovery() throws IOException {
+        File file = getPersistenceFile();
+        int entries = 1000;
+        try (ChronicleMap<Long, Long> map = ChronicleMap.of(Long.class, Long.class)
+                .entries(entries)
+                .keyHashFunction(KeyHashFunctions.mix64())
+                .createPersistedTo(file)) {
+            assertSame(KeyHashFunctions.mix64(),
+                    ((VanillaChronicleMap) map).keyHashFunction);
+            for (long i = 0; i < entries; i++) {
+                map.put(i, -i);
+            }
+            for (long i = 0; i < entries; i++) {
+                assertEquals(-i, (long) map.get(i));
+            }
+            long[] keySum = {0};
+            map.forEachEntry(e -> keySum[0] += e.key().get());
+            assertEquals((long) entries * (entries - 1) / 2, keySum[0]);
+        }
+
+        // The key hash function is not configured, it should be read from the header
+        try (ChronicleMap<Long, Long> map = ChronicleMap.of(Long.class, Long.class)
+                .entries(entries)
+                .createPersistedTo(file)) {
+            assertSame(KeyHashFunctions.mix64(),
+                    ((VanillaChronicleMap) map).keyHashFunction);
+            assertEquals(entries, map.size());
+            for (long i = 0; i < entries; i++) {
+                assertEquals(-i, (long) map.get(i));
+            }
+        }
+
+        try (ChronicleMap<Long, Long> map = ChronicleMap.of(Long.class, Long.class)
+                .entries(entries)
+                .recoverPersistedTo(file, false, c -> fail(c.message()))) {
+            assertEquals(entries, map.size());
+            for (long i = 0; i < entries; i++) {
+                assertEquals(-i, (long) map.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LiveContextsTest {
+
+    private static void accessFromNewThread(ChronicleMap<Integer, String> map, int key)
+            throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            map.put(key, "v" + key);
+            try (ExternalMapQueryContext<Integer, String, ?> c = map.queryContext(key)) {
+                c.updateLock().lock();
+                MapEntry<Integer, String> entry = c.entry();
+                if (entry != null)
+                    c.replaceValue(entry, c.wrapValueAsData("w" + key));
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+
+    @Test
+    public void contextsOfDeadThreadsAreNotCounted() throws InterruptedException {
+        ChronicleMap<Integer, String> map = ChronicleMap.of(Integer.class, String.class)
+                .entries(100)
+                .averageValueSize(10)
+                .create();
+        try {
+            assertEquals(0, map.liveContexts());
+            map.put(0, "v0");
+            assertEquals(1, map.liveContexts());
+            for (int i = 1; i <= 10; i++) {
+                accessFromNewThread(map, i);
+            }
+            assertEquals("w10", map.get(10));
+            assertEquals(1, map.liveContexts());
+        } finally {
+            map.close();
+        }
+        assertEquals(0, map.liveContexts());
+    }
+
+    @Test
+    public void pooledContexts() throws InterruptedException {
+        try (ChronicleMap<Integer, String> map = ChronicleMap.of(Integer.class, String.class)
+                .entries(100)
+                .averageValueSize(10)
+                .contextPool(2)
+                .create()) {
+            for (int i = 0; i < 10; i++) {
+                accessFromNewThread(map, i);
+            }
+            assertEquals(1, map.liveContexts());
+        }
+    }
+}
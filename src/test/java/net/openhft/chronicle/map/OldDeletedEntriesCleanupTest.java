@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.SegmentLock;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OldDeletedEntriesCleanupTest {
+
+    private static ChronicleMapBuilder<Integer, Integer> builder(boolean cleanupRemovedEntries) {
+        ChronicleMapBuilder<Integer, Integer> builder = ChronicleMap
+                .of(Integer.class, Integer.class)
+                .entries(1000)
+                .actualSegments(8)
+                .replication((byte) 1);
+        ChronicleHashBuilderPrivateAPI<?, ?> privateAPI =
+                (ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI();
+        privateAPI.cleanupRemovedEntries(cleanupRemovedEntries);
+        privateAPI.removedEntryCleanupTimeout(1, TimeUnit.MILLISECONDS);
+        privateAPI.removedEntryCleanupRate(100_000);
+        return builder;
+    }
+
+    private static long removedEntries(ReplicatedChronicleMap<?, ?, ?> map) {
+        long removed = 0;
+        for (int segmentIndex = 0; segmentIndex < map.segments(); segmentIndex++) {
+            removed += map.segmentRemovedEntries(segmentIndex);
+        }
+        return removed;
+    }
+
+    private static void awaitNoRemovedEntries(ReplicatedChronicleMap<?, ?, ?> map)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (removedEntries(map) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, removedEntries(map));
+    }
+
+    @Test
+    public void removedEntriesAreCountedPerSegment() {
+        try (ReplicatedChronicleMap<Integer, Integer, ?> map =
+                     (ReplicatedChronicleMap<Integer, Integer, ?>) builder(false).create()) {
+            for (int i = 0; i < 100; i++) {
+                map.put(i, i);
+            }
+            for (int i = 0; i < 30; i++) {
+                map.remove(i);
+            }
+            long entries = 0;
+            for (int segmentIndex = 0; segmentIndex < map.segments(); segmentIndex++) {
+                entries += map.segmentEntriesIncludingRemoved(segmentIndex);
+            }
+            assertEquals(100, entries);
+            assertEquals(30, removedEntries(map));
+
+            // re-insertion of a removed key reuses its entry
+            map.put(0, 0);
+            assertEquals(29, removedEntries(map));
+            assertEquals(71, map.size());
+        }
+    }
+
+    @Test
+    public void oldRemovedEntriesArePurged() throws InterruptedException {
+        try (ReplicatedChronicleMap<Integer, Integer, ?> map =
+                     (ReplicatedChronicleMap<Integer, Integer, ?>) builder(true).create()) {
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, i);
+            }
+            for (int i = 0; i < 1000; i += 2) {
+                map.remove(i);
+            }
+            awaitNoRemovedEntries(map);
+            assertEquals(500, map.size());
+        }
+    }
+
+    @Test
+    public void lockedSegmentIsCleanedUpAfterRelease() throws InterruptedException {
+        ManualTimestampProvider timestampProvider = new ManualTimestampProvider();
+        ChronicleMapBuilder<Integer, Integer> builder = builder(true);
+        ((ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI())
+                .timestampProvider(timestampProvider);
+        try (ReplicatedChronicleMap<Integer, Integer, ?> map =
+                     (ReplicatedChronicleMap<Integer, Integer, ?>) builder.create()) {
+            for (int i = 0; i < 100; i++) {
+                map.put(i, i);
+            }
+            for (int i = 0; i < 100; i++) {
+                map.remove(i);
+            }
+            try (MapSegmentContext<Integer, Integer, ?> c = map.segmentContext(0)) {
+                ((SegmentLock) c).updateLock().lock();
+                // make the removed entries old enough to be purged
+                timestampProvider.advance(TimeUnit.SECONDS.toNanos(1));
+                long removedInLockedSegment = map.segmentRemovedEntries(0);
+                assertTrue(removedInLockedSegment > 0);
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (removedEntries(map) > removedInLockedSegment &&
+                        System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                // other segments are cleaned up, the locked one is skipped
+                assertEquals(removedInLockedSegment, removedEntries(map));
+            }
+            awaitNoRemovedEntries(map);
+        }
+    }
+
+    private static class ManualTimestampProvider implements TimestampProvider {
+        private final AtomicLong time =
+                new AtomicLong(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+
+        @Override
+        public long nextTimestamp() {
+            return time.incrementAndGet();
+        }
+
+        @Override
+        public long currentTime() {
+            return time.get();
+        }
+
+        @Override
+        public void advanceTo(long timestamp) {
+            time.accumulateAndGet(timestamp + 1, Math::max);
+        }
+
+        void advance(long nanos) {
+            time.addAndGet(nanos);
+        }
+    }
+}
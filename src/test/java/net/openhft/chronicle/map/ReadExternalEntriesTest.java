@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import static net.openhft.chronicle.map.ReplicationTestUtil.drainWithBootstrapTime;
+import static org.junit.Assert.assertEquals;
+
+public class ReadExternalEntriesTest {
+
+    private static final int ENTRIES = 1000;
+
+    private static ReplicatedChronicleMap<Long, String, ?> replicatedMap(int identifier) {
+        return ReplicationTestUtil.replicatedMap(ChronicleMap.of(Long.class, String.class)
+                .entries(ENTRIES)
+                .averageValueSize(10)
+                .actualSegments(8), identifier);
+    }
+
+    @Test
+    public void batchIsAppliedTheSameAsSingleEntries() throws InterruptedException {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, String, ?> batched = replicatedMap(2);
+             ReplicatedChronicleMap<Long, String, ?> oneByOne = replicatedMap(3)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+
+            for (long i = 0; i < ENTRIES; i++) {
+                source.put(i, "v" + i);
+            }
+            drainWithBootstrapTime(source, modificationIterator, buffer);
+            // make the second updates of the same keys strictly newer
+            Thread.sleep(5);
+            // the same keys are updated and removed again, in the same buffer
+            for (long i = 0; i < ENTRIES / 10; i++) {
+                source.put(i, "updated" + i);
+                source.remove(i + ENTRIES / 10);
+            }
+            drainWithBootstrapTime(source, modificationIterator, buffer);
+
+            long end = buffer.writePosition();
+            batched.readExternalEntries(buffer, source.identifier());
+            assertEquals(end, buffer.readPosition());
+
+            buffer.readPosition(0);
+            while (buffer.readRemaining() > 0) {
+                oneByOne.readExternalEntry(buffer, source.identifier());
+            }
+
+            assertEquals(new HashMap<>(source), new HashMap<>(batched));
+            assertEquals(new HashMap<>(oneByOne), new HashMap<>(batched));
+            assertEquals(oneByOne.remoteNodeCouldBootstrapFrom(source.identifier()),
+                    batched.remoteNodeCouldBootstrapFrom(source.identifier()));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import static net.openhft.chronicle.map.ReplicationTestUtil.drainWithBootstrapTime;
+import static net.openhft.chronicle.map.ReplicationTestUtil.replicatedMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicationChangeSummariesTest {
+
+    private static ChronicleMapBuilder<Long, String> builder() {
+        return ChronicleMap.of(Long.class, String.class)
+                .entries(1000)
+                .averageValueSize(10)
+                .actualSegments(4)
+                // allow extra tiers to be allocated
+                .maxBloatFactor(10)
+                .replicationChangeSummaries(true);
+    }
+
+    @Test
+    public void changesAreReplicatedThroughSummaries() {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(builder(), 1);
+             ReplicatedChronicleMap<Long, String, ?> target = replicatedMap(builder(), 2)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+
+            // more entries than configured, to populate extra tiers
+            for (long i = 0; i < 3000; i++) {
+                source.put(i, "v" + i);
+            }
+            assertEquals(3000, drainWithBootstrapTime(source, modificationIterator, buffer));
+            assertFalse(modificationIterator.hasNext());
+
+            for (long i = 0; i < 3000; i += 7) {
+                source.remove(i);
+            }
+            source.put(5000L, "new");
+            drainWithBootstrapTime(source, modificationIterator, buffer);
+            assertFalse(modificationIterator.hasNext());
+
+            target.readExternalEntries(buffer, source.identifier());
+            assertEquals(new HashMap<>(source), new HashMap<>(target));
+            assertTrue(target.remoteNodeCouldBootstrapFrom(source.identifier()) > 0L);
+        }
+    }
+
+    @Test
+    public void quietPollFindsNothing() {
+        try (ReplicatedChronicleMap<Long, String, ?> map = replicatedMap(builder(), 1)) {
+            Replica.ModificationIterator modificationIterator =
+                    map.acquireModificationIterator((byte) 2);
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            assertEquals(0, drainWithBootstrapTime(map, modificationIterator, buffer));
+
+            map.put(1L, "1");
+            assertTrue(modificationIterator.hasNext());
+            assertEquals(1, drainWithBootstrapTime(map, modificationIterator, buffer));
+            assertEquals(0, drainWithBootstrapTime(map, modificationIterator, buffer));
+
+            // the change is raised and then superseded in the same tier
+            map.put(2L, "2");
+            map.put(2L, "22");
+            assertEquals(1, drainWithBootstrapTime(map, modificationIterator, buffer));
+            assertFalse(modificationIterator.hasNext());
+        }
+    }
+
+    @Test
+    public void summariesModeIsPersisted() throws IOException {
+        File file = ChronicleMapTest.getPersistenceFile();
+        try (ReplicatedChronicleMap<Long, String, ?> map =
+                     (ReplicatedChronicleMap<Long, String, ?>) builder().replication((byte) 1)
+                             .createPersistedTo(file)) {
+            map.acquireModificationIterator((byte) 2);
+            map.put(1L, "1");
+        }
+        try (ReplicatedChronicleMap<Long, String, ?> map = (ReplicatedChronicleMap<Long, String, ?>)
+                ChronicleMap.of(Long.class, String.class)
+                        .replication((byte) 1)
+                        .createPersistedTo(file)) {
+            // the change, raised before the map is closed, is not lost
+            Replica.ModificationIterator modificationIterator =
+                    map.acquireModificationIterator((byte) 2);
+            map.put(2L, "2");
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            assertEquals(2, drainWithBootstrapTime(map, modificationIterator, buffer));
+        }
+    }
+}
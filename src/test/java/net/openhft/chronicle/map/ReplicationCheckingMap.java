@@ -20,10 +20,13 @@ import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.core.util.SerializableFunction;
+import net.openhft.chronicle.hash.ChecksumScrubberStats;
+import net.openhft.chronicle.hash.locks.SegmentLockStats;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -213,11 +216,78 @@ public class ReplicationCheckingMap<K, V> implements ChronicleMap<K, V> {
         return map1.longSize();
     }
 
+    @Override
+    public long estimatedSize() {
+        return map1.estimatedSize();
+    }
+
+    @Override
+    public int segmentIndex(@NotNull K key) {
+        return map1.segmentIndex(key);
+    }
+
+    @NotNull
+    @Override
+    public SegmentWriter<K, V> segmentWriter(int segmentIndex) {
+        return map1.segmentWriter(segmentIndex);
+    }
+
+    @Override
+    public long addAndGetLong(@NotNull K key, long offset, long delta) {
+        return map1.addAndGetLong(key, offset, delta);
+    }
+
+    @Override
+    public int addAndGetInt(@NotNull K key, long offset, int delta) {
+        return map1.addAndGetInt(key, offset, delta);
+    }
+
+    @Override
+    public boolean compareAndSwapLong(@NotNull K key, long offset, long expected, long newValue) {
+        return map1.compareAndSwapLong(key, offset, expected, newValue);
+    }
+
+    @Override
+    public boolean compareAndSwapInt(@NotNull K key, long offset, int expected, int newValue) {
+        return map1.compareAndSwapInt(key, offset, expected, newValue);
+    }
+
+    @Override
+    public long accumulateMaxLong(@NotNull K key, long offset, long value) {
+        return map1.accumulateMaxLong(key, offset, value);
+    }
+
     @Override
     public long offHeapMemoryUsed() {
         return map1.offHeapMemoryUsed();
     }
 
+    @Override
+    public int liveContexts() {
+        return map1.liveContexts();
+    }
+
+    @Override
+    public ChecksumScrubberStats checksumScrubberStats() {
+        return map1.checksumScrubberStats();
+    }
+
+    @Override
+    public SegmentLockStats segmentLockStats() {
+        return map1.segmentLockStats();
+    }
+
+    @Override
+    public long snapshotTo(File file) throws IOException {
+        return map1.snapshotTo(file);
+    }
+
+    @Override
+    public long snapshotTo(File file, boolean incremental, long maxBytesPerSecond)
+            throws IOException {
+        return map1.snapshotTo(file, incremental, maxBytesPerSecond);
+    }
+
     @Override
     public V getUsing(K key, V usingValue) {
         return map1.getUsing(key, usingValue);
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.map.replication.ReplicationChannel;
+import net.openhft.chronicle.map.replication.SharedMemoryReplicationChannel;
+import net.openhft.chronicle.map.replication.SocketReplicationChannel;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class ReplicationEngineTest {
+
+    private static final int ENTRIES = 10_000;
+
+    private static ChronicleMap<Long, String> replicatedMap(int identifier) {
+        return ChronicleMap.of(Long.class, String.class)
+                .entries(ENTRIES)
+                .averageValueSize(10)
+                .replication((byte) identifier)
+                .create();
+    }
+
+    private static void awaitEqual(Map<?, ?> expected, Map<?, ?> actual)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!expected.equals(actual)) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void replicate(ReplicationChannel channel1, ReplicationChannel channel2)
+            throws InterruptedException {
+        try (ChronicleMap<Long, String> map1 = replicatedMap(1);
+             ChronicleMap<Long, String> map2 = replicatedMap(2)) {
+            Map<Long, String> expected = new HashMap<>();
+            // entries, existing before the connection, are bootstrapped
+            for (long i = 0; i < ENTRIES / 2; i++) {
+                map1.put(i, "v" + i);
+                expected.put(i, "v" + i);
+            }
+            try (ReplicationEngine engine1 = new ReplicationEngine(map1, channel1, 16, 4096, 2);
+                 ReplicationEngine engine2 = new ReplicationEngine(map2, channel2, 16, 4096, 2)) {
+                engine1.start();
+                engine2.start();
+                for (long i = ENTRIES / 2; i < ENTRIES; i++) {
+                    ChronicleMap<Long, String> map = (i & 1) == 0 ? map1 : map2;
+                    map.put(i, "v" + i);
+                    expected.put(i, "v" + i);
+                }
+                awaitEqual(expected, map1);
+                awaitEqual(expected, map2);
+
+                for (long i = 0; i < ENTRIES / 10; i++) {
+                    map2.remove(i);
+                    expected.remove(i);
+                }
+                awaitEqual(expected, map1);
+                awaitEqual(expected, map2);
+                assertEquals((byte) 2, engine1.remoteIdentifier());
+                assertEquals((byte) 1, engine2.remoteIdentifier());
+                // entries are batched
+                assertTrue(engine1.sentBatches() < engine1.sentEntries());
+                assertTrue(engine1.isRunning());
+            }
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void replicationOverLoopbackSocket() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            CompletableFuture<SocketReplicationChannel> accepted = CompletableFuture.supplyAsync(
+                    () -> {
+                        try {
+                            return SocketReplicationChannel.accept(server);
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    });
+            SocketReplicationChannel channel1 = SocketReplicationChannel.connect(
+                    (InetSocketAddress) server.getLocalAddress());
+            replicate(channel1, accepted.get());
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void replicationOverSharedMemory() throws Exception {
+        File file = getPersistenceFile();
+        // small rings, to exercise wrapping and waiting for free space
+        SharedMemoryReplicationChannel channel1 = SharedMemoryReplicationChannel.create(file, 4096);
+        SharedMemoryReplicationChannel channel2 = SharedMemoryReplicationChannel.open(file);
+        replicate(channel1, channel2);
+    }
+
+    @Test(timeout = 60_000)
+    public void bothSidesSendLargeVolumes() throws Exception {
+        File file = getPersistenceFile();
+        // a small ring and a single unacknowledged batch, so both sides block on writing, and
+        // acknowledgements are needed to proceed
+        SharedMemoryReplicationChannel channel1 = SharedMemoryReplicationChannel.create(file, 4096);
+        SharedMemoryReplicationChannel channel2 = SharedMemoryReplicationChannel.open(file);
+        int entries = 2_000;
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        ChronicleMapBuilder<Long, String> builder = ChronicleMap.of(Long.class, String.class)
+                .entries(entries * 2)
+                .averageValueSize(value.length());
+        try (ChronicleMap<Long, String> map1 = builder.replication((byte) 1).create();
+             ChronicleMap<Long, String> map2 = builder.replication((byte) 2).create();
+             ReplicationEngine engine1 =
+                     new ReplicationEngine(map1, channel1, 16, 16 << 10, 1).start();
+             ReplicationEngine engine2 =
+                     new ReplicationEngine(map2, channel2, 16, 16 << 10, 1).start()) {
+            Map<Long, String> expected = new ConcurrentHashMap<>();
+            Thread writer2 = new Thread(() -> {
+                for (long i = 0; i < entries; i++) {
+                    map2.put(-i - 1, value + i);
+                    expected.put(-i - 1, value + i);
+                }
+            });
+            writer2.start();
+            for (long i = 0; i < entries; i++) {
+                map1.put(i, value + i);
+                expected.put(i, value + i);
+            }
+            writer2.join();
+            awaitEqual(expected, map1);
+            awaitEqual(expected, map2);
+            assertTrue(engine1.isRunning());
+            assertTrue(engine2.isRunning());
+            assertTrue(engine1.ackedBatches() > 0);
+            assertTrue(engine2.ackedBatches() > 0);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void engineStopsWhenRemoteSideCloses() throws Exception {
+        File file = getPersistenceFile();
+        SharedMemoryReplicationChannel channel1 = SharedMemoryReplicationChannel.create(file, 4096);
+        SharedMemoryReplicationChannel channel2 = SharedMemoryReplicationChannel.open(file);
+        try (ChronicleMap<Long, String> map1 = replicatedMap(1);
+             ChronicleMap<Long, String> map2 = replicatedMap(2);
+             ReplicationEngine engine1 = new ReplicationEngine(map1, channel1).start()) {
+            new ReplicationEngine(map2, channel2).start().close();
+            long deadline = System.currentTimeMillis() + 20_000;
+            while (engine1.isRunning()) {
+                assertTrue("Timed out", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void attachedSharedMemoryChannelIsNotReCreated() throws IOException {
+        File file = getPersistenceFile();
+        SharedMemoryReplicationChannel channel1 = SharedMemoryReplicationChannel.create(file, 4096);
+        SharedMemoryReplicationChannel channel2 = SharedMemoryReplicationChannel.open(file);
+        assertReCreationFails(file);
+        channel1.close();
+        // the opening side still has the file mapped
+        assertReCreationFails(file);
+        channel2.close();
+        try (SharedMemoryReplicationChannel recreated =
+                     SharedMemoryReplicationChannel.create(file, 4096)) {
+            assertReCreationFails(file);
+        }
+    }
+
+    private static void assertReCreationFails(File file) throws IOException {
+        try {
+            SharedMemoryReplicationChannel.create(file, 4096).close();
+            fail("The file is attached, re-creation should fail");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notReplicatedMap() throws IOException {
+        File file = getPersistenceFile();
+        try (ChronicleMap<Long, String> map = ChronicleMap.of(Long.class, String.class)
+                .entries(10).averageValueSize(10).create();
+             SharedMemoryReplicationChannel channel =
+                     SharedMemoryReplicationChannel.create(file, 4096)) {
+            new ReplicationEngine(map, channel);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.replication.ReplicationStats;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import static net.openhft.chronicle.map.ReplicationTestUtil.drain;
+import static net.openhft.chronicle.map.ReplicationTestUtil.replicatedMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicationStatsTest {
+
+    private static ChronicleMapBuilder<Long, String> builder() {
+        return ChronicleMap.of(Long.class, String.class)
+                .entries(1000)
+                .averageValueSize(10);
+    }
+
+    @Test
+    public void pendingSentAndAppliedEntriesAreCounted() {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(builder(), 1);
+             ReplicatedChronicleMap<Long, String, ?> target = replicatedMap(builder(), 2)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            ReplicationStats stats = source.replicationStats((byte) 2);
+            assertEquals(0, stats.pendingEntries());
+            assertEquals(0, stats.oldestPendingChangeTime());
+
+            for (long i = 0; i < 10; i++) {
+                source.put(i, "v" + i);
+            }
+            // the same entry is changed again
+            source.put(0L, "updated");
+            source.remove(9L);
+            assertEquals(10, stats.pendingEntries());
+            assertTrue(stats.oldestPendingChangeTime() > 0);
+
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            drain(source, modificationIterator, buffer);
+            assertEquals(0, stats.pendingEntries());
+            assertEquals(0, stats.oldestPendingChangeTime());
+            assertEquals(10, stats.sentEntries());
+
+            long bytes = buffer.readRemaining();
+            target.readExternalEntries(buffer, source.identifier());
+            ReplicationStats targetStats = target.replicationStats(source.identifier());
+            assertEquals(10, targetStats.appliedEntries());
+            assertEquals(bytes, targetStats.appliedBytes());
+            assertEquals(1, targetStats.appliedBatches());
+            assertTrue(targetStats.maxApplyNanos() > 0);
+            assertEquals(2, source.allReplicationStats().size() +
+                    target.allReplicationStats().size());
+        }
+    }
+
+    @Test
+    public void statsAreRegisteredAsMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern =
+                new ObjectName("net.openhft.chronicle.map:type=ReplicationStats,remote=2,*");
+        try (ReplicatedChronicleMap<Long, String, ?> map = replicatedMap(
+                builder().name("statsAreRegisteredAsMBeans").replicationStatsMBeans(true), 1)) {
+            map.acquireModificationIterator((byte) 2);
+            map.put(1L, "1");
+            Set<ObjectName> names = server.queryNames(pattern, null);
+            assertEquals(1, names.size());
+            assertEquals(1L, server.getAttribute(names.iterator().next(), "PendingEntries"));
+        }
+        assertEquals(0, server.queryNames(pattern, null).size());
+    }
+}
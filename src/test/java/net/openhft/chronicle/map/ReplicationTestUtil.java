@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Helpers of tests, which replicate changes between maps in the same process, by writing entries
+ * with {@link ReplicatedChronicleMap#writeExternalEntry} and reading them with {@link
+ * ReplicatedChronicleMap#readExternalEntries}, without a replication engine.
+ */
+public final class ReplicationTestUtil {
+
+    private ReplicationTestUtil() {
+    }
+
+    /**
+     * Creates a replicated map with the given builder and replication identifier.
+     */
+    public static <K, V> ReplicatedChronicleMap<K, V, ?> replicatedMap(
+            ChronicleMapBuilder<K, V> builder, int identifier) {
+        return (ReplicatedChronicleMap<K, V, ?>) builder.replication((byte) identifier).create();
+    }
+
+    /**
+     * Writes all entries of the {@code map}, changed for the remote node of the modification
+     * iterator, to the {@code destination}.
+     *
+     * @return the number of written entries
+     */
+    public static int drain(ReplicatedChronicleMap<?, ?, ?> map,
+                            Replica.ModificationIterator modificationIterator,
+                            Bytes<?> destination) {
+        return drain(map, modificationIterator, destination, null, false);
+    }
+
+    /**
+     * Writes all entries of the {@code map}, changed for the remote node of the modification
+     * iterator, to the {@code destination}, followed by the bootstrap time hunks, i. e. the same
+     * as a replication engine sends.
+     *
+     * @return the number of written entries
+     */
+    public static int drainWithBootstrapTime(ReplicatedChronicleMap<?, ?, ?> map,
+                                             Replica.ModificationIterator modificationIterator,
+                                             Bytes<?> destination) {
+        return drain(map, modificationIterator, destination, null, true);
+    }
+
+    /**
+     * Writes all entries of the {@code map}, changed for the remote node of the modification
+     * iterator, to the {@code destination}, encoding partially changed values with the given
+     * {@code encoder}.
+     *
+     * @return the number of written entries
+     */
+    public static int drain(ReplicatedChronicleMap<?, ?, ?> map,
+                            Replica.ModificationIterator modificationIterator,
+                            Bytes<?> destination, ValueDeltaEncoder encoder) {
+        return drain(map, modificationIterator, destination, encoder, false);
+    }
+
+    private static int drain(ReplicatedChronicleMap<?, ?, ?> map,
+                             Replica.ModificationIterator modificationIterator,
+                             Bytes<?> destination, @Nullable ValueDeltaEncoder encoder,
+                             boolean writeBootstrapTime) {
+        Replica.ModificationIterator.Callback callback =
+                new Replica.ModificationIterator.Callback() {
+                    @Override
+                    public void onEntry(ReplicableEntry entry, int chronicleId) {
+                        map.writeExternalEntry(entry, null, destination, chronicleId, encoder);
+                    }
+
+                    @Override
+                    public void onBootstrapTime(long bootstrapTime, int chronicleId) {
+                        if (writeBootstrapTime) {
+                            destination.writeByte(ReplicatedChronicleMap.BOOTSTRAP_TIME_HUNK);
+                            destination.writeLong(bootstrapTime);
+                        }
+                    }
+                };
+        int entries = 0;
+        int batch;
+        while ((batch = modificationIterator.nextEntries(callback, map.identifier(), 10)) > 0) {
+            entries += batch;
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentSnapshotBootstrapTest {
+
+    private static ReplicatedChronicleMap<Long, String, ?> replicatedMap(int identifier) {
+        return (ReplicatedChronicleMap<Long, String, ?>) ChronicleMap.of(Long.class, String.class)
+                .entries(2000)
+                .averageValueSize(10)
+                .actualSegments(8)
+                .replication((byte) identifier)
+                .create();
+    }
+
+    @Test
+    public void snapshotBootstrapsAndChangeTrackingTakesOver() {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, String, ?> target = replicatedMap(2)) {
+            ReplicatedChronicleMap<Long, String, ?>.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            for (long i = 0; i < 1000; i++) {
+                source.put(i, "v" + i);
+            }
+            source.remove(0L);
+            assertTrue(modificationIterator.hasNext());
+
+            int[] snapshots = {0};
+            modificationIterator.bootstrapSegments(0L, Bytes.elasticByteBuffer(4096),
+                    Integer.MAX_VALUE, snapshot -> {
+                        snapshots[0]++;
+                        target.readExternalEntries(snapshot, source.identifier());
+                    });
+            assertEquals(8, snapshots[0]);
+            assertEquals(new HashMap<>(source), new HashMap<>(target));
+            // all pending changes are covered by the snapshot
+            assertFalse(modificationIterator.hasNext());
+            assertEquals(0, source.replicationStats((byte) 2).pendingEntries());
+
+            source.put(5000L, "new");
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            Replica.ModificationIterator.Callback callback =
+                    new Replica.ModificationIterator.Callback() {
+                        @Override
+                        public void onEntry(ReplicableEntry entry, int chronicleId) {
+                            source.writeExternalEntry(entry, null, buffer, chronicleId);
+                        }
+
+                        @Override
+                        public void onBootstrapTime(long bootstrapTime, int chronicleId) {
+                        }
+                    };
+            assertEquals(1, modificationIterator.nextEntries(callback, source.identifier(), 10));
+            target.readExternalEntries(buffer, source.identifier());
+            assertEquals(new HashMap<>(source), new HashMap<>(target));
+        }
+    }
+
+    @Test
+    public void onlyEntriesFromTheBootstrapTimeArePublished() throws InterruptedException {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, String, ?> target = replicatedMap(2)) {
+            for (long i = 0; i < 100; i++) {
+                source.put(i, "v" + i);
+            }
+            // make the bootstrap time strictly greater than timestamps of the entries above
+            Thread.sleep(5);
+            long bootstrapTime = source.currentTime();
+            source.put(1000L, "new");
+            ReplicatedChronicleMap<Long, String, ?>.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            modificationIterator.bootstrapSegments(bootstrapTime, Bytes.elasticByteBuffer(4096),
+                    Integer.MAX_VALUE,
+                    snapshot -> target.readExternalEntries(snapshot, source.identifier()));
+            assertEquals(1, target.size());
+            assertEquals("new", target.get(1000L));
+        }
+    }
+
+    @Test
+    public void snapshotsAreBoundedAndTheRestIsPublishedAsChanges() {
+        try (ReplicatedChronicleMap<Long, String, ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, String, ?> target = replicatedMap(2)) {
+            for (long i = 0; i < 1000; i++) {
+                source.put(i, "v" + i);
+            }
+            ReplicatedChronicleMap<Long, String, ?>.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            int maxSnapshotBytes = 256;
+            long[] maxSnapshotSize = {0};
+            modificationIterator.bootstrapSegments(0L, Bytes.elasticByteBuffer(4096),
+                    maxSnapshotBytes, snapshot -> {
+                        maxSnapshotSize[0] = Math.max(maxSnapshotSize[0], snapshot.readRemaining());
+                        target.readExternalEntries(snapshot, source.identifier());
+                    });
+            // a snapshot could exceed the limit only by the last entry
+            assertTrue(maxSnapshotSize[0] < maxSnapshotBytes + 64);
+            assertTrue(target.size() < source.size());
+            assertTrue(modificationIterator.hasNext());
+
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            Replica.ModificationIterator.Callback callback =
+                    new Replica.ModificationIterator.Callback() {
+                        @Override
+                        public void onEntry(ReplicableEntry entry, int chronicleId) {
+                            source.writeExternalEntry(entry, null, buffer, chronicleId);
+                        }
+
+                        @Override
+                        public void onBootstrapTime(long bootstrapTime, int chronicleId) {
+                        }
+                    };
+            while (modificationIterator.nextEntries(callback, source.identifier(), 16) > 0) {
+                target.readExternalEntries(buffer, source.identifier());
+                buffer.clear();
+            }
+            assertEquals(new HashMap<>(source), new HashMap<>(target));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class SegmentWriterTest {
+
+    private static ChronicleMap<Integer, Integer> map() {
+        return ChronicleMap.of(Integer.class, Integer.class)
+                .entries(1000)
+                .actualSegments(4)
+                .create();
+    }
+
+    private static List<Integer> keysOfSegment(ChronicleMap<Integer, Integer> map,
+                                               int segmentIndex, int keys) {
+        List<Integer> result = new ArrayList<>();
+        for (int key = 0; result.size() < keys; key++) {
+            if (map.segmentIndex(key) == segmentIndex)
+                result.add(key);
+        }
+        return result;
+    }
+
+    @Test
+    public void writesAreVisibleToOtherThreadsAfterPublish() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            List<Integer> keys = keysOfSegment(map, 1, 10);
+            int otherSegmentKey = keysOfSegment(map, 2, 1).get(0);
+            try (SegmentWriter<Integer, Integer> writer = map.segmentWriter(1)) {
+                assertEquals(1, writer.segmentIndex());
+                // readers are not blocked by the writer before the first write
+                map.put(keys.get(0), -1);
+                assertEquals(-1, (int) reader.submit(() -> map.get(keys.get(0))).get());
+
+                for (int key : keys) {
+                    writer.put(key, key);
+                }
+                assertEquals(Integer.valueOf(keys.get(0)), writer.remove(keys.get(0)));
+                // reads in the owner thread share the writer's lock
+                assertNull(map.get(keys.get(0)));
+                assertEquals(keys.get(1), map.get(keys.get(1)));
+
+                Future<Integer> read = reader.submit(() -> map.get(keys.get(1)));
+                try {
+                    read.get(100, TimeUnit.MILLISECONDS);
+                    fail("unpublished writes shouldn't be visible");
+                } catch (TimeoutException expected) {
+                    // the reader waits for the publication
+                }
+                // other segments are not affected
+                assertNull(reader.submit(() -> map.get(otherSegmentKey)).get(1, TimeUnit.SECONDS));
+                writer.publish();
+                assertEquals(keys.get(1), read.get(1, TimeUnit.SECONDS));
+                assertNull(reader.submit(() -> map.get(keys.get(0))).get());
+            }
+            assertEquals(9, map.size());
+        } finally {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    public void otherWritersWaitUntilClose() throws Exception {
+        ExecutorService otherWriter = Executors.newSingleThreadExecutor();
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            int key = keysOfSegment(map, 0, 1).get(0);
+            Future<Integer> put;
+            try (SegmentWriter<Integer, Integer> writer = map.segmentWriter(0)) {
+                writer.put(key, 1);
+                writer.publish();
+                put = otherWriter.submit(() -> map.put(key, 2));
+                try {
+                    put.get(100, TimeUnit.MILLISECONDS);
+                    fail("the segment should be owned by the writer");
+                } catch (TimeoutException expected) {
+                    // the other writer waits for the segment
+                }
+                writer.put(key, 3);
+            }
+            assertEquals(3, (int) put.get(1, TimeUnit.SECONDS));
+            assertEquals(2, (int) map.get(key));
+        } finally {
+            otherWriter.shutdown();
+        }
+    }
+
+    @Test
+    public void keysOfOtherSegmentsAreRejected() {
+        try (ChronicleMap<Integer, Integer> map = map();
+             SegmentWriter<Integer, Integer> writer = map.segmentWriter(0)) {
+            int key = keysOfSegment(map, 3, 1).get(0);
+            try {
+                writer.put(key, 1);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+            assertNull(map.get(key));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentIndexOutOfRange() {
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            map.segmentWriter(4);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedWriterThrows() {
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            SegmentWriter<Integer, Integer> writer = map.segmentWriter(0);
+            writer.close();
+            writer.put(keysOfSegment(map, 0, 1).get(0), 1);
+        }
+    }
+
+    @Test
+    public void writersOfDifferentSegmentsInParallel() throws ExecutionException,
+            InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (ChronicleMap<Integer, Integer> map = map()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int s = 0; s < 4; s++) {
+                int segmentIndex = s;
+                futures.add(executor.submit(() -> {
+                    List<Integer> keys = keysOfSegment(map, segmentIndex, 100);
+                    try (SegmentWriter<Integer, Integer> writer =
+                                 map.segmentWriter(segmentIndex)) {
+                        for (int i = 0; i < keys.size(); i++) {
+                            writer.put(keys.get(i), i);
+                            if (i % 10 == 9)
+                                writer.publish();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(400, map.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
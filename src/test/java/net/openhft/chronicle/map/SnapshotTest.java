@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.core.OS;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+
+    private static final int ENTRIES = 1000;
+
+    private static ChronicleMapBuilder<Integer, Integer> builder() {
+        return ChronicleMap.of(Integer.class, Integer.class)
+                .entries(ENTRIES)
+                .actualSegments(16);
+    }
+
+    @Test
+    public void fullSnapshotHasTheSameContents() throws IOException {
+        File file = getPersistenceFile();
+        File snapshot = getPersistenceFile();
+        Map<Integer, Integer> expected = new HashMap<>();
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            // more entries than configured, to allocate extra tiers
+            for (int i = 0; i < ENTRIES * 3; i++) {
+                map.put(i, -i);
+                expected.put(i, -i);
+            }
+            assertTrue(map.snapshotTo(snapshot) > 0);
+            map.put(-1, 1);
+        }
+        try (ChronicleMap<Integer, Integer> copy = builder().recoverPersistedTo(snapshot, false,
+                c -> fail(c.message()))) {
+            assertEquals(expected, copy);
+        }
+    }
+
+    @Test
+    public void incrementalSnapshotWritesOnlyModifiedSegments() throws IOException {
+        File file = getPersistenceFile();
+        File snapshot = getPersistenceFile();
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                map.put(i, i);
+            }
+            long fullSnapshotBytes = map.snapshotTo(snapshot, true, 0);
+            assertEquals(0, map.get(0).intValue());
+
+            map.put(0, 42);
+            long incrementalSnapshotBytes = map.snapshotTo(snapshot, true, 0);
+            assertTrue(incrementalSnapshotBytes < fullSnapshotBytes);
+
+            Map<Integer, Integer> expected = new HashMap<>(map);
+            try (ChronicleMap<Integer, Integer> copy = builder().createPersistedTo(snapshot)) {
+                assertEquals(expected, copy);
+                assertEquals(42, copy.get(0).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void incrementalSnapshotComparesTiers() throws IOException {
+        File file = getPersistenceFile();
+        File snapshot = getPersistenceFile();
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                map.put(i, i);
+            }
+            map.snapshotTo(snapshot, true, 0);
+            long unchangedSnapshotBytes = map.snapshotTo(snapshot, true, 0);
+
+            VanillaChronicleMap<Integer, Integer, ?> vcm = (VanillaChronicleMap) map;
+            int segmentIndex;
+            try (ExternalMapQueryContext<Integer, Integer, ?> c = map.queryContext(0)) {
+                segmentIndex = c.segmentIndex();
+            }
+            long segmentHeaderAddress = vcm.segmentHeaderAddress(segmentIndex);
+            int generation = vcm.segmentHeader.modificationGeneration(segmentHeaderAddress);
+            map.put(0, 42);
+            // A tier change, not reflected in the segment modification generation (bytes 28..31
+            // of the segment header)
+            OS.memory().writeInt(segmentHeaderAddress + 28, generation);
+            long changedSnapshotBytes = map.snapshotTo(snapshot, true, 0);
+            assertTrue(changedSnapshotBytes > unchangedSnapshotBytes);
+
+            try (ChronicleMap<Integer, Integer> copy = builder().createPersistedTo(snapshot)) {
+                assertEquals(42, copy.get(0).intValue());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void snapshotToTheSameFile() throws IOException {
+        File file = getPersistenceFile();
+        try (ChronicleMap<Integer, Integer> map = builder().createPersistedTo(file)) {
+            map.snapshotTo(file);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void inMemoryMapSnapshot() throws IOException {
+        try (ChronicleMap<Integer, Integer> map = builder().create()) {
+            map.snapshotTo(getPersistenceFile());
+        }
+    }
+}
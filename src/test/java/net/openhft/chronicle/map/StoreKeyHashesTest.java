@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.hash.Data;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.*;
+
+public class StoreKeyHashesTest {
+
+    private static ChronicleMapBuilder<String, String> builder(int entries) {
+        return ChronicleMap.of(String.class, String.class)
+                .entries(entries)
+                .averageKey("key-1000")
+                .averageValue("value-1000")
+                .storeKeyHashes(true);
+    }
+
+    @Test
+    public void queriesIterationAndRelocationWithStoredKeyHashes() throws IOException {
+        File file = getPersistenceFile();
+        int entries = 1000;
+        try (ChronicleMap<String, String> map = builder(entries).createPersistedTo(file)) {
+            assertTrue(((VanillaChronicleMap) map).storeKeyHashes);
+            for (int i = 0; i < entries; i++) {
+                map.put("key-" + i, "value-" + i);
+            }
+            for (int i = 0; i < entries; i++) {
+                assertEquals("value-" + i, map.get("key-" + i));
+            }
+            assertNull(map.get("absent"));
+            // Values grow, entries are relocated
+            for (int i = 0; i < entries; i += 2) {
+                map.put("key-" + i, "value-" + i + "-value-" + i + "-value-" + i);
+            }
+            map.entrySet().removeIf(e -> e.getKey().endsWith("1"));
+            for (int i = 0; i < entries; i++) {
+                String value = map.get("key-" + i);
+                if (i % 10 == 1) {
+                    assertNull(value);
+                } else if (i % 2 == 0) {
+                    assertEquals("value-" + i + "-value-" + i + "-value-" + i, value);
+                } else {
+                    assertEquals("value-" + i, value);
+                }
+            }
+        }
+
+        // storeKeyHashes is not configured, it should be read from the header
+        try (ChronicleMap<String, String> map = ChronicleMap.of(String.class, String.class)
+                .entries(entries)
+                .averageKey("key-1000")
+                .averageValue("value-1000")
+                .createPersistedTo(file)) {
+            assertTrue(((VanillaChronicleMap) map).storeKeyHashes);
+            assertEquals(entries - entries / 10, map.size());
+            assertEquals("value-3", map.get("key-3"));
+        }
+    }
+
+    @Test
+    public void corruptedStoredKeyHashIsFixedOnRecovery() throws IOException {
+        File file = getPersistenceFile();
+        try (ChronicleMap<String, String> map = builder(100).createPersistedTo(file)) {
+            map.put("key", "value");
+            try (ExternalMapQueryContext<String, String, ?> c = map.queryContext("key")) {
+                c.updateLock().lock();
+                MapEntry<String, String> entry = c.entry();
+                assertNotNull(entry);
+                Data<String> key = entry.key();
+                // The stored key hash code precedes the key bytes
+                BytesStore bytes = (BytesStore) key.bytes();
+                long keyHashOffset = key.offset() - 8;
+                bytes.writeLong(keyHashOffset, ~bytes.readLong(keyHashOffset));
+            }
+        }
+
+        AtomicInteger corruptionCounter = new AtomicInteger(0);
+        try (ChronicleMap<String, String> map = builder(100).recoverPersistedTo(file, true,
+                corruption -> corruptionCounter.incrementAndGet())) {
+            assertEquals(1, map.size());
+            assertEquals("value", map.get("key"));
+        }
+        assertEquals(1, corruptionCounter.get());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.replication.ReplicableEntry;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static net.openhft.chronicle.map.ChronicleMapTest.getPersistenceFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimestampProviderTest {
+
+    private static ChronicleMapBuilder<Long, String> builder(TimestampProvider timestampProvider) {
+        ChronicleMapBuilder<Long, String> builder = ChronicleMap.of(Long.class, String.class)
+                .entries(100)
+                .averageValueSize(10)
+                .replication((byte) 1);
+        ((ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI())
+                .timestampProvider(timestampProvider);
+        return builder;
+    }
+
+    private static long originTimestamp(ChronicleMap<Long, String> map, long key) {
+        try (ExternalMapQueryContext<Long, String, ?> c = map.queryContext(key)) {
+            c.updateLock().lock();
+            return ((ReplicableEntry) c.entry()).originTimestamp();
+        }
+    }
+
+    @Test
+    public void updateTimestampsAreTakenFromConfiguredProvider() {
+        // a clock, that is stuck far in the past
+        FixedTimestampProvider timestampProvider = new FixedTimestampProvider(1000L);
+        try (ChronicleMap<Long, String> map = builder(timestampProvider).create()) {
+            map.put(1L, "a");
+            assertEquals(1001L, originTimestamp(map, 1L));
+            // the update of the same entry gets a greater timestamp
+            map.put(1L, "b");
+            assertEquals(1002L, originTimestamp(map, 1L));
+        }
+    }
+
+    @Test
+    public void timestampsAreMonotonicAcrossRestarts() throws IOException {
+        File file = getPersistenceFile();
+        long lastTimestamp;
+        try (ChronicleMap<Long, String> map = builder(new FixedTimestampProvider(0L))
+                .createPersistedTo(file)) {
+            // simulate that the system clock was ahead before the restart
+            ((ReplicatedChronicleMap) map).timestampProvider.advanceTo(1_000_000_000L);
+            map.put(1L, "a");
+            lastTimestamp = originTimestamp(map, 1L);
+        }
+        FixedTimestampProvider timestampProvider = new FixedTimestampProvider(0L);
+        try (ChronicleMap<Long, String> map = builder(timestampProvider)
+                .createPersistedTo(file)) {
+            assertTrue(timestampProvider.advancedTo >= lastTimestamp);
+            map.put(2L, "b");
+            assertTrue(originTimestamp(map, 2L) > lastTimestamp);
+        }
+    }
+
+    /**
+     * A single-threaded provider, whose "system time" doesn't move
+     */
+    private static class FixedTimestampProvider implements TimestampProvider {
+        long lastTimestamp;
+        long advancedTo;
+
+        FixedTimestampProvider(long time) {
+            lastTimestamp = time;
+        }
+
+        @Override
+        public synchronized long nextTimestamp() {
+            return ++lastTimestamp;
+        }
+
+        @Override
+        public synchronized long currentTime() {
+            return lastTimestamp;
+        }
+
+        @Override
+        public synchronized void advanceTo(long timestamp) {
+            advancedTo = timestamp;
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ValueDeltaReplicationTest {
+
+    private static final int VALUE_SIZE = 8192;
+
+    private static ReplicatedChronicleMap<Long, byte[], ?> replicatedMap(int identifier) {
+        return ReplicationTestUtil.replicatedMap(ChronicleMap.of(Long.class, byte[].class)
+                .entries(100)
+                .averageValueSize(VALUE_SIZE), identifier);
+    }
+
+    /**
+     * @return the number of bytes, written to the cleared {@code destination}
+     */
+    private static long drain(ReplicatedChronicleMap<Long, byte[], ?> map,
+                              Replica.ModificationIterator modificationIterator,
+                              ValueDeltaEncoder encoder, Bytes<ByteBuffer> destination) {
+        destination.clear();
+        ReplicationTestUtil.drain(map, modificationIterator, destination, encoder);
+        return destination.writePosition();
+    }
+
+    private static byte[] value(int seed) {
+        byte[] value = new byte[VALUE_SIZE];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) (i * 31 + seed);
+        }
+        return value;
+    }
+
+    @Test
+    public void partialChangesAreSentAsDeltas() {
+        try (ReplicatedChronicleMap<Long, byte[], ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, byte[], ?> target = replicatedMap(2)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            ValueDeltaEncoder encoder = new ValueDeltaEncoder();
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            Bytes<ByteBuffer> resendRequests = Bytes.elasticByteBuffer(64);
+
+            byte[] value = value(0);
+            source.put(1L, value);
+            assertTrue(drain(source, modificationIterator, encoder, buffer) > VALUE_SIZE);
+            target.readExternalEntries(buffer, source.identifier(), resendRequests);
+
+            value[100] = 1;
+            value[5000] = 2;
+            value[5001] = 3;
+            source.put(1L, value);
+            // two changed blocks
+            assertTrue(drain(source, modificationIterator, encoder, buffer) <
+                    2 * ValueDeltaEncoder.DEFAULT_BLOCK_SIZE + 100);
+            target.readExternalEntries(buffer, source.identifier(), resendRequests);
+
+            assertEquals(0, resendRequests.writePosition());
+            assertArrayEquals(value, target.get(1L));
+        }
+    }
+
+    @Test
+    public void missingBaseIsRequestedInFull() {
+        try (ReplicatedChronicleMap<Long, byte[], ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, byte[], ?> target = replicatedMap(2)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            ValueDeltaEncoder encoder = new ValueDeltaEncoder();
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+            Bytes<ByteBuffer> resendRequests = Bytes.elasticByteBuffer(64);
+
+            byte[] value = value(0);
+            source.put(1L, value);
+            // the full value is lost in flight
+            drain(source, modificationIterator, encoder, buffer);
+
+            value[100] = 1;
+            source.put(1L, value);
+            drain(source, modificationIterator, encoder, buffer);
+            target.readExternalEntries(buffer, source.identifier(), resendRequests);
+            assertNull(target.get(1L));
+            assertTrue(resendRequests.writePosition() > 0);
+
+            source.raiseChangesForResendRequests(resendRequests, target.identifier(), encoder);
+            assertTrue(drain(source, modificationIterator, encoder, buffer) > VALUE_SIZE);
+            target.readExternalEntries(buffer, source.identifier(), null);
+            assertArrayEquals(value, target.get(1L));
+        }
+    }
+
+    @Test
+    public void missedDeltaCapsBootstrapTimeUntilTheFullValueIsReceived() {
+        try (ReplicatedChronicleMap<Long, byte[], ?> source = replicatedMap(1);
+             ReplicatedChronicleMap<Long, byte[], ?> target = replicatedMap(2)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            ValueDeltaEncoder encoder = new ValueDeltaEncoder();
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+
+            byte[] value = value(0);
+            source.put(1L, value);
+            // the full value is lost in flight
+            drain(source, modificationIterator, encoder, buffer);
+
+            value[100] = 1;
+            source.put(1L, value);
+            drain(source, modificationIterator, encoder, buffer);
+            // the delta couldn't be applied, and full value is not requested
+            target.readExternalEntries(buffer, source.identifier());
+            assertNull(target.get(1L));
+
+            // the bootstrap time, received in a later call, is capped by the missed delta
+            long bootstrapTime = source.currentTime();
+            readBootstrapTime(target, source.identifier(), bootstrapTime, buffer);
+            assertTrue(target.remoteNodeCouldBootstrapFrom(source.identifier()) < bootstrapTime);
+
+            // the full value, sent after reconnection
+            source.put(1L, value);
+            drain(source, modificationIterator, new ValueDeltaEncoder(), buffer);
+            target.readExternalEntries(buffer, source.identifier());
+            assertArrayEquals(value, target.get(1L));
+            bootstrapTime = source.currentTime();
+            readBootstrapTime(target, source.identifier(), bootstrapTime, buffer);
+            assertEquals(bootstrapTime, target.remoteNodeCouldBootstrapFrom(source.identifier()));
+        }
+    }
+
+    private static void readBootstrapTime(ReplicatedChronicleMap<Long, byte[], ?> target,
+                                          byte remoteIdentifier, long bootstrapTime,
+                                          Bytes<ByteBuffer> buffer) {
+        buffer.clear();
+        buffer.writeByte(ReplicatedChronicleMap.BOOTSTRAP_TIME_HUNK);
+        buffer.writeLong(bootstrapTime);
+        target.readExternalEntries(buffer, remoteIdentifier);
+    }
+
+    @Test
+    public void sizeChangeIsSentInFull() {
+        try (ReplicatedChronicleMap<Long, byte[], ?> source = replicatedMap(1)) {
+            Replica.ModificationIterator modificationIterator =
+                    source.acquireModificationIterator((byte) 2);
+            ValueDeltaEncoder encoder = new ValueDeltaEncoder();
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+
+            source.put(1L, value(0));
+            drain(source, modificationIterator, encoder, buffer);
+            source.put(1L, new byte[VALUE_SIZE / 2]);
+            assertTrue(drain(source, modificationIterator, encoder, buffer) > VALUE_SIZE / 2);
+        }
+    }
+}
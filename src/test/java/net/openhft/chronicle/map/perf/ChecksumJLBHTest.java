@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.map.perf;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.jlbh.JLBH;
+import net.openhft.chronicle.core.jlbh.JLBHOptions;
+import net.openhft.chronicle.core.jlbh.JLBHTask;
+import net.openhft.chronicle.core.util.NanoSampler;
+import net.openhft.chronicle.hash.ChecksumAlgorithm;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+import net.openhft.chronicle.map.ExternalMapQueryContext;
+
+/**
+ * Reports the cost of entry checksums on writes: puts of the same values into maps without
+ * checksums, with xxHash and with CRC-32C checksums, and an 8-byte patch of a value with
+ * incremental CRC-32C checksum update.
+ */
+public class ChecksumJLBHTest implements JLBHTask {
+    private static final int WARM_UP_ITERATIONS = 40_000;
+    private static final int ENTRIES = 10_000;
+    private static final int VALUE_SIZE = 4096;
+
+    private ChronicleMap<Long, byte[]> noChecksums;
+    private ChronicleMap<Long, byte[]> xxHashChecksums;
+    private ChronicleMap<Long, byte[]> crc32cChecksums;
+    private NanoSampler noChecksumsSampler;
+    private NanoSampler xxHashSampler;
+    private NanoSampler crc32cSampler;
+    private NanoSampler crc32cPatchSampler;
+    private NanoSampler e2eSampler;
+    private final byte[] value = new byte[VALUE_SIZE];
+    private final BytesStore patch = BytesStore.wrap(new byte[8]);
+    private long counter = 0;
+
+    public static void main(String[] args) {
+        JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(WARM_UP_ITERATIONS)
+                .iterations(200_000)
+                .throughput(20_000)
+                .runs(3)
+                .recordOSJitter(false)
+                .accountForCoordinatedOmmission(false)
+                .jlbhTask(new ChecksumJLBHTest());
+        new JLBH(options).start();
+    }
+
+    private static ChronicleMap<Long, byte[]> map(
+            boolean checksumEntries, ChecksumAlgorithm checksumAlgorithm) {
+        return ChronicleMapBuilder.of(Long.class, byte[].class)
+                .entries(ENTRIES)
+                .averageValueSize(VALUE_SIZE)
+                .checksumEntries(checksumEntries)
+                .checksumAlgorithm(checksumAlgorithm)
+                .create();
+    }
+
+    @Override
+    public void init(JLBH jlbh) {
+        noChecksums = map(false, ChecksumAlgorithm.XX_HASH);
+        xxHashChecksums = map(true, ChecksumAlgorithm.XX_HASH);
+        crc32cChecksums = map(true, ChecksumAlgorithm.CRC32C);
+        noChecksumsSampler = jlbh.addProbe("Put, no checksums");
+        xxHashSampler = jlbh.addProbe("Put, xxHash checksums");
+        crc32cSampler = jlbh.addProbe("Put, CRC32C checksums");
+        crc32cPatchSampler = jlbh.addProbe("8-byte patch, incremental CRC32C checksum");
+        e2eSampler = jlbh;
+    }
+
+    @Override
+    public void run(long startTimeNS) {
+        long key = counter++ % ENTRIES;
+        value[(int) (key % VALUE_SIZE)]++;
+
+        long start = System.nanoTime();
+        noChecksums.put(key, value);
+        long end = System.nanoTime();
+        noChecksumsSampler.sampleNanos(end - start);
+
+        start = end;
+        xxHashChecksums.put(key, value);
+        end = System.nanoTime();
+        xxHashSampler.sampleNanos(end - start);
+
+        start = end;
+        crc32cChecksums.put(key, value);
+        end = System.nanoTime();
+        crc32cSampler.sampleNanos(end - start);
+
+        start = end;
+        try (ExternalMapQueryContext<Long, byte[], ?> c = crc32cChecksums.queryContext(key)) {
+            c.updateLock().lock();
+            c.entry().writeValueBytes(VALUE_SIZE / 2, patch, 0, 8);
+        }
+        end = System.nanoTime();
+        crc32cPatchSampler.sampleNanos(end - start);
+
+        e2eSampler.sampleNanos(end - startTimeNS);
+    }
+
+    @Override
+    public void complete() {
+        noChecksums.close();
+        xxHashChecksums.close();
+        crc32cChecksums.close();
+    }
+}
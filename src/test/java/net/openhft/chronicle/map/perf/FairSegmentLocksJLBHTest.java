@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.perf;
+
+import net.openhft.chronicle.core.jlbh.JLBH;
+import net.openhft.chronicle.core.jlbh.JLBHOptions;
+import net.openhft.chronicle.core.jlbh.JLBHTask;
+import net.openhft.chronicle.core.util.NanoSampler;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports read and write latencies in a single segment, continuously written by background
+ * threads, with the default and with phase-fair segment locks.
+ */
+public class FairSegmentLocksJLBHTest implements JLBHTask {
+    private static final int WARM_UP_ITERATIONS = 40_000;
+    private static final int ENTRIES = 1_000;
+    private static final int BACKGROUND_WRITERS = 2;
+
+    private final List<Thread> backgroundWriters = new ArrayList<>();
+    private volatile boolean running = true;
+    private ChronicleMap<Long, Long> defaultLocks;
+    private ChronicleMap<Long, Long> fairLocks;
+    private NanoSampler defaultReadSampler;
+    private NanoSampler fairReadSampler;
+    private NanoSampler defaultWriteSampler;
+    private NanoSampler fairWriteSampler;
+    private NanoSampler e2eSampler;
+    private long counter = 0;
+
+    public static void main(String[] args) {
+        JLBHOptions options = new JLBHOptions()
+                .warmUpIterations(WARM_UP_ITERATIONS)
+                .iterations(200_000)
+                .throughput(20_000)
+                .runs(3)
+                .recordOSJitter(false)
+                .accountForCoordinatedOmmission(false)
+                .jlbhTask(new FairSegmentLocksJLBHTest());
+        new JLBH(options).start();
+    }
+
+    private static ChronicleMap<Long, Long> map(boolean fairSegmentLocks) {
+        return ChronicleMapBuilder.of(Long.class, Long.class)
+                .entries(ENTRIES)
+                .actualSegments(1)
+                .fairSegmentLocks(fairSegmentLocks)
+                .create();
+    }
+
+    private void startBackgroundWriters(ChronicleMap<Long, Long> map) {
+        for (int i = 0; i < BACKGROUND_WRITERS; i++) {
+            Thread writer = new Thread(() -> {
+                long key = 0;
+                while (running) {
+                    map.put(key++ % ENTRIES, key);
+                }
+            });
+            writer.setDaemon(true);
+            writer.start();
+            backgroundWriters.add(writer);
+        }
+    }
+
+    @Override
+    public void init(JLBH jlbh) {
+        defaultLocks = map(false);
+        fairLocks = map(true);
+        for (long key = 0; key < ENTRIES; key++) {
+            defaultLocks.put(key, key);
+            fairLocks.put(key, key);
+        }
+        startBackgroundWriters(defaultLocks);
+        startBackgroundWriters(fairLocks);
+        defaultReadSampler = jlbh.addProbe("Get, default locks");
+        fairReadSampler = jlbh.addProbe("Get, phase-fair locks");
+        defaultWriteSampler = jlbh.addProbe("Put, default locks");
+        fairWriteSampler = jlbh.addProbe("Put, phase-fair locks");
+        e2eSampler = jlbh;
+    }
+
+    @Override
+    public void run(long startTimeNS) {
+        long key = counter++ % ENTRIES;
+
+        long start = System.nanoTime();
+        defaultLocks.get(key);
+        long end = System.nanoTime();
+        defaultReadSampler.sampleNanos(end - start);
+
+        start = end;
+        fairLocks.get(key);
+        end = System.nanoTime();
+        fairReadSampler.sampleNanos(end - start);
+
+        start = end;
+        defaultLocks.put(key, counter);
+        end = System.nanoTime();
+        defaultWriteSampler.sampleNanos(end - start);
+
+        start = end;
+        fairLocks.put(key, counter);
+        end = System.nanoTime();
+        fairWriteSampler.sampleNanos(end - start);
+
+        e2eSampler.sampleNanos(end - startTimeNS);
+    }
+
+    @Override
+    public void complete() {
+        running = false;
+        for (Thread writer : backgroundWriters) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        defaultLocks.close();
+        fairLocks.close();
+    }
+}
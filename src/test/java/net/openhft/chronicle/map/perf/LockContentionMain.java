@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.map.perf;
+
+import net.openhft.chronicle.hash.locks.LockWaitStrategy;
+import net.openhft.chronicle.map.ChronicleMap;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports the throughput of updates of a map with few segments, from more threads than there are
+ * processors, with busy spin and adaptive spin, yield and park {@link LockWaitStrategy}s. With
+ * busy spin, waiting threads compete for processors with the segment lock holders.
+ * <p>
+ * <p>Arguments: the number of threads per processor (4 by default) and the duration of each run in
+ * seconds (10 by default).
+ */
+public class LockContentionMain {
+    private static final int SEGMENTS = 4;
+    private static final int KEYS = 1024;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threadsPerProcessor = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = Runtime.getRuntime().availableProcessors() * threadsPerProcessor;
+        System.out.println(threads + " threads, " +
+                Runtime.getRuntime().availableProcessors() + " processors");
+        LockWaitStrategy[] strategies =
+                {LockWaitStrategy.busySpin(), LockWaitStrategy.spinYieldPark()};
+        for (int run = 0; run < RUNS; run++) {
+            for (LockWaitStrategy strategy : strategies) {
+                double opsPerSecond = run(strategy, threads, seconds);
+                System.out.printf("%s: %,.0f updates/s%n", strategy, opsPerSecond);
+            }
+        }
+    }
+
+    private static double run(LockWaitStrategy strategy, int threads, int seconds)
+            throws InterruptedException {
+        try (ChronicleMap<Integer, Long> map = ChronicleMapBuilder.of(Integer.class, Long.class)
+                .entries(KEYS)
+                .actualSegments(SEGMENTS)
+                .lockWaitStrategy(strategy)
+                .create()) {
+            LongAdder updates = new LongAdder();
+            AtomicBoolean stop = new AtomicBoolean();
+            CountDownLatch finished = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                Thread updater = new Thread(() -> {
+                    int key = seed;
+                    long localUpdates = 0;
+                    while (!stop.get()) {
+                        key = (key * 31 + 7) & (KEYS - 1);
+                        map.merge(key, 1L, Long::sum);
+                        localUpdates++;
+                    }
+                    updates.add(localUpdates);
+                    finished.countDown();
+                });
+                updater.setDaemon(true);
+                updater.start();
+            }
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(seconds);
+            stop.set(true);
+            finished.await();
+            long elapsedNanos = System.nanoTime() - start;
+            return updates.sum() * 1e9 / elapsedNanos;
+        }
+    }
+}
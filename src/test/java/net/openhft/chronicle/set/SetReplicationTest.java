@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2018 Chronicle Map Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.set;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.hash.ChronicleHashBuilderPrivateAPI;
+import net.openhft.chronicle.hash.replication.TimestampProvider;
+import net.openhft.chronicle.hash.serialization.SizeMarshaller;
+import net.openhft.chronicle.map.ChronicleMapBuilder;
+import net.openhft.chronicle.map.Replica;
+import net.openhft.chronicle.map.ReplicatedChronicleMap;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.openhft.chronicle.map.ReplicationTestUtil.drain;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SetReplicationTest {
+
+    /**
+     * The hunk type, the origin timestamp (6 bytes of milliseconds and 1 byte of the
+     * sub-millisecond counter), the origin identifier, the key size and a long key
+     */
+    private static final int KEY_HUNK_SIZE = 1 + 7 + 1 + 1 + 8;
+
+    /**
+     * The backing map of a replicated set, built the same way as by {@link ChronicleSetBuilder}
+     */
+    private static ReplicatedChronicleMap<Long, DummyValue, ?> backingMap(int identifier) {
+        ChronicleMapBuilder<Long, DummyValue> builder =
+                ChronicleMapBuilder.of(Long.class, DummyValue.class)
+                        .valueReaderAndDataAccess(
+                                DummyValueMarshaller.INSTANCE, DummyValueMarshaller.INSTANCE)
+                        .valueSizeMarshaller(SizeMarshaller.constant(0))
+                        .entries(1000);
+        ChronicleHashBuilderPrivateAPI<?, ?> privateAPI =
+                (ChronicleHashBuilderPrivateAPI<?, ?>) builder.privateAPI();
+        privateAPI.replication((byte) identifier);
+        privateAPI.timestampProvider(new CountingTimestampProvider());
+        return (ReplicatedChronicleMap<Long, DummyValue, ?>) builder.create();
+    }
+
+    @Test
+    public void setIsReplicatedWithKeyOnlyHunks() {
+        try (ReplicatedChronicleMap<Long, DummyValue, ?> sourceMap = backingMap(1);
+             ReplicatedChronicleMap<Long, DummyValue, ?> targetMap = backingMap(2)) {
+            ChronicleSet<Long> source = new SetFromMap<>(sourceMap);
+            ChronicleSet<Long> target = new SetFromMap<>(targetMap);
+            Replica.ModificationIterator modificationIterator =
+                    sourceMap.acquireModificationIterator((byte) 2);
+            Bytes<ByteBuffer> buffer = Bytes.elasticByteBuffer(4096);
+
+            for (long i = 0; i < 100; i++) {
+                source.add(i);
+            }
+            assertEquals(100, drain(sourceMap, modificationIterator, buffer));
+            assertEquals(100 * KEY_HUNK_SIZE, buffer.writePosition());
+            targetMap.readExternalEntries(buffer, sourceMap.identifier());
+            assertEquals(new HashSet<>(source), new HashSet<>(target));
+
+            buffer.clear();
+            for (long i = 0; i < 100; i += 3) {
+                source.remove(i);
+            }
+            assertEquals(34, drain(sourceMap, modificationIterator, buffer));
+            assertEquals(34 * KEY_HUNK_SIZE, buffer.writePosition());
+            // entries are applied one by one the same way as in a batch
+            while (buffer.readRemaining() > 0) {
+                targetMap.readExternalEntry(buffer, sourceMap.identifier());
+            }
+            assertEquals(66, target.size());
+            assertEquals(new HashSet<>(source), new HashSet<>(target));
+            assertFalse(target.contains(3L));
+            assertTrue(target.contains(4L));
+        }
+    }
+
+    /**
+     * Issues consecutive timestamps from the current time, so that the sub-millisecond part of
+     * timestamps in this test is small
+     */
+    private static class CountingTimestampProvider implements TimestampProvider {
+        private final AtomicLong time =
+                new AtomicLong(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+
+        @Override
+        public long nextTimestamp() {
+            return time.incrementAndGet();
+        }
+
+        @Override
+        public long currentTime() {
+            return time.get();
+        }
+
+        @Override
+        public void advanceTo(long timestamp) {
+            time.accumulateAndGet(timestamp + 1, Math::max);
+        }
+    }
+}